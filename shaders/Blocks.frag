@@ -0,0 +1,20 @@
+#ifdef DIFFUSEMAP
+    uniform sampler2D m_DiffuseMap;
+#endif
+uniform float m_TileSize;
+
+varying vec2 tileCoord;
+varying vec2 tileOrigin;
+varying vec3 lightColor;
+
+void main() {
+    vec4 colour = vec4(1.0);
+    #ifdef DIFFUSEMAP
+        // Wrap inside the atlas tile so a merged quad shows the tile once per block
+        colour = texture2D(m_DiffuseMap, tileOrigin + fract(tileCoord) * m_TileSize);
+    #endif
+    if (colour.a <= 0.01) {
+        discard;
+    }
+    gl_FragColor = vec4(colour.rgb * lightColor, colour.a);
+}
@@ -0,0 +1,34 @@
+uniform mat4 g_WorldViewProjectionMatrix;
+uniform mat4 g_WorldViewMatrix;
+uniform mat3 g_NormalMatrix;
+uniform mat4 g_ViewMatrix;
+
+uniform vec4 g_LightColor;
+uniform vec4 g_LightPosition;
+uniform vec4 g_AmbientLightColor;
+
+attribute vec3 inPosition;
+attribute vec3 inNormal;
+// Position inside the merged quad in blocks, repeats the tile once per block
+attribute vec2 inTexCoord;
+// Corner of the blocks tile in the texture atlas
+attribute vec2 inTexCoord2;
+
+varying vec2 tileCoord;
+varying vec2 tileOrigin;
+varying vec3 lightColor;
+
+void main() {
+    vec4 position = vec4(inPosition, 1.0);
+    gl_Position = g_WorldViewProjectionMatrix * position;
+    tileCoord = inTexCoord;
+    tileOrigin = inTexCoord2;
+
+    vec3 wvPosition = (g_WorldViewMatrix * position).xyz;
+    vec3 wvNormal = normalize(g_NormalMatrix * inNormal);
+    // Light type is stored in the alpha of the light color, 0 is directional and the position holds the direction
+    vec4 wvLightPos = g_ViewMatrix * vec4(g_LightPosition.xyz, clamp(g_LightColor.w, 0.0, 1.0));
+    vec3 lightDir = (g_LightColor.w > 0.0) ? normalize(wvLightPos.xyz - wvPosition) : normalize(-wvLightPos.xyz);
+    float diffuse = max(0.0, dot(wvNormal, lightDir));
+    lightColor = g_AmbientLightColor.rgb + g_LightColor.rgb * diffuse;
+}
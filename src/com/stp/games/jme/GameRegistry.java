@@ -30,6 +30,10 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 // Internal Dependencies
 import com.stp.util.JavaIO;
 import com.stp.util.XMLFileUtility;
@@ -38,26 +42,76 @@ import com.stp.games.jme.controls.GameControl;
 import com.stp.games.jme.controls.GameControl.ObjectType;
 import com.stp.games.jme.forester.grass.GrassLayer;
 
+/* Catalogue of schematics, object types and grass layers.
+ * Lookups go through hashed indices that are safe to read from chunk loader threads while registration is serialized on the registry.
+ * Loading a catalogue builds fresh indices and swaps them in so readers see either the old or the new catalogue, never a mix.
+ * Call reindex after editing the name, id or category of a registered schematic. */
 public class GameRegistry {
-	private final ArrayList<Schematic> schematics = new ArrayList<Schematic>();
+	// Schematics and the indices over them, replaced together when a catalogue is loaded
+	private static class Catalogue {
+		private final CopyOnWriteArrayList<Schematic> schematics;
+		private final ConcurrentHashMap<Long,Schematic> ids = new ConcurrentHashMap<Long,Schematic>();
+		private final ConcurrentHashMap<String,Schematic> names = new ConcurrentHashMap<String,Schematic>();
+		private final EnumMap<Schematic.Category,CopyOnWriteArrayList<Schematic>> categories = new EnumMap<Schematic.Category,CopyOnWriteArrayList<Schematic>>(Schematic.Category.class);
+		// Schematics without a category, an EnumMap can't hold a null key
+		private final CopyOnWriteArrayList<Schematic> uncategorised = new CopyOnWriteArrayList<Schematic>();
+		
+		public Catalogue(Collection<Schematic> schematics) {
+			this.schematics = new CopyOnWriteArrayList<Schematic>(schematics);
+			for (Schematic.Category category : Schematic.Category.values()) {
+				categories.put(category, new CopyOnWriteArrayList<Schematic>());
+			}
+			for (Schematic schema : schematics) {
+				index(schema);
+			}
+		}
+		// Adds the schematic to the indices, the first schematic registered with a name keeps it
+		public void index(Schematic schema) {
+			ids.put(schema.getId(), schema);
+			if (schema.getName() != null && !names.containsKey(schema.getName())) {
+				names.put(schema.getName(), schema);
+			}
+			getCategory(schema.getCategory()).add(schema);
+		}
+		public void unindex(Schematic schema) {
+			ids.remove(schema.getId(), schema);
+			if (schema.getName() != null) {
+				names.remove(schema.getName(), schema);
+			}
+			for (CopyOnWriteArrayList<Schematic> list : categories.values()) {
+				list.remove(schema);
+			}
+			uncategorised.remove(schema);
+		}
+		// Gets the schematics in the category, a null category gets the uncategorised ones
+		public CopyOnWriteArrayList<Schematic> getCategory(Schematic.Category category) {
+			return (category != null) ? categories.get(category) : uncategorised;
+		}
+	}
+	
+	private volatile Catalogue catalogue = new Catalogue(new ArrayList<Schematic>());
 	//private final ArrayList<Category> resources = new ArrayList<Category>();
-	private final ArrayList<ObjectType> types = new ArrayList<ObjectType>();
-	private final ArrayList<GrassLayer> grassLayers = new ArrayList<GrassLayer>();
+	private final CopyOnWriteArrayList<ObjectType> types = new CopyOnWriteArrayList<ObjectType>();
+	private final CopyOnWriteArrayList<GrassLayer> grassLayers = new CopyOnWriteArrayList<GrassLayer>();
+	private final ConcurrentHashMap<String,ObjectType> typeNames = new ConcurrentHashMap<String,ObjectType>();
+	private final ConcurrentHashMap<Integer,GrassLayer> grassIds = new ConcurrentHashMap<Integer,GrassLayer>();
+	private final ConcurrentHashMap<String,GrassLayer> grassNames = new ConcurrentHashMap<String,GrassLayer>();
 	
 	private static final String ZERO_FILL = "00000000";
-	private static GameRegistry instance;
-	private AssetManager assetManager;
+	private volatile AssetManager assetManager;
 	private String lastId = "0";
 	
+	// Holder class so the instance is created once on first use without locking every call
+	private static class Holder {
+		private static final GameRegistry INSTANCE = new GameRegistry();
+	}
+	
 	// Disable external instantiation for singleton class
 	private GameRegistry() {
 	}
 	// Entry point to retrieve the single instance of this object
 	public static GameRegistry getInstance() {
-		if (instance == null)	{
-			instance = new GameRegistry();
-		}
-		return instance;
+		return Holder.INSTANCE;
 	}
 	// Set the asset manager used to locate assets for loading
 	public void setAssetManager(AssetManager assetManager) {
@@ -65,63 +119,62 @@ public class GameRegistry {
 	}
 	
 	// Register a new object type to be used in the game
-	public ObjectType registerObjectType(ObjectType type) {
-		int index = types.indexOf(type);
-		if (index < 0) {
+	public synchronized ObjectType registerObjectType(ObjectType type) {
+		ObjectType found = typeNames.get(type.getName());
+		if (found == null) {
 			types.add(type);
+			typeNames.put(type.getName(), type);
 			return type;
 		} else {
-			return types.get(index);
+			return found;
 		}
 	}
 	// Get the list of all objects to iterate through them
-	public ArrayList<ObjectType> getObjectTypes() {
+	public List<ObjectType> getObjectTypes() {
 		return types;
 	}
 	
 	// Find an object type by it's name
 	public static ObjectType findObjectType(String text) {
-		for (ObjectType t : getInstance().getObjectTypes()) {
-			if (t.matches(text)) {
-				return t;
+		if (text != null) {
+			ObjectType type = getInstance().typeNames.get(text);
+			if (type != null) {
+				return type;
 			}
 		}
 		return GameControl.GENERIC_TYPE;
 	}
 	
 	// Register a new grass layer to be used by the chunk paging system
-	public GrassLayer registerGrassLayer(GrassLayer layer) {
-		int index = grassLayers.indexOf(layer);
-		if (index < 0) {
+	public synchronized GrassLayer registerGrassLayer(GrassLayer layer) {
+		GrassLayer found = grassIds.get(layer.getLayerId());
+		if (found == null) {
 			grassLayers.add(layer);
+			grassIds.put(layer.getLayerId(), layer);
+			if (layer.getName() != null && !grassNames.containsKey(layer.getName())) {
+				grassNames.put(layer.getName(), layer);
+			}
 			return layer;
 		} else {
-			return grassLayers.get(index);
+			return found;
 		}
 	}
 	
 	// Gets a grass layer it's id or return null if no matching grass layer was found
 	public GrassLayer getGrassLayer(int layerId) {
-		for (GrassLayer layer : grassLayers) {
-			if (layer.getLayerId() == layerId) {
-				return layer;
-			}
-		}
-		return null;
+		return grassIds.get(layerId);
 	}
 	// Get a list of all registered grass layers
-	public ArrayList<GrassLayer> getGrassLayers() {
+	public List<GrassLayer> getGrassLayers() {
 		return grassLayers;
 	}
 	
 	// Find a grass layer by it's name
 	public static GrassLayer findGrassLayer(String text) {
-		for (GrassLayer layer : getInstance().getGrassLayers()) {
-			if (layer.getName().equals(text)) {
-				return layer;
-			}
+		if (text == null) {
+			return null;
 		}
-		return null;
+		return getInstance().grassNames.get(text);
 	}
 	public <T extends GameControl> T createObject(String name, java.lang.Class<T> controlType) {
 		GameControl control = createObject(name);
@@ -163,7 +216,7 @@ public class GameRegistry {
 		}
 		return control;
 	}
-	public void add(Schematic schema) {
+	public synchronized void add(Schematic schema) {
 		if (schema.getId() != 0) {
 			Schematic found = get(schema.getId());
 			if (found != null) {
@@ -172,15 +225,21 @@ public class GameRegistry {
 		}
 		try {
 			schema.setId(getNextId());
-			schematics.add(schema);
+			catalogue.schematics.add(schema);
+			catalogue.index(schema);
 		} catch (Exception ex) {}
 	}
-	public void remove(int index)	{
-		if (index > 0 && index < schematics.size()) {
-			schematics.remove(index);
+	public synchronized void remove(int index)	{
+		Catalogue current = catalogue;
+		if (index > 0 && index < current.schematics.size()) {
+			current.unindex(current.schematics.remove(index));
 		}
 	}
-	public long getNextId() throws Exception {
+	// Rebuilds the lookup indices, needed after the name, id or category of a registered schematic is edited
+	public synchronized void reindex() {
+		this.catalogue = new Catalogue(catalogue.schematics);
+	}
+	public synchronized long getNextId() throws Exception {
 		int lastIndex = Integer.parseInt(lastId, 36);
 		String nextId = Integer.toString(lastIndex+1, 36);
 		this.lastId = nextId;
@@ -197,17 +256,11 @@ public class GameRegistry {
 			return 0L;
 		}
 	}
-	public ArrayList<Schematic> getLoadedSchematics()	{
-		return schematics;
+	public List<Schematic> getLoadedSchematics()	{
+		return catalogue.schematics;
 	}
 	public ArrayList<Schematic> getSchematics(Schematic.Category category) {
-		ArrayList<Schematic> results = new ArrayList<Schematic>();
-		for (Schematic s : schematics) {
-			if (s.getCategory() == category) {
-				results.add(s);
-			}
-		}
-		return results;
+		return new ArrayList<Schematic>(catalogue.getCategory(category));
 	}
 	public Schematic[] get(String[] names)	{
 		Schematic[] results = new Schematic[names.length];
@@ -217,12 +270,10 @@ public class GameRegistry {
 		return results;
 	}
 	public Schematic get(String name) {
-		for (Schematic s : schematics) {
-			if (s.getName().equals(name)) {
-				return s;
-			}
+		if (name == null) {
+			return null;
 		}
-		return null;
+		return catalogue.names.get(name);
 	}
 	public Schematic[] get(Long[] idList) {
 		Schematic[] results = new Schematic[idList.length];
@@ -232,28 +283,25 @@ public class GameRegistry {
 		return results;
 	}
 	public Schematic get(long id) {
-		for (Schematic s : schematics) {
-			if (s.getId() == id) {
-				return s;
-			}
-		}
-		return null;
+		return catalogue.ids.get(id);
 	}
 	public boolean saveXML(File sFile) {
+		List<Schematic> schematics = catalogue.schematics;
 		if (schematics.size() > 0) {
 			return JavaIO.saveXML(sFile, schematics.toArray(new Schematic[schematics.size()]));
 		} else {
 			return false;
 		}
 	}
-	public boolean loadXML(InputStream in) {
+	public synchronized boolean loadXML(InputStream in) {
 		try {
 			Schematic[] inData = (Schematic[])XMLFileUtility.readXMLObjects(in);
-			schematics.clear();
+			ArrayList<Schematic> loaded = new ArrayList<Schematic>(inData.length);
 			for (Schematic s : inData) {
-				schematics.add(s);
+				loaded.add(s);
 				//System.out.println("Loaded: " + s.getName());
 			}
+			this.catalogue = new Catalogue(loaded);
 			// Read and store the id of the last Schematic loaded
 			if (inData.length > 0) {
 				this.lastId = stringValue(inData[inData.length-1].getId());
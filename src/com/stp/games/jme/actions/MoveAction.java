@@ -36,7 +36,7 @@ import java.util.concurrent.Future;
 // Internal Dependencies
 import com.stp.games.jme.terrain.Volume;
 
-public class MoveAction extends Action {
+public class MoveAction extends Action implements PathService.PathListener {
 	public static final int X_AXIS = 0;
 	public static final int Z_AXIS = 1;
 	
@@ -92,6 +92,10 @@ public class MoveAction extends Action {
 			physicsType = PhysicsType.NoPhysics;
 		}
 	}
+	// Receives paths requested through the path service
+	public void pathFound(MotionPath path, double time) {
+		setPath(path, time);
+	}
 	public synchronized void setPath(MotionPath newPath, double time) {
 		if (time >= lastTime) {
 			lastTime = time;
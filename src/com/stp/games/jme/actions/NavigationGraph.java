@@ -0,0 +1,377 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.actions;
+// JME3 Dependencies
+import com.jme3.math.Vector3f;
+import com.jme3.cinematic.MotionPath;
+// Java Dependencies
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+// Internal Dependencies
+import com.stp.games.jme.terrain.ChunkControl;
+import com.stp.games.jme.terrain.ChunkKey;
+import com.stp.games.jme.terrain.Volume;
+
+/* Hierarchical path planner that treats every chunk footprint as a cluster of cells (HPA*).
+ * Where two neighbouring clusters share a run of passable border cells an entrance is placed, and the costs between the
+ * entrances of a cluster are found once with searches confined to that cluster. Long routes are planned over this small
+ * graph of entrances and then refined one cluster at a time. Clusters are cached with the versions of their chunk and its
+ * four neighbours, editing a chunk changes its version so only that cluster and the borders of its neighbours are rebuilt.
+ * Short routes go straight to the cell level PathFinder. Safe to use from several path worker threads at once.
+ */
+public class NavigationGraph {
+	public static final int DEFAULT_MAX_CLUSTERS = 1024;
+	public static final int DEFAULT_MAX_EXPANSIONS = 16384;
+	
+	private static final int STRAIGHT_COST = 10;
+	private static final int[] NEIGHBOR_X = { 0, 1, -1, 0, 0 };
+	private static final int[] NEIGHBOR_Z = { 0, 0, 0, 1, -1 };
+	
+	// The entrances of one chunk footprint and the costs between them, never changed once built
+	private static class Cluster {
+		private final int cx;
+		private final int cz;
+		private final int minX;
+		private final int minZ;
+		private final int maxX;
+		private final int maxZ;
+		// Keys and versions of the chunk and its neighbours, only keys are held so evicted chunks can be collected
+		private final long[] keys = new long[NEIGHBOR_X.length];
+		private final long[] versions = new long[NEIGHBOR_X.length];
+		private final HashMap<Long,Integer> entrances = new HashMap<Long,Integer>();
+		private int[] entranceX = new int[0];
+		private int[] entranceZ = new int[0];
+		private int[] linkX = new int[0];
+		private int[] linkZ = new int[0];
+		private int[][] costs = new int[0][0];
+		
+		public Cluster(int cx, int cz, int minX, int minZ, int maxX, int maxZ) {
+			this.cx = cx;
+			this.cz = cz;
+			this.minX = minX;
+			this.minZ = minZ;
+			this.maxX = maxX;
+			this.maxZ = maxZ;
+		}
+		public int getEntrance(int x, int z) {
+			Integer index = entrances.get(cellKey(x, z));
+			return (index != null) ? index : -1;
+		}
+		public boolean contains(int x, int z) {
+			return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+		}
+	}
+	// Entry in the open list of the abstract search
+	private static class Step implements Comparable<Step> {
+		private final long cell;
+		private final int x;
+		private final int z;
+		private final int g;
+		private final int h;
+		private final Step parent;
+		
+		public Step(int x, int z, int g, int h, Step parent) {
+			this.cell = cellKey(x, z);
+			this.x = x;
+			this.z = z;
+			this.g = g;
+			this.h = h;
+			this.parent = parent;
+		}
+		// Orders steps by total cost, breaking ties with the step closest to the target
+		public int compareTo(Step other) {
+			int f = g + h;
+			int of = other.g + other.h;
+			if (f != of) {
+				return (f < of) ? -1 : 1;
+			}
+			return (h < other.h) ? -1 : ((h == other.h) ? 0 : 1);
+		}
+	}
+	
+	private final Volume volume;
+	private final LinkedHashMap<Long,Cluster> clusters;
+	private int maxExpansions = DEFAULT_MAX_EXPANSIONS;
+	private long builds;
+
+	public NavigationGraph(Volume volume) {
+		this (volume, DEFAULT_MAX_CLUSTERS);
+	}
+	public NavigationGraph(Volume volume, final int maxClusters) {
+		this.volume = volume;
+		this.clusters = new LinkedHashMap<Long,Cluster>(64, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long,Cluster> eldest) {
+				return size() > maxClusters;
+			}
+		};
+	}
+	// Sets the number of entrances the abstract search may expand before giving up
+	public void setMaxExpansions(int maxExpansions) {
+		this.maxExpansions = maxExpansions;
+	}
+	// Finds a path from the source to the target, waypoints are ordered the same way as PathFinder.findPath
+	public MotionPath findPath(Vector3f source, Vector3f target) {
+		int sx = (int)source.x;
+		int sz = (int)source.z;
+		int ex = (int)target.x;
+		int ez = (int)target.z;
+		int csx = getClusterX(sx);
+		int csz = getClusterZ(sz);
+		int cex = getClusterX(ex);
+		int cez = getClusterZ(ez);
+		// Routes within neighbouring clusters and blocked targets are left to the cell level search
+		if ((Math.abs(csx - cex) <= 1 && Math.abs(csz - cez) <= 1) || !volume.isPassable(ex, 0, ez)) {
+			return PathFinder.get().findPath(volume, source, target);
+		}
+		ArrayList<Step> route = findRoute(sx, sz, ex, ez);
+		if (route == null) {
+			return new MotionPath();
+		}
+		ArrayList<Vector3f> waypoints = new ArrayList<Vector3f>();
+		// Refine from the target back to the source so the waypoints come out in PathFinder order
+		PathFinder finder = PathFinder.get();
+		for (int i = route.size() - 1; i > 0; i--) {
+			Step to = route.get(i);
+			Step from = route.get(i - 1);
+			if (getClusterX(to.x) != getClusterX(from.x) || getClusterZ(to.z) != getClusterZ(from.z)) {
+				waypoints.add(new Vector3f(to.x, volume.getHeight(to.x, 0, to.z), to.z));
+			} else {
+				Cluster cluster = getCluster(getClusterX(to.x), getClusterZ(to.z));
+				if (!finder.appendPath(volume, from.x, from.z, to.x, to.z, cluster.minX, cluster.minZ, cluster.maxX, cluster.maxZ, PathFinder.DEFAULT_MAX_EXPANSIONS, waypoints)) {
+					return new MotionPath();
+				}
+			}
+		}
+		return PathFinder.createPath(waypoints);
+	}
+	// Runs the abstract search and returns the cells along the route from source to target, or null if there is none
+	private ArrayList<Step> findRoute(int sx, int sz, int ex, int ez) {
+		// Clusters checked during this search, so each one is validated against its chunks only once
+		HashMap<Long,Cluster> visited = new HashMap<Long,Cluster>();
+		Cluster startCluster = getCluster(getClusterX(sx), getClusterZ(sz), visited);
+		Cluster endCluster = getCluster(getClusterX(ex), getClusterZ(ez), visited);
+		PathFinder finder = PathFinder.get();
+		// Costs from each entrance of the target cluster to the target, found up front so the search can finish there
+		int[] exitCosts = new int[endCluster.entranceX.length];
+		for (int i = 0; i < exitCosts.length; i++) {
+			exitCosts[i] = finder.findCost(volume, endCluster.entranceX[i], endCluster.entranceZ[i], ex, ez, endCluster.minX, endCluster.minZ, endCluster.maxX, endCluster.maxZ, PathFinder.DEFAULT_MAX_EXPANSIONS);
+		}
+		
+		PriorityQueue<Step> open = new PriorityQueue<Step>();
+		HashMap<Long,Integer> best = new HashMap<Long,Integer>();
+		Step start = new Step(sx, sz, 0, 0, null);
+		for (int i = 0; i < startCluster.entranceX.length; i++) {
+			int x = startCluster.entranceX[i];
+			int z = startCluster.entranceZ[i];
+			int cost = finder.findCost(volume, sx, sz, x, z, startCluster.minX, startCluster.minZ, startCluster.maxX, startCluster.maxZ, PathFinder.DEFAULT_MAX_EXPANSIONS);
+			if (cost >= 0) {
+				push(open, best, new Step(x, z, cost, PathFinder.getDistance(x, z, ex, ez), start));
+			}
+		}
+		int expansions = 0;
+		while (!open.isEmpty()) {
+			Step current = open.poll();
+			if (current.g > best.get(current.cell)) {
+				continue;
+			}
+			if (current.x == ex && current.z == ez) {
+				ArrayList<Step> route = new ArrayList<Step>();
+				for (Step step = current; step != null; step = step.parent) {
+					route.add(step);
+				}
+				Collections.reverse(route);
+				return route;
+			}
+			if (++expansions > maxExpansions) {
+				return null;
+			}
+			Cluster cluster = getCluster(getClusterX(current.x), getClusterZ(current.z), visited);
+			int index = cluster.getEntrance(current.x, current.z);
+			if (index < 0) {
+				continue;
+			}
+			// Leaving through the target cluster
+			if (cluster == endCluster && exitCosts[index] >= 0) {
+				push(open, best, new Step(ex, ez, current.g + exitCosts[index], 0, current));
+			}
+			// Crossing the border into the neighbouring cluster
+			int lx = cluster.linkX[index];
+			int lz = cluster.linkZ[index];
+			push(open, best, new Step(lx, lz, current.g + STRAIGHT_COST, PathFinder.getDistance(lx, lz, ex, ez), current));
+			// Moving to another entrance of the same cluster
+			int[] costs = cluster.costs[index];
+			for (int i = 0; i < costs.length; i++) {
+				if (i != index && costs[i] >= 0) {
+					int x = cluster.entranceX[i];
+					int z = cluster.entranceZ[i];
+					push(open, best, new Step(x, z, current.g + costs[i], PathFinder.getDistance(x, z, ex, ez), current));
+				}
+			}
+		}
+		return null;
+	}
+	// Adds the step to the open list unless its cell has already been reached at no greater cost
+	private void push(PriorityQueue<Step> open, HashMap<Long,Integer> best, Step step) {
+		Integer known = best.get(step.cell);
+		if (known == null || step.g < known) {
+			best.put(step.cell, step.g);
+			open.add(step);
+		}
+	}
+	
+	/* Clusters */
+	
+	// Gets the cluster x coordinate of a cell, matches the chunk the volume stores the cell in
+	public int getClusterX(int x) {
+		return Math.round((float)x/volume.getChunkSizeX());
+	}
+	// Gets the cluster z coordinate of a cell, matches the chunk the volume stores the cell in
+	public int getClusterZ(int z) {
+		return Math.round((float)z/volume.getChunkSizeZ());
+	}
+	// Gets the cluster through the set already validated by the current search
+	private Cluster getCluster(int cx, int cz, HashMap<Long,Cluster> visited) {
+		long key = cellKey(cx, cz);
+		Cluster cluster = visited.get(key);
+		if (cluster == null) {
+			cluster = getCluster(cx, cz);
+			visited.put(key, cluster);
+		}
+		return cluster;
+	}
+	// Gets the cluster, rebuilding it if its chunk or one of its neighbours has changed since it was built
+	private Cluster getCluster(int cx, int cz) {
+		long key = ChunkKey.pack(cx, 0, cz);
+		Cluster cluster;
+		synchronized (clusters) {
+			cluster = clusters.get(key);
+		}
+		if (cluster != null && isCurrent(cluster)) {
+			return cluster;
+		}
+		cluster = buildCluster(cx, cz);
+		synchronized (clusters) {
+			clusters.put(key, cluster);
+			builds++;
+		}
+		return cluster;
+	}
+	// Versions are unique across chunk instances, so a reloaded chunk never matches the version it was built with
+	private boolean isCurrent(Cluster cluster) {
+		for (int i = 0; i < NEIGHBOR_X.length; i++) {
+			if (getVersion(volume.getChunkByKey(cluster.keys[i])) != cluster.versions[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	// Gets the version of the chunk, or -1 when there is no chunk which no real version can equal
+	private static long getVersion(ChunkControl chunk) {
+		return (chunk != null) ? chunk.getVersion() : -1L;
+	}
+	// Finds the entrances on the borders of the cluster and the costs between them
+	private Cluster buildCluster(int cx, int cz) {
+		int sizeX = volume.getChunkSizeX();
+		int sizeZ = volume.getChunkSizeZ();
+		Cluster cluster = new Cluster(cx, cz, (int)Math.ceil((cx - 0.5)*sizeX), (int)Math.ceil((cz - 0.5)*sizeZ), (int)Math.ceil((cx + 0.5)*sizeX) - 1, (int)Math.ceil((cz + 0.5)*sizeZ) - 1);
+		// Record the versions before reading any cells so an edit made during the build is picked up next time
+		for (int i = 0; i < NEIGHBOR_X.length; i++) {
+			cluster.keys[i] = ChunkKey.pack(cx + NEIGHBOR_X[i], 0, cz + NEIGHBOR_Z[i]);
+			cluster.versions[i] = getVersion(volume.getChunkByKey(cluster.keys[i]));
+		}
+		ArrayList<int[]> found = new ArrayList<int[]>();
+		findEntrances(cluster.maxX, cluster.minZ, 0, 1, 1, 0, cluster.maxZ - cluster.minZ + 1, found);
+		findEntrances(cluster.minX, cluster.minZ, 0, 1, -1, 0, cluster.maxZ - cluster.minZ + 1, found);
+		findEntrances(cluster.minX, cluster.maxZ, 1, 0, 0, 1, cluster.maxX - cluster.minX + 1, found);
+		findEntrances(cluster.minX, cluster.minZ, 1, 0, 0, -1, cluster.maxX - cluster.minX + 1, found);
+		
+		int count = found.size();
+		cluster.entranceX = new int[count];
+		cluster.entranceZ = new int[count];
+		cluster.linkX = new int[count];
+		cluster.linkZ = new int[count];
+		cluster.costs = new int[count][count];
+		for (int i = 0; i < count; i++) {
+			int[] entrance = found.get(i);
+			cluster.entranceX[i] = entrance[0];
+			cluster.entranceZ[i] = entrance[1];
+			cluster.linkX[i] = entrance[2];
+			cluster.linkZ[i] = entrance[3];
+			cluster.entrances.put(cellKey(entrance[0], entrance[1]), i);
+		}
+		PathFinder finder = PathFinder.get();
+		for (int i = 0; i < count; i++) {
+			for (int j = i + 1; j < count; j++) {
+				int cost = finder.findCost(volume, cluster.entranceX[i], cluster.entranceZ[i], cluster.entranceX[j], cluster.entranceZ[j], cluster.minX, cluster.minZ, cluster.maxX, cluster.maxZ, PathFinder.DEFAULT_MAX_EXPANSIONS);
+				cluster.costs[i][j] = cost;
+				cluster.costs[j][i] = cost;
+			}
+		}
+		return cluster;
+	}
+	/* Walks a border of the cluster, starting at (x, z) and stepping by (stepX, stepZ), looking for runs where the border
+	 * cell and the cell across it (offset by (outX, outZ)) are both passable. Both clusters sharing a border find the same runs.
+	 */
+	private void findEntrances(int x, int z, int stepX, int stepZ, int outX, int outZ, int length, ArrayList<int[]> found) {
+		int run = 0;
+		for (int i = 0; i <= length; i++) {
+			int bx = x + stepX*i;
+			int bz = z + stepZ*i;
+			boolean open = (i < length) && volume.isPassable(bx, 0, bz) && volume.isPassable(bx + outX, 0, bz + outZ);
+			if (open) {
+				run++;
+			} else if (run > 0) {
+				// One entrance in the middle of each run, extra entrances at the ends of wide runs only slowed the search
+				int middle = i - (run + 1)/2;
+				found.add(new int[] { x + stepX*middle, z + stepZ*middle, x + stepX*middle + outX, z + stepZ*middle + outZ });
+				run = 0;
+			}
+		}
+	}
+	// Packs a cell into a map key, the multiply is reversible so keys stay unique but spread the bits Long.hashCode folds together
+	private static long cellKey(int x, int z) {
+		return (((long)x << 32) | (z & 0xFFFFFFFFL)) * 0x9E3779B97F4A7C15L;
+	}
+	// Forgets all cached clusters
+	public void clear() {
+		synchronized (clusters) {
+			clusters.clear();
+		}
+	}
+	// Gets the number of clusters built since the graph was created, used to check how much work edits cause
+	public long getBuilds() {
+		synchronized (clusters) {
+			return builds;
+		}
+	}
+	public String toString() {
+		synchronized (clusters) {
+			return "NavigationGraph: clusters=" + clusters.size() + ", builds=" + builds;
+		}
+	}
+}
@@ -0,0 +1,368 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.actions;
+// JME3 Dependencies
+import com.jme3.math.Vector3f;
+import com.jme3.cinematic.MotionPath;
+// Java Dependencies
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+// Internal Dependencies
+import com.stp.games.jme.terrain.Volume;
+
+/* A* search over the x/z cells of a volume with 8 way movement, straight steps cost 10 and diagonal steps 14.
+ * Nodes live in parallel primitive arrays that are reused between searches, cells are mapped to nodes through an open
+ * addressing table cleared by bumping a generation stamp, and the open list is an indexed binary heap so the cheapest
+ * node is taken and costs are lowered in logarithmic time. Each cell's passability is checked once per search.
+ * Searches stop once the expansion budget is spent so unreachable targets in an open world can't stall a worker thread,
+ * and can be confined to a rectangle of cells which the hierarchical planner uses to search within a single chunk.
+ * Instances keep their storage between calls, use get() for one per thread.
+ */
+public class PathFinder {
+	public static final int DEFAULT_MAX_EXPANSIONS = 20000;
+	
+	private static final byte OPEN = 1;
+	private static final byte CLOSED = 2;
+	private static final byte BLOCKED = 3;
+	private static final int STRAIGHT_COST = 10;
+	private static final int DIAGONAL_COST = 14;
+	private static final int[] STEP_X = { -1, -1, -1, 0, 0, 1, 1, 1 };
+	private static final int[] STEP_Z = { -1, 0, 1, -1, 1, -1, 0, 1 };
+	
+	private static final ThreadLocal<PathFinder> LOCAL = new ThreadLocal<PathFinder>() {
+		@Override
+		protected PathFinder initialValue() {
+			return new PathFinder();
+		}
+	};
+	
+	// Node storage, indexed by node number
+	private int[] nodeX = new int[256];
+	private int[] nodeZ = new int[256];
+	private int[] nodeG = new int[256];
+	private int[] nodeH = new int[256];
+	private int[] nodeParent = new int[256];
+	private int[] nodeHeap = new int[256];
+	private byte[] nodeState = new byte[256];
+	private int nodeCount;
+	// Cell to node table, a slot is only valid when its stamp matches the current generation
+	private long[] cellKeys = new long[512];
+	private int[] cellNodes = new int[512];
+	private int[] cellStamps = new int[512];
+	private int generation;
+	// Open list as a binary heap of node numbers
+	private int[] heap = new int[256];
+	private int heapSize;
+	
+	private Volume volume;
+	private int minX;
+	private int minZ;
+	private int maxX;
+	private int maxZ;
+	private int expansions;
+	private boolean budgetExceeded;
+	
+	// Gets the path finder owned by the calling thread
+	public static PathFinder get() {
+		return LOCAL.get();
+	}
+	// Finds the shortest path using the default expansion budget
+	public MotionPath findPath(Volume volume, Vector3f source, Vector3f target) {
+		return findPath(volume, source, target, DEFAULT_MAX_EXPANSIONS);
+	}
+	/* Finds the shortest path from the source to the target cell. Waypoints are ordered from the target back to the
+	 * source, excluding the source cell, and placed at the volume height. If the target is blocked the passable
+	 * neighbour closest to the source is used instead. An empty path is returned when no path is found within budget.
+	 */
+	public MotionPath findPath(Volume volume, Vector3f source, Vector3f target, int maxExpansions) {
+		ArrayList<Vector3f> waypoints = new ArrayList<Vector3f>();
+		int sx = (int)source.x;
+		int sz = (int)source.z;
+		int ex = (int)target.x;
+		int ez = (int)target.z;
+		if (!volume.isPassable(ex, 0, ez)) {
+			int best = -1;
+			int bestX = ex;
+			int bestZ = ez;
+			for (int i = 0; i < STEP_X.length; i++) {
+				int nx = ex + STEP_X[i];
+				int nz = ez + STEP_Z[i];
+				if (volume.isPassable(nx, 0, nz)) {
+					int distance = getDistance(sx, sz, nx, nz);
+					if (best < 0 || distance < best) {
+						best = distance;
+						bestX = nx;
+						bestZ = nz;
+					}
+				}
+			}
+			if (best < 0) {
+				return new MotionPath();
+			}
+			ex = bestX;
+			ez = bestZ;
+		}
+		appendPath(volume, sx, sz, ex, ez, Integer.MIN_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE, maxExpansions, waypoints);
+		return createPath(waypoints);
+	}
+	// Builds a motion path from the waypoints, the spline length is computed once instead of again after every waypoint
+	public static MotionPath createPath(List<Vector3f> waypoints) {
+		MotionPath path = new MotionPath();
+		int count = waypoints.size();
+		if (count > 0) {
+			path.getSpline().getControlPoints().addAll(waypoints.subList(0, count - 1));
+			path.addWayPoint(waypoints.get(count - 1));
+		}
+		return path;
+	}
+	/* Searches for a path between two cells that stays within the bounds (inclusive) and appends its waypoints to the list,
+	 * ordered from the end cell back to the start cell excluding the start. Returns false if no path was found.
+	 */
+	public boolean appendPath(Volume volume, int sx, int sz, int ex, int ez, int minX, int minZ, int maxX, int maxZ, int maxExpansions, List<Vector3f> waypoints) {
+		try {
+			int end = search(volume, sx, sz, ex, ez, minX, minZ, maxX, maxZ, maxExpansions);
+			if (end < 0) {
+				return false;
+			}
+			for (int node = end; nodeParent[node] >= 0; node = nodeParent[node]) {
+				waypoints.add(new Vector3f(nodeX[node], volume.getHeight(nodeX[node], 0, nodeZ[node]), nodeZ[node]));
+			}
+			return true;
+		} finally {
+			this.volume = null;
+		}
+	}
+	// Gets the cost of the cheapest path between two cells that stays within the bounds (inclusive), or -1 if there is none
+	public int findCost(Volume volume, int sx, int sz, int ex, int ez, int minX, int minZ, int maxX, int maxZ, int maxExpansions) {
+		try {
+			int end = search(volume, sx, sz, ex, ez, minX, minZ, maxX, maxZ, maxExpansions);
+			return (end < 0) ? -1 : nodeG[end];
+		} finally {
+			this.volume = null;
+		}
+	}
+	// Runs the search and returns the node reached at the end cell, or -1 if it could not be reached
+	private int search(Volume volume, int sx, int sz, int ex, int ez, int minX, int minZ, int maxX, int maxZ, int maxExpansions) {
+		reset(volume);
+		this.minX = minX;
+		this.minZ = minZ;
+		this.maxX = maxX;
+		this.maxZ = maxZ;
+		int start = createNode(sx, sz, OPEN);
+		nodeG[start] = 0;
+		nodeH[start] = getDistance(sx, sz, ex, ez);
+		nodeParent[start] = -1;
+		push(start);
+		
+		while (heapSize > 0) {
+			int current = pop();
+			nodeState[current] = CLOSED;
+			int cx = nodeX[current];
+			int cz = nodeZ[current];
+			if (cx == ex && cz == ez) {
+				return current;
+			}
+			if (++expansions > maxExpansions) {
+				budgetExceeded = true;
+				return -1;
+			}
+			for (int i = 0; i < STEP_X.length; i++) {
+				int nx = cx + STEP_X[i];
+				int nz = cz + STEP_Z[i];
+				int neighbor = getNode(nx, nz);
+				byte state = nodeState[neighbor];
+				if (state == CLOSED || state == BLOCKED) {
+					continue;
+				}
+				int g = nodeG[current] + ((STEP_X[i] != 0 && STEP_Z[i] != 0) ? DIAGONAL_COST : STRAIGHT_COST);
+				if (state == 0) {
+					nodeState[neighbor] = OPEN;
+					nodeG[neighbor] = g;
+					nodeH[neighbor] = getDistance(nx, nz, ex, ez);
+					nodeParent[neighbor] = current;
+					push(neighbor);
+				} else if (g < nodeG[neighbor]) {
+					nodeG[neighbor] = g;
+					nodeParent[neighbor] = current;
+					siftUp(nodeHeap[neighbor]);
+				}
+			}
+		}
+		return -1;
+	}
+	// Gets the number of nodes expanded by the last search
+	public int getExpansions() {
+		return expansions;
+	}
+	// Checks whether the last search gave up because it ran out of expansions
+	public boolean isBudgetExceeded() {
+		return budgetExceeded;
+	}
+	// Gets the number of cells touched by the last search
+	public int getNodeCount() {
+		return nodeCount;
+	}
+	// Octile distance between two cells in path cost units
+	public static int getDistance(int ax, int az, int bx, int bz) {
+		int dx = Math.abs(ax - bx);
+		int dz = Math.abs(az - bz);
+		if (dx > dz) {
+			return DIAGONAL_COST*dz + STRAIGHT_COST*(dx-dz);
+		} else {
+			return DIAGONAL_COST*dx + STRAIGHT_COST*(dz-dx);
+		}
+	}
+	private void reset(Volume volume) {
+		this.volume = volume;
+		this.nodeCount = 0;
+		this.heapSize = 0;
+		this.expansions = 0;
+		this.budgetExceeded = false;
+		if (++generation == 0) {
+			Arrays.fill(cellStamps, 0);
+			generation = 1;
+		}
+	}
+	
+	/* Node Table */
+	
+	// Gets the node for the cell, creating it and checking its passability the first time the cell is reached
+	private int getNode(int x, int z) {
+		long key = ((long)x << 32) | (z & 0xFFFFFFFFL);
+		int mask = cellKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (cellStamps[slot] == generation) {
+			if (cellKeys[slot] == key) {
+				return cellNodes[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		boolean inside = (x >= minX && x <= maxX && z >= minZ && z <= maxZ);
+		return createNode(x, z, (inside && volume.isPassable(x, 0, z)) ? 0 : BLOCKED);
+	}
+	private int createNode(int x, int z, byte state) {
+		if (nodeCount == nodeX.length) {
+			growNodes();
+		}
+		if ((nodeCount + 1)*2 > cellKeys.length) {
+			growTable();
+		}
+		int node = nodeCount++;
+		nodeX[node] = x;
+		nodeZ[node] = z;
+		nodeState[node] = state;
+		insert(((long)x << 32) | (z & 0xFFFFFFFFL), node);
+		return node;
+	}
+	private void insert(long key, int node) {
+		int mask = cellKeys.length - 1;
+		int slot = hash(key) & mask;
+		while (cellStamps[slot] == generation) {
+			slot = (slot + 1) & mask;
+		}
+		cellKeys[slot] = key;
+		cellNodes[slot] = node;
+		cellStamps[slot] = generation;
+	}
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+	private void growNodes() {
+		int size = nodeX.length*2;
+		nodeX = Arrays.copyOf(nodeX, size);
+		nodeZ = Arrays.copyOf(nodeZ, size);
+		nodeG = Arrays.copyOf(nodeG, size);
+		nodeH = Arrays.copyOf(nodeH, size);
+		nodeParent = Arrays.copyOf(nodeParent, size);
+		nodeHeap = Arrays.copyOf(nodeHeap, size);
+		nodeState = Arrays.copyOf(nodeState, size);
+		heap = Arrays.copyOf(heap, size);
+	}
+	private void growTable() {
+		int size = cellKeys.length*2;
+		this.cellKeys = new long[size];
+		this.cellNodes = new int[size];
+		this.cellStamps = new int[size];
+		for (int node = 0; node < nodeCount; node++) {
+			insert(((long)nodeX[node] << 32) | (nodeZ[node] & 0xFFFFFFFFL), node);
+		}
+	}
+	
+	/* Open List */
+	
+	// Orders nodes by total cost, breaking ties with the node closest to the target
+	private boolean less(int a, int b) {
+		int fa = nodeG[a] + nodeH[a];
+		int fb = nodeG[b] + nodeH[b];
+		return fa < fb || (fa == fb && nodeH[a] < nodeH[b]);
+	}
+	private void push(int node) {
+		heap[heapSize] = node;
+		nodeHeap[node] = heapSize;
+		siftUp(heapSize++);
+	}
+	private int pop() {
+		int top = heap[0];
+		heapSize--;
+		if (heapSize > 0) {
+			heap[0] = heap[heapSize];
+			nodeHeap[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+	private void siftUp(int index) {
+		int node = heap[index];
+		while (index > 0) {
+			int parent = (index - 1) >> 1;
+			if (!less(node, heap[parent])) {
+				break;
+			}
+			heap[index] = heap[parent];
+			nodeHeap[heap[index]] = index;
+			index = parent;
+		}
+		heap[index] = node;
+		nodeHeap[node] = index;
+	}
+	private void siftDown(int index) {
+		int node = heap[index];
+		int half = heapSize >> 1;
+		while (index < half) {
+			int child = 2*index + 1;
+			if (child + 1 < heapSize && less(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!less(heap[child], node)) {
+				break;
+			}
+			heap[index] = heap[child];
+			nodeHeap[heap[index]] = index;
+			index = child;
+		}
+		heap[index] = node;
+		nodeHeap[node] = index;
+	}
+}
@@ -0,0 +1,340 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.actions;
+// JME3 Dependencies
+import com.jme3.math.Vector3f;
+import com.jme3.cinematic.MotionPath;
+// Java Dependencies
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+// Internal Dependencies
+import com.stp.games.jme.terrain.ChunkControl;
+import com.stp.games.jme.terrain.Volume;
+
+/* Queues path requests and runs them on a shared executor, a limited number per frame.
+ * Requests whose start cells fall in the same small block and share a goal cell are answered by one search, and results
+ * are cached with the versions of the chunks the path crosses so they are reused until one of those chunks is edited.
+ * Each listener only ever has one request outstanding, a newer request cancels the older one.
+ * Requests and updates are made from the update thread, searches run on the executor. Delivered paths are shared
+ * between listeners and must not be modified.
+ */
+public class PathService {
+	public static final int DEFAULT_STARTS_PER_FRAME = 8;
+	public static final int DEFAULT_MAX_RUNNING = 4;
+	public static final int DEFAULT_CACHE_SIZE = 256;
+	public static final int DEFAULT_BLOCK_SIZE = 2;
+	
+	// Receives the path found for a request
+	public interface PathListener {
+		public void pathFound(MotionPath path, double time);
+	}
+	// Identifies a search by volume, start block and goal cell
+	private static class PathKey {
+		private final Volume volume;
+		private final int sx;
+		private final int sz;
+		private final int ex;
+		private final int ez;
+		
+		public PathKey(Volume volume, int sx, int sz, int ex, int ez) {
+			this.volume = volume;
+			this.sx = sx;
+			this.sz = sz;
+			this.ex = ex;
+			this.ez = ez;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (obj instanceof PathKey) {
+				PathKey key = (PathKey)obj;
+				return key.volume == volume && key.sx == sx && key.sz == sz && key.ex == ex && key.ez == ez;
+			}
+			return false;
+		}
+		@Override
+		public int hashCode() {
+			int hash = System.identityHashCode(volume);
+			hash = 31*hash + sx;
+			hash = 31*hash + sz;
+			hash = 31*hash + ex;
+			return 31*hash + ez;
+		}
+	}
+	// A request from a single listener
+	private static class Request {
+		private final PathListener listener;
+		private final double time;
+		private Search search;
+		
+		public Request(PathListener listener, double time) {
+			this.listener = listener;
+			this.time = time;
+		}
+	}
+	// A path and the keys and versions of the chunks it was planned across, chunks aren't held so evicted ones can be collected
+	private static class CachedPath {
+		private final MotionPath path;
+		private final long[] keys;
+		private final long[] versions;
+		
+		public CachedPath(MotionPath path, long[] keys, long[] versions) {
+			this.path = path;
+			this.keys = keys;
+			this.versions = versions;
+		}
+		// Checks that every chunk the path crosses is still loaded and unedited, a reloaded chunk always has a new version
+		public boolean isCurrent(Volume volume) {
+			for (int i = 0; i < keys.length; i++) {
+				ChunkControl chunk = volume.getChunkByKey(keys[i]);
+				if (chunk == null || chunk.getVersion() != versions[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+	// One search shared by every request that coalesced onto it
+	private class Search implements Runnable {
+		private final PathKey key;
+		private final Vector3f source;
+		private final Vector3f target;
+		private final ArrayList<Request> waiting = new ArrayList<Request>();
+		private MotionPath path;
+		private CachedPath cached;
+		
+		public Search(PathKey key, Vector3f source, Vector3f target) {
+			this.key = key;
+			this.source = source.clone();
+			this.target = target.clone();
+		}
+		public void run() {
+			try {
+				long stamp = ChunkControl.getLatestVersion();
+				path = key.volume.getNavigation().findPath(source, target);
+				cached = snapshot(key.volume, path, stamp);
+			} catch (Exception ex) {
+				ex.printStackTrace();
+				path = new MotionPath();
+			} finally {
+				running.decrementAndGet();
+				completed.offer(this);
+			}
+		}
+	}
+	
+	private final ExecutorService executor;
+	private final ArrayDeque<Search> pending = new ArrayDeque<Search>();
+	private final HashMap<PathKey,Search> searches = new HashMap<PathKey,Search>();
+	private final HashMap<PathListener,Request> latest = new HashMap<PathListener,Request>();
+	private final ConcurrentLinkedQueue<Search> completed = new ConcurrentLinkedQueue<Search>();
+	private final LinkedHashMap<PathKey,CachedPath> cache;
+	private final AtomicInteger running = new AtomicInteger();
+	private int startsPerFrame = DEFAULT_STARTS_PER_FRAME;
+	private int maxRunning = DEFAULT_MAX_RUNNING;
+	private int blockSize = DEFAULT_BLOCK_SIZE;
+	
+	private long requests;
+	private long hits;
+	private long coalesced;
+	private long cancelled;
+	private long searched;
+
+	public PathService(ExecutorService executor) {
+		this (executor, DEFAULT_CACHE_SIZE);
+	}
+	public PathService(ExecutorService executor, final int cacheSize) {
+		this.executor = executor;
+		this.cache = new LinkedHashMap<PathKey,CachedPath>(64, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<PathKey,CachedPath> eldest) {
+				return size() > cacheSize;
+			}
+		};
+	}
+	// Sets the number of searches that may be started each frame
+	public void setStartsPerFrame(int startsPerFrame) {
+		this.startsPerFrame = Math.max(1, startsPerFrame);
+	}
+	// Sets the number of searches that may run on the executor at once
+	public void setMaxRunning(int maxRunning) {
+		this.maxRunning = Math.max(1, maxRunning);
+	}
+	// Sets the size in cells of the blocks start locations are grouped by, 1 only shares searches that start in the same cell
+	public void setBlockSize(int blockSize) {
+		this.blockSize = Math.max(1, blockSize);
+	}
+	/* Requests a path for the listener. Returns false if the listener already has a newer request, otherwise any older
+	 * request is cancelled and the path is delivered through the listener, immediately if it was cached.
+	 */
+	public boolean request(PathListener listener, Volume volume, Vector3f source, Vector3f target, double time) {
+		Request previous = latest.get(listener);
+		if (previous != null) {
+			if (previous.time > time) {
+				return false;
+			}
+			cancel(previous);
+		}
+		requests++;
+		PathKey key = new PathKey(volume, floorDiv((int)source.x, blockSize), floorDiv((int)source.z, blockSize), (int)target.x, (int)target.z);
+		CachedPath cached = cache.get(key);
+		if (cached != null) {
+			if (cached.isCurrent(volume)) {
+				hits++;
+				listener.pathFound(cached.path, time);
+				return true;
+			}
+			cache.remove(key);
+		}
+		Request request = new Request(listener, time);
+		Search search = searches.get(key);
+		if (search == null) {
+			search = new Search(key, source, target);
+			searches.put(key, search);
+			pending.add(search);
+		} else {
+			coalesced++;
+		}
+		search.waiting.add(request);
+		request.search = search;
+		latest.put(listener, request);
+		return true;
+	}
+	// Cancels the outstanding request for the listener if there is one
+	public void cancel(PathListener listener) {
+		Request request = latest.get(listener);
+		if (request != null) {
+			cancel(request);
+		}
+	}
+	private void cancel(Request request) {
+		latest.remove(request.listener);
+		Search search = request.search;
+		if (search != null && search.waiting.remove(request)) {
+			cancelled++;
+			// Drop the search altogether if nobody is waiting for it and it hasn't started
+			if (search.waiting.isEmpty() && pending.remove(search)) {
+				searches.remove(search.key);
+			}
+		}
+	}
+	// Delivers finished paths and starts queued searches, called once per frame from the update thread
+	public void update() {
+		Search search;
+		while ((search = completed.poll()) != null) {
+			searches.remove(search.key);
+			if (search.cached != null) {
+				cache.put(search.key, search.cached);
+			}
+			for (Request request : search.waiting) {
+				if (latest.get(request.listener) == request) {
+					latest.remove(request.listener);
+				}
+				request.listener.pathFound(search.path, request.time);
+			}
+		}
+		int started = 0;
+		while (started < startsPerFrame && running.get() < maxRunning && !pending.isEmpty()) {
+			search = pending.poll();
+			running.incrementAndGet();
+			searched++;
+			started++;
+			executor.execute(search);
+		}
+	}
+	// Records the chunks a path crosses, returns null if one was edited after the search started so the path isn't cached
+	private static CachedPath snapshot(Volume volume, MotionPath path, long stamp) {
+		if (path.getNbWayPoints() == 0) {
+			return null;
+		}
+		ArrayList<ChunkControl> chunks = new ArrayList<ChunkControl>();
+		ChunkControl last = null;
+		for (int i = 0; i < path.getNbWayPoints(); i++) {
+			Vector3f waypoint = path.getWayPoint(i);
+			ChunkControl chunk = volume.getChunk(waypoint.x, 0, waypoint.z);
+			if (chunk == null) {
+				return null;
+			}
+			if (chunk != last && !chunks.contains(chunk)) {
+				chunks.add(chunk);
+			}
+			last = chunk;
+		}
+		long[] keys = new long[chunks.size()];
+		long[] versions = new long[chunks.size()];
+		for (int i = 0; i < versions.length; i++) {
+			keys[i] = chunks.get(i).getKey();
+			versions[i] = chunks.get(i).getVersion();
+			if (versions[i] > stamp) {
+				return null;
+			}
+		}
+		return new CachedPath(path, keys, versions);
+	}
+	private static int floorDiv(int value, int divisor) {
+		return (value >= 0) ? value/divisor : -((-value + divisor - 1)/divisor);
+	}
+	// Drops all queued requests and cached paths, searches already running finish but are not delivered
+	public void clear() {
+		pending.clear();
+		searches.clear();
+		latest.clear();
+		completed.clear();
+		cache.clear();
+	}
+	// Gets the fraction of requests answered from the cache
+	public float getHitRate() {
+		return (requests > 0) ? (float)hits/requests : 0f;
+	}
+	// Gets the number of searches waiting to be started
+	public int getQueueDepth() {
+		return pending.size();
+	}
+	// Gets the number of searches running on the executor
+	public int getRunning() {
+		return running.get();
+	}
+	public long getRequests() {
+		return requests;
+	}
+	public long getHits() {
+		return hits;
+	}
+	public long getCoalesced() {
+		return coalesced;
+	}
+	public long getCancelled() {
+		return cancelled;
+	}
+	public long getSearches() {
+		return searched;
+	}
+	public String toString() {
+		return "PathService: requests=" + requests + ", hitRate=" + getHitRate() + ", coalesced=" + coalesced + ", cancelled=" + cancelled + ", searches=" + searched + ", queue=" + pending.size() + ", running=" + running.get();
+	}
+}
@@ -112,7 +112,8 @@ public abstract class Task {
 			/*if (!object.hasSpatial()) {
 				object.initialize(assetManager);
 			}*/
-			this.targetMaterial = object.getMaterial();
+			// The preview is tinted so it needs its own material, the one it was created with is shared by every object of its schematic
+			this.targetMaterial = object.getOwnMaterial();
 			if (targetMaterial != null) {
 				targetMaterial.setBoolean("UseMaterialColors", true);
 				targetMaterial.setColor("Diffuse", ALPHA_GREEN);
@@ -47,9 +47,23 @@ import com.stp.games.jme.controls.ContainerControl;
  */
 public class TaskAI {
 	protected ScheduledThreadPoolExecutor executor;
+	protected PathService paths;
 	
 	public TaskAI() {
 		this.executor = new ScheduledThreadPoolExecutor(8);
+		this.paths = new PathService(executor);
+	}
+	// Called once per frame to deliver finished paths and start queued searches
+	public void update(float tpf) {
+		paths.update();
+	}
+	// Gets the service that batches and caches path requests
+	public PathService getPathService() {
+		return paths;
+	}
+	// Requests a path for the listener, any older request it made is cancelled and the path is delivered on the update thread
+	public boolean requestPath(PathService.PathListener listener, Volume volume, Vector3f source, Vector3f target, double time) {
+		return paths.request(listener, volume, source, target, time);
 	}
 	// To be overriden in subclasses
 	public void sentientLoaded(SentientControl sentient) {
@@ -62,6 +76,7 @@ public class TaskAI {
 		return 1;
 	}
 	public void destroy() {
+		paths.clear();
 		executor.shutdown();
 	}
 	public Future<ArrayList<ContainerControl>> getAvailableResources(final World world, final Vector3f target, final String buildName) {
@@ -92,91 +107,10 @@ public class TaskAI {
 			}
 		});
 	}
-	/* This is an implementation of the A* algorithm used to determine the shortest path from point A to B within
-	 * a given volume avoiding any obsticals. The algorithm is run on a seperate thread and the result can be obtained
-	 * through the returned Future object.
+	/* Finds a path from point A to B within a given volume avoiding any obsticals using the volume's hierarchical planner.
+	 * The search is run on a seperate thread and the result can be obtained through the returned Future object.
 	 */
 	public Future<MotionPath> getPath(final Volume volume, final Vector3f source, final Vector3f target) {
-		return executor.submit(new Callable<MotionPath>() {
-			public MotionPath call() throws Exception {
-				long startTime = System.currentTimeMillis();
-				MotionPath path = new MotionPath();
-				ArrayList<PathNode> openList= new ArrayList<PathNode>();
-				ArrayList<PathNode> closedList = new ArrayList<PathNode>();
-				PathNode startNode = new PathNode(source);
-				PathNode endNode = new PathNode(target);
-				if (!volume.isPassable(endNode.getLocation())) {
-					for (int x = -1; x <= 1; x++) {
-						for (int y = -1; y <= 1; y++) {
-							if (x == 0 && y == 0) {
-								continue;
-							}
-							PathNode neighbor = new PathNode((int)endNode.getX() + x, (int)endNode.getY() + y);
-							if (volume.isPassable(neighbor.getLocation())) {
-								neighbor.set(PathNode.getDistance(startNode, neighbor), PathNode.getDistance(neighbor, endNode));
-								neighbor.setParent(endNode);
-								closedList.add(neighbor);
-							}
-						}
-					}
-					endNode = closedList.get(0);
-					for (PathNode node : closedList) {
-						if (node.getG() < endNode.getG()) {
-							endNode = node;
-						}
-					}
-					closedList.clear();
-				}
-				startNode.set(0, PathNode.getDistance(startNode, endNode));		
-				endNode.set(PathNode.getDistance(startNode, endNode), 0);
-				openList.add(startNode);
-				//System.out.println("Start Node: " + startNode);
-				//System.out.println("End Node: " + endNode);
-				
-				while (openList.size() > 0) {
-					PathNode current = openList.get(0);
-					for (PathNode node : openList) {
-						if (node.getF() < current.getF() || (node.getF() == current.getF() && node.getH() < current.getH())) {
-							current = node;
-						}
-					}
-					//System.out.println("Current Node: " + current + " | " + openList.size());
-					openList.remove(current);
-					closedList.add(current);
-					if (current.equals(endNode)) {
-						while (!current.equals(startNode)) {
-							//System.out.println("Path Node: " + current);
-							path.addWayPoint(current.getLocation());
-							current = current.getParent();
-						}
-						double calcTime = (System.currentTimeMillis() - startTime)/1000.0;
-						//System.out.println("Path Length: " + path.getNbWayPoints() + " | " + calcTime + "s");
-						return path;
-					}
-					// Add Neighbors
-					for (int x = -1; x <= 1; x++) {
-						for (int y = -1; y <= 1; y++) {
-							if (x == 0 && y == 0) {
-								continue;
-							}
-							PathNode neighbor = new PathNode((int)current.getX() + x, (int)current.getY() + y);
-							// Check if the neighbor has already been evaluated and if it is passable
-							if (!closedList.contains(neighbor) && volume.isPassable(neighbor.getLocation())) {
-								neighbor.set(current.getG() + PathNode.getDistance(current, neighbor), PathNode.getDistance(neighbor, endNode));
-								neighbor.setParent(current);
-								int index = openList.indexOf(neighbor);
-								if (index < 0) {
-									openList.add(neighbor);
-									//System.out.println("Neighbor Node: " + neighbor);
-								} else if (neighbor.getG() < openList.get(index).getG()) {
-									openList.get(index).setG(neighbor.getG());
-								}
-							}
-						}
-					}
-				}
-				return path;
-			}
-		});
+		return executor.submit(new Volume.PathProducer(volume, source, target));
 	}
 }
\ No newline at end of file
@@ -59,6 +59,8 @@ public class ContainerControl extends ItemControl implements ItemHolder
 	
 	public static final Param[] CONTAINER_PARAMS = { SIZE ,WEIGHT, COMPOSITION, LOCK_TYPE, CAPACITY, ROWS, RESOURCE_PARAM, SEEDED };
 	public static final ObjectType CONTAINER_TYPE = new ObjectType<ContainerControl>("Container", ContainerControl.class, CONTAINER_PARAMS);
+	// Per object lock state, resolved once instead of looked up by key on every access
+	private static final PropertySchema.Slot LOCK = CONTAINER_TYPE.getSchema().getSlot("lock", PropertySchema.Kind.Object);
 	
 	public static final String[] CONTAINER_ACTIONS = { "lock", "activate" };
 	public static final String[] RESOURCE_ACTIONS = { "gather" };
@@ -179,11 +181,11 @@ public class ContainerControl extends ItemControl implements ItemHolder
 	}
 	// Sets the lock type parameter for this container
 	public void setLockType(LockType lock)	{
-		put("lock", lock.name());
+		put(LOCK, lock.name());
 	}
 	// Gets the lock type parameter for this container
 	public LockType getLockType() {
-		return LockType.valueOf(getString("lock"));
+		return LockType.valueOf(getString(LOCK));
 	}
 	// Gets the items weight value which is inherited from the schematic
 	public int getCapacity() {
@@ -511,7 +511,9 @@ public class CreatureControl extends GameControl implements Movable {
 	}
 	// Sets the unique id of this object
 	public void setUniqueId(long uid) {
+		long oldUid = this.uid;
 		this.uid = uid;
+		uniqueIdChanged(oldUid);
 	}
 	// Gets the unique id of this object
 	public long getUniqueId() {
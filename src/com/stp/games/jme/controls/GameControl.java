@@ -34,6 +34,7 @@ import com.jme3.export.binary.ByteUtils;
 import com.jme3.scene.Node;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.instancing.InstancedNode;
 import com.jme3.material.Material;
 import com.jme3.math.Vector3f;
 import com.jme3.math.Quaternion;
@@ -62,6 +63,8 @@ import java.util.Collection;
 import java.lang.reflect.Constructor;
 import com.stp.games.jme.GameRegistry;
 import com.stp.games.jme.terrain.Volume;
+import com.stp.games.jme.terrain.ChunkKey;
+import com.stp.games.jme.terrain.ChunkControl;
 
 /** @author Paul Collins
  *  @version v1.0 ~ 04/04/2014
@@ -81,6 +84,9 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 	
 	public static final String[] DEFAULT_ACTIONS = new String[0];
 	public static final ObjectType<GameControl> GENERIC_TYPE = new ObjectType<GameControl>("Generic", GameControl.class);
+	// Written ahead of records that carry a property set, unique ids are never negative so records
+	// written before properties were stored start with the unique id and are read with no properties
+	public static final long PROPERTIES_RECORD = Long.MIN_VALUE | 1;
 	
 	/*private static final ArrayList<ObjectType> OBJECT_TYPES = new ArrayList<ObjectType>();
 	
@@ -111,6 +117,7 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 		private String name = "Generic";
 		private ArrayList<Param> params = new ArrayList<Param>();
 		private java.lang.Class<T> controlClass;
+		private volatile PropertySchema schema;
 		public ObjectType(String name, java.lang.Class<T> controlClass) {
 			this.name = name;
 			this.controlClass = controlClass;
@@ -155,12 +162,21 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 			}
 		}
 		public int getParamIndex(String name) {
-			for (Param p : params) {
-				if (p.getName().equals(name)) {
-					return p.getIndex();
+			PropertySchema.Slot slot = getSchema().getSlot(name);
+			return (slot != null && slot.getId() < getSchema().getParamCount()) ? slot.getId() : -1;
+		}
+		// Gets the schema that resolves the params and properties of this type to storage slots, built on first use
+		public PropertySchema getSchema() {
+			PropertySchema current = schema;
+			if (current == null) {
+				synchronized (this) {
+					if (schema == null) {
+						schema = new PropertySchema(params);
+					}
+					current = schema;
 				}
 			}
-			return -1;
+			return current;
 		}
 		public boolean equals(Object obj) {
 			return matches(obj);
@@ -172,35 +188,6 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 			return false;
 		}
 	}
-	private static class Property {
-		private String key = "";
-		private Object value = null;
-		public Property(String key, Object value) {
-			this.key = key;
-			this.value = value;
-		}
-		public String getKey() {
-			return key;
-		}
-		public Object getValue() {
-			return value;
-		}
-		public void setValue(Object value) {
-			this.value = value;
-		}
-		@Override
-		public boolean equals(Object other) {
-			if (other instanceof Property) {
-				return ((Property)other).getKey().equals(key);
-			}
-			return false;
-		}
-		@Override
-		public String toString() {
-			return key + "=" + value;
-		}
-	}
-	
 	// Game Object Types
 	/*public enum Type
 	{
@@ -300,13 +287,18 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 	}
 	
 	/* INSTANCE VARIABLES */
-	protected final ArrayList<Property> properties = new ArrayList<Property>();
+	protected final PropertySet properties = new PropertySet(GENERIC_TYPE.getSchema());
 	protected final Vector3f location = new Vector3f();
 	protected Schematic schema;
 	protected volatile boolean active;
 	protected volatile SceneState m_scene_state;
 	protected long uid;
 	protected long volumeId;
+	// Volume this object is a creature, vehicle or structure of, it is told when the unique id changes
+	protected Volume volume;
+	// Spatial index holding this object and the cell it was filed under, maintained by ObjectIndex
+	ObjectIndex index;
+	long indexCell;
 	
 	// Primary constructor with no parameters
 	public GameControl() {
@@ -349,78 +341,114 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 	
 	// Sets the objects unique id
 	public void setUniqueId(long uid) {
-		this.uid = uid;
+		long oldUid = this.uid;
+		ObjectIndex current = index;
+		if (current != null) {
+			current.remove(this);
+			this.uid = uid;
+			current.add(this);
+		} else {
+			this.uid = uid;
+		}
+		uniqueIdChanged(oldUid);
+	}
+	// Moves this object to its new unique id in the volume it belongs to
+	protected void uniqueIdChanged(long oldUid) {
+		Volume current = volume;
+		if (current != null && oldUid != getUniqueId()) {
+			current.updateMemberId(this, oldUid);
+		}
 	}
 	// Gets the objects unique id
 	public long getUniqueId() {
 		return uid;
 	}
 	public Object get(String key) {
-		for (Property p : properties) {
-			if (p.getKey().equals(key)) {
-				return p.getValue();
-			}
-		}
-		return null;
+		return properties.get(key);
 	}
 	public void put(String key, Object value) {
-		for (Property p : properties) {
-			if (p.getKey().equals(key)) {
-				p.setValue(value);
-				return;
-			}
-		}
-		properties.add(new Property(key, value));
+		properties.put(key, value);
 	}
 	public int getPropertyCount() {
 		return properties.size();
 	}
-	public ArrayList<Property> getProperties() {
+	public PropertySet getProperties() {
 		return properties;
 	}
 	public void remove(String key) {
-		for (int p = 0; p < properties.size(); p++) {
-			if (properties.get(p).getKey().equals(key)) {
-				properties.remove(p);
-				return;
-			}
-		}
+		properties.remove(key);
 	}
 	public String getString(String key) {
-		Object value = get(key);
-		return (value != null) ? value.toString() : "";
+		return properties.getString(key);
 	}
 	public boolean getBool(String key) {
 		return getBool(key, false);
 	}
 	public boolean getBool(String key, boolean defaultValue) {
-		Object value = get(key);
-		return (value instanceof Boolean) ? (Boolean)value : defaultValue;
+		return properties.getBool(key, defaultValue);
 	}
 	public int getInt(String key) {
 		return getInt(key, 0);
 	}
 	public int getInt(String key, int defaultValue) {
-		Object value = get(key);
-		return (value instanceof Integer) ? (Integer)value : defaultValue;
+		return properties.getInt(key, defaultValue);
 	}
 	public float getFloat(String key) {
 		return getFloat(key, 0f);
 	}
 	public float getFloat(String key, float defaultValue) {
-		Object value = get(key);
-		return (value instanceof Float) ? (Float)value : defaultValue;
+		return properties.getFloat(key, defaultValue);
 	}
 	public long getLong(String key) {
 		return getLong(key, 0L);
 	}
 	public long getLong(String key, long defaultValue) {
-		Object value = get(key);
-		return (value instanceof Long) ? (Long)value : defaultValue;
+		return properties.getLong(key, defaultValue);
 	}
-	// Sets the objects unique id
+	// Resolves a property key of this object's type to a slot once so later reads and writes skip the key lookup
+	public PropertySchema.Slot getSlot(String key, PropertySchema.Kind kind) {
+		return properties.getSchema().getSlot(key, kind);
+	}
+	public Object get(PropertySchema.Slot slot) {
+		return properties.get(slot);
+	}
+	public void put(PropertySchema.Slot slot, Object value) {
+		properties.set(slot, value);
+	}
+	public String getString(PropertySchema.Slot slot) {
+		return properties.getString(slot);
+	}
+	public boolean getBool(PropertySchema.Slot slot, boolean defaultValue) {
+		return properties.getBool(slot, defaultValue);
+	}
+	public void setBool(PropertySchema.Slot slot, boolean value) {
+		properties.setBool(slot, value);
+	}
+	public int getInt(PropertySchema.Slot slot, int defaultValue) {
+		return properties.getInt(slot, defaultValue);
+	}
+	public void setInt(PropertySchema.Slot slot, int value) {
+		properties.setInt(slot, value);
+	}
+	public float getFloat(PropertySchema.Slot slot, float defaultValue) {
+		return properties.getFloat(slot, defaultValue);
+	}
+	public void setFloat(PropertySchema.Slot slot, float value) {
+		properties.setFloat(slot, value);
+	}
+	public long getLong(PropertySchema.Slot slot, long defaultValue) {
+		return properties.getLong(slot, defaultValue);
+	}
+	public void setLong(PropertySchema.Slot slot, long value) {
+		properties.setLong(slot, value);
+	}
+	// Sets the volume this object belongs to as a creature, vehicle or structure, null when it is removed
 	public void setVolume(Volume volume) {
-		setVolumeId(volume.getUniqueId());
+		this.volume = volume;
+		setVolumeId((volume != null) ? volume.getUniqueId() : 0L);
+	}
+	public Volume getVolume() {
+		return volume;
 	}
 	// Sets the objects unique id
 	public void setVolumeId(long volumeId) {
@@ -453,11 +481,12 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 	}
 	// Initializes parameters based on given schematic
 	public void setFields(Schematic schema)	{
-		this.schema = schema;
+		setSchematic(schema);
 	}
-	// Assigns the schematic for this object
+	// Assigns the schematic for this object, properties move to the schema of the new type
 	public void setSchematic(Schematic schema) {
 		this.schema = schema;
+		properties.setSchema(getType().getSchema());
 	}
 	// Gets the schematic that defines this object
 	public Schematic getSchematic() {
@@ -519,6 +548,7 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 	}
 	// Write all unique parameter values to the given output stream
 	public void writeFields(OutputStream os) throws IOException {
+		os.write(ByteUtils.convertToBytes(PROPERTIES_RECORD));
 		os.write(ByteUtils.convertToBytes(getUniqueId()));
 		os.write(ByteUtils.convertToBytes(getVolumeId()));
 		getWorldTranslation(location);
@@ -526,18 +556,27 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 		os.write(ByteUtils.convertToBytes(location.getY()));
 		os.write(ByteUtils.convertToBytes(location.getZ()));
 		os.write(ByteUtils.convertToBytes(getId()));
+		properties.write(os);
 	}
 	// Read all unique parameter values from the given input stream
 	public void readFields(InputStream is) throws IOException {
-		setUniqueId(ByteUtils.readLong(is));
+		long uid = ByteUtils.readLong(is);
+		boolean hasProperties = isPropertiesRecord(uid);
+		setUniqueId(hasProperties ? ByteUtils.readLong(is) : uid);
 		setVolumeId(ByteUtils.readLong(is));
 		location.setX(ByteUtils.readFloat(is));
 		location.setY(ByteUtils.readFloat(is));
 		location.setZ(ByteUtils.readFloat(is));
 		GameRegistry.getInstance().initializeControl(this, ByteUtils.readLong(is));
+		if (hasProperties) {
+			properties.read(is);
+		} else {
+			properties.clear();
+		}
 	}
 	// Write all unique parameter values to the given buffer
 	public void fillBuffer(ByteBuffer buffer) throws IOException	{
+		buffer.putLong(PROPERTIES_RECORD);
 		buffer.putLong(getUniqueId());
 		buffer.putLong(getVolumeId());
 		getWorldTranslation(location);
@@ -545,15 +584,33 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 		buffer.putFloat(location.getY());
 		buffer.putFloat(location.getZ());
 		buffer.putLong(getId());
+		properties.fillBuffer(buffer);
 	}
 	// Read all unique parameter values from the given buffer
 	public void readBuffer(ByteBuffer buffer) throws IOException {
-		setUniqueId(buffer.getLong());
+		long uid = buffer.getLong();
+		boolean hasProperties = isPropertiesRecord(uid);
+		setUniqueId(hasProperties ? buffer.getLong() : uid);
 		setVolumeId(buffer.getLong());
 		location.setX(buffer.getFloat());
 		location.setY(buffer.getFloat());
 		location.setZ(buffer.getFloat());
 		GameRegistry.getInstance().initializeControl(this, buffer.getLong());
+		if (hasProperties) {
+			properties.readBuffer(buffer);
+		} else {
+			properties.clear();
+		}
+	}
+	// Checks the first value of a record for the properties marker, any other negative value is a format this version can't read
+	private static boolean isPropertiesRecord(long first) throws IOException {
+		if (first == PROPERTIES_RECORD) {
+			return true;
+		}
+		if (first < 0) {
+			throw new IOException("Unsupported object record format: " + Long.toHexString(first));
+		}
+		return false;
 	}
 	// Write all unique parameter values using the JmeExporter utility
 	public void write(JmeExporter ex) throws IOException {
@@ -684,6 +741,9 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 			} else {
 				spatial.setLocalTranslation(x, y, z);
 			}
+			if (index != null) {
+				index.update(this);
+			}
 		}
 	}
 	// Convenience method to set the local translation of the underlying spatial
@@ -695,6 +755,9 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 			} else {
 				spatial.setLocalTranslation(translation);
 			}
+			if (index != null) {
+				index.update(this);
+			}
 		}
 	}
 	// Convenience method to get the local translation of the underlying spatial
@@ -764,17 +827,22 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 			return 0;
 		}
 	}
-	public String getChunkName() {
+	// Gets the key of the chunk this object is attached to or ChunkKey.NONE if it isn't in a chunk
+	public long getChunkKey() {
 		if (spatial != null) {
 			Spatial next = spatial;
 			while (next.getParent() != null) {
 				next = next.getParent();
-				if (next.getName() != null && next.getName().contains("ObjectNode:")) {
-					return next.getName().substring(12);
+				if (next instanceof ChunkControl.ObjectNode) {
+					return ((ChunkControl.ObjectNode)next).getChunkKey();
 				}
 			}
 		}
-		return "";
+		return ChunkKey.NONE;
+	}
+	public String getChunkName() {
+		long key = getChunkKey();
+		return (key != ChunkKey.NONE) ? ChunkKey.toName(key) : "";
 	}
 	// Convenience method to get the material of the underlying geometry
 	public Material getMaterial() {
@@ -784,6 +852,20 @@ public class GameControl extends AbstractControl implements Savable, Collidable
 		}
 		return null;
 	}
+	// Gives the underlying geometry its own copy of the material it shares with every other object of the same
+	// schematic, use this before changing material params that should only affect this object
+	public Material getOwnMaterial() {
+		Geometry geom = getGeometry();
+		if (geom != null && geom.getMaterial() != null) {
+			Material material = geom.getMaterial().clone();
+			if (material.getParam("UseInstancing") != null && !(geom.getParent() instanceof InstancedNode)) {
+				material.setBoolean("UseInstancing", false);
+			}
+			geom.setMaterial(material);
+			return material;
+		}
+		return null;
+	}
 	public Geometry getGeometry() {
 		if (spatial instanceof Geometry) {
 			return (Geometry)spatial;
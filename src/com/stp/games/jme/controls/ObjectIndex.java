@@ -0,0 +1,362 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.controls;
+// JME3 Dependencies
+import com.jme3.math.Vector3f;
+// Java Dependencies
+import java.util.ArrayList;
+import java.util.List;
+// Internal Dependencies
+import com.stp.games.jme.terrain.ChunkIndex;
+
+/* Spatial hash over game objects answering point, range and nearest neighbour queries without walking every object.
+ * Objects are bucketed into cubic cells by their world translation and can also be found by unique id.
+ * GameControl.setWorldTranslation moves an indexed object to its new cell, objects moved any other way
+ * (physics, motion paths) need a call to update. Like the object lists it sits beside the index is not synchronized. */
+public class ObjectIndex {
+	public static final float DEFAULT_CELL_SIZE = 4f;
+	// Largest vertical offset matchLocation accepts, point lookups check every cell it reaches
+	private static final float LOCATION_TOLERANCE = 0.2f;
+	
+	// Decides which objects a query returns
+	public interface Filter {
+		public boolean accept(GameControl object);
+	}
+	// Accepts objects that respond to the given action
+	public static class ActionFilter implements Filter {
+		private final String action;
+		
+		public ActionFilter(String action) {
+			this.action = action;
+		}
+		public boolean accept(GameControl object) {
+			return object.matchAction(action);
+		}
+	}
+	/* Collects up to k objects closest to a point sorted nearest first, can be passed to several indices
+	 * to merge their results and each search skips cells that can't beat what has been found so far. */
+	public static class Nearest {
+		private final GameControl[] objects;
+		private final float[] distances;
+		private int count;
+		
+		public Nearest(int k) {
+			this.objects = new GameControl[Math.max(1, k)];
+			this.distances = new float[objects.length];
+		}
+		public void reset() {
+			for (int i = 0; i < count; i++) {
+				objects[i] = null;
+			}
+			this.count = 0;
+		}
+		public int size() {
+			return count;
+		}
+		public boolean isFull() {
+			return count == objects.length;
+		}
+		public GameControl get(int index) {
+			return objects[index];
+		}
+		// Gets the distance from the query point to the object at the given index
+		public float getDistance(int index) {
+			return (float)Math.sqrt(distances[index]);
+		}
+		// Gets the closest object or null if nothing was found
+		public GameControl getNearest() {
+			return (count > 0) ? objects[0] : null;
+		}
+		// Squared distance an object must be within to be added
+		public float getLimit(float radiusSquared) {
+			return isFull() ? Math.min(distances[count-1], radiusSquared) : radiusSquared;
+		}
+		// Inserts the object in distance order if it is closer than the current furthest result
+		public boolean offer(GameControl object, float distanceSquared) {
+			if (isFull() && distanceSquared >= distances[count-1]) {
+				return false;
+			}
+			int i = isFull() ? count-1 : count++;
+			while (i > 0 && distances[i-1] > distanceSquared) {
+				objects[i] = objects[i-1];
+				distances[i] = distances[i-1];
+				i--;
+			}
+			objects[i] = object;
+			distances[i] = distanceSquared;
+			return true;
+		}
+		public List<GameControl> toList(List<GameControl> store) {
+			for (int i = 0; i < count; i++) {
+				store.add(objects[i]);
+			}
+			return store;
+		}
+	}
+	
+	// Cells and unique ids are both long keys so they share the primitive keyed table used for chunks
+	private final ChunkIndex<ArrayList<GameControl>> cells = new ChunkIndex<ArrayList<GameControl>>();
+	private final ChunkIndex<GameControl> uids = new ChunkIndex<GameControl>();
+	// Reused to walk every occupied cell
+	private final ArrayList<ArrayList<GameControl>> buckets = new ArrayList<ArrayList<GameControl>>();
+	private final float cellSize;
+	private final float inverseSize;
+	private int size;
+	// Cell bounds of everything added since the last clear, queries never look outside them
+	private int minX, minY, minZ;
+	private int maxX, maxY, maxZ;
+	
+	public ObjectIndex() {
+		this (DEFAULT_CELL_SIZE);
+	}
+	public ObjectIndex(float cellSize) {
+		this.cellSize = cellSize;
+		this.inverseSize = 1f / cellSize;
+		resetBounds();
+	}
+	public float getCellSize() {
+		return cellSize;
+	}
+	// Gets the number of objects in the index
+	public int size() {
+		return size;
+	}
+	// Adds the object at its current world translation, taking it out of any other index first
+	public void add(GameControl object) {
+		if (object.index != null) {
+			object.index.remove(object);
+		}
+		Vector3f loc = object.getWorldTranslation();
+		insert(object, cell(loc.x), cell(loc.y), cell(loc.z));
+		if (object.getUniqueId() != 0) {
+			uids.put(object.getUniqueId(), object);
+		}
+		object.index = this;
+		size++;
+	}
+	// Removes the object, returns false if it wasn't in this index
+	public boolean remove(GameControl object) {
+		if (object.index != this) {
+			return false;
+		}
+		extract(object);
+		if (uids.get(object.getUniqueId()) == object) {
+			uids.remove(object.getUniqueId());
+		}
+		object.index = null;
+		size--;
+		return true;
+	}
+	// Moves the object to the cell matching its current world translation
+	public void update(GameControl object) {
+		if (object.index == this) {
+			Vector3f loc = object.getWorldTranslation();
+			int x = cell(loc.x);
+			int y = cell(loc.y);
+			int z = cell(loc.z);
+			if (cellKey(x, y, z) != object.indexCell) {
+				extract(object);
+				insert(object, x, y, z);
+			}
+		}
+	}
+	public void clear() {
+		for (ArrayList<GameControl> bucket : cells.values(buckets)) {
+			for (GameControl object : bucket) {
+				object.index = null;
+			}
+		}
+		buckets.clear();
+		cells.clear();
+		uids.clear();
+		this.size = 0;
+		resetBounds();
+	}
+	public GameControl getByUniqueId(long uid) {
+		return uids.get(uid);
+	}
+	// Finds the object that matches the location as GameControl.matchLocation does
+	public GameControl get(float x, float y, float z) {
+		int cx = cell(x);
+		int cz = cell(z);
+		for (int cy = cell(y - LOCATION_TOLERANCE); cy <= cell(y + LOCATION_TOLERANCE); cy++) {
+			ArrayList<GameControl> bucket = cells.get(cellKey(cx, cy, cz));
+			if (bucket != null) {
+				for (int i = 0; i < bucket.size(); i++) {
+					if (bucket.get(i).matchLocation(x, y, z)) {
+						return bucket.get(i);
+					}
+				}
+			}
+		}
+		return null;
+	}
+	// Adds every accepted object within the radius of the center to the store, a null filter accepts everything
+	public List<GameControl> getObjects(Vector3f center, float radius, Filter filter, List<GameControl> store) {
+		float radiusSquared = radius * radius;
+		int x0 = Math.max(minX, cell(center.x - radius));
+		int y0 = Math.max(minY, cell(center.y - radius));
+		int z0 = Math.max(minZ, cell(center.z - radius));
+		int x1 = Math.min(maxX, cell(center.x + radius));
+		int y1 = Math.min(maxY, cell(center.y + radius));
+		int z1 = Math.min(maxZ, cell(center.z + radius));
+		if (x0 > x1 || y0 > y1 || z0 > z1) {
+			return store;
+		}
+		// Walking the occupied cells is cheaper than probing a mostly empty box
+		if ((long)(x1 - x0 + 1) * (y1 - y0 + 1) * (z1 - z0 + 1) > cells.size()) {
+			for (ArrayList<GameControl> bucket : cells.values(buckets)) {
+				collect(bucket, center, radiusSquared, filter, store);
+			}
+			buckets.clear();
+			return store;
+		}
+		for (int x = x0; x <= x1; x++) {
+			for (int y = y0; y <= y1; y++) {
+				for (int z = z0; z <= z1; z++) {
+					ArrayList<GameControl> bucket = cells.get(cellKey(x, y, z));
+					if (bucket != null) {
+						collect(bucket, center, radiusSquared, filter, store);
+					}
+				}
+			}
+		}
+		return store;
+	}
+	// Finds the closest accepted object within the radius or null if there is none
+	public GameControl findNearest(Vector3f center, float radius, Filter filter) {
+		Nearest nearest = new Nearest(1);
+		findNearest(center, radius, filter, nearest);
+		return nearest.getNearest();
+	}
+	/* Offers the accepted objects closest to the center to the collector, searching outwards one shell of cells at a time
+	 * and stopping once the collector is full and no unvisited cell can hold anything closer. */
+	public Nearest findNearest(Vector3f center, float radius, Filter filter, Nearest nearest) {
+		if (size == 0) {
+			return nearest;
+		}
+		float radiusSquared = radius * radius;
+		int reach = (int)Math.ceil(radius * inverseSize);
+		int cx = cell(center.x);
+		int cy = cell(center.y);
+		int cz = cell(center.z);
+		for (int r = 0; r <= reach; r++) {
+			// Every cell in shell r is at least r-1 cells away from the center
+			float gap = (r - 1) * cellSize;
+			if (r > 1 && gap * gap > nearest.getLimit(radiusSquared)) {
+				break;
+			}
+			for (int x = Math.max(minX, cx - r); x <= Math.min(maxX, cx + r); x++) {
+				for (int y = Math.max(minY, cy - r); y <= Math.min(maxY, cy + r); y++) {
+					if (x == cx - r || x == cx + r || y == cy - r || y == cy + r) {
+						for (int z = Math.max(minZ, cz - r); z <= Math.min(maxZ, cz + r); z++) {
+							offer(cells.get(cellKey(x, y, z)), center, radiusSquared, filter, nearest);
+						}
+					} else {
+						if (cz - r >= minZ && cz - r <= maxZ) {
+							offer(cells.get(cellKey(x, y, cz - r)), center, radiusSquared, filter, nearest);
+						}
+						if (cz + r >= minZ && cz + r <= maxZ) {
+							offer(cells.get(cellKey(x, y, cz + r)), center, radiusSquared, filter, nearest);
+						}
+					}
+				}
+			}
+			// Stop once the shells cover every occupied cell
+			if (cx - r <= minX && cy - r <= minY && cz - r <= minZ && cx + r >= maxX && cy + r >= maxY && cz + r >= maxZ) {
+				break;
+			}
+		}
+		return nearest;
+	}
+	// Adds the k closest accepted objects within the radius to the store, nearest first
+	public List<GameControl> findNearest(Vector3f center, int k, float radius, Filter filter, List<GameControl> store) {
+		return findNearest(center, radius, filter, new Nearest(k)).toList(store);
+	}
+	
+	private void collect(ArrayList<GameControl> bucket, Vector3f center, float radiusSquared, Filter filter, List<GameControl> store) {
+		for (int i = 0; i < bucket.size(); i++) {
+			GameControl object = bucket.get(i);
+			if (object.getWorldTranslation().distanceSquared(center) <= radiusSquared && (filter == null || filter.accept(object))) {
+				store.add(object);
+			}
+		}
+	}
+	private void offer(ArrayList<GameControl> bucket, Vector3f center, float radiusSquared, Filter filter, Nearest nearest) {
+		if (bucket == null) {
+			return;
+		}
+		for (int i = 0; i < bucket.size(); i++) {
+			GameControl object = bucket.get(i);
+			float distanceSquared = object.getWorldTranslation().distanceSquared(center);
+			if (distanceSquared <= nearest.getLimit(radiusSquared) && (filter == null || filter.accept(object))) {
+				nearest.offer(object, distanceSquared);
+			}
+		}
+	}
+	private void insert(GameControl object, int x, int y, int z) {
+		long key = cellKey(x, y, z);
+		ArrayList<GameControl> bucket = cells.get(key);
+		if (bucket == null) {
+			bucket = new ArrayList<GameControl>(4);
+			cells.put(key, bucket);
+		}
+		bucket.add(object);
+		object.indexCell = key;
+		minX = Math.min(minX, x);
+		minY = Math.min(minY, y);
+		minZ = Math.min(minZ, z);
+		maxX = Math.max(maxX, x);
+		maxY = Math.max(maxY, y);
+		maxZ = Math.max(maxZ, z);
+	}
+	private void resetBounds() {
+		this.minX = this.minY = this.minZ = Integer.MAX_VALUE;
+		this.maxX = this.maxY = this.maxZ = Integer.MIN_VALUE;
+	}
+	// Removes by identity, GameControl.equals compares unique ids which unsaved objects share
+	private void extract(GameControl object) {
+		ArrayList<GameControl> bucket = cells.get(object.indexCell);
+		if (bucket != null) {
+			for (int i = 0; i < bucket.size(); i++) {
+				if (bucket.get(i) == object) {
+					int last = bucket.size() - 1;
+					bucket.set(i, bucket.get(last));
+					bucket.remove(last);
+					break;
+				}
+			}
+			if (bucket.isEmpty()) {
+				cells.remove(object.indexCell);
+			}
+		}
+	}
+	private int cell(float value) {
+		return (int)Math.floor(value * inverseSize);
+	}
+	// Packs 21 bits per axis and mixes them so neighbouring cells spread across the hash table
+	private static long cellKey(int x, int y, int z) {
+		long key = ((x & 0x1FFFFFL) << 42) | ((y & 0x1FFFFFL) << 21) | (z & 0x1FFFFFL);
+		return key * 0x9E3779B97F4A7C15L;
+	}
+}
@@ -0,0 +1,175 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.controls;
+// Java Dependencies
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/* Resolves property keys to typed storage slots, one schema is shared by every schematic and object of an ObjectType.
+ * The params of the type take the first slots in param order so a param index is also its slot id,
+ * keys first seen through GameControl.put are appended after them. Ints, booleans and enum ordinals share
+ * the int storage, floats and longs get their own and anything else is stored as an object. */
+public class PropertySchema {
+	// Storage used for the values of a slot
+	public enum Kind {
+		Int,
+		Float,
+		Long,
+		Bool,
+		Object;
+	}
+	// A resolved key, holds its position within the typed storage of the schema that created it
+	public static class Slot {
+		private final PropertySchema schema;
+		private final String key;
+		private final Kind kind;
+		private final int id;
+		private final int index;
+		
+		private Slot(PropertySchema schema, String key, Kind kind, int id, int index) {
+			this.schema = schema;
+			this.key = key;
+			this.kind = kind;
+			this.id = id;
+			this.index = index;
+		}
+		public PropertySchema getSchema() {
+			return schema;
+		}
+		public String getKey() {
+			return key;
+		}
+		public Kind getKind() {
+			return kind;
+		}
+		// Gets the position of this slot among all slots of the schema
+		public int getId() {
+			return id;
+		}
+		// Gets the position of this slot within the storage array for its kind
+		public int getIndex() {
+			return index;
+		}
+		@Override
+		public String toString() {
+			return key + ":" + kind;
+		}
+	}
+	
+	private final ConcurrentHashMap<String,Slot> keys = new ConcurrentHashMap<String,Slot>();
+	private volatile Slot[] slots = new Slot[0];
+	private final int paramCount;
+	private int intCount;
+	private int floatCount;
+	private int longCount;
+	
+	public PropertySchema() {
+		this.paramCount = 0;
+	}
+	public PropertySchema(List<GameControl.Param> params) {
+		for (GameControl.Param p : params) {
+			addSlot(p.getName(), kindOf(p.getParamClass()));
+		}
+		this.paramCount = params.size();
+	}
+	// Gets the number of slots that belong to the params of the type
+	public int getParamCount() {
+		return paramCount;
+	}
+	public int getSlotCount() {
+		return slots.length;
+	}
+	// Gets the current slots in id order, the array is replaced rather than modified when a slot is added
+	Slot[] getSlots() {
+		return slots;
+	}
+	public Slot getSlot(int id) {
+		Slot[] current = slots;
+		return (id >= 0 && id < current.length) ? current[id] : null;
+	}
+	// Gets the slot for the key or null if the key has never been used
+	public Slot getSlot(String key) {
+		return keys.get(key);
+	}
+	// Gets the slot for the key adding it with the given storage if the key is new
+	public Slot getSlot(String key, Kind kind) {
+		Slot slot = keys.get(key);
+		return (slot != null) ? slot : addSlot(key, kind);
+	}
+	public synchronized int getIntCount() {
+		return intCount;
+	}
+	public synchronized int getFloatCount() {
+		return floatCount;
+	}
+	public synchronized int getLongCount() {
+		return longCount;
+	}
+	private synchronized Slot addSlot(String key, Kind kind) {
+		Slot slot = keys.get(key);
+		if (slot == null) {
+			int index;
+			switch (kind) {
+				case Int:
+				case Bool: index = intCount++; break;
+				case Float: index = floatCount++; break;
+				case Long: index = longCount++; break;
+				default: index = -1; break;
+			}
+			slot = new Slot(this, key, kind, slots.length, index);
+			Slot[] grown = Arrays.copyOf(slots, slots.length + 1);
+			grown[slot.id] = slot;
+			this.slots = grown;
+			keys.put(key, slot);
+		}
+		return slot;
+	}
+	
+	// Picks the storage for values of the given class, enums are read back through getInt as ordinals
+	public static Kind kindOf(Class cls) {
+		if (cls == Integer.class || (cls != null && cls.isEnum())) {
+			return Kind.Int;
+		} else if (cls == Float.class) {
+			return Kind.Float;
+		} else if (cls == Long.class) {
+			return Kind.Long;
+		} else if (cls == Boolean.class) {
+			return Kind.Bool;
+		}
+		return Kind.Object;
+	}
+	// Picks the storage for a value put under a new key
+	public static Kind kindOf(Object value) {
+		if (value instanceof Integer) {
+			return Kind.Int;
+		} else if (value instanceof Float) {
+			return Kind.Float;
+		} else if (value instanceof Long) {
+			return Kind.Long;
+		} else if (value instanceof Boolean) {
+			return Kind.Bool;
+		}
+		return Kind.Object;
+	}
+}
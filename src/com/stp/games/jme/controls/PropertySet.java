@@ -0,0 +1,516 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.controls;
+// Java Dependencies
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+// Internal Dependencies
+import com.stp.util.JavaIO;
+import com.stp.games.jme.controls.PropertySchema.Kind;
+import com.stp.games.jme.controls.PropertySchema.Slot;
+
+/* Property values stored by slot in primitive arrays so a typed read through a resolved slot is an array index with no boxing.
+ * Typed getters keep the old boxed semantics: a value of another type than the one asked for returns the default,
+ * such values are kept as objects in their slot instead of being converted. The string keyed methods resolve the key
+ * through the schema's hash index on each call, hot paths should resolve their slots once and keep them. */
+public class PropertySet {
+	private static final byte EMPTY = 0;
+	private static final byte PRIMITIVE = 1;
+	private static final byte OBJECT = 2;
+	// Type tags used when serializing values
+	private static final byte INT = 0;
+	private static final byte FLOAT = 1;
+	private static final byte LONG = 2;
+	private static final byte BOOL = 3;
+	private static final byte STRING = 4;
+	private static final byte[] NO_STATES = new byte[0];
+	private static final int[] NO_INTS = new int[0];
+	private static final float[] NO_FLOATS = new float[0];
+	private static final long[] NO_LONGS = new long[0];
+	private static final Object[] NO_OBJECTS = new Object[0];
+	
+	private PropertySchema schema;
+	// Slots of the schema by id, at least as long as the state array so reads skip the schema's volatile array
+	private Slot[] slots;
+	private byte[] states = NO_STATES;
+	private int[] ints = NO_INTS;
+	private float[] floats = NO_FLOATS;
+	private long[] longs = NO_LONGS;
+	private Object[] objects = NO_OBJECTS;
+	private int size;
+	
+	public PropertySet() {
+		this (new PropertySchema());
+	}
+	public PropertySet(PropertySchema schema) {
+		this.schema = schema;
+		this.slots = schema.getSlots();
+	}
+	public PropertySchema getSchema() {
+		return schema;
+	}
+	// Binds this set to another schema carrying over the values of keys the new schema already has
+	public void setSchema(PropertySchema schema) {
+		if (schema == this.schema) {
+			return;
+		}
+		PropertySchema previous = this.schema;
+		Object[] values = new Object[states.length];
+		for (int id = 0; id < states.length; id++) {
+			values[id] = get(id);
+		}
+		this.schema = schema;
+		this.slots = schema.getSlots();
+		this.states = NO_STATES;
+		this.ints = NO_INTS;
+		this.floats = NO_FLOATS;
+		this.longs = NO_LONGS;
+		this.objects = NO_OBJECTS;
+		this.size = 0;
+		for (int id = 0; id < values.length; id++) {
+			if (values[id] != null) {
+				Slot slot = schema.getSlot(previous.getSlot(id).getKey());
+				if (slot != null) {
+					set(slot, values[id]);
+				}
+			}
+		}
+	}
+	// Gets the number of slots holding a value
+	public int size() {
+		return size;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	public void clear() {
+		Arrays.fill(states, EMPTY);
+		Arrays.fill(objects, null);
+		this.size = 0;
+	}
+	
+	// Resolves a slot from another schema by its key, returns null if this schema has no such key
+	private Slot resolve(Slot slot) {
+		if (slot == null || slot.getSchema() == schema) {
+			return slot;
+		}
+		return schema.getSlot(slot.getKey());
+	}
+	// Resolves a slot from another schema by its key, adding the key to this schema if it is new
+	private Slot own(Slot slot) {
+		return (slot.getSchema() == schema) ? slot : schema.getSlot(slot.getKey(), slot.getKind());
+	}
+	private byte state(Slot slot) {
+		return (slot != null && slot.getId() < states.length) ? states[slot.getId()] : EMPTY;
+	}
+	public boolean contains(Slot slot) {
+		return state(resolve(slot)) != EMPTY;
+	}
+	public Object get(Slot slot) {
+		slot = resolve(slot);
+		return (slot != null) ? get(slot.getId()) : null;
+	}
+	public int getInt(Slot slot, int defaultValue) {
+		slot = resolve(slot);
+		return (slot != null) ? getInt(slot.getId(), defaultValue) : defaultValue;
+	}
+	public float getFloat(Slot slot, float defaultValue) {
+		slot = resolve(slot);
+		return (slot != null) ? getFloat(slot.getId(), defaultValue) : defaultValue;
+	}
+	public long getLong(Slot slot, long defaultValue) {
+		slot = resolve(slot);
+		return (slot != null) ? getLong(slot.getId(), defaultValue) : defaultValue;
+	}
+	public boolean getBool(Slot slot, boolean defaultValue) {
+		slot = resolve(slot);
+		return (slot != null) ? getBool(slot.getId(), defaultValue) : defaultValue;
+	}
+	public String getString(Slot slot) {
+		Object value = get(slot);
+		return (value != null) ? value.toString() : "";
+	}
+	// Stores the value in the slot's typed storage when it matches the slot's kind, otherwise as an object
+	public void set(Slot slot, Object value) {
+		if (value == null) {
+			remove(slot);
+			return;
+		}
+		slot = own(slot);
+		switch (slot.getKind()) {
+			case Int:
+				if (value instanceof Integer) {
+					setInt(slot, (Integer)value);
+					return;
+				}
+				break;
+			case Bool:
+				if (value instanceof Boolean) {
+					setBool(slot, (Boolean)value);
+					return;
+				}
+				break;
+			case Float:
+				if (value instanceof Float) {
+					setFloat(slot, (Float)value);
+					return;
+				}
+				break;
+			case Long:
+				if (value instanceof Long) {
+					setLong(slot, (Long)value);
+					return;
+				}
+				break;
+			default: break;
+		}
+		mark(slot, OBJECT);
+		objects[slot.getId()] = value;
+	}
+	public void setInt(Slot slot, int value) {
+		slot = own(slot);
+		if (slot.getKind() != Kind.Int) {
+			set(slot, Integer.valueOf(value));
+			return;
+		}
+		if (slot.getIndex() >= ints.length) {
+			this.ints = Arrays.copyOf(ints, schema.getIntCount());
+		}
+		mark(slot, PRIMITIVE);
+		ints[slot.getIndex()] = value;
+	}
+	public void setBool(Slot slot, boolean value) {
+		slot = own(slot);
+		if (slot.getKind() != Kind.Bool) {
+			set(slot, Boolean.valueOf(value));
+			return;
+		}
+		if (slot.getIndex() >= ints.length) {
+			this.ints = Arrays.copyOf(ints, schema.getIntCount());
+		}
+		mark(slot, PRIMITIVE);
+		ints[slot.getIndex()] = value ? 1 : 0;
+	}
+	public void setFloat(Slot slot, float value) {
+		slot = own(slot);
+		if (slot.getKind() != Kind.Float) {
+			set(slot, Float.valueOf(value));
+			return;
+		}
+		if (slot.getIndex() >= floats.length) {
+			this.floats = Arrays.copyOf(floats, schema.getFloatCount());
+		}
+		mark(slot, PRIMITIVE);
+		floats[slot.getIndex()] = value;
+	}
+	public void setLong(Slot slot, long value) {
+		slot = own(slot);
+		if (slot.getKind() != Kind.Long) {
+			set(slot, Long.valueOf(value));
+			return;
+		}
+		if (slot.getIndex() >= longs.length) {
+			this.longs = Arrays.copyOf(longs, schema.getLongCount());
+		}
+		mark(slot, PRIMITIVE);
+		longs[slot.getIndex()] = value;
+	}
+	public void remove(Slot slot) {
+		slot = resolve(slot);
+		if (state(slot) != EMPTY) {
+			states[slot.getId()] = EMPTY;
+			objects[slot.getId()] = null;
+			size--;
+		}
+	}
+	// Flags the slot as holding a value, growing the state and object arrays to the schema's size when needed
+	private void mark(Slot slot, byte state) {
+		int id = slot.getId();
+		if (id >= states.length) {
+			this.slots = schema.getSlots();
+			this.states = Arrays.copyOf(states, slots.length);
+			this.objects = Arrays.copyOf(objects, slots.length);
+		}
+		if (states[id] == EMPTY) {
+			size++;
+		}
+		states[id] = state;
+		objects[id] = null;
+	}
+	
+	/* Access by slot id, used for the params of a type where the param index is the slot id */
+	
+	public Object get(int id) {
+		if (id < 0 || id >= states.length) {
+			return null;
+		}
+		if (states[id] == PRIMITIVE) {
+			Slot slot = slots[id];
+			if (slot.getKind() == Kind.Int) {
+				return Integer.valueOf(ints[slot.getIndex()]);
+			} else if (slot.getKind() == Kind.Float) {
+				return Float.valueOf(floats[slot.getIndex()]);
+			} else if (slot.getKind() == Kind.Long) {
+				return Long.valueOf(longs[slot.getIndex()]);
+			}
+			return Boolean.valueOf(ints[slot.getIndex()] != 0);
+		}
+		return objects[id];
+	}
+	public int getInt(int id, int defaultValue) {
+		if (id >= 0 && id < states.length) {
+			if (states[id] == PRIMITIVE) {
+				Slot slot = slots[id];
+				return (slot.getKind() == Kind.Int) ? ints[slot.getIndex()] : defaultValue;
+			} else if (objects[id] instanceof Integer) {
+				return (Integer)objects[id];
+			}
+		}
+		return defaultValue;
+	}
+	public float getFloat(int id, float defaultValue) {
+		if (id >= 0 && id < states.length) {
+			if (states[id] == PRIMITIVE) {
+				Slot slot = slots[id];
+				return (slot.getKind() == Kind.Float) ? floats[slot.getIndex()] : defaultValue;
+			} else if (objects[id] instanceof Float) {
+				return (Float)objects[id];
+			}
+		}
+		return defaultValue;
+	}
+	public long getLong(int id, long defaultValue) {
+		if (id >= 0 && id < states.length) {
+			if (states[id] == PRIMITIVE) {
+				Slot slot = slots[id];
+				return (slot.getKind() == Kind.Long) ? longs[slot.getIndex()] : defaultValue;
+			} else if (objects[id] instanceof Long) {
+				return (Long)objects[id];
+			}
+		}
+		return defaultValue;
+	}
+	public boolean getBool(int id, boolean defaultValue) {
+		if (id >= 0 && id < states.length) {
+			if (states[id] == PRIMITIVE) {
+				Slot slot = slots[id];
+				return (slot.getKind() == Kind.Bool) ? ints[slot.getIndex()] != 0 : defaultValue;
+			} else if (objects[id] instanceof Boolean) {
+				return (Boolean)objects[id];
+			}
+		}
+		return defaultValue;
+	}
+	public void set(int id, Object value) {
+		Slot slot = schema.getSlot(id);
+		if (slot != null) {
+			set(slot, value);
+		}
+	}
+	// Gets the values of the param slots in param order, empty slots are null
+	public Object[] getParams() {
+		Object[] values = new Object[schema.getParamCount()];
+		for (int id = 0; id < values.length; id++) {
+			values[id] = get(id);
+		}
+		return values;
+	}
+	// Replaces all values with the param values in the array, entries beyond the params of the schema are dropped
+	public void setParams(Object[] values) {
+		clear();
+		if (values != null) {
+			for (int id = 0; id < values.length && id < schema.getParamCount(); id++) {
+				set(id, values[id]);
+			}
+		}
+	}
+	
+	/* Access by key, kept for code written against the old list of properties */
+	
+	public Object get(String key) {
+		Slot slot = schema.getSlot(key);
+		return (slot != null) ? get(slot) : null;
+	}
+	public void put(String key, Object value) {
+		if (value == null) {
+			remove(key);
+		} else {
+			set(schema.getSlot(key, PropertySchema.kindOf(value)), value);
+		}
+	}
+	public void remove(String key) {
+		Slot slot = schema.getSlot(key);
+		if (slot != null) {
+			remove(slot);
+		}
+	}
+	public int getInt(String key, int defaultValue) {
+		return getInt(schema.getSlot(key), defaultValue);
+	}
+	public float getFloat(String key, float defaultValue) {
+		return getFloat(schema.getSlot(key), defaultValue);
+	}
+	public long getLong(String key, long defaultValue) {
+		return getLong(schema.getSlot(key), defaultValue);
+	}
+	public boolean getBool(String key, boolean defaultValue) {
+		return getBool(schema.getSlot(key), defaultValue);
+	}
+	public String getString(String key) {
+		return getString(schema.getSlot(key));
+	}
+	
+	/* Serialization, values are written by key so sets bound to schemas that grew in another order read them back correctly.
+	 * Primitives are written straight from their arrays, strings are kept and any other object is skipped. */
+	
+	// Gets the tag a slot is written with or -1 if its value isn't serialized
+	private byte tag(int id) {
+		Slot slot = schema.getSlot(id);
+		if (states[id] == PRIMITIVE) {
+			switch (slot.getKind()) {
+				case Int: return INT;
+				case Float: return FLOAT;
+				case Long: return LONG;
+				case Bool: return BOOL;
+				default: return -1;
+			}
+		} else if (states[id] == OBJECT) {
+			Object value = objects[id];
+			if (value instanceof String) {
+				return STRING;
+			} else if (value instanceof Integer) {
+				return INT;
+			} else if (value instanceof Float) {
+				return FLOAT;
+			} else if (value instanceof Long) {
+				return LONG;
+			} else if (value instanceof Boolean) {
+				return BOOL;
+			}
+		}
+		return -1;
+	}
+	private int countWritable() {
+		int count = 0;
+		for (int id = 0; id < states.length; id++) {
+			if (tag(id) >= 0) {
+				count++;
+			}
+		}
+		return count;
+	}
+	public void write(OutputStream os) throws IOException {
+		JavaIO.writeShort(os, (short)countWritable());
+		for (int id = 0; id < states.length; id++) {
+			byte tag = tag(id);
+			if (tag >= 0) {
+				Slot slot = schema.getSlot(id);
+				JavaIO.writeString(os, slot.getKey());
+				os.write(tag);
+				boolean primitive = (states[id] == PRIMITIVE);
+				switch (tag) {
+					case INT: JavaIO.writeInt(os, primitive ? ints[slot.getIndex()] : (Integer)objects[id]); break;
+					case FLOAT: JavaIO.writeFloat(os, primitive ? floats[slot.getIndex()] : (Float)objects[id]); break;
+					case LONG: JavaIO.writeLong(os, primitive ? longs[slot.getIndex()] : (Long)objects[id]); break;
+					case BOOL: JavaIO.writeBoolean(os, primitive ? ints[slot.getIndex()] != 0 : (Boolean)objects[id]); break;
+					default: JavaIO.writeString(os, (String)objects[id]); break;
+				}
+			}
+		}
+	}
+	// Replaces the values of this set with the values read from the stream
+	public void read(InputStream is) throws IOException {
+		clear();
+		int count = JavaIO.readShort(is);
+		for (int i = 0; i < count; i++) {
+			String key = JavaIO.readString(is);
+			switch ((byte)is.read()) {
+				case INT: setInt(schema.getSlot(key, Kind.Int), JavaIO.readInt(is)); break;
+				case FLOAT: setFloat(schema.getSlot(key, Kind.Float), JavaIO.readFloat(is)); break;
+				case LONG: setLong(schema.getSlot(key, Kind.Long), JavaIO.readLong(is)); break;
+				case BOOL: setBool(schema.getSlot(key, Kind.Bool), JavaIO.readBoolean(is)); break;
+				default: set(schema.getSlot(key, Kind.Object), JavaIO.readString(is)); break;
+			}
+		}
+	}
+	public void fillBuffer(ByteBuffer buffer) throws IOException {
+		buffer.putShort((short)countWritable());
+		for (int id = 0; id < states.length; id++) {
+			byte tag = tag(id);
+			if (tag >= 0) {
+				Slot slot = schema.getSlot(id);
+				putString(buffer, slot.getKey());
+				buffer.put(tag);
+				boolean primitive = (states[id] == PRIMITIVE);
+				switch (tag) {
+					case INT: buffer.putInt(primitive ? ints[slot.getIndex()] : (Integer)objects[id]); break;
+					case FLOAT: buffer.putFloat(primitive ? floats[slot.getIndex()] : (Float)objects[id]); break;
+					case LONG: buffer.putLong(primitive ? longs[slot.getIndex()] : (Long)objects[id]); break;
+					case BOOL: buffer.put((primitive ? ints[slot.getIndex()] != 0 : (Boolean)objects[id]) ? (byte)1 : 0); break;
+					default: putString(buffer, (String)objects[id]); break;
+				}
+			}
+		}
+	}
+	// Replaces the values of this set with the values read from the buffer
+	public void readBuffer(ByteBuffer buffer) throws IOException {
+		clear();
+		int count = buffer.getShort();
+		for (int i = 0; i < count; i++) {
+			String key = getString(buffer);
+			switch (buffer.get()) {
+				case INT: setInt(schema.getSlot(key, Kind.Int), buffer.getInt()); break;
+				case FLOAT: setFloat(schema.getSlot(key, Kind.Float), buffer.getFloat()); break;
+				case LONG: setLong(schema.getSlot(key, Kind.Long), buffer.getLong()); break;
+				case BOOL: setBool(schema.getSlot(key, Kind.Bool), buffer.get() != 0); break;
+				default: set(schema.getSlot(key, Kind.Object), getString(buffer)); break;
+			}
+		}
+	}
+	private static void putString(ByteBuffer buffer, String text) throws IOException {
+		byte[] chars = text.getBytes("UTF8");
+		buffer.putShort((short)chars.length);
+		buffer.put(chars);
+	}
+	private static String getString(ByteBuffer buffer) throws IOException {
+		byte[] chars = new byte[buffer.getShort()];
+		buffer.get(chars);
+		return new String(chars, "UTF8");
+	}
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder("{");
+		for (int id = 0; id < states.length; id++) {
+			if (states[id] != EMPTY) {
+				if (text.length() > 1) {
+					text.append(", ");
+				}
+				text.append(slots[id].getKey()).append('=').append(get(id));
+			}
+		}
+		return text.append('}').toString();
+	}
+}
@@ -47,6 +47,7 @@ import java.io.OutputStream;
 import java.io.InputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.nio.ByteBuffer;
 
 import com.stp.util.JavaIO;
@@ -233,6 +234,9 @@ public class Schematic implements XMLObject {
 		}
 	}
 	
+	// Categories drawn with hardware instancing, empty by default as instancing needs a capable renderer
+	private static volatile EnumSet<Category> instancedCategories = EnumSet.noneOf(Category.class);
+	
 	private long id;
 	private String name;
 	private String icon;
@@ -241,7 +245,11 @@ public class Schematic implements XMLObject {
 	private String description;
 	private Category category;
 	private ObjectType objectType;
-	private Object[] params;
+	private final PropertySet values = new PropertySet();
+	// Spatial built once from the model, instances are clones that share its meshes and materials
+	private volatile Spatial prototype;
+	private AssetManager prototypeAssets;
+	private boolean prototypeInstanced;
 	
 	private ArrayList<Step> steps = new ArrayList<Step>();
 	private ArrayList<ResourceParam> resourceParams = new ArrayList<ResourceParam>();
@@ -265,8 +273,14 @@ public class Schematic implements XMLObject {
 		this.category = category;
 		this.model = model;
 		this.materialPath = "";
-		this.params = params;
 		this.setObjectType(type);
+		// Params left off the end keep their defaults, more values than the type has params is a mistake in the schematic
+		if (params != null) {
+			if (params.length > getParamCount()) {
+				throw new IllegalArgumentException("Schematic " + name + " has " + params.length + " params but " + type.getName() + " only takes " + getParamCount());
+			}
+			values.setParams(params);
+		}
 		this.description = description;
 		for (Step s : steps) {
 			this.steps.add(s);
@@ -279,7 +293,11 @@ public class Schematic implements XMLObject {
 		}
 	}
 	public Object[] getParameters() {
-		return params;
+		return values.getParams();
+	}
+	// Gets the param values stored by slot, the slot id of a param is its index
+	public PropertySet getValues() {
+		return values;
 	}
 	public long getId() {
 		return id;
@@ -313,6 +331,7 @@ public class Schematic implements XMLObject {
 	}
 	public void setName(String name) {
 		this.name = name;
+		this.prototype = null;
 	}
 	public void setIcon(String icon) {
 		this.icon = icon;
@@ -322,25 +341,27 @@ public class Schematic implements XMLObject {
 	}
 	public void setModel(String model) {
 		this.model = model;
+		this.prototype = null;
 	}
 	public void setMaterialPath(String path) {
 		this.materialPath = path;
+		this.prototype = null;
 	}
+	// Assigns the object type, values of params the new type shares by name are kept
 	public void setObjectType(ObjectType type)	{
 		this.objectType = type;
-		if (this.objectType != type || getParamCount() != objectType.getParams().size()) {
-			params = new Object[objectType.getParams().size()];
-		}
+		values.setSchema(type.getSchema());
 	}
 	public void setCategory(Category category) {
 		this.category = category;
+		this.prototype = null;
 	}
 	public Object get(GameControl.Param p) {
 		return get(p.getIndex());
 	}
 	public Object get(int p)	{
-		if (p < params.length) {
-			return params[p];
+		if (p < getParamCount()) {
+			return values.get(p);
 		}
 		return null;
 	}
@@ -348,8 +369,8 @@ public class Schematic implements XMLObject {
 		return getInt(p.getIndex());
 	}
 	public int getInt(int p) {
-		if (p < params.length) {
-			return (params[p] instanceof Integer) ? (Integer)params[p] : 0;
+		if (p < getParamCount()) {
+			return values.getInt(p, 0);
 		}
 		return 0;
 	}
@@ -357,8 +378,8 @@ public class Schematic implements XMLObject {
 		return getFloat(p.getIndex());
 	}
 	public float getFloat(int p) {
-		if (p < params.length) {
-			return (params[p] instanceof Float) ? (Float)params[p] : 0.0f;
+		if (p < getParamCount()) {
+			return values.getFloat(p, 0.0f);
 		}
 		return 0.0f;
 	}
@@ -366,8 +387,9 @@ public class Schematic implements XMLObject {
 		return getString(p.getIndex());
 	}
 	public String getString(int p) {
-		if (p < params.length) {
-			return (params[p] != null) ? params[p].toString() : "";
+		if (p < getParamCount()) {
+			Object value = values.get(p);
+			return (value != null) ? value.toString() : "";
 		}
 		return "";
 	}
@@ -375,14 +397,14 @@ public class Schematic implements XMLObject {
 		return getBoolean(p.getIndex());
 	}
 	public boolean getBoolean(int p) {
-		if (p < params.length) {
-			return (params[p] instanceof Boolean) ? (Boolean)params[p] : false;
+		if (p < getParamCount()) {
+			return values.getBool(p, false);
 		}
 		return false;
 	}
 	public void set(int p, Object value) {
-		if (p >= 0 && p < params.length) {
-			params[p] = value;
+		if (p >= 0 && p < getParamCount()) {
+			values.set(p, value);
 		}
 	}
 	public void set(GameControl.Param p, Object value) {
@@ -412,16 +434,11 @@ public class Schematic implements XMLObject {
 		}
 	}
 	public int getParamCount() {
-		return (params != null) ? params.length : 0;
+		return values.getSchema().getParamCount();
 	}
+	// Binds the param values to the schema of the current object type
 	public void syncParamFields() {
-		if (getParamCount() < objectType.getParams().size()) {
-			Object[] newParams = new Object[objectType.getParams().size()];
-			for (int p = 0; p < getParamCount(); p++) {
-				newParams[p] = params[p];
-			}
-			params = newParams;
-		}
+		values.setSchema(objectType.getSchema());
 	}
 	public void addStep(Step step) {
 		steps.add(step);
@@ -493,7 +510,53 @@ public class Schematic implements XMLObject {
 		control.initializeAssets(assetManager);
 		return spatial;
 	}
+	// Turns hardware instancing on or off for the schematics of a category, objects created afterwards use the new setting
+	public static synchronized void setInstanced(Category category, boolean instanced) {
+		EnumSet<Category> categories = EnumSet.copyOf(instancedCategories);
+		if (instanced) {
+			categories.add(category);
+		} else {
+			categories.remove(category);
+		}
+		instancedCategories = categories;
+	}
+	public static boolean isInstanced(Category category) {
+		return (category != null) && instancedCategories.contains(category);
+	}
+	// Drops the cached prototype so the next object created reloads the model
+	public void invalidatePrototype() {
+		this.prototype = null;
+	}
+	// Gets the prototype spatial for this schematic, building it on first use or after the model changed
+	public Spatial getPrototype(AssetManager assetManager) {
+		Spatial current = prototype;
+		boolean instanced = isInstanced(category);
+		if (current != null && prototypeAssets == assetManager && prototypeInstanced == instanced) {
+			return current;
+		}
+		synchronized (this) {
+			current = prototype;
+			if (current == null || prototypeAssets != assetManager || prototypeInstanced != instanced) {
+				current = createPrototype(assetManager);
+				if (instanced && current instanceof Geometry) {
+					Material m = ((Geometry)current).getMaterial();
+					if (m != null && m.getMaterialDef().getMaterialParam("UseInstancing") != null) {
+						m.setBoolean("UseInstancing", true);
+					}
+				}
+				this.prototypeAssets = assetManager;
+				this.prototypeInstanced = instanced;
+				this.prototype = current;
+			}
+			return current;
+		}
+	}
+	// Creates the spatial for a new object as a clone of the prototype, meshes and materials are shared not copied so
+	// an object whose material is changed on its own must take a copy first through GameControl.getOwnMaterial
 	private Spatial createSpatial(AssetManager assetManager) {
+		return getPrototype(assetManager).clone(false);
+	}
+	private Spatial createPrototype(AssetManager assetManager) {
 		Spatial spatial = null;
 		if (model.contains("Box:")) {
 			Vector3f extents = new Vector3f(0.5f, 0.5f, 0.5f);
@@ -741,7 +804,7 @@ public class Schematic implements XMLObject {
 		// Write Description variable bytes
 		JavaIO.writeString(os, description);
 		// Write Param Values variable bytes
-		JavaIO.writeObjects(os, params);
+		JavaIO.writeObjects(os, getParameters());
 		// Write Steps
 		os.write(JavaIO.convertToBytes((short)steps.size()));
 		for (Step s : steps) {
@@ -777,6 +840,7 @@ public class Schematic implements XMLObject {
 		}
 	}
 	public void read(InputStream is) throws IOException {
+		this.prototype = null;
 		// Read Schematic Id
 		this.id = JavaIO.readLong(is);
 		// Read Schematic Name
@@ -792,8 +856,8 @@ public class Schematic implements XMLObject {
 		// Read Description
 		this.description = JavaIO.readString(is);
 		// Read Param Values
-		this.params = JavaIO.readObjects(is);
 		syncParamFields();
+		values.setParams(JavaIO.readObjects(is));
 		// Read Steps
 		int count = JavaIO.readShort(is);
 		for (int s = 0; s < count; s++) {
@@ -816,7 +880,7 @@ public class Schematic implements XMLObject {
 		}
 	}
 	public String[] getPropertyNames() {
-		String[] nodeNames = new String[9 + params.length];
+		String[] nodeNames = new String[9 + getParamCount()];
 		for (int n = 0; n < nodeNames.length; n++) {
 			nodeNames[n] = getNodeName(n);
 		}
@@ -867,7 +931,7 @@ public class Schematic implements XMLObject {
 		if (nodeName.equals("id")) {
 			this.id = (value instanceof Long) ? (Long)value : 0L;
 		} else if (nodeName.equals("name")) {
-			this.name = "" + value;
+			setName("" + value);
 		} else if (nodeName.equals("icon")) {
 			this.icon = "" + value;
 		} else if (nodeName.equals("type")) {
@@ -875,12 +939,12 @@ public class Schematic implements XMLObject {
 		} else if (nodeName.equals("category")) {
 			for (Category c : Category.values()) {
 				if (c.text().equals("" + value)) {
-					this.category = c;
+					setCategory(c);
 					break;
 				}
 			}
 		} else if (nodeName.equals("model")) {
-			this.model = "" + value;
+			setModel("" + value);
 		} else if (nodeName.equals("material")) {
 			setMaterialPath("" + value);
 		} else if (nodeName.equals("description")) {
@@ -0,0 +1,173 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.forester.grass;
+// JME3 Dependencies
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+// Java Dependencies
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct float buffers for grass meshes. Buffers are bucketed by
+ * power-of-two capacity and handed out with their limit set to the size
+ * that was asked for, so they can go straight into a vertex buffer. Meshes
+ * give their buffers back when the page holding them is unloaded.
+ */
+public class GrassBufferPool {
+    
+    protected static final int MIN_BUCKET = 8;
+    protected static final int MAX_BUCKET = 30;
+    
+    protected final ArrayDeque<FloatBuffer>[] buckets;
+    protected long maxPooledFloats;
+    protected long pooledFloats;
+    protected long hits, misses;
+    
+    /**
+     * @param maxPooledFloats The most floats the pool keeps around. Buffers
+     * released past this are left to the garbage collector.
+     */
+    @SuppressWarnings("unchecked")
+    public GrassBufferPool(long maxPooledFloats) {
+        this.maxPooledFloats = maxPooledFloats;
+        this.buckets = new ArrayDeque[MAX_BUCKET + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new ArrayDeque<FloatBuffer>();
+        }
+    }
+    
+    /**
+     * Gets a cleared direct buffer with room for at least the given number
+     * of floats. The limit of the buffer is set to that number.
+     * 
+     * @param size The number of floats needed.
+     * @return A direct float buffer.
+     */
+    public FloatBuffer acquire(int size) {
+        int bucket = getBucket(size);
+        FloatBuffer buffer = null;
+        synchronized (this) {
+            buffer = buckets[bucket].poll();
+            if (buffer != null) {
+                pooledFloats -= buffer.capacity();
+                hits++;
+            } else {
+                misses++;
+            }
+        }
+        if (buffer == null) {
+            buffer = BufferUtils.createFloatBuffer(1 << bucket);
+        }
+        buffer.clear();
+        buffer.limit(size);
+        return buffer;
+    }
+    
+    /**
+     * Returns a buffer to the pool. Buffers that did not come from a pool
+     * are ignored.
+     * 
+     * @param buffer The buffer to return.
+     */
+    public void release(FloatBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1) {
+            return;
+        }
+        int bucket = Integer.numberOfTrailingZeros(capacity);
+        if (bucket < MIN_BUCKET || bucket > MAX_BUCKET) {
+            return;
+        }
+        synchronized (this) {
+            if (pooledFloats + capacity > maxPooledFloats) {
+                return;
+            }
+            pooledFloats += capacity;
+            buckets[bucket].push(buffer);
+        }
+    }
+    
+    /**
+     * Takes the float buffers out of a mesh and returns them to the pool.
+     * The vertex buffers are left without data so jME won't free the
+     * native memory when they are deleted. Only call this once the mesh
+     * is no longer attached to the scene.
+     * 
+     * @param mesh The mesh to strip.
+     */
+    public void release(Mesh mesh) {
+        for (VertexBuffer vb : mesh.getBufferList().getArray()) {
+            Buffer data = vb.getData();
+            if (data instanceof FloatBuffer) {
+                vb.updateData(null);
+                release((FloatBuffer) data);
+            }
+        }
+    }
+    
+    protected static int getBucket(int size) {
+        int bucket = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        if (bucket < MIN_BUCKET) {
+            return MIN_BUCKET;
+        }
+        if (bucket > MAX_BUCKET) {
+            throw new IllegalArgumentException("Buffer too large: " + size);
+        }
+        return bucket;
+    }
+    
+    // Drops every pooled buffer
+    public synchronized void clear() {
+        for (ArrayDeque<FloatBuffer> bucket : buckets) {
+            bucket.clear();
+        }
+        pooledFloats = 0;
+    }
+    
+    public synchronized long getPooledFloats() {
+        return pooledFloats;
+    }
+    
+    public synchronized long getMaxPooledFloats() {
+        return maxPooledFloats;
+    }
+    
+    public synchronized void setMaxPooledFloats(long maxPooledFloats) {
+        this.maxPooledFloats = maxPooledFloats;
+    }
+    
+    public synchronized long getHits() {
+        return hits;
+    }
+    
+    public synchronized long getMisses() {
+        return misses;
+    }
+    
+}//GrassBufferPool
@@ -30,7 +30,7 @@ package com.stp.games.jme.forester.grass;
 
 import com.jme3.bounding.BoundingBox;
 import com.jme3.math.ColorRGBA;
-import com.jme3.math.Vector2f;
+import com.jme3.math.Vector3f;
 import com.jme3.renderer.queue.RenderQueue.Bucket;
 import com.jme3.scene.Geometry;
 import com.jme3.scene.Mesh;
@@ -40,8 +40,12 @@ import com.jme3.scene.VertexBuffer.Type;
 import com.jme3.scene.mesh.IndexBuffer;
 
 import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
-//import com.stp.games.jme.forester.grass.GrassLayer.MeshType;
+import com.stp.games.jme.forester.grass.GrassLayer.MeshType;
 import com.stp.games.jme.forester.paging.interfaces.Page;
 import com.stp.games.jme.forester.image.ColorMap;
 import com.stp.games.jme.forester.image.DensityMap;
@@ -51,14 +55,44 @@ import com.stp.games.jme.terrain.World;
 /**
  * This class contains a few methods for generating grass meshes.
  * 
+ * Terrain heights are read from a page-local height tile that is sampled
+ * once per page, and the vertex data is written straight into pooled direct
+ * buffers. Pages can be generated in parallel on a fork-join pool.
+ * 
  * @author Andreas
  */
 public class GrassGeometryGenerator {
     
+    //Default cap for the buffer pool, 16 MB worth of floats.
+    public static final long DEFAULT_POOL_FLOATS = 4L * 1024 * 1024;
+    
+    //The uv coordinates of one quad, in vertex order.
+    protected static final float[] QUAD_UVS = {0.f, 1.f, 1.f, 1.f, 0.f, 0.f, 1.f, 0.f};
+    
     protected World world;
+    protected GrassBufferPool bufferPool;
+    protected ForkJoinPool forkJoinPool;
+    protected float heightStep = 1f;
     
     public GrassGeometryGenerator(World world){
         this.world = world;
+        this.bufferPool = new GrassBufferPool(DEFAULT_POOL_FLOATS);
+    }
+    
+    /**
+     * Creates the grass geometries of several pages in parallel. Each page
+     * samples its height tile once, and that tile is shared by all layers.
+     * 
+     * @param pages The pages to fill.
+     * @param layers The grass layers.
+     * @return The geometries, indexed by page and then by layer.
+     */
+    public Geometry[][] createGrassGeometries(List<Page> pages, List<GrassLayer> layers) {
+        Geometry[][] geoms = new Geometry[pages.size()][layers.size()];
+        if (!pages.isEmpty()) {
+            getForkJoinPool().invoke(new PageTask(pages, layers, geoms, 0, pages.size()));
+        }
+        return geoms;
     }
     
     /**
@@ -76,6 +110,31 @@ public class GrassGeometryGenerator {
                                         DensityMap densityMap,
                                         ColorMap colorMap
                                         )
+    {
+        HeightTile heights = null;
+        if (layer.getMeshType() != null) {
+            heights = createHeightTile(page, getMargin(layer));
+        }
+        return createGrassGeometry(layer, page, densityMap, colorMap, heights);
+    }
+    
+    /**
+     * This method creates a grass geometry using heights that have already
+     * been sampled.
+     * 
+     * @param layer The grasslayer.
+     * @param page The grass page.
+     * @param densityMap The densitymap (or null).
+     * @param colorMap The colormap (or null).
+     * @param heights The height tile of the page.
+     * @return A batched grass geometry.
+     */
+    public Geometry createGrassGeometry(GrassLayer layer, 
+                                        Page page,
+                                        DensityMap densityMap,
+                                        ColorMap colorMap,
+                                        HeightTile heights
+                                        )
     {
         RectBounds bounds = page.getBounds();
         //Calculate the area of the page
@@ -95,21 +154,19 @@ public class GrassGeometryGenerator {
         
         Mesh grassMesh = new Mesh();
         
-        // MeshType meshType = layer.getMeshType();
+        MeshType meshType = layer.getMeshType();
         
         //No need running this if there's no grass data.
-       /* if(grassCount != 0)
+        if(grassCount != 0 && meshType != null)
         {
             if(meshType == MeshType.QUADS){
-                grassMesh = generateGrass_QUADS(layer,page,grassData,grassCount,colorMap);
+                grassMesh = generateGrass_QUADS(layer,page,grassData,grassCount,colorMap,heights);
             } else if(meshType == MeshType.CROSSQUADS){
-                grassMesh = generateGrass_CROSSQUADS(layer,page,grassData,grassCount,colorMap);
+                grassMesh = generateGrass_CROSSQUADS(layer,page,grassData,grassCount,colorMap,heights);
             } else if(meshType == MeshType.BILLBOARDS){
-                grassMesh = generateGrass_BILLBOARDS(layer,page,grassData,grassCount,colorMap);
+                grassMesh = generateGrass_BILLBOARDS(layer,page,grassData,grassCount,colorMap,heights);
             }
-        } else {
-			System.out.println("No Grass for Bounds: " + bounds);
-		}*/
+        }
         
         grassMesh.setStatic();
         grassMesh.updateCounts();
@@ -121,6 +178,23 @@ public class GrassGeometryGenerator {
         return geom;
     }
     
+    /**
+     * Samples the terrain heights under a page. The tile reaches past the
+     * page by the given margin, so quads on the page border are covered.
+     * 
+     * @param page The page.
+     * @param margin The extra distance to cover on each side.
+     * @return The height tile.
+     */
+    public HeightTile createHeightTile(Page page, float margin) {
+        return HeightTile.sample(world, page.getBounds(), margin, heightStep);
+    }
+    
+    //The distance a quad can reach past the point it's planted at.
+    protected float getMargin(GrassLayer layer) {
+        return layer.getMaxWidth()*0.5f + heightStep;
+    }
+    
     /**
      * Method for creating a static quad mesh.
      *
@@ -129,13 +203,15 @@ public class GrassGeometryGenerator {
      * @param grassData The grassdata array. See the createGrassGeometry method.
      * @param grassCount The initial grass-count. See the createGrassGeometry method.
      * @param colorMap The colormap to use (or null).
+     * @param heights The height tile of the page.
      * @return A static quad mesh.
      */
     protected Mesh generateGrass_QUADS( GrassLayer layer,
                                         Page page,
                                         float[] grassData, 
                                         int grassCount,
-                                        ColorMap colorMap
+                                        ColorMap colorMap,
+                                        HeightTile heights
                                       )
     {
         //The grass mesh
@@ -145,39 +221,25 @@ public class GrassGeometryGenerator {
         // ***************** Setting up the mesh buffers. *****************
         
         //Each grass has four positions, each vertice is 3 floats
-        float[] positions = new float[grassCount*12];
+        FloatBuffer positions = bufferPool.acquire(grassCount*12);
         //This is the xz normals of the quad.
-        float[] normals = new float[grassCount*8];
+        FloatBuffer normals = bufferPool.acquire(grassCount*8);
         //Each grass has got 4 texture coordinates, each coord is 2 floats.
-        float[] texCoords = new float[grassCount*8];
+        FloatBuffer texCoords = bufferPool.acquire(grassCount*8);
         
         //Colormap stuff
-        float[] colors = null; //for color buffer
+        FloatBuffer colors = null; //for color buffer
         ColorRGBA cols[] = null; //color map values
-        ColorRGBA color = null; //placeholder for color values.
         
         boolean useColorMap = false;
         
         if(colorMap != null){
             useColorMap = true;
-            colors = new float[grassCount*16];
+            colors = bufferPool.acquire(grassCount*16);
             cols = colorMap.getColorsUnfiltered(page);
         }
         
-        //Slim the mesh down a little.
-        Format form = Format.UnsignedShort;
-        if (grassCount*4 > 65535) {
-            form = Format.UnsignedInt;
-        } else if (grassCount*4 > 255){ 
-            form = Format.UnsignedShort;
-        } else {
-            form = Format.UnsignedByte;
-        }
-        
-        Buffer data = VertexBuffer.createBuffer(form, 1, grassCount*6);           
-        VertexBuffer iBuf = new VertexBuffer(VertexBuffer.Type.Index);
-        iBuf.setupData(VertexBuffer.Usage.Dynamic, 1, form, data);
-        mesh.setBuffer(iBuf);
+        setupIndices(mesh, grassCount);
         
         //Getting the dimensions
         float minHeight = layer.getMinHeight();
@@ -186,14 +248,8 @@ public class GrassGeometryGenerator {
         float minWidth = layer.getMinWidth();
         float maxWidth = layer.getMaxWidth();
         
-        //A bunch of array iterators.
         //Grass data iterator
         int gIt = 0;
-        //position,texcoord, angle and color iterators
-        int pIt = 0;
-        int tIt = 0;
-        int nIt = 0;
-        int cIt = 0;
         
         RectBounds bounds = page.getBounds();
         float cX = bounds.getCenter().x;
@@ -204,10 +260,6 @@ public class GrassGeometryGenerator {
         float xOffset = -page.getCenterPoint().x + pw*0.5f;
         float zOffset = -page.getCenterPoint().z + pw*0.5f;
         
-        //Bounding box stuff.
-//        float yMin = 0,yMax = 0;
-        
-        
         //Generating quads
         for(int i = 0; i < grassCount; i++)
         {
@@ -229,121 +281,47 @@ public class GrassGeometryGenerator {
             float x1 = x - xTrans, z1 = z - zTrans;
             float x2 = x + xTrans, z2 = z + zTrans;
             
-            float y1 = world.getHeight(x1, z1);
-            float y2 = world.getHeight(x2, z2);
+            float y1 = heights.getHeight(x1, z1);
+            float y2 = heights.getHeight(x2, z2);
             
             float y1h = y1 + scaleY;
             float y2h = y2 + scaleY;
             
-            //Bounding box stuff.
-//            float ym = (y1 <= y2) ? y1 : y2;
-//            if(ym < yMin ){
-//                yMin = ym;
-//            }
-//            float yM = (y1h >= y2h) ? y1h : y2h;
-//            if(yM > yMax){
-//                yMax = yM;
-//            }
+            x1 -= cX; z1 -= cZ;
+            x2 -= cX; z2 -= cZ;
             
             // ******************** Adding vertices ********************** 
             
-            positions[pIt++] = x1 - cX;                         //pos
-            positions[pIt++] = y1h;
-            positions[pIt++] = z1 - cZ;
-            
-            normals[nIt++] = zAng;    normals[nIt++] = -xAng;   //xz normal
-            texCoords[tIt++] = 0.f;    texCoords[tIt++]=1.f;    //uv
-            
-            positions[pIt++] = x2 - cX;                         //pos
-            positions[pIt++] = y2h;
-            positions[pIt++] = z2 - cZ;
-            
-            normals[nIt++] = zAng;    normals[nIt++] = -xAng;   //xz normal
-            texCoords[tIt++] = 1.f;   texCoords[tIt++]=1.f;     //uv
-            
-            positions[pIt++] = x1 - cX;                         //pos
-            positions[pIt++] = y1;
-            positions[pIt++] = z1 - cZ;
-            
-            normals[nIt++] = zAng;    normals[nIt++] = -xAng;   //xz normal
-            texCoords[tIt++] = 0.f;  texCoords[tIt++]=0.f;      //uv
+            positions.put(x1).put(y1h).put(z1)
+                     .put(x2).put(y2h).put(z2)
+                     .put(x1).put(y1).put(z1)
+                     .put(x2).put(y2).put(z2);
             
-            positions[pIt++] = x2 - cX;                         //pos
-            positions[pIt++] = y2;
-            positions[pIt++] = z2 - cZ;
-            
-            normals[nIt++] = zAng;    normals[nIt++] = -xAng;   //xz normal
-            texCoords[tIt++] = 1.f;  texCoords[tIt++]=0.f;      //uv
+            //xz normal
+            normals.put(zAng).put(-xAng).put(zAng).put(-xAng)
+                   .put(zAng).put(-xAng).put(zAng).put(-xAng);
+            texCoords.put(QUAD_UVS);
 
             if(useColorMap){
                 //Get the map coordinates for x and z.
                 int xIdx = (int) (x + xOffset);
                 int zIdx = (int) (z + zOffset);
                 
-                color = cols[xIdx + pw*zIdx];
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
+                putColor(colors, cols[xIdx + pw*zIdx], 4);
             } 
         }
         
-        //************************ Indices **************************
-        
-        int iIt = 0;
-        
-        int offset = 0;
-        IndexBuffer iB = mesh.getIndexBuffer();
-        for(int i = 0; i < grassCount; i++){
-            offset = i*4;
-            iB.put(iIt++, 0 + offset);
-            iB.put(iIt++, 2 + offset);
-            iB.put(iIt++, 1 + offset);
-                
-            iB.put(iIt++, 1 + offset);
-            iB.put(iIt++, 2 + offset);
-            iB.put(iIt++, 3 + offset);
-        }
-        
-        
         // ******************** Finalizing the mesh ***********************
                 
         // Setting buffers
-        mesh.setBuffer(Type.Position, 3, positions);
-        mesh.setBuffer(Type.TexCoord, 2, texCoords);
-        mesh.setBuffer(Type.TexCoord2,2, normals);
+        setBuffer(mesh, Type.Position, 3, positions);
+        setBuffer(mesh, Type.TexCoord, 2, texCoords);
+        setBuffer(mesh, Type.TexCoord2, 2, normals);
         if(useColorMap){
-            mesh.setBuffer(Type.Color,4,colors);
+            setBuffer(mesh, Type.Color, 4, colors);
         }
         
-        BoundingBox box = new BoundingBox();
-        
-//        Vector3f boxCenter = new Vector3f();
-//        boxCenter.y = (yMax + yMin)*0.5f;
-//        box.setCenter(boxCenter);
-//        float extent = (bounds.getWidth() + maxWidth)*0.5f;
-//        box.setXExtent(extent);
-//        box.setYExtent((yMax - yMin)*0.5f);
-//        box.setZExtent(extent);
-        
-        mesh.setBound(box);
-        mesh.updateBound();
+        mesh.setBound(createBound(layer, bounds, heights));
         return mesh;
     }
     
@@ -355,13 +333,15 @@ public class GrassGeometryGenerator {
      * @param grassData The grassdata array. See the createGrassGeometry method.
      * @param grassCount The initial grass-count. See the createGrassGeometry method.
      * @param colorMap The colormap to use (or null).
+     * @param heights The height tile of the page.
      * @return A static cross-quad mesh.
      */
     protected Mesh generateGrass_CROSSQUADS(GrassLayer layer,
                                             Page page,
                                             float[] grassData, 
                                             int grassCount,
-                                            ColorMap colorMap
+                                            ColorMap colorMap,
+                                            HeightTile heights
                                             )
     {
         //The grass mesh
@@ -372,40 +352,27 @@ public class GrassGeometryGenerator {
         // ***************** Setting up the mesh buffers. *****************
         
         //Each grass has eight positions, each position is 3 floats.
-        float[] positions = new float[grassCount*24];
+        FloatBuffer positions = bufferPool.acquire(grassCount*24);
         //Each grass has got eight texture coordinates, each coord is 2 floats.
-        float[] texCoords = new float[grassCount*16];
+        FloatBuffer texCoords = bufferPool.acquire(grassCount*16);
         //This is the angle of the quad.
-        float[] normals = new float[grassCount*16];
+        FloatBuffer normals = bufferPool.acquire(grassCount*16);
         
         //Colormap stuff
-        float[] colors = null;
+        FloatBuffer colors = null;
         ColorRGBA cols[] = null;
-        ColorRGBA color = null;
         
         boolean useColorMap = false;
         if(colorMap != null){
             useColorMap = true;
-            //Each grass has got four vertices, each vertice has one color, each
+            //Each grass has got eight vertices, each vertice has one color, each
             //color is 4 floats.
-            colors = new float[grassCount*32];
+            colors = bufferPool.acquire(grassCount*32);
             cols = colorMap.getColorsUnfiltered(page);
         }
         
-        //Slim the mesh down a little.
-        Format form = Format.UnsignedShort;
-        if (grassCount*4 > 65535) {
-            form = Format.UnsignedInt;
-        } else if (grassCount*4 > 255){ 
-            form = Format.UnsignedShort;
-        } else {
-            form = Format.UnsignedByte;
-        }
-        
-        Buffer data = VertexBuffer.createBuffer(form, 1, grassCount*12);           
-        VertexBuffer iBuf = new VertexBuffer(VertexBuffer.Type.Index);
-        iBuf.setupData(VertexBuffer.Usage.Dynamic, 1, form, data);
-        mesh.setBuffer(iBuf);
+        //Two quads per grass.
+        setupIndices(mesh, grassCount*2);
         
         //Getting the dimensions
         float minHeight = layer.getMinHeight();
@@ -414,14 +381,8 @@ public class GrassGeometryGenerator {
         float minWidth = layer.getMinWidth();
         float maxWidth = layer.getMaxWidth();
         
-        //A bunch of array iterators.
         //Grass data iterator
         int gIt = 0;
-        //position, texcoord, angle and color iterators
-        int pIt = 0;
-        int tIt = 0;
-        int nIt = 0;
-        int cIt = 0;
         
         RectBounds bounds = page.getBounds();
         float cX = bounds.getCenter().x;
@@ -432,9 +393,6 @@ public class GrassGeometryGenerator {
         float xOffset = -page.getCenterPoint().x + pw*(page.getX() + 0.5f);
         float zOffset = -page.getCenterPoint().z + pw*(page.getZ() + 0.5f);
         
-        //Bounding box stuff.
-//        float yMin = 0, yMax = 0;
-        
         //Generating quads
         for(int i = 0; i < grassCount; i++)
         {
@@ -458,187 +416,66 @@ public class GrassGeometryGenerator {
             float x3 = x + zTrans, z3 = z - xTrans;
             float x4 = x - zTrans, z4 = z + xTrans;
             
-            float y1 = world.getHeight(x1, z1); 
-            float y2 = world.getHeight(x2, z2);
-            float y3 = world.getHeight(x3, z3);
-            float y4 = world.getHeight(x4, z4);
+            float y1 = heights.getHeight(x1, z1); 
+            float y2 = heights.getHeight(x2, z2);
+            float y3 = heights.getHeight(x3, z3);
+            float y4 = heights.getHeight(x4, z4);
             
             float y1h = y1 + scaleY;
             float y2h = y2 + scaleY;
             float y3h = y3 + scaleY;
             float y4h = y4 + scaleY;
             
-            //Bounding box stuff.
-//            float ym1 = (y1 <= y2) ? y1 : y2;
-//            float ym2 = (y3 <= y4) ? y3 : y4;
-//            float ym = (ym1 <= ym2) ? ym1 : ym2;
-//            if(ym < yMin ){
-//                yMin = ym;
-//            }
-//            
-//            float yM1 = (y1h >= y2h) ? y1h : y2h;
-//            float yM2 = (y3h >= y4h) ? y3h : y4h;
-//            float yM = (yM1 >= yM2) ? yM1 : yM2;
-//            if(yM > yMax){
-//                yMax = yM;
-//            }
+            x1 -= cX; z1 -= cZ;
+            x2 -= cX; z2 -= cZ;
+            x3 -= cX; z3 -= cZ;
+            x4 -= cX; z4 -= cZ;
             
             //************Generate the first quad**************
             
-            positions[pIt++] = x1 - cX;                         //pos
-            positions[pIt++] = y1h;
-            positions[pIt++] = z1 - cZ;
-            
-            normals[nIt++] = zAng;    normals[nIt++] = -xAng;   //xz normal
-            texCoords[tIt++] = 0.f;    texCoords[tIt++]=1.f;    //uv
+            positions.put(x1).put(y1h).put(z1)
+                     .put(x2).put(y2h).put(z2)
+                     .put(x1).put(y1).put(z1)
+                     .put(x2).put(y2).put(z2);
             
-            positions[pIt++] = x2 - cX;                         //pos
-            positions[pIt++] = y2h;
-            positions[pIt++] = z2 - cZ;
-            
-            normals[nIt++] = zAng;    normals[nIt++] = -xAng;   //xz normal
-            texCoords[tIt++] = 1.f;   texCoords[tIt++]=1.f;     //uv
-            
-            positions[pIt++] = x1 - cX;                         //pos
-            positions[pIt++] = y1; 
-            positions[pIt++] = z1 - cZ; 
-            
-            normals[nIt++] = zAng;    normals[nIt++] = -xAng;   //xz normal
-            texCoords[tIt++] = 0.f;  texCoords[tIt++]=0.f;      //uv
-            
-            positions[pIt++] = x2 - cX;                         //pos
-            positions[pIt++] = y2;
-            positions[pIt++] = z2 - cZ;
-            
-            normals[nIt++] = zAng;    normals[nIt++] = -xAng;   //xz normal
-            texCoords[tIt++] = 1.f;  texCoords[tIt++]=0.f;      //uv
+            //xz normal
+            normals.put(zAng).put(-xAng).put(zAng).put(-xAng)
+                   .put(zAng).put(-xAng).put(zAng).put(-xAng);
+            texCoords.put(QUAD_UVS);
             
             //************Generate the second quad**************
             
-            positions[pIt++] = x3 - cX;                         //pos
-            positions[pIt++] = y3h;
-            positions[pIt++] = z3 - cZ;
-            
-            normals[nIt++] = xAng;    normals[nIt++] = zAng;    //xz normal
-            texCoords[tIt++] = 0.f;    texCoords[tIt++]=1.f;    //uv
-            
-            positions[pIt++] = x4 - cX;                         //pos
-            positions[pIt++] = y4h;
-            positions[pIt++] = z4 - cZ;
+            positions.put(x3).put(y3h).put(z3)
+                     .put(x4).put(y4h).put(z4)
+                     .put(x3).put(y3).put(z3)
+                     .put(x4).put(y4).put(z4);
             
-            normals[nIt++] = xAng;    normals[nIt++] = zAng;    //xz normal
-            texCoords[tIt++] = 1.f;   texCoords[tIt++]=1.f;     //uv
-            
-            positions[pIt++] = x3 - cX;                         //pos
-            positions[pIt++] = y3; 
-            positions[pIt++] = z3 - cZ;
-            
-            normals[nIt++] = xAng;    normals[nIt++] = zAng;    //xz normal
-            texCoords[tIt++] = 0.f;  texCoords[tIt++]=0.f;      //uv
-            
-            positions[pIt++] = x4 - cX;                         //pos
-            positions[pIt++] = y4;
-            positions[pIt++] = z4 - cZ;
-            
-            normals[nIt++] = xAng;    normals[nIt++] = zAng;    //xz normal
-            texCoords[tIt++] = 1.f;  texCoords[tIt++]=0.f;      //uv
+            //xz normal
+            normals.put(xAng).put(zAng).put(xAng).put(zAng)
+                   .put(xAng).put(zAng).put(xAng).put(zAng);
+            texCoords.put(QUAD_UVS);
 
             if(useColorMap){
                 //Get the map coordinates for x and z.
                 int xIdx = (int) (x + xOffset);
                 int zIdx = (int) (z + zOffset);
                 
-                color = cols[xIdx + pw*zIdx];
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
+                putColor(colors, cols[xIdx + pw*zIdx], 8);
             }
         }
         
-        //Indices
-        int iIt = 0;
-        
-        int offset = 0;
-        IndexBuffer iB = mesh.getIndexBuffer();
-        for(int i = 0; i < grassCount; i++){
-            offset = i*8;
-            iB.put(iIt++, 0 + offset);
-            iB.put(iIt++, 2 + offset);
-            iB.put(iIt++, 1 + offset);
-                
-            iB.put(iIt++, 1 + offset);
-            iB.put(iIt++, 2 + offset);
-            iB.put(iIt++, 3 + offset);
-            
-            iB.put(iIt++, 4 + offset);
-            iB.put(iIt++, 6 + offset);
-            iB.put(iIt++, 5 + offset);
-                
-            iB.put(iIt++, 5 + offset);
-            iB.put(iIt++, 6 + offset);
-            iB.put(iIt++, 7 + offset);
-        }
-        
         //********************* Finalizing the mesh ***********************
         
         // Setting buffers
-        mesh.setBuffer(Type.Position, 3, positions);
-        mesh.setBuffer(Type.TexCoord, 2, texCoords);
-        mesh.setBuffer(Type.TexCoord2,2, normals);
+        setBuffer(mesh, Type.Position, 3, positions);
+        setBuffer(mesh, Type.TexCoord, 2, texCoords);
+        setBuffer(mesh, Type.TexCoord2, 2, normals);
         
         if(useColorMap){
-            mesh.setBuffer(Type.Color,4,colors);
+            setBuffer(mesh, Type.Color, 4, colors);
         }
         
-        BoundingBox box = new BoundingBox();
-        
-//        Vector3f boxCenter = Vector3f.ZERO;
-//        boxCenter.y = (yMax + yMin)*0.5f;
-//        box.setCenter(boxCenter);
-//        float extent = (bounds.getWidth() + maxWidth)*0.5f;
-//        box.setXExtent(extent);
-//        box.setYExtent((yMax - yMin)*0.5f);
-//        box.setZExtent(extent);
-        
-        mesh.setBound(box);
-        mesh.updateBound();
+        mesh.setBound(createBound(layer, bounds, heights));
         return mesh;
     }
     
@@ -651,13 +488,15 @@ public class GrassGeometryGenerator {
      * @param grassData The grassdata array. See the createGrassGeometry method.
      * @param grassCount The initial grass-count. See the createGrassGeometry method.
      * @param colorMap The colormap to use (or null).
+     * @param heights The height tile of the page.
      * @return A billboarded quad mesh.
      */
     protected Mesh generateGrass_BILLBOARDS(    GrassLayer layer,
                                                 Page page,
                                                 float[] grassData, 
                                                 int grassCount,
-                                                ColorMap colorMap
+                                                ColorMap colorMap,
+                                                HeightTile heights
                                            )
     {
         Mesh mesh = new Mesh();
@@ -667,39 +506,25 @@ public class GrassGeometryGenerator {
         // ***************** Setting up the mesh buffers. *****************
         
         //Each grass has four positions, each vertice is 3 floats
-        float[] positions = new float[grassCount*12];
+        FloatBuffer positions = bufferPool.acquire(grassCount*12);
         //Each grass has got 4 texture coordinates, each coord is 2 floats.
-        float[] texCoords = new float[grassCount*8];
+        FloatBuffer texCoords = bufferPool.acquire(grassCount*8);
         //Each vertex need a texCoord for displacement data.
-        float[] texCoords2 = new float[grassCount*8];
+        FloatBuffer texCoords2 = bufferPool.acquire(grassCount*8);
         
-        float[] colors = null;
+        FloatBuffer colors = null;
         
         //Colormap stuff
         ColorRGBA cols[] = null;
-        ColorRGBA color = null;
         
         boolean useColorMap = false;
         if(colorMap != null){
             useColorMap = true;
-            colors = new float[grassCount*16];
+            colors = bufferPool.acquire(grassCount*16);
             cols = colorMap.getColorsUnfiltered(page);
         }
         
-        //Slim the mesh down a little.
-        Format form = Format.UnsignedShort;
-        if (grassCount*4 > 65535) {
-            form = Format.UnsignedInt;
-        } else if (grassCount*4 > 255){ 
-            form = Format.UnsignedShort;
-        } else {
-            form = Format.UnsignedByte;
-        }
-        
-        Buffer data = VertexBuffer.createBuffer(form, 1, grassCount*6);           
-        VertexBuffer iBuf = new VertexBuffer(VertexBuffer.Type.Index);
-        iBuf.setupData(VertexBuffer.Usage.Dynamic, 1, form, data);
-        mesh.setBuffer(iBuf);
+        setupIndices(mesh, grassCount);
         
         //Getting the dimensions
         float minHeight = layer.getMinHeight();
@@ -708,15 +533,8 @@ public class GrassGeometryGenerator {
         float minWidth = layer.getMinWidth();
         float maxWidth = layer.getMaxWidth();
         
-        //A bunch of array iterators.
         //Grass data iterator
         int gIt = 0;
-        //position, texcoord and color iterators
-        int pIt = 0;
-        int tIt = 0;
-        int t2It = 0;
-        int cIt = 0;
-        
         
         RectBounds bounds = page.getBounds();
         float cX = bounds.getCenter().x;
@@ -726,8 +544,6 @@ public class GrassGeometryGenerator {
         
         float xOffset = -page.getCenterPoint().x + pw*(page.getX() + 0.5f);
         float zOffset = -page.getCenterPoint().z + pw*(page.getZ() + 0.5f);
-        
-//        float yMin = 0, yMax = 0;
     
         //Generating quads
         for(int i = 0; i < grassCount; i++)
@@ -742,87 +558,74 @@ public class GrassGeometryGenerator {
             float halfScaleX = (minWidth + size*(maxWidth - minWidth))*0.5f;
             float scaleY = minHeight + size*(maxHeight - minHeight);
             
-            float y = world.getHeight(x, z);
-            
-            //Bounding box stuff.
-//            if(y < yMin){
-//                yMin = y;
-//            }
-//            float yh = y + scaleY;
-//            if(yh > yMax){
-//                yMax = yh; 
-//            }
+            float y = heights.getHeight(x, z);
             
             float xx = x - cX;
             float zz = z - cZ;
             // ******************** Adding vertices ********************** 
             
-            positions[pIt++] = xx;                          //pos
-            positions[pIt++] = y;
-            positions[pIt++] = zz;
-            
-            texCoords[tIt++] = 0.f;    texCoords[tIt++]=1.f;    //uv
-            texCoords2[t2It++] = -halfScaleX;   texCoords2[t2It++] = scaleY; //disp
-            
-            positions[pIt++] = xx;                          //pos
-            positions[pIt++] = y;
-            positions[pIt++] = zz;
-            
-            texCoords[tIt++] = 1.f;   texCoords[tIt++]=1.f;     //uv
-            texCoords2[t2It++] = halfScaleX;   texCoords2[t2It++] = scaleY; //disp
-            
-            positions[pIt++] = xx;                          //pos
-            positions[pIt++] = y; 
-            positions[pIt++] = zz; 
-            
-            
-            texCoords[tIt++] = 0.f;  texCoords[tIt++]=0.f;      //uv
-            texCoords2[t2It++] = -halfScaleX;   texCoords2[t2It++] = 0.f; //disp
-            
-            positions[pIt++] = xx;                          //pos
-            positions[pIt++] = y;
-            positions[pIt++] = zz;
-            
-            
-            texCoords[tIt++] = 1.f;  texCoords[tIt++]=0.f;      //uv
-            texCoords2[t2It++] = halfScaleX;   texCoords2[t2It++] = 0.f; //disp
+            positions.put(xx).put(y).put(zz)
+                     .put(xx).put(y).put(zz)
+                     .put(xx).put(y).put(zz)
+                     .put(xx).put(y).put(zz);
+            
+            texCoords.put(QUAD_UVS);
+            //disp
+            texCoords2.put(-halfScaleX).put(scaleY)
+                      .put(halfScaleX).put(scaleY)
+                      .put(-halfScaleX).put(0.f)
+                      .put(halfScaleX).put(0.f);
 
             if(useColorMap){
                 //Get the map coordinates for x and z.
                 int xIdx = (int) (x + xOffset);
                 int zIdx = (int) (z + zOffset);
                 
-                color = cols[xIdx + pw*zIdx];
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
-                
-                colors[cIt++] = color.r;
-                colors[cIt++] = color.g;
-                colors[cIt++] = color.b;
-                colors[cIt++] = 1.f;
+                putColor(colors, cols[xIdx + pw*zIdx], 4);
             }
         }
         
-        //Indices
-        int iIt = 0;
+        // ******************** Finalizing the mesh ***********************
+                
+        // Setting buffers
+        setBuffer(mesh, Type.Position, 3, positions);
+        setBuffer(mesh, Type.TexCoord, 2, texCoords);
+        setBuffer(mesh, Type.TexCoord2, 2, texCoords2);
+        if(useColorMap){
+            setBuffer(mesh, Type.Color, 4, colors);
+        }
+        
+        mesh.setBound(createBound(layer, bounds, heights));
+        return mesh;
+    }
+    
+    /**
+     * Creates the index buffer for a mesh made of separate quads, four
+     * vertices each.
+     * 
+     * @param mesh The mesh.
+     * @param quadCount The number of quads.
+     */
+    protected void setupIndices(Mesh mesh, int quadCount) {
+        //Slim the mesh down a little.
+        int vertexCount = quadCount*4;
+        Format form = Format.UnsignedShort;
+        if (vertexCount > 65535) {
+            form = Format.UnsignedInt;
+        } else if (vertexCount > 255){ 
+            form = Format.UnsignedShort;
+        } else {
+            form = Format.UnsignedByte;
+        }
         
-        int offset = 0;
+        Buffer data = VertexBuffer.createBuffer(form, 1, quadCount*6);           
+        VertexBuffer iBuf = new VertexBuffer(VertexBuffer.Type.Index);
+        iBuf.setupData(VertexBuffer.Usage.Dynamic, 1, form, data);
+        mesh.setBuffer(iBuf);
+        
+        int iIt = 0;
         IndexBuffer iB = mesh.getIndexBuffer();
-        for(int i = 0; i < grassCount; i++){
-            offset = i*4;
+        for(int offset = 0; offset < vertexCount; offset += 4){
             iB.put(iIt++, 0 + offset);
             iB.put(iIt++, 2 + offset);
             iB.put(iIt++, 1 + offset);
@@ -831,30 +634,106 @@ public class GrassGeometryGenerator {
             iB.put(iIt++, 2 + offset);
             iB.put(iIt++, 3 + offset);
         }
-        
-        // ******************** Finalizing the mesh ***********************
-                
-        // Setting buffers
-        mesh.setBuffer(Type.Position, 3, positions);
-        mesh.setBuffer(Type.TexCoord, 2, texCoords);
-        mesh.setBuffer(Type.TexCoord2,2, texCoords2);
-        if(useColorMap){
-            mesh.setBuffer(Type.Color,4,colors);
+    }
+    
+    //Hands a filled pool buffer over to the mesh.
+    protected static void setBuffer(Mesh mesh, Type type, int components, FloatBuffer buffer) {
+        buffer.flip();
+        mesh.setBuffer(type, components, buffer);
+    }
+    
+    //Writes the same color for a number of vertices.
+    protected static void putColor(FloatBuffer colors, ColorRGBA color, int vertices) {
+        for (int i = 0; i < vertices; i++) {
+            colors.put(color.r).put(color.g).put(color.b).put(1.f);
+        }
+    }
+    
+    /**
+     * Creates the bounds of a page mesh from its height tile, so the vertex
+     * data doesn't need another pass. The box is loose by at most one quad.
+     */
+    protected static BoundingBox createBound(GrassLayer layer, RectBounds bounds, HeightTile heights) {
+        float yMin = heights.getMinHeight();
+        float yMax = heights.getMaxHeight() + layer.getMaxHeight();
+        float extent = (bounds.getWidth() + layer.getMaxWidth())*0.5f;
+        return new BoundingBox(new Vector3f(0, (yMax + yMin)*0.5f, 0), extent, (yMax - yMin)*0.5f, extent);
+    }
+    
+    public GrassBufferPool getBufferPool() {
+        return bufferPool;
+    }
+    
+    public synchronized ForkJoinPool getForkJoinPool() {
+        if (forkJoinPool == null) {
+            forkJoinPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return forkJoinPool;
+    }
+    
+    public synchronized void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+    
+    public float getHeightStep() {
+        return heightStep;
+    }
+    
+    /**
+     * Sets the distance between height tile samples. Smaller steps follow
+     * the terrain more closely but take longer to sample.
+     * 
+     * @param heightStep The sample distance (in world units).
+     */
+    public void setHeightStep(float heightStep) {
+        this.heightStep = heightStep;
+    }
+    
+    /**
+     * Generates a range of pages, splitting the range in half until each
+     * task has a single page.
+     */
+    protected class PageTask extends RecursiveAction {
+        
+        protected final List<Page> pages;
+        protected final List<GrassLayer> layers;
+        protected final Geometry[][] geoms;
+        protected final int start, end;
+        
+        protected PageTask(List<Page> pages, List<GrassLayer> layers, Geometry[][] geoms, int start, int end) {
+            this.pages = pages;
+            this.layers = layers;
+            this.geoms = geoms;
+            this.start = start;
+            this.end = end;
         }
-        BoundingBox box = new BoundingBox();
-        
-//        Vector3f boxCenter = Vector3f.ZERO;
-//        boxCenter.y = (yMax + yMin)*0.5f;
-//        box.setCenter(boxCenter);
-//        float extent = (bounds.getWidth() + maxWidth)*0.5f;
-//        box.setXExtent(extent);
-//        box.setYExtent((yMax - yMin)*0.5f);
-//        box.setZExtent(extent);
-        
-        mesh.setBound(box);
-        mesh.updateBound();
         
-        return mesh;
+        @Override
+        protected void compute() {
+            if (end - start > 1) {
+                int mid = (start + end) >>> 1;
+                invokeAll(new PageTask(pages, layers, geoms, start, mid),
+                          new PageTask(pages, layers, geoms, mid, end));
+                return;
+            }
+            Page page = pages.get(start);
+            
+            //One height tile for every layer on the page.
+            HeightTile heights = null;
+            float margin = 0;
+            for (GrassLayer layer : layers) {
+                if (layer.getMeshType() != null) {
+                    margin = Math.max(margin, getMargin(layer));
+                }
+            }
+            if (margin > 0) {
+                heights = createHeightTile(page, margin);
+            }
+            
+            for (int i = 0; i < layers.size(); i++) {
+                geoms[start][i] = createGrassGeometry(layers.get(i), page, null, null, heights);
+            }
+        }
     }
     
 }//GrassGeometryGenerator
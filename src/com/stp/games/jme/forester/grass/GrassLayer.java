@@ -47,9 +47,16 @@ import com.stp.games.jme.forester.image.FormatReader.Channel;
 
 public class GrassLayer {
 
+    /**
+     * The procedural mesh types the grass generator can build.
+     */
+    public enum MeshType { QUADS, CROSSQUADS, BILLBOARDS }
+
     protected GrassLoader grassLoader;
     protected Material material;
 	protected Mesh baseMesh;
+    //Null when the layer is drawn with its base mesh only.
+    protected MeshType meshType;
     protected GrassPlantingAlgorithm pa;
     
     protected float densityMultiplier = 1f;
@@ -183,6 +190,14 @@ public class GrassLayer {
     public ShadowMode getShadowMode() {
         return shadowMode;
     }
+
+    public MeshType getMeshType() {
+        return meshType;
+    }
+
+    public void setMeshType(MeshType meshType) {
+        this.meshType = meshType;
+    }
 	
 	public void setWind(Vector2f wind) {
 		
@@ -45,7 +45,6 @@ import java.util.logging.Logger;
 // Internal Dependencies
 import com.stp.games.jme.forester.MapBlock;
 import com.stp.games.jme.forester.grass.datagrids.MapProvider;
-//import com.stp.games.jme.forester.grass.GrassLayer.MeshType;
 import com.stp.games.jme.forester.grass.datagrids.MapGrid;
 import com.stp.games.jme.forester.grass.datagrids.UDGrassProvider;
 import com.stp.games.jme.forester.image.ColorMap;
@@ -54,7 +53,6 @@ import com.stp.games.jme.forester.paging.GeometryTileLoader;
 import com.stp.games.jme.forester.paging.interfaces.Page;
 import com.stp.games.jme.forester.paging.interfaces.Tile;
 import com.stp.games.jme.terrain.World;
-import com.stp.games.jme.terrain.ChunkControl;
 
 /**
  * This class is used to create grass.
@@ -195,16 +193,14 @@ public class GrassLoader extends GeometryTileLoader {
         this.mapProvider = mapProvider;
     }
 
-    protected class LoadTask implements Callable<Boolean> {
-
-        GrassTile tile;
+    protected class LoadTask extends ChunkLoadTask {
 
         protected LoadTask(GrassTile tile) {
-            this.tile = tile;
+            super(tile);
         }
 
         @Override
-        public Boolean call() {
+        protected boolean build() {
 
             //Get the density and colormaps.
             /*MapBlock block = mapProvider.getMaps(tile);
@@ -217,47 +213,25 @@ public class GrassLoader extends GeometryTileLoader {
 
             //Creates the empty page objects.
             tile.createPages();
-			ChunkControl chunk = world.getVolume().getChunk(tile.getX(), 0, tile.getZ());
-			if (chunk != null) {
-				while (!chunk.isUpdated()) {
-					try { Thread.sleep(100); }
-					catch (Exception ex) {}
-					System.out.println("Waiting for chunk: " + chunk);
-				}
-			} else {
-				return false;
-			}
 
             ArrayList<Page> pages = tile.getPages();
             float ps = pagingEngine.getPageSize() * 0.5f;
-            //Loads grass geometry to each page.
-            for (Page p : pages) {
-                GrassPage page = (GrassPage) p;
+            //Loads grass geometry to each page, the pages in parallel.
+            Geometry[][] geoms = grassGen.createGrassGeometries(pages, layers);
+            for (int j = 0; j < pages.size(); j++) {
+                GrassPage page = (GrassPage) pages.get(j);
                 Node[] nodes = new Node[1];
                 nodes[0] = new Node("Grass");
 
                 for (int i = 0; i < layers.size(); i++) {
-                    
                     GrassLayer layer = layers.get(i);
-                   /* DensityMap densityMap = block.getDensityMaps().get(layer.getDmTexNum());
-                    if (densityMap == null) {
-                        continue;
-                    }
-                    ColorMap colorMap = null;
-                    if (block.getColorMaps() != null) {
-                        colorMap = block.getColorMaps().get(i);
-                    }*/
-
-                    Geometry geom = grassGen.createGrassGeometry(layer,
-                            page,
-                            null, // densityMap
-                            null); // colorMap
-                    
+                    Geometry geom = geoms[j][i];
                     geom.setQueueBucket(Bucket.Transparent);
                     geom.setShadowMode(layer.getShadowMode());
                     nodes[0].attachChild(geom);
 
                 }//for each layer
+                page.setBufferPool(grassGen.getBufferPool());
                 page.setNodes(nodes);
                 page.calculateOverlap(ps, 0);
             }//for each page
@@ -266,6 +240,6 @@ public class GrassLoader extends GeometryTileLoader {
                 p.calculateOverlap(ps, 0);
             }
             return true;
-        }//call
+        }//build
     }
 }//AbstractGrassLoader
\ No newline at end of file
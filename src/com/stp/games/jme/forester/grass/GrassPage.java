@@ -29,6 +29,9 @@
 package com.stp.games.jme.forester.grass;
 
 import com.jme3.math.Vector3f;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Node;
+import com.jme3.scene.Spatial;
 import com.stp.games.jme.forester.RectBounds;
 import com.stp.games.jme.forester.paging.GeometryPage;
 import com.stp.games.jme.forester.paging.interfaces.PagingEngine;
@@ -39,11 +42,40 @@ import com.stp.games.jme.forester.paging.interfaces.PagingEngine;
  * @author Andreas
  */
 public class GrassPage extends GeometryPage {
+    
+    protected GrassBufferPool bufferPool;
         
     public GrassPage(int x, int z, Vector3f center, PagingEngine engine){
         super(x,z,center,engine);
     }
     
+    /**
+     * Sets the pool the mesh buffers of this page go back to when it is
+     * unloaded.
+     * 
+     * @param bufferPool The buffer pool (or null).
+     */
+    public void setBufferPool(GrassBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+    
+    @Override
+    public void unload() {
+        Node[] old = nodes;
+        super.unload();
+        if (old == null || bufferPool == null) {
+            return;
+        }
+        //The nodes are detached now, so the buffers can be reused.
+        for (Node node : old) {
+            for (Spatial spat : node.getChildren()) {
+                if (spat instanceof Geometry) {
+                    bufferPool.release(((Geometry) spat).getMesh());
+                }
+            }
+        }
+    }
+    
     @Override
     public boolean equals(Object obj) {
         if (obj == null) {
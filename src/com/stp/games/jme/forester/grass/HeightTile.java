@@ -0,0 +1,161 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.forester.grass;
+// Internal Dependencies
+import com.stp.games.jme.forester.RectBounds;
+import com.stp.games.jme.terrain.World;
+
+/**
+ * A page-local grid of terrain heights. The grid is sampled from the world
+ * once, and the grass generator then looks heights up with bilinear
+ * interpolation instead of walking the volume for every vertex.
+ */
+public class HeightTile {
+    
+    protected final float originX, originZ;
+    protected final float step, invStep;
+    protected final int sizeX, sizeZ;
+    protected final float[] heights;
+    protected float minHeight, maxHeight;
+    
+    /**
+     * Creates an empty height tile.
+     * 
+     * @param originX The world x-coordinate of the first sample.
+     * @param originZ The world z-coordinate of the first sample.
+     * @param sizeX The number of samples along x.
+     * @param sizeZ The number of samples along z.
+     * @param step The distance between samples (in world units).
+     */
+    public HeightTile(float originX, float originZ, int sizeX, int sizeZ, float step) {
+        this.originX = originX;
+        this.originZ = originZ;
+        this.sizeX = Math.max(sizeX, 2);
+        this.sizeZ = Math.max(sizeZ, 2);
+        this.step = step;
+        this.invStep = 1f / step;
+        this.heights = new float[this.sizeX * this.sizeZ];
+    }
+    
+    /**
+     * Creates a height tile covering the given bounds plus a margin, and
+     * samples it from the world.
+     * 
+     * @param world The world to sample.
+     * @param bounds The page bounds.
+     * @param margin The extra distance to cover on each side.
+     * @param step The distance between samples (in world units).
+     * @return The sampled height tile.
+     */
+    public static HeightTile sample(World world, RectBounds bounds, float margin, float step) {
+        float x0 = bounds.getxMin() - margin;
+        float z0 = bounds.getzMin() - margin;
+        int sizeX = (int) Math.ceil((bounds.getxMax() - bounds.getxMin() + 2 * margin) / step) + 1;
+        int sizeZ = (int) Math.ceil((bounds.getzMax() - bounds.getzMin() + 2 * margin) / step) + 1;
+        HeightTile tile = new HeightTile(x0, z0, sizeX, sizeZ, step);
+        tile.sample(world);
+        return tile;
+    }
+    
+    /**
+     * Fills the grid from the world. This is the only place the tile
+     * calls into the world.
+     * 
+     * @param world The world to sample.
+     */
+    public void sample(World world) {
+        float min = Float.POSITIVE_INFINITY;
+        float max = Float.NEGATIVE_INFINITY;
+        int i = 0;
+        for (int z = 0; z < sizeZ; z++) {
+            float gz = originZ + z * step;
+            for (int x = 0; x < sizeX; x++) {
+                float h = world.getHeight(originX + x * step, gz);
+                heights[i++] = h;
+                if (h < min) {
+                    min = h;
+                }
+                if (h > max) {
+                    max = h;
+                }
+            }
+        }
+        minHeight = min;
+        maxHeight = max;
+    }
+    
+    /**
+     * Gets the height at a world location by bilinear interpolation of the
+     * four surrounding samples. Locations outside the tile are clamped to
+     * its edge.
+     * 
+     * @param x The world x-coordinate.
+     * @param z The world z-coordinate.
+     * @return The interpolated height.
+     */
+    public float getHeight(float x, float z) {
+        float fx = (x - originX) * invStep;
+        float fz = (z - originZ) * invStep;
+        if (fx < 0) {
+            fx = 0;
+        } else if (fx > sizeX - 1) {
+            fx = sizeX - 1;
+        }
+        if (fz < 0) {
+            fz = 0;
+        } else if (fz > sizeZ - 1) {
+            fz = sizeZ - 1;
+        }
+        int ix = Math.min((int) fx, sizeX - 2);
+        int iz = Math.min((int) fz, sizeZ - 2);
+        float tx = fx - ix;
+        float tz = fz - iz;
+        
+        int i = ix + iz * sizeX;
+        float h00 = heights[i];
+        float h10 = heights[i + 1];
+        float h01 = heights[i + sizeX];
+        float h11 = heights[i + sizeX + 1];
+        
+        float h0 = h00 + (h10 - h00) * tx;
+        float h1 = h01 + (h11 - h01) * tx;
+        return h0 + (h1 - h0) * tz;
+    }
+    
+    public float getMinHeight() {
+        return minHeight;
+    }
+    
+    public float getMaxHeight() {
+        return maxHeight;
+    }
+    
+    public float getStep() {
+        return step;
+    }
+    
+    public int getSampleCount() {
+        return heights.length;
+    }
+    
+}//HeightTile
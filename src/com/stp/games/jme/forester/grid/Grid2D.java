@@ -29,12 +29,21 @@
 package com.stp.games.jme.forester.grid;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.logging.Logger;
 
 /**
  * This class is a container for Cell2D. It is based on ArrayList, but has
- * additional methods to lookup elements (cells) based on hashcodes. It
- * should be considered a work in progress.
+ * additional methods to lookup elements (cells) based on hashcodes.
+ * <br/><br/>
+ * Cells are indexed by hashcode in an open addressed table that maps
+ * each hash to the position of its cell in the list, so getCell, setCell
+ * and removeCell run in constant time. Removing a cell moves the last cell
+ * into its place, the order of the cells is not kept. Iterate with get(i)
+ * and size() to avoid allocating an iterator.
+ * <br/><br/>
+ * The hashcode of a cell must not change while it's in the grid.
  * <br/><br/>
  * Grid2D implements Cell2D which makes it possible to make a grid of
  * grids.
@@ -50,6 +59,13 @@ public class Grid2D<T extends Cell2D> extends ArrayList<T> implements Cell2D{
     
     protected static final short hashRadius = (1 << 14);
     
+    //Index data. Positions are stored plus one, zero marks an empty slot.
+    protected int[] keys;
+    protected int[] positions;
+    protected int mask;
+    //Number of cells sharing their hash with a cell already in the index.
+    protected int duplicates;
+    
     /**
      * The default constructor. Creates a grid at position 0,0 with
      * x and z dimensions both 4 (the initial array size is 16).
@@ -83,6 +99,7 @@ public class Grid2D<T extends Cell2D> extends ArrayList<T> implements Cell2D{
         this.x = (short) x;
         this.z = (short) z;
         this.hash = hash(x,z);
+        initIndex(sizeX*sizeZ);
     }
     
     /**
@@ -126,12 +143,9 @@ public class Grid2D<T extends Cell2D> extends ArrayList<T> implements Cell2D{
             return null;
         }
         //Returns the old cell.
-        T c = null;
-        for(int i = 0; i < size(); i++){
-            c = get(i);
-            if(c.hashCode() == hash){
-                return set(i,newCell);
-            }
+        int i = find(hash);
+        if(i >= 0){
+            return set(i,newCell);
         }
         return null;
     }
@@ -154,14 +168,8 @@ public class Grid2D<T extends Cell2D> extends ArrayList<T> implements Cell2D{
      * @return The cell with hashCode "hash", or null if no such cell exists.
      */
     public T getCell(int hash){
-        T c = null;
-        for(int i = 0; i < size(); i++){
-            c = get(i);
-            if(c.hashCode() == hash){
-                return c;
-            }
-        }
-        return null;
+        int i = find(hash);
+        return (i >= 0) ? get(i) : null;
     }
     
     /**
@@ -172,15 +180,7 @@ public class Grid2D<T extends Cell2D> extends ArrayList<T> implements Cell2D{
      * @return The cell, or null if it's not in the grid.
      */
     public T removeCell(int x, int z){
-        int hashCode = hash(x,z);
-        T c = null;
-        for(int i = 0; i < size(); i++){
-            c = get(i);
-            if(c.hashCode() == hashCode){
-                return remove(i);
-            }
-        }
-        return null;
+        return removeCell(hash(x,z));
     }
     
     /**
@@ -190,15 +190,7 @@ public class Grid2D<T extends Cell2D> extends ArrayList<T> implements Cell2D{
      * @return The cell, or null if it's not in the grid.
      */
     public T removeCell(T cell){
-        int hashCode = cell.hashCode();
-        T c = null;
-        for(int i = 0; i < size(); i++){
-            c = get(i);
-            if(c.hashCode() == hashCode){
-                return remove(i);
-            }
-        }
-        return null;
+        return removeCell(cell.hashCode());
     }
     
     /**
@@ -208,14 +200,250 @@ public class Grid2D<T extends Cell2D> extends ArrayList<T> implements Cell2D{
      * @return The cell, or null if it's not in the grid.
      */
     public T removeCell(int hash){
-        T c = null;
+        int i = find(hash);
+        if(i >= 0){
+            return remove(i);
+        }
+        return null;
+    }
+    
+    @Override
+    public boolean add(T cell){
+        super.add(cell);
+        index(cell, size() - 1);
+        return true;
+    }
+    
+    @Override
+    public void add(int i, T cell){
+        super.add(i, cell);
+        rebuildIndex();
+    }
+    
+    @Override
+    public boolean addAll(Collection<? extends T> cells){
+        ensureCapacity(size() + cells.size());
+        for(T cell : cells){
+            add(cell);
+        }
+        return !cells.isEmpty();
+    }
+    
+    @Override
+    public boolean addAll(int i, Collection<? extends T> cells){
+        boolean changed = super.addAll(i, cells);
+        rebuildIndex();
+        return changed;
+    }
+    
+    @Override
+    public T set(int i, T cell){
+        unindex(get(i), i);
+        T old = super.set(i, cell);
+        index(cell, i);
+        return old;
+    }
+    
+    /**
+     * Removes the cell at position i. The last cell in the list is moved
+     * into the empty position.
+     * 
+     * @param i The position of the cell.
+     * @return The removed cell.
+     */
+    @Override
+    public T remove(int i){
+        T cell = get(i);
+        unindex(cell, i);
+        int last = size() - 1;
+        if(i != last){
+            T moved = super.remove(last);
+            super.set(i, moved);
+            if(find(moved.hashCode()) == last){
+                putIndex(moved.hashCode(), i, true);
+            }
+        } else {
+            super.remove(last);
+        }
+        return cell;
+    }
+    
+    @Override
+    public boolean remove(Object o){
+        int i = indexOf(o);
+        if(i >= 0){
+            remove(i);
+            return true;
+        }
+        return false;
+    }
+    
+    @Override
+    public int indexOf(Object o){
+        if(o instanceof Cell2D){
+            int i = find(o.hashCode());
+            if(i >= 0 && o.equals(get(i))){
+                return i;
+            }
+            if(duplicates == 0){
+                return -1;
+            }
+        }
+        return super.indexOf(o);
+    }
+    
+    @Override
+    public boolean contains(Object o){
+        return indexOf(o) >= 0;
+    }
+    
+    @Override
+    public boolean removeAll(Collection<?> c){
+        boolean changed = super.removeAll(c);
+        rebuildIndex();
+        return changed;
+    }
+    
+    @Override
+    public boolean retainAll(Collection<?> c){
+        boolean changed = super.retainAll(c);
+        rebuildIndex();
+        return changed;
+    }
+    
+    @Override
+    protected void removeRange(int fromIndex, int toIndex){
+        super.removeRange(fromIndex, toIndex);
+        rebuildIndex();
+    }
+    
+    @Override
+    public void clear(){
+        super.clear();
+        Arrays.fill(positions, 0);
+        duplicates = 0;
+    }
+    
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object clone(){
+        Grid2D<T> copy = (Grid2D<T>) super.clone();
+        copy.keys = keys.clone();
+        copy.positions = positions.clone();
+        return copy;
+    }
+    
+    /**
+     * Gets the position of the cell with hashcode "hash" in the list.
+     * 
+     * @param hash The hashcode of the cell.
+     * @return The position of the cell, or -1 if it's not in the grid.
+     */
+    public int find(int hash){
+        int slot = mix(hash) & mask;
+        while(positions[slot] != 0){
+            if(keys[slot] == hash){
+                return positions[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+    
+    protected final void initIndex(int capacity){
+        int length = 16;
+        while(length < capacity*2){
+            length <<= 1;
+        }
+        keys = new int[length];
+        positions = new int[length];
+        mask = length - 1;
+        duplicates = 0;
+    }
+    
+    protected void rebuildIndex(){
+        initIndex(size());
         for(int i = 0; i < size(); i++){
-            c = get(i);
-            if(c.hashCode() == hash){
-                return remove(i);
+            index(get(i), i);
+        }
+    }
+    
+    //Adds a cell to the index, the first cell added with a hash is the one found by it.
+    protected void index(T cell, int i){
+        if(!putIndex(cell.hashCode(), i, false)){
+            duplicates++;
+        }
+        if(size()*2 > keys.length){
+            rebuildIndex();
+        }
+    }
+    
+    //Removes a cell at position i from the index, a duplicate of the cell takes its place.
+    protected void unindex(T cell, int i){
+        int h = cell.hashCode();
+        if(find(h) != i){
+            duplicates--;
+            return;
+        }
+        removeIndex(h);
+        if(duplicates > 0){
+            for(int j = 0; j < size(); j++){
+                if(j != i && get(j).hashCode() == h){
+                    putIndex(h, j, true);
+                    duplicates--;
+                    return;
+                }
             }
         }
-        return null;
+    }
+    
+    //Stores the position for a hash, returns false if the hash was present and not replaced.
+    protected boolean putIndex(int hash, int i, boolean replace){
+        int slot = mix(hash) & mask;
+        while(positions[slot] != 0){
+            if(keys[slot] == hash){
+                if(replace){
+                    positions[slot] = i + 1;
+                    return true;
+                }
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = hash;
+        positions[slot] = i + 1;
+        return true;
+    }
+    
+    //Removes a hash and shifts back the entries that probed past it.
+    protected void removeIndex(int hash){
+        int slot = mix(hash) & mask;
+        while(positions[slot] != 0 && keys[slot] != hash){
+            slot = (slot + 1) & mask;
+        }
+        if(positions[slot] == 0){
+            return;
+        }
+        int next = slot;
+        while(true){
+            next = (next + 1) & mask;
+            if(positions[next] == 0){
+                break;
+            }
+            int home = mix(keys[next]) & mask;
+            //Move the entry back if its home slot is not between the gap and its slot.
+            if(((next - home) & mask) >= ((next - slot) & mask)){
+                keys[slot] = keys[next];
+                positions[slot] = positions[next];
+                slot = next;
+            }
+        }
+        positions[slot] = 0;
+    }
+    
+    protected static int mix(int hash){
+        int h = hash*0x9E3779B9;
+        return h ^ (h >>> 16);
     }
     
     @Override
@@ -228,6 +456,16 @@ public class Grid2D<T extends Cell2D> extends ArrayList<T> implements Cell2D{
         return z;
     }
     
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+    
+    @Override
+    public boolean equals(Object obj) {
+        return obj == this;
+    }
+    
     /**
      * This method generates a 30 bit hashcode for each set of 
      * integers. The first 15 bits are used for x, and the rest for z.
@@ -30,18 +30,32 @@ package com.stp.games.jme.forester.paging;
 // JME3 Dependencies
 import com.jme3.math.Vector3f;
 import com.jme3.renderer.Camera;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
 import com.jme3.scene.Node;
+import com.jme3.scene.SceneGraphVisitorAdapter;
+import com.jme3.scene.VertexBuffer;
 // Java Dependencies
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.nio.Buffer;
+import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 // Internal Dependencies
+import com.stp.games.jme.forester.paging.interfaces.DeferredLoad;
+import com.stp.games.jme.forester.paging.interfaces.Page;
 import com.stp.games.jme.forester.paging.interfaces.Tile;
 import com.stp.games.jme.forester.paging.interfaces.TileLoader;
 import com.stp.games.jme.forester.paging.interfaces.PagingEngine;
@@ -55,6 +69,13 @@ import com.stp.games.jme.forester.grid.Cell2D;
  * used for dividing a space into smaller entities. Each tile is in 
  * turn sub-divided into pages. The amount of pages in each tile depends
  * on the resolution of the tile.
+ * <br/><br/>
+ * When the camera moves to another cell, the old and new tile windows are
+ * compared, so moves of any distance are handled. Tiles that leave the
+ * grid go to an LRU cache that is bounded by the bytes of its tiles' vertex
+ * and index buffers and expires entries after the cache time. Evicted tiles are unloaded a few per frame. Tiles
+ * are submitted for loading nearest first, and tiles in front of the
+ * camera come before tiles behind it.
  * 
  * @author Andreas
  */
@@ -84,16 +105,74 @@ public class GeometryPagingEngine implements PagingEngine{
     
     //Grid data
     protected Grid2D<Tile> grid;
-    protected Grid2D<Tile> cache;
+    protected LinkedHashMap<Integer,CachedTile> cache;
     protected boolean useCache = true;
     protected int cacheTime = 6000;
+    //Maximum bytes of vertex and index data held by cached tiles.
+    protected long cacheBudget = 64L << 20;
+    protected long cacheBytes;
+    //Cached tiles that were still loading when cached, measured once loaded.
+    protected int unmeasuredTiles;
+    protected int cacheHits;
+    protected int cacheMisses;
+    protected int cacheEvictions;
+    //Time in milis since the engine started, used to expire cached tiles.
+    protected long clock;
+    
+    //Tiles removed from the grid and waiting to be unloaded.
+    protected final ArrayDeque<Tile> unloadQueue = new ArrayDeque<Tile>();
+    protected int unloadsPerFrame = 4;
+    //Tiles in the grid waiting to be submitted for loading, reused every frame.
+    protected final ArrayList<Tile> loadQueue = new ArrayList<Tile>();
+    protected int maxPendingLoads = 2;
     
     protected Cell2D currentCell;
     
     protected boolean updateTiles = false;
     
-    //Temporary variable
+    //Temporary variables
     protected Vector3f camPos;
+    protected final Vector3f camDir = new Vector3f();
+    protected final Set<Mesh> measuredMeshes = Collections.newSetFromMap(new IdentityHashMap<Mesh,Boolean>());
+    protected final MeshMeasure meshMeasure = new MeshMeasure();
+    
+    /**
+     * A tile in the cache, with the time it was put there and the bytes of
+     * its buffers, or -1 while it is still loading.
+     */
+    protected static class CachedTile {
+        protected final Tile tile;
+        protected final long time;
+        protected long bytes;
+        
+        protected CachedTile(Tile tile, long time, long bytes){
+            this.tile = tile;
+            this.time = time;
+            this.bytes = bytes;
+        }
+    }
+    
+    /**
+     * Adds up the buffer bytes of the meshes in a scene graph, counting
+     * each mesh once.
+     */
+    protected class MeshMeasure extends SceneGraphVisitorAdapter {
+        protected long bytes;
+        
+        @Override
+        public void visit(Geometry geom){
+            Mesh mesh = geom.getMesh();
+            if(mesh == null || !measuredMeshes.add(mesh)){
+                return;
+            }
+            for(VertexBuffer vb : mesh.getBufferList()){
+                Buffer data = vb.getData();
+                if(data != null){
+                    bytes += (long)data.capacity()*vb.getFormat().getComponentSize();
+                }
+            }
+        }
+    }
     
     
     /**
@@ -133,8 +212,7 @@ public class GeometryPagingEngine implements PagingEngine{
         rootNode.attachChild(pagingNode);
         
         if(useCache){
-            //Start at 5*size, expands if needed.
-            cache = new Grid2D<Tile>(5,gridSize);
+            cache = new LinkedHashMap<Integer,CachedTile>();
         }
     }
     
@@ -186,6 +264,7 @@ public class GeometryPagingEngine implements PagingEngine{
     public void update(float tpf)
     {
         camPos = camera.getLocation();
+        clock += (long)(tpf*1000);
         Cell2D camCell = getGridCell(camPos);
         
         //Check if the grid should be scrolled.
@@ -193,38 +272,23 @@ public class GeometryPagingEngine implements PagingEngine{
             scrollGrid(camCell);
         }
         
+        int pending = 0;
+        loadQueue.clear();
         Tile tile = null;
         for (int i = 0; i < grid.size(); i++){
             tile= grid.get(i);
             if(tile == null){
                 //DEBUG
-                throw new RuntimeException(tile.toString() + " is null");
+                throw new RuntimeException("Tile " + i + " is null");
             }
             
             if(!tile.isLoaded() && !tile.isIdle() && !tile.isPending()){
-                Callable<Boolean> task = tileLoader.loadTile(tile);
-                Future<Boolean> future = getExecutor().submit(task);
-                tile.setFuture(future);
-                tile.setPending(true); 
+                loadQueue.add(tile);
                 continue;
                 
             } else if(tile.isPending()){
-                if(tile.getFuture().isDone()){
-                    try {
-                        boolean result = tile.getFuture().get();
-                        if(result == true){
-                            tile.setLoaded(true);
-                        } else {
-                            tile.setIdle(true);
-                        }
-                        tile.setPending(false);
-                        tile.setFuture(null);
-                    } catch (InterruptedException ex) {
-                        log.log(Level.SEVERE, null, ex.getCause());
-                    } catch (ExecutionException ex) {
-                        log.log(Level.SEVERE, null, ex.getCause());
-                    }
-                    
+                if(!resolveLoad(tile) && !isWaiting(tile.getFuture())){
+                    pending++;
                 }
             } else if(tile.isLoaded()){
                 //If the tile is loaded, update and process it every frame.
@@ -235,112 +299,462 @@ public class GeometryPagingEngine implements PagingEngine{
             }
         }
         
+        //Keep only a few loads queued so the order can follow the camera.
+        //Loads that wait on their data are registered but take no slot.
+        while(pending < maxPendingLoads && !loadQueue.isEmpty()){
+            tile = pollBestTile();
+            submitLoad(tile);
+            if(tile.isPending() && !isWaiting(tile.getFuture())){
+                pending++;
+            }
+        }
+        
         //If the cache is being used.
         if(useCache){
-            tile = null;
-            int delta = (int)(tpf*1000);
-            for(int i = 0; i < cache.size(); i++){
-                tile = cache.get(i);
-                if(tile.getCacheTimer() >= cacheTime){
-                    cache.remove(i);
-                    tile.unload();
-                } else {
-                    tile.increaseCacheTimer(delta);
+            expireCache();
+            if(unmeasuredTiles > 0){
+                measureCache();
+            }
+        }
+        processUnloads();
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Submits the load task of a tile to the executor.
+     * 
+     * @param tile The tile to load.
+     */
+    protected void submitLoad(Tile tile){
+        Callable<Boolean> task = tileLoader.loadTile(tile);
+        if(task == null){
+            //The loader has no data for this tile.
+            tile.setIdle(true);
+            return;
+        }
+        if(task instanceof DeferredLoad){
+            final DeferredTask future = new DeferredTask(task);
+            tile.setFuture(future);
+            tile.setPending(true);
+            ((DeferredLoad) task).whenReady(new Runnable() {
+                @Override
+                public void run() {
+                    future.submit();
                 }
+            });
+            return;
+        }
+        Future<Boolean> future = getExecutor().submit(task);
+        tile.setFuture(future);
+        tile.setPending(true);
+    }
+    
+    /**
+     * Checks if a load is still waiting for its task to be ready. Waiting
+     * loads don't count against maxPendingLoads.
+     * 
+     * @param future The future of the load.
+     * @return True if the load is waiting, false otherwise.
+     */
+    protected boolean isWaiting(Future<Boolean> future){
+        return (future instanceof DeferredTask) && ((DeferredTask) future).isWaiting();
+    }
+    
+    /**
+     * The future of a deferred load, handed to the executor once the task
+     * reports it's ready. Cancelling it before then drops the load.
+     */
+    protected class DeferredTask extends FutureTask<Boolean> {
+        
+        protected boolean submitted;
+        
+        protected DeferredTask(Callable<Boolean> task){
+            super(task);
+        }
+        
+        protected synchronized void submit(){
+            if(!submitted && !isDone()){
+                submitted = true;
+                getExecutor().execute(this);
+            }
+        }
+        
+        public synchronized boolean isWaiting(){
+            return !submitted && !isDone();
+        }
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Removes and returns the tile in the load queue with the highest
+     * priority (the lowest value of getLoadPriority).
+     * 
+     * @return The tile that should be loaded next.
+     */
+    protected Tile pollBestTile(){
+        camera.getDirection(camDir);
+        int best = 0;
+        float bestPriority = Float.MAX_VALUE;
+        for(int i = 0; i < loadQueue.size(); i++){
+            float priority = getLoadPriority(loadQueue.get(i));
+            if(priority < bestPriority){
+                bestPriority = priority;
+                best = i;
             }
         }
+        //Swap remove, the order of the queue doesn't matter.
+        Tile tile = loadQueue.get(best);
+        int last = loadQueue.size() - 1;
+        loadQueue.set(best, loadQueue.get(last));
+        loadQueue.remove(last);
+        return tile;
+    }
+    
+    /**
+     * Gets the load priority of a tile, lower values are loaded first. The
+     * priority is the distance from the camera to the tile center. Tiles
+     * behind the camera count as up to twice as far away.
+     * 
+     * @param tile The tile.
+     * @return The load priority of the tile.
+     */
+    protected float getLoadPriority(Tile tile){
+        float dx = tile.getX()*tileSize - camPos.x;
+        float dz = tile.getZ()*tileSize - camPos.z;
+        float dist = (float) Math.sqrt(dx*dx + dz*dz);
+        float dirLength = (float) Math.sqrt(camDir.x*camDir.x + camDir.z*camDir.z);
+        if(dist == 0 || dirLength == 0){
+            return dist;
+        }
+        float facing = (dx*camDir.x + dz*camDir.z)/(dist*dirLength);
+        return dist*(1.5f - 0.5f*facing);
     }
     
     /**
      * Internal method.
      * 
      * This method is called whenever the camera moves from one grid-cell to
-     * another, to move the grid along with the camera.
+     * another, to move the grid along with the camera. Cells of the old
+     * window that are outside of the new window are removed, and cells of the
+     * new window that were outside of the old window are filled, so any
+     * camera displacement is handled.
      */
     protected void scrollGrid(Cell2D camCell)
     {
-        int dX = camCell.getX() - currentCell.getX();
-        int dZ = camCell.getZ() - currentCell.getZ();
-        
-        Tile tile = null;
+        int oldX = currentCell.getX();
+        int oldZ = currentCell.getZ();
+        int newX = camCell.getX();
+        int newZ = camCell.getZ();
         
-        if (dX == 1 || dX == -1){ 
-            int oldX = currentCell.getX() - dX*halfGridSize;
-            int newX = oldX + dX*gridSize;
-            
-            for(int k =  -halfGridSize; k <= halfGridSize; k++){
-                int z = k + currentCell.getZ();
-                
-                if(useCache){
-                    //Browse the cache to see if the page is there before
-                    //creating a new one
-                    tile = cache.getCell(newX,z);
-                    if(tile == null){
-                        Tile newTile = tileLoader.createTile(newX, z);
-                        tile = grid.setCell(oldX,z,newTile);
-                        cache.add(tile);
-                    } else {
-                        grid.setCell(oldX,z,tile);
-                        log.log(Level.INFO, "Tile recycled from cache at: {0}", tile.toString());
-                        cache.remove(tile);
-                        tile.resetCacheTimer();
-                    }
+        //Remove the tiles that left the window.
+        for(int z = oldZ - halfGridSize; z <= oldZ + halfGridSize; z++){
+            boolean rowKept = Math.abs(z - newZ) <= halfGridSize;
+            for(int x = oldX - halfGridSize; x <= oldX + halfGridSize; x++){
+                if(rowKept && Math.abs(x - newX) <= halfGridSize){
+                    //Skip the part of the row that both windows share.
+                    x = newX + halfGridSize;
+                    continue;
                 }
-                else{
-                    //Just create a new page and loose the old one.
-                    Tile newTile = tileLoader.createTile(newX, z);
-                    Tile oldTile = grid.setCell(oldX,z,newTile);
-                    oldTile.unload();
+                Tile tile = grid.removeCell(x,z);
+                if(tile != null){
+                    retireTile(tile);
                 }
             }
-            tile = null;
         }
         
-        if(dZ == 1 || dZ == -1){
-            int oldZ = currentCell.getZ() - dZ*halfGridSize;
-            int newZ = oldZ + dZ*gridSize;
-            
-            for(int i =  -halfGridSize; i <= halfGridSize; i++){
-                //Check to make sure that this page was not checked in the
-                //previous loop.
-                if((dX == 1 && i == -halfGridSize) || (dX == -1 && i == halfGridSize)){
+        //Fill the cells that entered the window.
+        for(int z = newZ - halfGridSize; z <= newZ + halfGridSize; z++){
+            boolean rowKept = Math.abs(z - oldZ) <= halfGridSize;
+            for(int x = newX - halfGridSize; x <= newX + halfGridSize; x++){
+                if(rowKept && Math.abs(x - oldX) <= halfGridSize){
+                    x = oldX + halfGridSize;
                     continue;
                 }
-                int x = i + currentCell.getX();
-                if(useCache){
-                    //Browse the cache to see if the page is there before
-                    //creating a new one
-                    tile = cache.getCell(x,newZ);
-                    if(tile == null){
-                        Tile newTile = tileLoader.createTile(x, newZ);
-                        tile = grid.setCell(x,oldZ,newTile);
-                        cache.add(tile);
-                    } else {
-                        grid.setCell(x,oldZ,tile);
-                        log.log(Level.INFO, "Tile recycled from cache at: {0}", tile.toString());
-                        cache.remove(tile);
-                        tile.resetCacheTimer();
-                    }
-                }
-                else{
-                    Tile newTile = tileLoader.createTile(x, newZ);
-                    Tile oldTile = grid.setCell(x,oldZ,newTile);
-                    oldTile.unload();
+                if(grid.getCell(x,z) == null){
+                    grid.add(acquireTile(x,z));
                 }
             }
-            tile = null;
         }
         currentCell = camCell;
     }
     
+    /**
+     * Internal method.
+     * 
+     * Gets a tile for a cell that entered the grid, from the cache if it's
+     * there or else from the tile loader.
+     * 
+     * @param x The x-coordinate of the cell.
+     * @param z The z-coordinate of the cell.
+     * @return The tile.
+     */
+    protected Tile acquireTile(int x, int z){
+        if(useCache){
+            CachedTile cached = cache.remove(Grid2D.hash(x,z));
+            if(cached != null){
+                uncount(cached);
+                cacheHits++;
+                if(log.isLoggable(Level.FINE)){
+                    log.log(Level.FINE, "Tile recycled from cache at: {0}", cached.tile.toString());
+                }
+                return cached.tile;
+            }
+            cacheMisses++;
+        }
+        return tileLoader.createTile(x, z);
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Takes care of a tile that left the grid. Loads that have not started
+     * are cancelled. Loaded tiles, and tiles still loading, are put in the
+     * cache, the rest are unloaded.
+     * 
+     * @param tile The tile.
+     */
+    protected void retireTile(Tile tile){
+        cancelLoad(tile);
+        if(useCache && (tile.isLoaded() || tile.isPending())){
+            hideTile(tile);
+            CachedTile cached = new CachedTile(tile, clock, tile.isLoaded() ? measureTile(tile) : -1L);
+            if(cached.bytes < 0){
+                unmeasuredTiles++;
+            } else {
+                cacheBytes += cached.bytes;
+            }
+            cache.put(tile.hashCode(), cached);
+            trimCache(cacheBudget);
+        } else {
+            unloadQueue.add(tile);
+        }
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Hides the pages of a tile that is no longer processed, process shows
+     * them again if the tile returns to the grid.
+     * 
+     * @param tile The tile.
+     */
+    protected void hideTile(Tile tile){
+        if(tile.getPages() == null){
+            return;
+        }
+        for(int i = 0; i < tile.getPages().size(); i++){
+            Page page = tile.getPage(i);
+            if(page == null || page.getNodes() == null){
+                continue;
+            }
+            for(int l = 0; l < page.getNodes().length; l++){
+                page.setVisible(false, l);
+            }
+        }
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Takes the result of a tile's load once it is done, the tile is then
+     * either loaded or idle and no longer pending.
+     * 
+     * @param tile The tile.
+     * @return True if the load was done.
+     */
+    protected boolean resolveLoad(Tile tile){
+        Future<Boolean> future = tile.getFuture();
+        if(future == null || !future.isDone()){
+            return false;
+        }
+        try {
+            boolean result = future.get();
+            if(result == true){
+                tile.setLoaded(true);
+            } else {
+                tile.setIdle(true);
+            }
+        } catch (InterruptedException ex) {
+            log.log(Level.SEVERE, null, ex.getCause());
+        } catch (ExecutionException ex) {
+            log.log(Level.SEVERE, null, ex.getCause());
+        }
+        tile.setPending(false);
+        tile.setFuture(null);
+        return true;
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Cancels the load of a tile if it has not started yet.
+     * 
+     * @param tile The tile.
+     */
+    protected void cancelLoad(Tile tile){
+        Future<Boolean> future = tile.getFuture();
+        if(tile.isPending() && future != null && future.cancel(false)){
+            tile.setPending(false);
+            tile.setFuture(null);
+        }
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Gets the bytes held by the vertex and index buffers of a tile's pages.
+     * 
+     * @param tile The tile.
+     * @return The size in bytes.
+     */
+    protected long measureTile(Tile tile){
+        if(tile.getPages() == null){
+            return 0L;
+        }
+        meshMeasure.bytes = 0L;
+        for(int i = 0; i < tile.getPages().size(); i++){
+            Page page = tile.getPage(i);
+            if(page == null || page.getNodes() == null){
+                continue;
+            }
+            for(Node node : page.getNodes()){
+                if(node != null){
+                    node.depthFirstTraversal(meshMeasure);
+                }
+            }
+        }
+        measuredMeshes.clear();
+        return meshMeasure.bytes;
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Takes a tile that left the cache out of the cache totals.
+     * 
+     * @param cached The cache entry.
+     */
+    protected void uncount(CachedTile cached){
+        if(cached.bytes < 0){
+            unmeasuredTiles--;
+        } else {
+            cacheBytes -= cached.bytes;
+        }
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Measures the cached tiles that have finished loading since they were
+     * cached, then trims the cache back to its budget. Their loads are
+     * resolved here since cached tiles are not in the grid loop, and pages
+     * the load created are hidden like the rest of the cache.
+     */
+    protected void measureCache(){
+        for(CachedTile cached : cache.values()){
+            if(cached.bytes < 0 && (resolveLoad(cached.tile) || !cached.tile.isPending())){
+                hideTile(cached.tile);
+                unmeasuredTiles--;
+                cached.bytes = cached.tile.isLoaded() ? measureTile(cached.tile) : 0L;
+                cacheBytes += cached.bytes;
+            }
+        }
+        trimCache(cacheBudget);
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Evicts the least recently cached tiles until the cache holds no more
+     * than maxBytes bytes of buffers.
+     * 
+     * @param maxBytes The number of bytes to keep.
+     */
+    protected void trimCache(long maxBytes){
+        Iterator<CachedTile> it = cache.values().iterator();
+        while(cacheBytes > maxBytes && it.hasNext()){
+            CachedTile cached = it.next();
+            unloadQueue.add(cached.tile);
+            it.remove();
+            uncount(cached);
+            cacheEvictions++;
+        }
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Evicts every cached tile.
+     */
+    protected void clearCache(){
+        for(CachedTile cached : cache.values()){
+            unloadQueue.add(cached.tile);
+            cacheEvictions++;
+        }
+        cache.clear();
+        cacheBytes = 0L;
+        unmeasuredTiles = 0;
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Evicts the cached tiles older than the cache time. Tiles are kept in
+     * the order they were cached, so only the expired ones are visited.
+     */
+    protected void expireCache(){
+        if(cache.isEmpty()){
+            return;
+        }
+        Iterator<CachedTile> it = cache.values().iterator();
+        while(it.hasNext()){
+            CachedTile cached = it.next();
+            if(clock - cached.time < cacheTime){
+                break;
+            }
+            unloadQueue.add(cached.tile);
+            it.remove();
+            uncount(cached);
+            cacheEvictions++;
+        }
+    }
+    
+    /**
+     * Internal method.
+     * 
+     * Unloads up to unloadsPerFrame loaded tiles from the unload queue.
+     * Tiles that are still loading are kept until their load is done.
+     */
+    protected void processUnloads(){
+        int budget = unloadsPerFrame;
+        int count = unloadQueue.size();
+        while(budget > 0 && count-- > 0){
+            Tile tile = unloadQueue.poll();
+            Future<Boolean> future = tile.getFuture();
+            if(tile.isPending() && future != null && !future.isDone()){
+                unloadQueue.add(tile);
+                continue;
+            }
+            //Tiles that never loaded have nothing to clean up and are free.
+            if(tile.isLoaded()){
+                budget--;
+            }
+            tile.unload();
+        }
+    }
+    
     @Override
     public void reloadTiles(){
-        for(Tile tile: grid){
-            tile.unload();
+        for(int i = 0; i < grid.size(); i++){
+            Tile tile = grid.get(i);
+            cancelLoad(tile);
+            unloadQueue.add(tile);
         }
         grid.clear();
         if(useCache){
-            cache.clear();
+            clearCache();
         }
         initGrid();
     }
@@ -373,8 +787,9 @@ public class GeometryPagingEngine implements PagingEngine{
     public void reloadTile(int x, int z){
         Tile tile = grid.getCell(x, z);
         if(tile != null){
-            tile.unload();
             grid.removeCell(tile);
+            cancelLoad(tile);
+            unloadQueue.add(tile);
             Tile newTile = tileLoader.createTile(x, z);
             grid.add(newTile);
         }
@@ -450,6 +865,88 @@ public class GeometryPagingEngine implements PagingEngine{
         return useCache;
     }
     
+    /**
+     * Gets the maximum bytes of vertex and index data kept in the cache.
+     * 
+     * @return The cache budget in bytes.
+     */
+    public long getCacheBudget() {
+        return cacheBudget;
+    }
+    
+    /**
+     * Sets the maximum bytes of vertex and index data kept in the cache,
+     * 64 MB by default.
+     * 
+     * @param cacheBudget The cache budget in bytes.
+     */
+    public void setCacheBudget(long cacheBudget) {
+        this.cacheBudget = Math.max(0L, cacheBudget);
+        if(cache != null){
+            trimCache(this.cacheBudget);
+        }
+    }
+    
+    public int getCachedTileCount() {
+        return (cache != null) ? cache.size() : 0;
+    }
+    
+    /**
+     * Gets the bytes of vertex and index data held by the measured tiles
+     * in the cache.
+     * 
+     * @return The size in bytes.
+     */
+    public long getCachedBytes() {
+        return cacheBytes;
+    }
+    
+    public int getCacheHits() {
+        return cacheHits;
+    }
+    
+    public int getCacheMisses() {
+        return cacheMisses;
+    }
+    
+    public int getCacheEvictions() {
+        return cacheEvictions;
+    }
+    
+    public void resetCacheStats() {
+        cacheHits = 0;
+        cacheMisses = 0;
+        cacheEvictions = 0;
+    }
+    
+    public int getUnloadsPerFrame() {
+        return unloadsPerFrame;
+    }
+    
+    /**
+     * Sets how many tiles may be unloaded each frame, spreading the
+     * cost of large camera moves over several frames.
+     * 
+     * @param unloadsPerFrame The number of tiles.
+     */
+    public void setUnloadsPerFrame(int unloadsPerFrame) {
+        this.unloadsPerFrame = Math.max(1, unloadsPerFrame);
+    }
+    
+    public int getMaxPendingLoads() {
+        return maxPendingLoads;
+    }
+    
+    /**
+     * Sets how many tile loads may be queued on the executor at once. Fewer
+     * queued loads means the load order follows the camera more closely.
+     * 
+     * @param maxPendingLoads The number of loads.
+     */
+    public void setMaxPendingLoads(int maxPendingLoads) {
+        this.maxPendingLoads = Math.max(1, maxPendingLoads);
+    }
+    
     @Override
     public void setCacheTime(int cacheTime) {
         this.cacheTime = cacheTime;
@@ -458,16 +955,17 @@ public class GeometryPagingEngine implements PagingEngine{
     @Override
     public void setUseCache(boolean useCache) {
         if(useCache == true && this.cache == null){
-            cache = new Grid2D<Tile>(5,gridSize);
+            cache = new LinkedHashMap<Integer,CachedTile>();
         }
         if(useCache == false && this.cache != null){
+            clearCache();
             cache = null;
         }
         this.useCache = useCache;
     }
 
     @Override
-    public ExecutorService getExecutor() {
+    public synchronized ExecutorService getExecutor() {
         if(executor == null){
             executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
                 @Override
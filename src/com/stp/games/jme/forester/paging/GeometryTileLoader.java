@@ -33,12 +33,15 @@ import com.jme3.scene.Node;
 import com.jme3.terrain.Terrain;
 // Java Dependencies
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 // Internal Dependencies
+import com.stp.games.jme.forester.paging.interfaces.DeferredLoad;
 import com.stp.games.jme.forester.paging.interfaces.PagingEngine;
 import com.stp.games.jme.forester.paging.interfaces.Tile;
 import com.stp.games.jme.forester.paging.interfaces.TileLoader;
+import com.stp.games.jme.terrain.ChunkControl;
 import com.stp.games.jme.terrain.World;
 
 /**
@@ -52,6 +55,11 @@ public class GeometryTileLoader implements TileLoader{
     protected PagingEngine pagingEngine;
     protected World world;
     
+    //Time from a chunk being ready to the tile over it being built.
+    protected final AtomicLong readyCount = new AtomicLong();
+    protected final AtomicLong readyTotal = new AtomicLong();
+    protected final AtomicLong readyMax = new AtomicLong();
+    
     public GeometryTileLoader(int tileSize,
             int resolution,
             float viewingRange,
@@ -74,7 +82,7 @@ public class GeometryTileLoader implements TileLoader{
 
     @Override
     public Tile createTile(int x, int z) {
-        Logger.getLogger(GeometryTileLoader.class.getName()).log(Level.INFO, "Tile created at: ({0},{1})", new Object[]{x, z});
+        Logger.getLogger(GeometryTileLoader.class.getName()).log(Level.FINE, "Tile created at: ({0},{1})", new Object[]{x, z});
         return new GeometryTile(x,z,pagingEngine);
         
     }
@@ -105,6 +113,123 @@ public class GeometryTileLoader implements TileLoader{
     public World getWorld() {
         return world;
     }
+    
+    /**
+     * Gets the chunk under the center of a tile.
+     * 
+     * @param tile The tile.
+     * @return The chunk, or null if the chunk is not in the world.
+     */
+    public ChunkControl getChunk(Tile tile) {
+        int tileSize = pagingEngine.getTileSize();
+        return world.getVolume().getChunk(tile.getX()*tileSize, 0, tile.getZ()*tileSize);
+    }
+    
+    /**
+     * Gets the number of tiles built since their chunk was ready.
+     * 
+     * @return The number of tiles.
+     */
+    public long getReadyCount() {
+        return readyCount.get();
+    }
+    
+    /**
+     * Gets the average time from a chunk being ready to the tile over it
+     * being built. The tile shows on the next update of the paging engine.
+     * 
+     * @return The time in miliseconds.
+     */
+    public float getAverageReadyLatency() {
+        long count = readyCount.get();
+        return (count > 0) ? readyTotal.get()/(count*1000000f) : 0;
+    }
+    
+    /**
+     * Gets the longest time from a chunk being ready to the tile over it
+     * being built.
+     * 
+     * @return The time in miliseconds.
+     */
+    public float getMaxReadyLatency() {
+        return readyMax.get()/1000000f;
+    }
+    
+    public void resetReadyLatency() {
+        readyCount.set(0);
+        readyTotal.set(0);
+        readyMax.set(0);
+    }
+    
+    protected void recordReadyLatency(long nanos) {
+        readyCount.incrementAndGet();
+        readyTotal.addAndGet(nanos);
+        long max = readyMax.get();
+        while (nanos > max && !readyMax.compareAndSet(max, nanos)) {
+            max = readyMax.get();
+        }
+    }
+    
+    /**
+     * A load task that waits for the mesh of the chunk under its tile. The
+     * task becomes ready when the chunk is updated, so it never blocks a
+     * worker thread. Tiles without a chunk are ready right away, see
+     * requiresChunk.
+     */
+    protected abstract class ChunkLoadTask implements DeferredLoad {
+        
+        protected final Tile tile;
+        protected volatile ChunkControl chunk;
+        protected volatile long readyTime;
+        
+        protected ChunkLoadTask(Tile tile) {
+            this.tile = tile;
+        }
+        
+        @Override
+        public void whenReady(final Runnable ready) {
+            this.chunk = getChunk(tile);
+            if (chunk == null) {
+                ready.run();
+                return;
+            }
+            chunk.whenUpdated(new Runnable() {
+                @Override
+                public void run() {
+                    readyTime = System.nanoTime();
+                    ready.run();
+                }
+            });
+        }
+        
+        @Override
+        public Boolean call() {
+            if (chunk == null) {
+                return requiresChunk() ? false : build();
+            }
+            boolean loaded = build();
+            recordReadyLatency(System.nanoTime() - readyTime);
+            return loaded;
+        }
+        
+        /**
+         * Checks whether the tile can only be built over a chunk. Tiles that
+         * don't require one are built right away when there is no chunk.
+         * 
+         * @return True by default.
+         */
+        protected boolean requiresChunk() {
+            return true;
+        }
+        
+        /**
+         * Builds the pages of the tile, called on a worker thread once the
+         * chunk is ready.
+         * 
+         * @return True if the tile has geometry, false otherwise.
+         */
+        protected abstract boolean build();
+    }
 
     @Override
     public String getName() {
@@ -0,0 +1,43 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.forester.paging.interfaces;
+// Java Dependencies
+import java.util.concurrent.Callable;
+
+/**
+ * A tile load task that depends on data that may not be ready yet, like the
+ * mesh of the chunk under the tile. The paging engine hands the task to its
+ * executor only once the task reports it's ready, so no worker thread waits.
+ */
+public interface DeferredLoad extends Callable<Boolean> {
+    
+    /**
+     * Registers a callback to run once the task can be called without
+     * waiting. The callback runs right away if the task is already ready,
+     * and may be run on any thread.
+     * 
+     * @param ready The callback.
+     */
+    public void whenReady(Runnable ready);
+    
+}//DeferredLoad
@@ -152,16 +152,21 @@ public class TreeLoader extends GeometryTileLoader {
         return layers;
     }
 
-    private class LoadTask implements Callable<Boolean> {
-
-        private TreeTile tile;
+    private class LoadTask extends ChunkLoadTask {
 
         private LoadTask(TreeTile tile) {
-            this.tile = tile;
+            super(tile);
+        }
+
+        //Trees from map based providers don't need the terrain.
+        @Override
+        protected boolean requiresChunk() {
+            return false;
         }
 
         @Override
-        public Boolean call() {
+        protected boolean build() {
+            TreeTile tile = (TreeTile) this.tile;
             tile.createPages();
             TreeDataBlock block = dataProvider.getData(tile);
             if (block == null || block.isEmpty()) {
@@ -0,0 +1,208 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.hud;
+// JME3 Dependencies
+import com.jme3.math.ColorRGBA;
+import com.jme3.texture.Image;
+import com.jme3.texture.Texture;
+import com.jme3.texture.Texture2D;
+import com.jme3.texture.image.ColorSpace;
+import com.jme3.texture.image.ImageRaster;
+import com.jme3.util.BufferUtils;
+// Java Dependencies
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+/* Packs hud textures into a few large pages so components that use different textures can share a draw call.
+ * Textures are placed on shelves with a one pixel border copied from their edges to keep filtering from bleeding
+ * between neighbours. Textures that can't be read on the cpu (compressed, render targets), are too large or don't
+ * fit get a region covering the whole of their own texture instead. Every page starts with a small white block
+ * that untextured quads sample so they can join the same batches. */
+public class HudAtlas {
+	public static final int DEFAULT_PAGE_SIZE = 2048;
+	public static final int DEFAULT_MAX_PAGES = 4;
+	public static final int DEFAULT_MAX_TILE_SIZE = 512;
+	private static final int PADDING = 1;
+	private static final int WHITE_SIZE = 4;
+	
+	// The part of a texture quads should sample
+	public static class Region {
+		final Texture2D texture;
+		final float u0, v0, us, vs;
+		Region(Texture2D texture, float u0, float v0, float us, float vs) {
+			this.texture = texture;
+			this.u0 = u0;
+			this.v0 = v0;
+			this.us = us;
+			this.vs = vs;
+		}
+		public Texture2D getTexture() {
+			return texture;
+		}
+		// Maps a texture coordinate of the source texture into this region
+		public float mapU(float u) {
+			return u0 + u*us;
+		}
+		public float mapV(float v) {
+			return v0 + v*vs;
+		}
+	}
+	private static class Page {
+		final Texture2D texture;
+		final ImageRaster raster;
+		int shelfX, shelfY, shelfHeight;
+		Page(Texture2D texture, ImageRaster raster) {
+			this.texture = texture;
+			this.raster = raster;
+		}
+	}
+	
+	private final IdentityHashMap<Texture2D, Region> regions = new IdentityHashMap<Texture2D, Region>();
+	private final ArrayList<Page> pages = new ArrayList<Page>();
+	private final ColorRGBA pixel = new ColorRGBA();
+	private final int pageSize;
+	private final int maxPages;
+	private int maxTileSize;
+	private Region white;
+	
+	public HudAtlas() {
+		this (DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+	}
+	public HudAtlas(int pageSize, int maxPages) {
+		this.pageSize = pageSize;
+		this.maxPages = Math.max(1, maxPages);
+		this.maxTileSize = Math.min(DEFAULT_MAX_TILE_SIZE, pageSize/4);
+	}
+	// Returns the region to sample for the given texture, packing it into the atlas the first time it's seen
+	public Region getRegion(Texture2D texture) {
+		if (texture == null) {
+			return getWhite();
+		}
+		Region region = regions.get(texture);
+		if (region == null) {
+			region = pack(texture);
+			if (region == null) {
+				region = new Region(texture, 0, 0, 1, 1);
+			}
+			regions.put(texture, region);
+		}
+		return region;
+	}
+	// Returns the white block of the first page
+	public Region getWhite() {
+		if (white == null) {
+			Page page = getPage(0);
+			float c = (WHITE_SIZE*0.5f)/pageSize;
+			white = new Region(page.texture, c, c, 0, 0);
+		}
+		return white;
+	}
+	// Returns true if the texture has been packed into an atlas page
+	public boolean isPacked(Texture2D texture) {
+		Region region = regions.get(texture);
+		return region != null && region.texture != texture;
+	}
+	// Drops the region of a texture so its image is read again the next time it's used
+	public void invalidate(Texture2D texture) {
+		regions.remove(texture);
+	}
+	public int getPageCount() {
+		return pages.size();
+	}
+	public int getRegionCount() {
+		return regions.size();
+	}
+	public void setMaxTileSize(int maxTileSize) {
+		this.maxTileSize = maxTileSize;
+	}
+	private Region pack(Texture2D texture) {
+		Image image = texture.getImage();
+		if (image == null || image.getData(0) == null || image.getDepth() > 1) {
+			return null;
+		}
+		int w = image.getWidth();
+		int h = image.getHeight();
+		if (w > maxTileSize || h > maxTileSize || image.getFormat().isCompressed()) {
+			return null;
+		}
+		ImageRaster source;
+		try {
+			source = ImageRaster.create(image);
+		} catch (UnsupportedOperationException ex) {
+			return null;
+		}
+		int pw = w + PADDING*2;
+		int ph = h + PADDING*2;
+		for (int p = 0; p < maxPages; p++) {
+			Page page = getPage(p);
+			if (page.shelfX + pw > pageSize) {
+				page.shelfY += page.shelfHeight;
+				page.shelfX = 0;
+				page.shelfHeight = 0;
+			}
+			if (page.shelfY + ph > pageSize) {
+				continue;
+			}
+			int x = page.shelfX + PADDING;
+			int y = page.shelfY + PADDING;
+			copy(source, page.raster, x, y, w, h);
+			page.shelfX += pw;
+			page.shelfHeight = Math.max(page.shelfHeight, ph);
+			page.texture.getImage().setUpdateNeeded();
+			float scale = 1f/pageSize;
+			return new Region(page.texture, x*scale, y*scale, w*scale, h*scale);
+		}
+		return null;
+	}
+	// Copies a texture into a page, repeating its edge pixels into the padding around it
+	private void copy(ImageRaster source, ImageRaster target, int x, int y, int w, int h) {
+		for (int sy = -PADDING; sy < h + PADDING; sy++) {
+			int ry = Math.min(Math.max(sy, 0), h - 1);
+			for (int sx = -PADDING; sx < w + PADDING; sx++) {
+				int rx = Math.min(Math.max(sx, 0), w - 1);
+				source.getPixel(rx, ry, pixel);
+				target.setPixel(x + sx, y + sy, pixel);
+			}
+		}
+	}
+	private Page getPage(int index) {
+		while (pages.size() <= index) {
+			Image image = new Image(Image.Format.RGBA8, pageSize, pageSize, BufferUtils.createByteBuffer(pageSize*pageSize*4), ColorSpace.sRGB);
+			Texture2D texture = new Texture2D(image);
+			texture.setMagFilter(Texture.MagFilter.Bilinear);
+			texture.setMinFilter(Texture.MinFilter.BilinearNoMipMaps);
+			texture.setWrap(Texture.WrapMode.EdgeClamp);
+			Page page = new Page(texture, ImageRaster.create(image));
+			// Reserve the white block used by untextured quads
+			for (int y = 0; y < WHITE_SIZE; y++) {
+				for (int x = 0; x < WHITE_SIZE; x++) {
+					page.raster.setPixel(x, y, ColorRGBA.White);
+				}
+			}
+			page.shelfX = WHITE_SIZE;
+			page.shelfHeight = WHITE_SIZE;
+			pages.add(page);
+		}
+		return pages.get(index);
+	}
+}
@@ -0,0 +1,576 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.hud;
+// JME3 Dependencies
+import com.jme3.asset.AssetManager;
+import com.jme3.font.BitmapFont;
+import com.jme3.material.MatParamTexture;
+import com.jme3.material.Material;
+import com.jme3.material.RenderState;
+import com.jme3.math.ColorRGBA;
+import com.jme3.math.Matrix4f;
+import com.jme3.math.Vector3f;
+import com.jme3.renderer.RenderManager;
+import com.jme3.scene.Geometry;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.scene.VertexBuffer.Format;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.scene.VertexBuffer.Usage;
+import com.jme3.texture.Texture2D;
+import com.jme3.util.BufferUtils;
+// Java Dependencies
+import java.nio.Buffer;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
+import java.util.ArrayList;
+
+/* Draws the backgrounds, borders and text of hud components as runs of vertex colored quads sharing one texture.
+ * Each component keeps the quads it was last drawn with and only rebuilds them when something they were built from
+ * changes, text keeps its glyph layout and only rewrites the glyphs from the first changed line on. Consecutive
+ * components that sample the same atlas page are merged into a batch, and a batch is drawn when the page changes,
+ * or when the manager flushes it before clipping or a 3D spatial. Batches are matched by position from one frame to
+ * the next, so a batch is only uploaded again when its run of quads changed, starting at the first changed entry. */
+public class HudBatchRenderer {
+	public static final int MAX_QUADS = 16384;
+	private static final int STRIDE = 9;
+	private static final int QUAD_FLOATS = STRIDE*4;
+	private static final byte BACKGROUND = 0;
+	private static final byte BORDER = 1;
+	private static final byte TEXT = 2;
+	
+	// The quads a component was last drawn with, along with the values they were built from
+	public static class QuadCache {
+		final float[] data = new float[QUAD_FLOATS*5];
+		final ColorRGBA background = new ColorRGBA();
+		final ColorRGBA border = new ColorRGBA();
+		int version;
+		int globalVersion;
+		int backgroundQuads;
+		int borderQuads;
+		Texture2D backgroundTexture;
+		Texture2D borderTexture;
+		boolean highlight;
+		Texture2D texture;
+		float[] txCoords;
+		int x, y, w, h;
+		float fade;
+		float ax, ay, az;
+		int borderSize;
+		
+		// Glyph quads of the text, one for each character
+		HudTextLayout text;
+		float[] textData;
+		int textQuads;
+		int textVersion;
+		int textGlobalVersion;
+		Texture2D textTexture;
+		final ColorRGBA textColor = new ColorRGBA();
+		int textX, textY;
+	}
+	// A run of quads drawn with a single call, reused by the batch at the same position in the next frame
+	private static class Batch {
+		final Mesh mesh = new Mesh();
+		final Geometry geom = new Geometry("hud-batch", mesh);
+		FloatBuffer positions, texCoords, colors;
+		ShortBuffer indices;
+		int capacity;
+		QuadCache[] caches = new QuadCache[32];
+		int[] versions = new int[32];
+		byte[] parts = new byte[32];
+		int[] starts = new int[32];
+		int entries;
+		int lastEntries;
+		int quads;
+		int dirtyFrom;
+		Texture2D texture;
+	}
+	
+	private final HudAtlas atlas;
+	private final ArrayList<Batch> batches = new ArrayList<Batch>();
+	private final Material material;
+	private final Matrix4f identity = new Matrix4f();
+	private final Matrix4f transform = new Matrix4f();
+	private final Vector3f normal = new Vector3f();
+	private final Vector3f light = new Vector3f(0, -1f, 1f).normalizeLocal();
+	private final ColorRGBA color = new ColorRGBA();
+	private final float[] uv = new float[8];
+	private RenderManager renderManager;
+	private RenderState renderState;
+	private Batch current;
+	private int batchIndex;
+	private int version;
+	
+	// Frame statistics
+	private int batchCount;
+	private int quadCount;
+	private int rebuildCount;
+	private int uploadCount;
+
+	public HudBatchRenderer(AssetManager assetManager, HudAtlas atlas) {
+		this.atlas = atlas;
+		material = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
+		material.setBoolean("VertexColor", true);
+	}
+	public HudAtlas getAtlas() {
+		return atlas;
+	}
+	// Starts a new frame of batches
+	public void begin(RenderManager renderManager, RenderState renderState) {
+		this.renderManager = renderManager;
+		this.renderState = renderState;
+		current = null;
+		batchIndex = 0;
+		batchCount = 0;
+		quadCount = 0;
+		rebuildCount = 0;
+		uploadCount = 0;
+	}
+	// Draws any remaining quads
+	public void end() {
+		flush();
+		renderManager = null;
+	}
+	// Forces every component to rebuild its quads
+	public void invalidate() {
+		version++;
+	}
+	// Drops the atlas copy of a texture whose image was modified so it's packed again
+	public void invalidate(Texture2D texture) {
+		atlas.invalidate(texture);
+		version++;
+	}
+	// Queues the background and border of a component, a background drawn with a spatial is left to the caller
+	public void add(HudComponent component, int screenHeight) {
+		QuadCache cache = component.renderCache;
+		if (cache == null) {
+			cache = new QuadCache();
+			component.renderCache = cache;
+			build(component, cache, screenHeight);
+		} else if (isStale(component, cache, screenHeight)) {
+			build(component, cache, screenHeight);
+		}
+		if (cache.backgroundQuads > 0) {
+			append(cache, BACKGROUND, cache.version, cache.backgroundTexture, cache.backgroundQuads);
+		}
+		if (cache.borderQuads > 0) {
+			append(cache, BORDER, cache.version, cache.borderTexture, cache.borderQuads);
+		}
+	}
+	// Queues the text of a component laid out like the BitmapText the manager would draw, returns false when the text
+	// has to be drawn by a BitmapText after all, which is the case for fonts with several pages and tabbed or tagged text
+	public boolean addText(HudComponent component, String value, int screenHeight) {
+		BitmapFont font = component.getFont();
+		if (font.getPageSize() != 1 || value.length() > MAX_QUADS || value.indexOf('\t') >= 0 || value.indexOf("\\#") >= 0) {
+			return false;
+		}
+		MatParamTexture page = font.getPage(0).getTextureParam("ColorMap");
+		if (page == null || !(page.getTextureValue() instanceof Texture2D)) {
+			return false;
+		}
+		QuadCache cache = component.renderCache;
+		if (cache == null) {
+			cache = new QuadCache();
+			component.renderCache = cache;
+			build(component, cache, screenHeight);
+		}
+		HudTextLayout layout = cache.text;
+		if (layout == null) {
+			layout = new HudTextLayout();
+			cache.text = layout;
+		}
+		// Same box the manager gives a BitmapText, inset from the edges of the component
+		layout.setFormat(font, component.getScaledFontSize(), component.getTextAlignment(), component.getTextVerticalAlignment(), component.getLineWrapMode());
+		layout.setBox(5, 1, component.getScaledWidth() - 10, component.getScaledHeight() - 2);
+		layout.setText(value);
+		int from = layout.update();
+		int quads = layout.getLength();
+		
+		int x = component.getAbsoluteX();
+		int y = screenHeight - component.getAbsoluteY();
+		HudAtlas.Region region = atlas.getRegion((Texture2D)page.getTextureValue());
+		color.set(component.getFontColor());
+		color.a *= component.getFadeAlpha();
+		if (cache.textData == null || cache.textX != x || cache.textY != y || cache.textTexture != region.getTexture()
+				|| cache.textGlobalVersion != version || !cache.textColor.equals(color)) {
+			cache.textX = x;
+			cache.textY = y;
+			cache.textTexture = region.getTexture();
+			cache.textGlobalVersion = version;
+			cache.textColor.set(color);
+			from = 0;
+		}
+		if (from < quads || quads != cache.textQuads) {
+			if (cache.textData == null || cache.textData.length < quads*QUAD_FLOATS) {
+				float[] data = new float[Math.max(quads, 16)*QUAD_FLOATS*3/2];
+				if (cache.textData != null) {
+					System.arraycopy(cache.textData, 0, data, 0, cache.textQuads*QUAD_FLOATS);
+				}
+				cache.textData = data;
+			}
+			for (int i = from; i < quads; i++) {
+				putGlyph(cache.textData, i*QUAD_FLOATS, layout, i, x, y, region);
+			}
+			cache.textQuads = quads;
+			cache.textVersion++;
+		}
+		component.setRenderedTextHeight((int)Math.ceil(layout.getHeight()));
+		if (quads > 0) {
+			append(cache, TEXT, cache.textVersion, cache.textTexture, quads);
+		}
+		return true;
+	}
+	// Draws the quads queued so far
+	public void flush() {
+		Batch batch = current;
+		current = null;
+		if (batch == null || batch.entries == 0) {
+			return;
+		}
+		if (batch.dirtyFrom < batch.entries || batch.entries != batch.lastEntries) {
+			upload(batch);
+			batch.lastEntries = batch.entries;
+		}
+		renderManager.setWorldMatrix(identity);
+		renderManager.setForcedRenderState(renderState);
+		material.setTexture("ColorMap", batch.texture);
+		material.render(batch.geom, renderManager);
+		batchCount++;
+		quadCount += batch.quads;
+	}
+	// Returns the number of batches drawn in the current frame
+	public int getBatchCount() {
+		return batchCount;
+	}
+	// Returns the number of quads drawn in the current frame
+	public int getQuadCount() {
+		return quadCount;
+	}
+	// Returns the number of components that rebuilt their quads in the current frame
+	public int getRebuildCount() {
+		return rebuildCount;
+	}
+	// Returns the number of batches that were uploaded in the current frame
+	public int getUploadCount() {
+		return uploadCount;
+	}
+	private boolean isStale(HudComponent component, QuadCache cache, int screenHeight) {
+		if (component.renderDirty || cache.globalVersion != version) {
+			return true;
+		}
+		if (cache.x != component.getAbsoluteX() || cache.y != screenHeight - component.getAbsoluteY()
+				|| cache.w != component.getScaledWidth() || cache.h != component.getScaledHeight() || cache.fade != component.getFadeAlpha()) {
+			return true;
+		}
+		Vector3f angles = component.getRotationAngles();
+		if (cache.ax != angles.x || cache.ay != angles.y || cache.az != angles.z) {
+			return true;
+		}
+		boolean background = component.hasBackground() && component.getSpatial() == null;
+		if (background != (cache.backgroundQuads > 0)) {
+			return true;
+		}
+		if (background && (cache.texture != component.getTexture() || cache.txCoords != component.getTxCoords()
+				|| cache.highlight != component.hasHighlight() || !cache.background.equals(component.getBackground()))) {
+			return true;
+		}
+		ColorRGBA borderColor = component.hasBorder() ? component.getBorderColor() : null;
+		if ((borderColor != null) != (cache.borderQuads > 0)) {
+			return true;
+		}
+		return borderColor != null && (cache.borderSize != component.getBorderSize() || !cache.border.equals(borderColor));
+	}
+	private void build(HudComponent component, QuadCache cache, int screenHeight) {
+		cache.version++;
+		cache.globalVersion = version;
+		cache.x = component.getAbsoluteX();
+		cache.y = screenHeight - component.getAbsoluteY();
+		cache.w = component.getScaledWidth();
+		cache.h = component.getScaledHeight();
+		cache.fade = component.getFadeAlpha();
+		Vector3f angles = component.getRotationAngles();
+		cache.ax = angles.x;
+		cache.ay = angles.y;
+		cache.az = angles.z;
+		component.renderDirty = false;
+		rebuildCount++;
+		
+		// Same placement as the quad drawn by the manager, before the size is applied, and the direction it faces
+		transform.loadIdentity();
+		transform.angleRotation(angles);
+		transform.setTranslation(cache.x, cache.y, 0);
+		transform.mult(Vector3f.UNIT_Z, normal);
+		normal.subtractLocal(cache.x, cache.y, 0).normalizeLocal();
+		
+		int offset = 0;
+		cache.backgroundQuads = 0;
+		cache.texture = null;
+		cache.txCoords = null;
+		if (component.hasBackground() && component.getSpatial() == null) {
+			Texture2D texture = component.getTexture();
+			float[] txCoords = component.getTxCoords();
+			cache.texture = texture;
+			cache.txCoords = txCoords;
+			cache.highlight = component.hasHighlight();
+			cache.background.set(component.getBackground());
+			color.set(cache.background);
+			color.a *= cache.fade;
+			if (texture != null && cache.highlight) {
+				// The highlight material lights a flat quad evenly, so its shading is folded into the vertex color
+				float shade = 0.2f + Math.max(0, normal.dot(light));
+				color.r *= shade;
+				color.g *= shade;
+				color.b *= shade;
+			}
+			if (texture != null && isInRange(txCoords)) {
+				HudAtlas.Region region = atlas.getRegion(texture);
+				for (int i = 0; i < 8; i += 2) {
+					uv[i] = region.mapU(txCoords[i]);
+					uv[i+1] = region.mapV(txCoords[i+1]);
+				}
+				cache.backgroundTexture = region.getTexture();
+			} else if (texture != null) {
+				// Repeating coordinates can't be mapped into an atlas page
+				System.arraycopy(txCoords, 0, uv, 0, 8);
+				cache.backgroundTexture = texture;
+			} else {
+				setWhite(atlas.getWhite());
+				cache.backgroundTexture = atlas.getWhite().getTexture();
+			}
+			putQuad(cache.data, offset, 0, 0, cache.w, cache.h);
+			offset += QUAD_FLOATS;
+			cache.backgroundQuads = 1;
+		}
+		cache.borderQuads = 0;
+		ColorRGBA borderColor = component.hasBorder() ? component.getBorderColor() : null;
+		if (borderColor != null) {
+			cache.borderSize = component.getBorderSize();
+			cache.border.set(borderColor);
+			cache.borderTexture = atlas.getWhite().getTexture();
+			color.set(borderColor);
+			color.a *= cache.fade;
+			setWhite(atlas.getWhite());
+			// Edges are centered on the outline of the component like the line strip they replace
+			float b = Math.max(1, cache.borderSize)*0.5f;
+			float w = cache.w;
+			float h = cache.h;
+			putQuad(cache.data, offset, -b, -b, w + b, b);
+			putQuad(cache.data, offset + QUAD_FLOATS, -b, h - b, w + b, h + b);
+			putQuad(cache.data, offset + QUAD_FLOATS*2, -b, b, b, h - b);
+			putQuad(cache.data, offset + QUAD_FLOATS*3, w - b, b, w + b, h - b);
+			cache.borderQuads = 4;
+		}
+	}
+	private static boolean isInRange(float[] txCoords) {
+		for (int i = 0; i < 8; i++) {
+			if (txCoords[i] < 0 || txCoords[i] > 1) {
+				return false;
+			}
+		}
+		return true;
+	}
+	private void setWhite(HudAtlas.Region white) {
+		for (int i = 0; i < 8; i += 2) {
+			uv[i] = white.mapU(0);
+			uv[i+1] = white.mapV(0);
+		}
+	}
+	// Writes the quad of a character, characters without a glyph get an empty quad so every character keeps its place
+	private void putGlyph(float[] data, int offset, HudTextLayout layout, int i, int x, int y, HudAtlas.Region region) {
+		float lx = layout.getX0(i);
+		float ly = layout.getY0(i);
+		float x0 = x + lx;
+		float y0 = y + ly;
+		if (layout.getGlyph(i) == null) {
+			for (int v = 0; v < QUAD_FLOATS; v += STRIDE) {
+				data[offset+v] = x0;
+				data[offset+v+1] = y0;
+				data[offset+v+2] = 0;
+				data[offset+v+3] = 0;
+				data[offset+v+4] = 0;
+				data[offset+v+5] = 0;
+				data[offset+v+6] = 0;
+				data[offset+v+7] = 0;
+				data[offset+v+8] = 0;
+			}
+			return;
+		}
+		float x1 = x + (lx + layout.getWidth(i));
+		float y1 = y + (ly - layout.getHeight(i));
+		// Font pages are stored upside down, as BitmapText flips the coordinates of each glyph
+		float u0 = region.mapU(layout.getU0(i));
+		float u1 = region.mapU(layout.getU1(i));
+		float v0 = region.mapV(1 - layout.getV0(i));
+		float v1 = region.mapV(1 - layout.getV1(i));
+		putGlyphVertex(data, offset, x0, y0, u0, v0);
+		putGlyphVertex(data, offset + STRIDE, x1, y0, u1, v0);
+		putGlyphVertex(data, offset + STRIDE*2, x1, y1, u1, v1);
+		putGlyphVertex(data, offset + STRIDE*3, x0, y1, u0, v1);
+	}
+	private void putGlyphVertex(float[] data, int offset, float x, float y, float u, float v) {
+		data[offset] = x;
+		data[offset+1] = y;
+		data[offset+2] = 0;
+		data[offset+3] = u;
+		data[offset+4] = v;
+		data[offset+5] = color.r;
+		data[offset+6] = color.g;
+		data[offset+7] = color.b;
+		data[offset+8] = color.a;
+	}
+	// Writes a quad spanning x0,y0 to x1,y1 in the pixels of the component, with y increasing down the screen
+	private void putQuad(float[] data, int offset, float x0, float y0, float x1, float y1) {
+		putVertex(data, offset, x0, y0, 0);
+		putVertex(data, offset + STRIDE, x1, y0, 1);
+		putVertex(data, offset + STRIDE*2, x1, y1, 2);
+		putVertex(data, offset + STRIDE*3, x0, y1, 3);
+	}
+	private void putVertex(float[] data, int offset, float x, float y, int corner) {
+		data[offset] = transform.m00*x - transform.m01*y + transform.m03;
+		data[offset+1] = transform.m10*x - transform.m11*y + transform.m13;
+		data[offset+2] = transform.m20*x - transform.m21*y + transform.m23;
+		data[offset+3] = uv[corner*2];
+		data[offset+4] = uv[corner*2+1];
+		data[offset+5] = color.r;
+		data[offset+6] = color.g;
+		data[offset+7] = color.b;
+		data[offset+8] = color.a;
+	}
+	private void append(QuadCache cache, byte part, int version, Texture2D texture, int quads) {
+		Batch batch = current;
+		if (batch != null && (batch.texture != texture || batch.quads + quads > MAX_QUADS)) {
+			flush();
+			batch = null;
+		}
+		if (batch == null) {
+			if (batchIndex == batches.size()) {
+				batches.add(new Batch());
+			}
+			batch = batches.get(batchIndex++);
+			batch.dirtyFrom = Integer.MAX_VALUE;
+			if (batch.texture != texture) {
+				batch.texture = texture;
+				batch.dirtyFrom = 0;
+			}
+			batch.entries = 0;
+			batch.quads = 0;
+			current = batch;
+		}
+		int i = batch.entries;
+		if (i == batch.caches.length) {
+			int size = i*2;
+			QuadCache[] caches = new QuadCache[size];
+			int[] versions = new int[size];
+			byte[] parts = new byte[size];
+			int[] starts = new int[size];
+			System.arraycopy(batch.caches, 0, caches, 0, i);
+			System.arraycopy(batch.versions, 0, versions, 0, i);
+			System.arraycopy(batch.parts, 0, parts, 0, i);
+			System.arraycopy(batch.starts, 0, starts, 0, i);
+			batch.caches = caches;
+			batch.versions = versions;
+			batch.parts = parts;
+			batch.starts = starts;
+		}
+		if (i >= batch.lastEntries || batch.caches[i] != cache || batch.versions[i] != version || batch.parts[i] != part) {
+			batch.caches[i] = cache;
+			batch.versions[i] = version;
+			batch.parts[i] = part;
+			batch.dirtyFrom = Math.min(batch.dirtyFrom, i);
+		}
+		batch.starts[i] = batch.quads;
+		batch.entries++;
+		batch.quads += quads;
+	}
+	// Copies the quads of a batch into its mesh, the entries before the first changed one are already in place
+	private void upload(Batch batch) {
+		if (batch.quads > batch.capacity) {
+			allocate(batch, Math.min(MAX_QUADS, Math.max(batch.quads, batch.capacity*2)));
+			batch.dirtyFrom = 0;
+		}
+		int first = Math.min(batch.dirtyFrom, batch.entries);
+		int quad = (first < batch.entries) ? batch.starts[first] : batch.quads;
+		batch.positions.clear();
+		batch.texCoords.clear();
+		batch.colors.clear();
+		batch.positions.position(quad*12);
+		batch.texCoords.position(quad*8);
+		batch.colors.position(quad*16);
+		for (int i = first; i < batch.entries; i++) {
+			QuadCache cache = batch.caches[i];
+			float[] data = cache.data;
+			int start = 0;
+			int end;
+			if (batch.parts[i] == TEXT) {
+				data = cache.textData;
+				end = cache.textQuads*QUAD_FLOATS;
+			} else if (batch.parts[i] == BORDER) {
+				start = cache.backgroundQuads*QUAD_FLOATS;
+				end = start + cache.borderQuads*QUAD_FLOATS;
+			} else {
+				end = cache.backgroundQuads*QUAD_FLOATS;
+			}
+			for (int v = start; v < end; v += STRIDE) {
+				batch.positions.put(data, v, 3);
+				batch.texCoords.put(data, v + 3, 2);
+				batch.colors.put(data, v + 5, 4);
+			}
+		}
+		batch.positions.flip();
+		batch.texCoords.flip();
+		batch.colors.flip();
+		batch.indices.limit(batch.quads*6);
+		batch.mesh.getBuffer(Type.Position).updateData(batch.positions);
+		batch.mesh.getBuffer(Type.TexCoord).updateData(batch.texCoords);
+		batch.mesh.getBuffer(Type.Color).updateData(batch.colors);
+		batch.mesh.getBuffer(Type.Index).updateData(batch.indices);
+		batch.mesh.updateCounts();
+		batch.dirtyFrom = Integer.MAX_VALUE;
+		uploadCount++;
+	}
+	private void allocate(Batch batch, int quads) {
+		batch.capacity = quads;
+		batch.positions = BufferUtils.createFloatBuffer(quads*12);
+		batch.texCoords = BufferUtils.createFloatBuffer(quads*8);
+		batch.colors = BufferUtils.createFloatBuffer(quads*16);
+		batch.indices = BufferUtils.createShortBuffer(quads*6);
+		// Same winding as a quad with a negative height
+		for (int q = 0; q < quads; q++) {
+			short v = (short)(q*4);
+			batch.indices.put(v).put((short)(v + 2)).put((short)(v + 1));
+			batch.indices.put(v).put((short)(v + 3)).put((short)(v + 2));
+		}
+		batch.indices.flip();
+		if (batch.mesh.getBuffer(Type.Position) == null) {
+			setupBuffer(batch.mesh, Type.Position, 3, Format.Float, batch.positions);
+			setupBuffer(batch.mesh, Type.TexCoord, 2, Format.Float, batch.texCoords);
+			setupBuffer(batch.mesh, Type.Color, 4, Format.Float, batch.colors);
+			setupBuffer(batch.mesh, Type.Index, 3, Format.UnsignedShort, batch.indices);
+		}
+	}
+	private static void setupBuffer(Mesh mesh, Type type, int components, Format format, Buffer data) {
+		VertexBuffer buffer = new VertexBuffer(type);
+		buffer.setupData(Usage.Stream, components, format, data);
+		mesh.setBuffer(buffer);
+	}
+}
@@ -117,6 +117,13 @@ public class HudComponent implements Comparable<HudComponent> {
 	protected boolean inheritScale;
 	protected boolean renderBackground;
 	protected boolean renderText;
+	protected boolean renderDirty;
+	protected boolean layoutDirty = true;
+	protected boolean childLayoutDirty;
+	protected boolean layoutForced = true;
+	protected int layoutWidth;
+	protected int layoutHeight;
+	protected HudBatchRenderer.QuadCache renderCache;
 
 	public static class ClipArea {
 		int x, y, w, h;
@@ -178,7 +185,10 @@ public class HudComponent implements Comparable<HudComponent> {
 	}
 	// Sets the component visible so that it will be rendered
 	public void setVisible(boolean visible) {
-		this.visible = visible;
+		if (this.visible != visible) {
+			this.visible = visible;
+			invalidateLayout();
+		}
 		this.fadeAlpha = 1f;
 	}
 	// Toggles the current visibilty state
@@ -238,7 +248,10 @@ public class HudComponent implements Comparable<HudComponent> {
 	}
 	// Sets the parent of this component
 	public void setParent(HudComponent parent) {
-		this.parent = parent;
+		if (this.parent != parent) {
+			this.parent = parent;
+			invalidateLayout();
+		}
 	}
 	// Returns true if the contents of this component need to be clipped
 	public boolean hasClip() {
@@ -258,11 +271,15 @@ public class HudComponent implements Comparable<HudComponent> {
 	}
 	// Sets the rendering style for this component
 	public void setStyle(HudStyle style) {
+		HudStyle previous = this.style;
 		if (style == null) {
 			this.style = DEFAULT_STYLE;
 		} else {
 			this.style = style;
 		}
+		if (this.style != previous) {
+			invalidateLayout();
+		}
 	}
 	// Returns true if this component has a background to render
 	public boolean hasBackground() {
@@ -373,6 +390,10 @@ public class HudComponent implements Comparable<HudComponent> {
 	public void setHighlight(boolean highlight) {
 		this.highlight = highlight;
 	}
+	// Flags the quads of this component to be rebuilt, needed when a texture or coordinate array is changed in place
+	public void markDirty() {
+		this.renderDirty = true;
+	}
 	public void setRenderedTextHeight(int renderedHeight) {
 	}
 
@@ -407,32 +428,77 @@ public class HudComponent implements Comparable<HudComponent> {
 		return ((w < x || w > nx) && (h < y || h > ny));
 	}
 	public void setHorizontalAlignment(int align, int dx) {
-		this.xOrient = align;
-		this.insets[LEFT] = dx;
-		this.insets[RIGHT] = dx;
+		if (xOrient != align || insets[LEFT] != dx || insets[RIGHT] != dx) {
+			this.xOrient = align;
+			this.insets[LEFT] = dx;
+			this.insets[RIGHT] = dx;
+			invalidateLayout();
+		}
 	}
 	public void setVerticalAlignment(int align, int dy) {
-		this.yOrient = align;
-		this.insets[BOTTOM] = dy;
-		this.insets[TOP] = dy;
+		if (yOrient != align || insets[BOTTOM] != dy || insets[TOP] != dy) {
+			this.yOrient = align;
+			this.insets[BOTTOM] = dy;
+			this.insets[TOP] = dy;
+			invalidateLayout();
+		}
 	}
 	public void setCentered() {
-		this.xOrient = CENTERED;
-		this.yOrient = CENTERED;
+		if (xOrient != CENTERED || yOrient != CENTERED) {
+			this.xOrient = CENTERED;
+			this.yOrient = CENTERED;
+			invalidateLayout();
+		}
 	}
 	public void setAbsolute() {
-		this.xOrient = ABSOLUTE;
-		this.yOrient = ABSOLUTE;
+		if (xOrient != ABSOLUTE || yOrient != ABSOLUTE) {
+			this.xOrient = ABSOLUTE;
+			this.yOrient = ABSOLUTE;
+			invalidateLayout();
+		}
 	}
 	public void setRelative() {
-		this.xOrient = RELATIVE;
-		this.yOrient = RELATIVE;
+		if (xOrient != RELATIVE || yOrient != RELATIVE) {
+			this.xOrient = RELATIVE;
+			this.yOrient = RELATIVE;
+			invalidateLayout();
+		}
 	}
 	public void setCenterLocally() {
-		this.xOrient = LOCAL_CENTER;
-		this.yOrient = LOCAL_CENTER;
+		if (xOrient != LOCAL_CENTER || yOrient != LOCAL_CENTER) {
+			this.xOrient = LOCAL_CENTER;
+			this.yOrient = LOCAL_CENTER;
+			invalidateLayout();
+		}
 	}
 	
+	// Lays out this component if it changed, its parent was resized or something below it changed since the last pass
+	public void layout(int parentWidth, int parentHeight, boolean force) {
+		boolean changed = force || layoutDirty || parentWidth != layoutWidth || parentHeight != layoutHeight;
+		if (changed || childLayoutDirty) {
+			layoutDirty = false;
+			childLayoutDirty = false;
+			layoutWidth = parentWidth;
+			layoutHeight = parentHeight;
+			// Children that haven't changed are skipped unless this component changed itself
+			layoutForced = changed;
+			doLayout(parentWidth, parentHeight);
+			layoutForced = true;
+		}
+	}
+	// Flags this component and everything below it to be laid out on the next pass
+	public void invalidateLayout() {
+		layoutDirty = true;
+		if (parent != null) {
+			parent.invalidateChildLayout();
+		}
+	}
+	// Flags this component and its ancestors so the next pass reaches a changed child
+	public void invalidateChildLayout() {
+		for (HudComponent c = this; c != null; c = c.parent) {
+			c.childLayoutDirty = true;
+		}
+	}
 	// Update the Hud components position given it parents dimensions
 	public void doLayout(int parentWidth, int parentHeight) {
 	}
@@ -449,6 +515,7 @@ public class HudComponent implements Comparable<HudComponent> {
 			this.speed = speed;
 			this.fadeAlpha = 1f;
 			this.zoomLevel = 1f;
+			invalidateLayout();
 			zooming = ZOOM_OUT;
 			fading = FADE_OUT;
 		}
@@ -462,6 +529,7 @@ public class HudComponent implements Comparable<HudComponent> {
 	public void zoomOut(float speed) {
 		this.speed = speed;
 		this.zoomLevel = 1f;
+		invalidateLayout();
 		if (visible) {
 			zooming = ZOOM_OUT;
 		}
@@ -505,17 +573,17 @@ public class HudComponent implements Comparable<HudComponent> {
 			setFadeAlpha(fadeAlpha);
 		}
 		if (zooming != ZOOM_NONE) {
-			zoomLevel = zoomLevel + (float)(tpf*speed*zooming);
-			if (zoomLevel < 0) {
+			float zoom = zoomLevel + (float)(tpf*speed*zooming);
+			if (zoom < 0) {
 				zooming = ZOOM_NONE;
 				setVisible(false);
-				zoomLevel = 1f;
+				zoom = 1f;
 			}
-			if (zoomLevel > 1f) {
-				zoomLevel = 1f;
+			if (zoom > 1f) {
+				zoom = 1f;
 				zooming = ZOOM_NONE;
 			}
-			setZoomLevel(zoomLevel);
+			setZoomLevel(zoom);
 		}
 	}
 	public boolean receiveInput(String command, float value) {
@@ -596,36 +664,62 @@ public class HudComponent implements Comparable<HudComponent> {
 	/* CONVENIENCE METHODS */
 	// Sets the location of the underlying hud component in local coordinate space
 	public void setX(int x) {
-		this.x = x;
+		if (this.x != x) {
+			this.x = x;
+			invalidateLayout();
+		}
 	}
 	public void setY(int y) {
-		this.y = y;
+		if (this.y != y) {
+			this.y = y;
+			invalidateLayout();
+		}
 	}
 	public void setZ(int z) {
-		this.z = z;
+		if (this.z != z) {
+			this.z = z;
+			if (parent instanceof HudContainer) {
+				((HudContainer)parent).invalidateOrder();
+			}
+		}
 	}
 	public void setLocation(int x, int y) {
-		this.x = x;
-		this.y = y;
+		if (this.x != x || this.y != y) {
+			this.x = x;
+			this.y = y;
+			invalidateLayout();
+		}
 	}
 	// Sets the dimensions of the hud component
 	public void setSize(int width, int height) {
-		this.width = width;
-		this.height = height;
+		if (this.width != width || this.height != height) {
+			this.width = width;
+			this.height = height;
+			invalidateLayout();
+		}
 	}
 	// Sets the dimensions of the hud component
 	public void setWidth(int width) {
-		this.width = width;
+		if (this.width != width) {
+			this.width = width;
+			invalidateLayout();
+		}
 	}
 	// Sets the dimensions of the hud component
 	public void setHeight(int height) {
-		this.height = height;
+		if (this.height != height) {
+			this.height = height;
+			invalidateLayout();
+		}
 	}
 	public boolean isZooming() {
 		return zooming != ZOOM_NONE;
 	}
 	public void setZoomLevel(float zoomLevel) {
-		this.zoomLevel = zoomLevel;
+		if (this.zoomLevel != zoomLevel) {
+			this.zoomLevel = zoomLevel;
+			invalidateLayout();
+		}
 	}
 	public float getZoomLevel() {
 		return zoomLevel;
@@ -638,6 +732,7 @@ public class HudComponent implements Comparable<HudComponent> {
 	}
 	public void setTxCoords(float[] txCoords) {
 		this.txCoords = txCoords;
+		markDirty();
 	}
 	public float[] getTxCoords() {
 		return txCoords;
@@ -656,13 +751,22 @@ public class HudComponent implements Comparable<HudComponent> {
 		return inheritHeight;
 	}
 	public void setInheritWidth(boolean value) {
-		this.inheritWidth = value;
+		if (inheritWidth != value) {
+			this.inheritWidth = value;
+			invalidateLayout();
+		}
 	}
 	public void setInheritHeight(boolean value) {
-		this.inheritHeight = value;
+		if (inheritHeight != value) {
+			this.inheritHeight = value;
+			invalidateLayout();
+		}
 	}
 	public void setInheritScale(boolean value) {
-		this.inheritScale = value;
+		if (inheritScale != value) {
+			this.inheritScale = value;
+			invalidateLayout();
+		}
 	}
 	public float getScale() {
 		if (inheritScale && hasParent()) {
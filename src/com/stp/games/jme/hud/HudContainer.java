@@ -46,6 +46,7 @@ public class HudContainer extends HudComponent {
 	protected HudComponent lastFocus;
 	protected int layout = ARBITRARY;
 	protected int lastZ;
+	protected boolean orderDirty = true;
 	
 	public HudContainer(String name) {
 		this (name, 0, 0);
@@ -61,10 +62,19 @@ public class HudContainer extends HudComponent {
 	public ArrayList<HudComponent> getChildren() {
 		return components;
 	}
+	// Returns the children ordered by their z index, the order is only sorted again after it has changed
 	public List<HudComponent> getRenderList() {
-		List<HudComponent> renderList = components.subList(0, components.size());
-		Collections.sort(renderList);
-		return renderList;
+		if (orderDirty) {
+			Collections.sort(components);
+			orderDirty = false;
+			// List layouts place children in this order
+			invalidateChildLayout();
+		}
+		return components;
+	}
+	// Flags the render order to be sorted before it's next used
+	public void invalidateOrder() {
+		this.orderDirty = true;
 	}
 	// Returns the child component at the specified index
 	public HudComponent getChildAt(int index) {
@@ -101,6 +111,8 @@ public class HudContainer extends HudComponent {
 		components.add(component);
 		component.setParent(this);
 		component.setZ(zIndex);
+		invalidateOrder();
+		invalidateChildLayout();
 		updateLayout();
 	}
 	// Returns the number of child components in the container
@@ -112,6 +124,7 @@ public class HudContainer extends HudComponent {
 		HudComponent component = components.remove(index);
 		if (component != null) {
 			component.setParent(null);
+			invalidateChildLayout();
 			updateLayout();
 		}
 	}
@@ -119,6 +132,7 @@ public class HudContainer extends HudComponent {
 	public void remove(HudComponent component) {
 		components.remove(component);
 		component.setParent(null);
+		invalidateChildLayout();
 		updateLayout();
 	}
 	// Remove any child components that do not have their parent value set
@@ -128,6 +142,7 @@ public class HudContainer extends HudComponent {
 				components.remove(c);
 			}
 		}
+		invalidateChildLayout();
 		updateLayout();
 	}
 	// Remove all components from this container first setting their parent value to null
@@ -136,12 +151,14 @@ public class HudContainer extends HudComponent {
 			c.setParent(null);
 		}
 		components.clear();
+		invalidateChildLayout();
 	}
 	// Abstract method for updating any elements that may have change due to external influences
 	public void updateView() {
 	}
 	public void setLayoutMode(int layout) {
 		this.layout = layout;
+		invalidateLayout();
 		updateLayout();
 	}
 	public void updateLayout() {
@@ -206,7 +223,7 @@ public class HudContainer extends HudComponent {
 		super.doLayout(parentWidth, parentHeight);
 		//Collections.sort(components);
 		for (HudComponent c : components) {
-			c.doLayout(getWidth(), getHeight());
+			c.layout(getWidth(), getHeight(), layoutForced);
 		}
 		updateLayout();
 	}
@@ -102,6 +102,8 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 	protected Material vertexColorMaterial;
 	protected Material shapeColorMaterial;
 	protected ColorRGBA renderColor;
+	protected HudBatchRenderer batchRenderer;
+	protected boolean batchRendering;
 	private Matrix4f tempMat = new Matrix4f();
 	private final Quad quad = new Quad(1, -1, true);
     private final Geometry quadGeom = new Geometry("gui-quad", quad);
@@ -142,6 +144,7 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 	protected HudLoadingOverlay loadingScreen;
 	protected boolean dragInitiated;
 	protected boolean softKeysEnabled;
+	private int styleModCount = -1;
 
 	private static class CachedTextKey {
 		BitmapFont font;
@@ -194,6 +197,10 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 		borderMesh.setMode(Mesh.Mode.LineStrip);
 		borderGeom = new Geometry("gui-border", borderMesh);
 		
+		// Renderer that merges component quads into batches sampling a shared atlas
+		batchRenderer = new HudBatchRenderer(assetManager, new HudAtlas());
+		batchRendering = true;
+		
         // Material with a single color (no texture or vertex color)
 		renderColor = new ColorRGBA(1, 1, 1, 1);
         colorMaterial = new Material(assetManager, "Common/MatDefs/Misc/Unshaded.j3md");
@@ -422,8 +429,11 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 		innerBoundMax.set(mouse.x + 80, mouse.y + 80);
 		initialized = true;
 	}
+	// Lays out the components that changed since the last frame, or all of them after a style was modified
 	public void update() {
-		root.doLayout(width, height);
+		int styleChanges = HudStyle.getModCount();
+		root.layout(width, height, styleChanges != styleModCount);
+		styleModCount = styleChanges;
 	}
 	public boolean isInitialized() {
 		return initialized;
@@ -432,12 +442,14 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 		renderManager.setCamera(view.getCamera(), true);
 
 		popups.clear();
-		render(source);
+		beginRender();
+		renderComponent(source);
 		// Render Popups
 		Collections.sort(popups);
 		for (HudComponent c : popups) {
-			render(c);
+			renderComponent(c);
 		}
+		endRender();
 
 		HashMap<CachedTextKey, BitmapText> temp = textCacheLastFrame;
 		textCacheLastFrame = textCacheCurrentFrame;
@@ -455,15 +467,17 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 		renderManager.setCamera(vp.getCamera(), true);
 
 		popups.clear();
-		render(root);
+		beginRender();
+		renderComponent(root);
 		// Render Popups
 		Collections.sort(popups);
 		for (HudComponent c : popups) {
-			render(c);
+			renderComponent(c);
 		}
 		// Render Cursor
-		render(dragItem);
-		render(cursor);
+		renderComponent(dragItem);
+		renderComponent(cursor);
+		endRender();
 
 		HashMap<CachedTextKey, BitmapText> temp = textCacheLastFrame;
 		textCacheLastFrame = textCacheCurrentFrame;
@@ -489,6 +503,72 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 			}
 		}
 	}
+	// Enables merging component quads into batches, when disabled every component is drawn on its own
+	public void setBatchRendering(boolean batchRendering) {
+		this.batchRendering = batchRendering;
+	}
+	public boolean isBatchRendering() {
+		return batchRendering;
+	}
+	public HudBatchRenderer getBatchRenderer() {
+		return batchRenderer;
+	}
+	private void beginRender() {
+		if (batchRendering) {
+			batchRenderer.begin(renderManager, renderState);
+		}
+	}
+	private void endRender() {
+		if (batchRendering) {
+			batchRenderer.end();
+		}
+	}
+	private void renderComponent(HudComponent component) {
+		if (batchRendering) {
+			renderBatched(component);
+		} else {
+			render(component);
+		}
+	}
+	// Queues the quads of a component with the batch renderer, flushing them before anything drawn on its own
+	private void renderBatched(HudComponent component) {
+		// Verify the component is visible and should be rendered
+		if (component.isVisible()) {
+			// Determine if the contents of the component needs to be cliped
+			if (component.hasClip()) {
+				batchRenderer.flush();
+				HudComponent.ClipArea clip = component.getClip();
+				renderer.setClipRect(clip.x, getScreenHeight() - clip.y, clip.w, clip.h);
+			}
+			// Render the components 3D object if it has one
+			if (component.hasBackground() && component.getSpatial() != null) {
+				batchRenderer.flush();
+				renderSpatial(component);
+			}
+			batchRenderer.add(component, getScreenHeight());
+			// Render the components text if it has any, in the same batch when its font allows it
+			if (component.getTextValue().length() > 0 && component.hasText()) {
+				if (!batchRenderer.addText(component, getDisplayText(component), getScreenHeight())) {
+					batchRenderer.flush();
+					renderText(component);
+				}
+			}
+			// Render Children
+			if (component instanceof HudContainer) {
+				for (HudComponent c : ((HudContainer)component).getRenderList()) {
+					if (c.isPopup()) {
+						popups.add(c);
+					} else {
+						renderBatched(c);
+					}
+				}
+			}
+			if (component.hasClip()) {
+				batchRenderer.flush();
+				renderer.clearClipRect();
+			}
+		}
+	}
 	private void render(HudComponent component) {
 		// Verify the component is visible and should be rendered
 		if (component.isVisible()) {
@@ -514,9 +594,7 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 				renderColor.a = renderColor.getAlpha() * component.getFadeAlpha();
 				// Render the components 3D object if it has one
 				if (spatial != null) {
-					renderManager.setForcedRenderState(RenderState.DEFAULT);
-					highlightColorMaterial.setColor("Color", renderColor);
-					spatial.depthFirstTraversal(this);
+					renderSpatial(component);
 				/*Geometry shape = component.getGeometry();
 				if (shape != null) {
 					renderManager.setForcedRenderState(null);
@@ -564,46 +642,7 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 				colorMaterial.setColor("Color", renderColor);
 				colorMaterial.render(borderGeom, renderManager);
 			}
-			String textValue = component.getTextValue();
-			// Render the components text if it has any
-			if (textValue.length() > 0 && component.hasText()) {
-				// Determine if the text needs to be obscured
-				if (component.isTextObscured()) {
-					textValue = OBSCURED_SAMPLE.substring(0, textValue.length());
-				}
-				// Store text conent to be used in future frames while it remains visible
-				CachedTextKey key = new CachedTextKey(component.getFont(), textValue);
-				BitmapText text = textCacheLastFrame.get(key);
-				if (text == null) {
-					text = new BitmapText(component.getFont());
-					text.setText(textValue);
-					text.updateLogicalState(0);
-				}
-				textCacheCurrentFrame.put(key, text);
-				
-				tempMat.loadIdentity();
-				tempMat.setTranslation(component.getAbsoluteX(), getScreenHeight() - component.getAbsoluteY(), 0);
-				//tempMat.setScale(component.getWidth(), component.getHeight(), 0);
-
-				renderManager.setWorldMatrix(tempMat);
-				renderManager.setForcedRenderState(renderState);
-				renderColor.set(component.getFontColor());
-				renderColor.a = renderColor.getAlpha() * component.getFadeAlpha();
-				
-				text.setColor(renderColor);
-				text.setBox(new Rectangle(5, 1, component.getScaledWidth()-10, component.getScaledHeight()-2));
-				text.setSize(component.getScaledFontSize());
-				text.setAlignment(component.getTextAlignment());
-				text.setVerticalAlignment(component.getTextVerticalAlignment());
-				text.setLineWrapMode(component.getLineWrapMode());
-				text.updateLogicalState(0);
-				text.render(renderManager, renderColor);
-				component.setRenderedTextHeight((int)Math.ceil(text.getHeight()));
-				//if (hudText.showCaret) {
-					//colorMaterial.setColor("Color", component.getBackground());
-					//colorMaterial.render(quadGeom, renderManager);
-				//}
-			}
+			renderText(component);
 			// Render Children
 			if (component instanceof HudContainer) {
 				for (HudComponent c : ((HudContainer)component).getRenderList()) {
@@ -619,6 +658,65 @@ public class HudManager implements SceneProcessor,SceneGraphVisitor,AnalogListen
 			}
 		}
 	}
+	// Renders the components 3D object in place of its background
+	private void renderSpatial(HudComponent component) {
+		renderColor.set(component.getBackground());
+		renderColor.a = renderColor.getAlpha() * component.getFadeAlpha();
+		tempMat.loadIdentity();
+		tempMat.angleRotation(component.getRotationAngles());
+		tempMat.setTranslation(component.getAbsoluteX(), getScreenHeight() - component.getAbsoluteY(), 0);
+		tempMat.setScale(component.getScaledWidth(), component.getScaledHeight(), component.getScaledDepth());
+		renderManager.setWorldMatrix(tempMat);
+		renderManager.setForcedRenderState(RenderState.DEFAULT);
+		highlightColorMaterial.setColor("Color", renderColor);
+		component.getSpatial().depthFirstTraversal(this);
+	}
+	// Returns the text to draw for a component, obscured if it shouldn't be shown
+	private String getDisplayText(HudComponent component) {
+		String textValue = component.getTextValue();
+		if (component.isTextObscured()) {
+			textValue = OBSCURED_SAMPLE.substring(0, textValue.length());
+		}
+		return textValue;
+	}
+	// Renders the components text if it has any
+	private void renderText(HudComponent component) {
+		if (component.getTextValue().length() > 0 && component.hasText()) {
+			String textValue = getDisplayText(component);
+			// Store text conent to be used in future frames while it remains visible
+			CachedTextKey key = new CachedTextKey(component.getFont(), textValue);
+			BitmapText text = textCacheLastFrame.get(key);
+			if (text == null) {
+				text = new BitmapText(component.getFont());
+				text.setText(textValue);
+				text.updateLogicalState(0);
+			}
+			textCacheCurrentFrame.put(key, text);
+			
+			tempMat.loadIdentity();
+			tempMat.setTranslation(component.getAbsoluteX(), getScreenHeight() - component.getAbsoluteY(), 0);
+			//tempMat.setScale(component.getWidth(), component.getHeight(), 0);
+
+			renderManager.setWorldMatrix(tempMat);
+			renderManager.setForcedRenderState(renderState);
+			renderColor.set(component.getFontColor());
+			renderColor.a = renderColor.getAlpha() * component.getFadeAlpha();
+			
+			text.setColor(renderColor);
+			text.setBox(new Rectangle(5, 1, component.getScaledWidth()-10, component.getScaledHeight()-2));
+			text.setSize(component.getScaledFontSize());
+			text.setAlignment(component.getTextAlignment());
+			text.setVerticalAlignment(component.getTextVerticalAlignment());
+			text.setLineWrapMode(component.getLineWrapMode());
+			text.updateLogicalState(0);
+			text.render(renderManager, renderColor);
+			component.setRenderedTextHeight((int)Math.ceil(text.getHeight()));
+			//if (hudText.showCaret) {
+				//colorMaterial.setColor("Color", component.getBackground());
+				//colorMaterial.render(quadGeom, renderManager);
+			//}
+		}
+	}
 	public void add(HudComponent component) {
 		root.add(component);
 	}
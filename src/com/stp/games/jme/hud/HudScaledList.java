@@ -52,6 +52,8 @@ public class HudScaledList extends HudContainer {
 		components.add(getChildCount() - 1, item);
 		item.setParent(this);
 		item.setZ(lastZ);
+		invalidateOrder();
+		invalidateChildLayout();
 		updateLayout();
 		lastZ++;
 	}
@@ -71,6 +71,8 @@ public class HudStyle implements XMLObject {
 	protected int width;
 	protected int height;
 	protected float scale = 1f;
+	// Counts changes made to any style so components laid out with the old values can be refreshed
+	protected static int modCount;
 	
 	public HudStyle() {
 	}
@@ -107,7 +109,10 @@ public class HudStyle implements XMLObject {
 		this.name = name;
 	}
 	public HudStyle setScale(float scale) {
-		this.scale = scale;
+		if (this.scale != scale) {
+			this.scale = scale;
+			modCount++;
+		}
 		return this;
 	}
 	public HudStyle setBackground(Texture2D texture, ColorRGBA baseColor, ColorRGBA activeColor) {
@@ -131,8 +136,11 @@ public class HudStyle implements XMLObject {
 		return this;
 	}
 	public HudStyle setSize(int width, int height, float widthFactor, float heightFactor) {
-		this.width = width;
-		this.height = height;
+		if (this.width != width || this.height != height) {
+			this.width = width;
+			this.height = height;
+			modCount++;
+		}
 		put("widthFactor", widthFactor);
 		put("heightFactor", heightFactor);
 		return this;
@@ -145,6 +153,7 @@ public class HudStyle implements XMLObject {
 		this.width = other.getWidth();
 		this.height = other.getHeight();
 		this.scale = other.getScale();
+		modCount++;
 		return this;
 	}
 	public HudStyle createCopy(String name) {
@@ -164,11 +173,16 @@ public class HudStyle implements XMLObject {
 	public void put(String key, Object value) {
 		for (Property p : properties) {
 			if (p.getKey().equals(key)) {
+				// Values written back unchanged every layout, like scroll bar factors, don't count as a change
+				if (value == null ? p.getValue() != null : !value.equals(p.getValue())) {
+					modCount++;
+				}
 				p.setValue(value);
 				return;
 			}
 		}
 		properties.add(new Property(key, value));
+		modCount++;
 	}
 	public int getSize() {
 		return properties.size();
@@ -180,6 +194,7 @@ public class HudStyle implements XMLObject {
 		for (int p = 0; p < properties.size(); p++) {
 			if (properties.get(p).getKey().equals(key)) {
 				properties.remove(p);
+				modCount++;
 				return;
 			}
 		}
@@ -244,6 +259,10 @@ public class HudStyle implements XMLObject {
 	public float getScale() {
 		return scale;
 	}
+	// Returns the number of changes made to all styles so far
+	public static int getModCount() {
+		return modCount;
+	}
 	public String[] getPropertyNames() {
 		String[] nodeNames = new String[properties.size()+4];
 		nodeNames[0] = "name";
@@ -278,10 +297,13 @@ public class HudStyle implements XMLObject {
 			this.name = "" + value;
 		} else if (nodeName.equals("scale")) {
 			this.scale = (value instanceof Float) ? (Float)value : 0f;
+			modCount++;
 		} else if (nodeName.equals("width")) {
 			this.width = (value instanceof Integer) ? (Integer)value : 0;
+			modCount++;
 		} else if (nodeName.equals("height")) {
 			this.height = (value instanceof Integer) ? (Integer)value : 0;
+			modCount++;
 		} else if (className.equals("TextureKey")) {
 			put(nodeName, HudManager.getInstance().loadTexture2D("" + value));
 		} else if (className.equals("ColorRGBA")) {
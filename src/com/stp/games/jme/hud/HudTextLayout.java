@@ -0,0 +1,478 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.hud;
+// JME3 Dependencies
+import com.jme3.font.BitmapCharacter;
+import com.jme3.font.BitmapCharacterSet;
+import com.jme3.font.BitmapFont;
+import com.jme3.font.LineWrapMode;
+
+/* Keeps the glyph layout of a piece of hud text between frames so it can be updated in place.
+ * Characters are placed the same way a BitmapText lays them out, including kerning, wrapping, ellipsis, clipping
+ * and alignment, but when the text changes only the lines from the first changed character on are laid out again.
+ * Appending to the end of a long log only lays out its last line. Every character owns one quad, characters
+ * without a glyph get an empty one, so the quads before the first changed line never move. */
+public class HudTextLayout {
+	public static final int ELLIPSIS_CHAR = 0x2026;
+	
+	private BitmapFont font;
+	private float size;
+	private BitmapFont.Align align = BitmapFont.Align.Left;
+	private BitmapFont.VAlign vAlign = BitmapFont.VAlign.Top;
+	private LineWrapMode wrapMode = LineWrapMode.NoWrap;
+	private float boxX, boxY, boxWidth, boxHeight;
+	private char[] text = new char[16];
+	private int length;
+	
+	// Placement of each character, positions are relative to the component with y increasing up the screen
+	private BitmapCharacter[] glyphs = new BitmapCharacter[16];
+	private float[] x0 = new float[16];
+	private float[] y0 = new float[16];
+	private float[] width = new float[16];
+	private float[] height = new float[16];
+	private float[] advance = new float[16];
+	private float[] lineY = new float[16];
+	private float[] u1 = new float[16];
+	private float[] alignX = new float[16];
+	private boolean[] lineEnd = new boolean[16];
+	private boolean[] overflow = new boolean[16];
+	private int[] lines = new int[16];
+	private int[] wrapTrigger = new int[16];
+	private boolean headEnd;
+	private float alignY;
+	private int lineCount = 1;
+	
+	// Number of leading characters whose layout is still valid, and the first quad changed since the last clear
+	private int valid;
+	private boolean alignValid;
+	private int changedFrom;
+	
+	// Layout values of the current font and size
+	private BitmapCharacterSet charSet;
+	private float scale;
+	
+	// Sets how the text is drawn, returns true if anything changed
+	public boolean setFormat(BitmapFont font, float size, BitmapFont.Align align, BitmapFont.VAlign vAlign, LineWrapMode wrapMode) {
+		if (this.font == font && this.size == size && this.align == align && this.vAlign == vAlign && this.wrapMode == wrapMode) {
+			return false;
+		}
+		if (this.font != font || this.size != size || this.wrapMode != wrapMode) {
+			valid = 0;
+		}
+		this.font = font;
+		this.size = size;
+		this.align = align;
+		this.vAlign = vAlign;
+		this.wrapMode = wrapMode;
+		alignValid = false;
+		return true;
+	}
+	// Sets the box the text is wrapped and aligned in, returns true if anything changed
+	public boolean setBox(float x, float y, float w, float h) {
+		if (boxX == x && boxY == y && boxWidth == w && boxHeight == h) {
+			return false;
+		}
+		if (boxX != x || boxY != y || boxWidth != w) {
+			valid = 0;
+		}
+		boxX = x;
+		boxY = y;
+		boxWidth = w;
+		boxHeight = h;
+		alignValid = false;
+		return true;
+	}
+	// Sets the text to lay out, returns true if it differs from the current text
+	public boolean setText(CharSequence value) {
+		int n = value.length();
+		int same = 0;
+		int common = Math.min(n, length);
+		while (same < common && text[same] == value.charAt(same)) {
+			same++;
+		}
+		if (same == n && n == length) {
+			return false;
+		}
+		ensureCapacity(n);
+		for (int i = same; i < n; i++) {
+			text[i] = value.charAt(i);
+		}
+		length = n;
+		if (same == n) {
+			// Cutting characters off the end can bring back ones a wrap, ellipsis or clip moved or hid
+			valid = Math.min(valid, Math.max(0, n - 1));
+			if (n == 0) {
+				headEnd = false;
+				lineCount = 1;
+				changedFrom = 0;
+			}
+		} else {
+			valid = Math.min(valid, same);
+		}
+		alignValid = false;
+		return true;
+	}
+	// Lays out whatever changed since the last call, returns the first quad that changed or the length if none did
+	public int update() {
+		if (valid < length) {
+			layout(getRestart());
+			alignValid = false;
+		}
+		if (!alignValid) {
+			align();
+			alignValid = true;
+		}
+		int from = changedFrom;
+		changedFrom = Integer.MAX_VALUE;
+		return Math.min(from, length);
+	}
+	public BitmapFont getFont() {
+		return font;
+	}
+	public int getLength() {
+		return length;
+	}
+	public int getLineCount() {
+		return lineCount;
+	}
+	// Returns the height BitmapText reports for the same text
+	public float getHeight() {
+		float lineHeight = font != null ? font.getCharSet().getLineHeight()*(size/font.getCharSet().getRenderedSize()) : 0;
+		return Math.max(lineHeight*lineCount, boxHeight);
+	}
+	// Returns the glyph drawn for a character, null if nothing is drawn
+	public BitmapCharacter getGlyph(int i) {
+		return glyphs[i];
+	}
+	// Corners of the quad of a character including alignment, the top edge is y0 and the bottom edge is y0 - height
+	public float getX0(int i) {
+		return x0[i] + alignX[i];
+	}
+	public float getY0(int i) {
+		return y0[i] - alignY;
+	}
+	public float getWidth(int i) {
+		return width[i];
+	}
+	public float getHeight(int i) {
+		return height[i];
+	}
+	// Texture coordinates of a glyph as BitmapText computes them, u1 is moved in when the glyph is clipped
+	public float getU0(int i) {
+		return glyphs[i].getX()/(float)charSet.getWidth();
+	}
+	public float getU1(int i) {
+		return u1[i];
+	}
+	public float getV0(int i) {
+		return glyphs[i].getY()/(float)charSet.getHeight();
+	}
+	public float getV1(int i) {
+		return getV0(i) + glyphs[i].getHeight()/(float)charSet.getHeight();
+	}
+	// Finds where layout has to start again so the lines after the first changed character come out the same
+	private int getRestart() {
+		if (valid == 0) {
+			return 0;
+		}
+		int start = getLineStart(valid);
+		if (start > 0 && (wrapMode == LineWrapMode.Word || wrapMode == LineWrapMode.Character)) {
+			// The break before a line is decided by the first word on it, so the line before is laid out again
+			start = getLineStart(start - 1);
+		}
+		while (start > 0 && overflow[start-1]) {
+			// A line feed past the side of the box hides the line after it
+			start = getLineStart(start - 1);
+		}
+		return start;
+	}
+	private int getLineStart(int i) {
+		while (i > 0 && !lineEnd[i-1]) {
+			i--;
+		}
+		return i;
+	}
+	private void layout(int start) {
+		charSet = font.getCharSet();
+		scale = size/charSet.getRenderedSize();
+		BitmapCharacter ellipsis = charSet.getCharacter(ELLIPSIS_CHAR);
+		float ellipsisWidth = ellipsis != null ? ellipsis.getWidth()*scale : 0;
+		int count = 1;
+		int unchecked = -1;
+		if (start == 0) {
+			headEnd = false;
+		} else if (lineEnd[start-1] && text[start-1] != '\n') {
+			// A wrapped line is counted by the character that caused the wrap, and the characters moved down with
+			// it were never checked against the box again
+			count = lines[start-1] + 1;
+			unchecked = wrapTrigger[start-1];
+		} else {
+			count = lines[start-1];
+		}
+		changedFrom = Math.min(changedFrom, start);
+		for (int i = start; i < length; i++) {
+			int last = i;
+			reset(i);
+			place(i);
+			if (i > unchecked && isInvalid(i, 0)) {
+				if (wrapMode == LineWrapMode.Character) {
+					lineWrap(i);
+					count++;
+				} else if (wrapMode == LineWrapMode.Word) {
+					if (text[i] != ' ') {
+						// Break the line at the last blank on it, or at this character if there is none
+						int blank = i;
+						while (text[blank] != ' ') {
+							if (isLineStart(blank)) {
+								lineWrap(i);
+								count++;
+								blank = -1;
+								break;
+							}
+							blank--;
+							if (blank < 0) {
+								lineWrap(i);
+								count++;
+								break;
+							}
+						}
+						if (blank >= 0) {
+							lineEnd[blank] = true;
+							wrapTrigger[blank] = i;
+							count++;
+							while (blank != i) {
+								blank++;
+								reset(blank);
+								place(blank);
+							}
+						}
+					}
+				} else if (wrapMode == LineWrapMode.NoWrap) {
+					// Replace the last character that leaves room for an ellipsis and hide the rest of the line
+					int q = i - 1;
+					while (q >= 0 && isInvalid(q, ellipsisWidth) && !isLineStart(q)) {
+						q--;
+					}
+					if (q >= 0) {
+						glyphs[q] = ellipsis;
+						place(q);
+					}
+					last = hideLine(q + 1, i);
+					overflow[i] = true;
+				} else if (wrapMode == LineWrapMode.Clip) {
+					clip(i);
+					last = hideLine(i + 1, i);
+					overflow[i] = true;
+				}
+			}
+			if (lineEnd[i]) {
+				count++;
+			}
+			lines[i] = count;
+			// Characters hidden after this one are already laid out
+			while (i < last) {
+				i++;
+				lines[i] = count;
+			}
+		}
+		lineCount = count;
+		valid = length;
+	}
+	// Empties the characters from start to the end of the line and returns the last one, which is already laid out
+	private int hideLine(int start, int i) {
+		int end = start;
+		while (end < length && text[end] != '\n') {
+			lineEnd[end] = false;
+			overflow[end] = false;
+			glyphs[end] = null;
+			place(end);
+			end++;
+		}
+		return Math.max(i, end - 1);
+	}
+	private void reset(int i) {
+		lineEnd[i] = text[i] == '\n';
+		overflow[i] = false;
+		glyphs[i] = charSet.getCharacter(text[i]);
+	}
+	// Places a character after the one before it
+	private void place(int i) {
+		boolean lineStart = (i == 0) || lineEnd[i-1];
+		if (i == 0) {
+			lineY[i] = headEnd ? boxY - charSet.getLineHeight()*scale : boxY;
+		} else if (lineEnd[i-1]) {
+			lineY[i] = lineY[i-1] - charSet.getLineHeight()*scale;
+		} else {
+			lineY[i] = lineY[i-1];
+		}
+		BitmapCharacter glyph = glyphs[i];
+		if (glyph == null) {
+			x0[i] = (i == 0) ? boxX : x0[i-1] + width[i-1];
+			y0[i] = lineY[i];
+			width[i] = 0;
+			height[i] = 0;
+			advance[i] = 0;
+			u1[i] = 0;
+		} else {
+			float xOffset = glyph.getXOffset()*scale;
+			float yOffset = glyph.getYOffset()*scale;
+			float xAdvance = glyph.getXAdvance()*scale;
+			width[i] = glyph.getWidth()*scale;
+			height[i] = glyph.getHeight()*scale;
+			if (lineStart) {
+				x0[i] = boxX;
+			} else {
+				x0[i] = x0[i-1] + advance[i-1] + xOffset;
+			}
+			advance[i] = xAdvance - xOffset;
+			y0[i] = lineY[i] - yOffset;
+			if (i > 0 && glyphs[i-1] != null) {
+				x0[i] += glyphs[i-1].getKerning(text[i])*scale;
+			}
+			u1[i] = glyph.getX()/(float)charSet.getWidth() + glyph.getWidth()/(float)charSet.getWidth();
+		}
+		if (lineEnd[i]) {
+			advance[i] = boxX - x0[i];
+		}
+	}
+	// Returns true if a character reaches past the right side of the box, leaving room for a gap
+	private boolean isInvalid(int i, float gap) {
+		return x0[i] > 0 && boxX + boxWidth - gap < x0[i] + width[i];
+	}
+	private boolean isLineStart(int i) {
+		return x0[i] == 0 || (i == 0 ? headEnd : lineEnd[i-1]);
+	}
+	// Moves a character to the start of the next line
+	private void lineWrap(int i) {
+		if (text[i] == ' ') {
+			return;
+		}
+		if (i == 0) {
+			headEnd = true;
+		} else {
+			lineEnd[i-1] = true;
+			wrapTrigger[i-1] = i;
+		}
+		reset(i);
+		place(i);
+	}
+	// Cuts a character off at the right side of the box
+	private void clip(int i) {
+		float x1 = Math.min(boxX + boxWidth, x0[i] + width[i]);
+		float w = x1 - x0[i];
+		if (w == width[i]) {
+			return;
+		}
+		if (glyphs[i] != null) {
+			float u0 = glyphs[i].getX()/(float)charSet.getWidth();
+			u1[i] = u0 + (u1[i] - u0)*(w/width[i]);
+		}
+		width[i] = w;
+	}
+	// Offsets every line for the horizontal and vertical alignment
+	private void align() {
+		float gapY = 0;
+		if (align == BitmapFont.Align.Left && vAlign == BitmapFont.VAlign.Top) {
+			for (int i = 0; i < length; i++) {
+				if (alignX[i] != 0) {
+					alignX[i] = 0;
+					changedFrom = Math.min(changedFrom, i);
+				}
+			}
+		} else {
+			float totalHeight = -boxY;
+			for (int i = 0; i < length; i++) {
+				totalHeight = Math.max(totalHeight, -(y0[i] - height[i]));
+			}
+			if (totalHeight < boxHeight) {
+				if (vAlign == BitmapFont.VAlign.Center) {
+					gapY = (boxHeight - totalHeight)*0.5f;
+				} else if (vAlign == BitmapFont.VAlign.Bottom) {
+					gapY = boxHeight - totalHeight;
+				}
+			}
+			float gapX = 0;
+			for (int i = length - 1; i >= 0; i--) {
+				if (i == length - 1 || lineEnd[i]) {
+					float lineWidth = x0[i] + width[i] - boxX;
+					if (align == BitmapFont.Align.Center) {
+						gapX = (boxWidth - lineWidth)/2;
+					} else if (align == BitmapFont.Align.Right) {
+						gapX = boxWidth - lineWidth;
+					} else {
+						gapX = 0;
+					}
+				}
+				if (alignX[i] != gapX) {
+					alignX[i] = gapX;
+					changedFrom = Math.min(changedFrom, i);
+				}
+			}
+		}
+		if (alignY != gapY) {
+			alignY = gapY;
+			changedFrom = 0;
+		}
+	}
+	private void ensureCapacity(int n) {
+		if (n <= text.length) {
+			return;
+		}
+		int size = Math.max(n, text.length*2);
+		char[] newText = new char[size];
+		System.arraycopy(text, 0, newText, 0, length);
+		text = newText;
+		glyphs = grow(glyphs, size);
+		x0 = grow(x0, size);
+		y0 = grow(y0, size);
+		width = grow(width, size);
+		height = grow(height, size);
+		advance = grow(advance, size);
+		lineY = grow(lineY, size);
+		u1 = grow(u1, size);
+		alignX = grow(alignX, size);
+		boolean[] newLineEnd = new boolean[size];
+		System.arraycopy(lineEnd, 0, newLineEnd, 0, lineEnd.length);
+		lineEnd = newLineEnd;
+		boolean[] newOverflow = new boolean[size];
+		System.arraycopy(overflow, 0, newOverflow, 0, overflow.length);
+		overflow = newOverflow;
+		lines = grow(lines, size);
+		wrapTrigger = grow(wrapTrigger, size);
+	}
+	private static float[] grow(float[] array, int size) {
+		float[] grown = new float[size];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+	private static int[] grow(int[] array, int size) {
+		int[] grown = new int[size];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+	private static BitmapCharacter[] grow(BitmapCharacter[] array, int size) {
+		BitmapCharacter[] grown = new BitmapCharacter[size];
+		System.arraycopy(array, 0, grown, 0, array.length);
+		return grown;
+	}
+}
@@ -0,0 +1,184 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.network;
+// Java Dependencies
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Internal Dependencies
+import com.stp.games.jme.terrain.ChunkControl;
+
+/* Changes to a chunk relative to a baseline version the client already holds.
+ * Cells are stored as the XOR of the new and baseline values, encoded as runs of [unchanged count][changed count][changed bytes]
+ * with counts written as variable length integers. The object list is appended whole when it has changed since the client's copy. */
+public class ChunkDelta {
+	// Runs of unchanged cells shorter than this are folded into the surrounding changed run since encoding the gap costs more than the bytes
+	private static final int MIN_GAP = 3;
+	
+	protected long key;
+	protected long baseVersion;
+	protected long version;
+	protected long objectVersion;
+	protected boolean empty;
+	protected boolean objectsIncluded;
+	protected int cellLength;
+	protected byte[] payload;
+
+	public ChunkDelta() {
+		this.payload = new byte[0];
+	}
+	// Builds the delta between the baseline values and the chunks current values, the object list is included if requested
+	public static ChunkDelta create(ChunkControl chunk, long baseVersion, byte[] baseline, byte[] current, int count, boolean includeObjects) throws IOException {
+		CompressionPool pool = CompressionPool.getInstance();
+		CompressionPool.BufferStream stream = pool.acquireStream();
+		try {
+			ChunkDelta delta = new ChunkDelta();
+			delta.key = chunk.getKey();
+			delta.baseVersion = baseVersion;
+			delta.version = chunk.getVersion();
+			delta.objectVersion = chunk.getObjectVersion();
+			delta.empty = chunk.isEmpty();
+			encode(baseline, current, count, stream);
+			delta.cellLength = stream.size();
+			if (includeObjects) {
+				chunk.writeObjects(stream);
+				delta.objectsIncluded = true;
+			}
+			delta.payload = Arrays.copyOf(stream.getBuffer(), stream.size());
+			return delta;
+		} finally {
+			pool.release(stream);
+		}
+	}
+	// Writes the runs of cells that differ between the two arrays
+	private static void encode(byte[] baseline, byte[] current, int count, CompressionPool.BufferStream stream) {
+		int pos = 0;
+		while (pos < count) {
+			int skipStart = pos;
+			while (pos < count && baseline[pos] == current[pos]) {
+				pos++;
+			}
+			if (pos == count) {
+				break;
+			}
+			int changeStart = pos;
+			int end = ++pos;
+			while (pos < count && pos - end < MIN_GAP) {
+				if (baseline[pos] != current[pos]) {
+					end = pos + 1;
+				}
+				pos++;
+			}
+			pos = end;
+			writeVarInt(stream, changeStart - skipStart);
+			writeVarInt(stream, end - changeStart);
+			for (int i = changeStart; i < end; i++) {
+				stream.write(baseline[i] ^ current[i]);
+			}
+		}
+	}
+	private static void writeVarInt(CompressionPool.BufferStream stream, int value) {
+		while ((value & ~0x7F) != 0) {
+			stream.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		stream.write(value);
+	}
+	// Applies the delta to the chunk, returns false without changing the chunk if it does not hold the baseline version
+	public boolean apply(ChunkControl chunk) throws IOException {
+		if (chunk.getServerVersion() != baseVersion || chunk.getKey() != key) {
+			return false;
+		}
+		if (cellLength > 0) {
+			CompressionPool pool = CompressionPool.getInstance();
+			int count = chunk.getDataCount();
+			byte[] values = pool.acquireBuffer(count);
+			try {
+				chunk.getData().toArray(values, 0);
+				int pos = 0;
+				int index = 0;
+				while (index < cellLength) {
+					int skip = 0;
+					int shift = 0;
+					byte b;
+					do {
+						b = payload[index++];
+						skip |= (b & 0x7F) << shift;
+						shift += 7;
+					} while (b < 0);
+					int changed = 0;
+					shift = 0;
+					do {
+						b = payload[index++];
+						changed |= (b & 0x7F) << shift;
+						shift += 7;
+					} while (b < 0);
+					pos += skip;
+					if (pos + changed > count) {
+						return false;
+					}
+					for (int i = 0; i < changed; i++) {
+						values[pos++] ^= payload[index++];
+					}
+				}
+				chunk.readValues(values, 0, empty);
+			} finally {
+				pool.release(values);
+			}
+		}
+		if (objectsIncluded) {
+			chunk.readObjects(new ByteArrayInputStream(payload, cellLength, payload.length - cellLength));
+		}
+		chunk.setServerVersions(version, objectVersion);
+		chunk.setDirty(false);
+		return true;
+	}
+	// Gets the key of the chunk this delta applies to
+	public long getKey() {
+		return key;
+	}
+	// Gets the version the client must hold for this delta to apply
+	public long getBaseVersion() {
+		return baseVersion;
+	}
+	// Gets the version the chunk will have once the delta is applied
+	public long getVersion() {
+		return version;
+	}
+	// Gets the object version the chunk will have once the delta is applied
+	public long getObjectVersion() {
+		return objectVersion;
+	}
+	// Checks whether the object list is included in this delta
+	public boolean isObjectsIncluded() {
+		return objectsIncluded;
+	}
+	// Gets the number of encoded bytes before compression
+	public int getLength() {
+		return payload.length;
+	}
+	public String toString() {
+		return "ChunkDelta: key=" + key + ", version=" + baseVersion + "->" + version + ", bytes=" + payload.length;
+	}
+}
@@ -0,0 +1,67 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.network;
+import com.jme3.network.serializing.Serializer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+@SuppressWarnings("unchecked")
+public class ChunkDeltaSerializer extends Serializer {
+	public <T> T readObject(ByteBuffer data, Class<T> c) throws IOException {
+		try {
+			ChunkDelta delta = (ChunkDelta)c.newInstance();
+			delta.key = data.getLong();
+			delta.baseVersion = data.getLong();
+			delta.version = data.getLong();
+			delta.objectVersion = data.getLong();
+			byte flags = data.get();
+			delta.empty = (flags & 1) != 0;
+			delta.objectsIncluded = (flags & 2) != 0;
+			delta.cellLength = data.getInt();
+
+			// Decompress the encoded cells and objects straight into the payload
+			CompressionPool pool = CompressionPool.getInstance();
+			delta.payload = new byte[pool.getInflatedLength(data)];
+			pool.inflate(data, delta.payload);
+			if (delta.cellLength < 0 || delta.cellLength > delta.payload.length) {
+				throw new IOException("Cell length " + delta.cellLength + " out of range");
+			}
+
+			return (T)delta;
+		}
+		catch (Exception ex) {
+			ex.printStackTrace();
+			throw new IOException(ex.toString());
+		}
+	}
+	public void writeObject(ByteBuffer buffer, Object object) throws IOException {
+		ChunkDelta delta = (ChunkDelta)object;
+		buffer.putLong(delta.key);
+		buffer.putLong(delta.baseVersion);
+		buffer.putLong(delta.version);
+		buffer.putLong(delta.objectVersion);
+		buffer.put((byte)((delta.empty ? 1 : 0) | (delta.objectsIncluded ? 2 : 0)));
+		buffer.putInt(delta.cellLength);
+		CompressionPool.getInstance().deflate(delta.payload, 0, delta.payload.length, buffer);
+	}
+}
@@ -24,47 +24,76 @@ package com.stp.games.jme.network;
 import com.jme3.network.AbstractMessage;
 import com.jme3.network.serializing.Serializable;
 import com.stp.games.jme.terrain.ChunkControl;
+import com.stp.games.jme.terrain.ChunkKey;
 
 public class ChunkMessage {
 	@Serializable
 	public static class ActivateChunk extends AbstractMessage {
 		public long version;
+		public long objectVersion;
 		public int volume;
-		public int x;
-		public int y;
-		public int z;
+		public long key;
 		public ActivateChunk() {}
+		// Reports the server versions the client holds unedited so the server can reply with a delta, zero when there are none
 		public ActivateChunk(ChunkControl chunk) {
-			this.version = chunk.getVersion();
-			this.x = chunk.getX();
-			this.y = chunk.getY();
-			this.z = chunk.getZ();
+			if (chunk.isLoaded()) {
+				this.version = chunk.getServerVersion();
+				this.objectVersion = chunk.getServerObjectVersion();
+			}
+			this.key = chunk.getKey();
 		}
 		public long getVersion() {
 			return version;
 		}
+		public long getObjectVersion() {
+			return objectVersion;
+		}
 		public int getVolume() {
 			return volume;
 		}
+		public long getKey() {
+			return key;
+		}
 		public int getX() {
-			return x;
+			return ChunkKey.getX(key);
 		}
 		public int getY() {
-			return y;
+			return ChunkKey.getY(key);
 		}
 		public int getZ() {
-			return z;
+			return ChunkKey.getZ(key);
 		}
 	}
 	@Serializable
 	public static class UpdateChunk extends AbstractMessage {
 		public ChunkControl chunk;
+		public long version;
+		public long objectVersion;
 		public UpdateChunk() {}
 		public UpdateChunk(ChunkControl chunk) {
 			this.chunk = chunk;
+			this.version = chunk.getVersion();
+			this.objectVersion = chunk.getObjectVersion();
 		}
 		public ChunkControl getChunk() {
 			return chunk;
 		}
+		// Gets the received chunk stamped with the versions it was sent at
+		public ChunkControl getVersionedChunk() {
+			chunk.setServerVersions(version, objectVersion);
+			chunk.setLoaded(true);
+			return chunk;
+		}
+	}
+	@Serializable
+	public static class DeltaChunk extends AbstractMessage {
+		public ChunkDelta delta;
+		public DeltaChunk() {}
+		public DeltaChunk(ChunkDelta delta) {
+			this.delta = delta;
+		}
+		public ChunkDelta getDelta() {
+			return delta;
+		}
 	}
 }
\ No newline at end of file
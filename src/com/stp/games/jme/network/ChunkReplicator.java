@@ -0,0 +1,176 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.network;
+// JME3 Dependencies
+import com.jme3.network.AbstractMessage;
+
+// Java Dependencies
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Internal Dependencies
+import com.stp.games.jme.terrain.ChunkControl;
+
+/* Server side bookkeeping for replicating chunks to clients.
+ * A few snapshots of every recently sent chunk are kept keyed by version, when a client reports a version that still has a
+ * snapshot only the changed cells are sent, otherwise the whole chunk is sent and becomes the next snapshot.
+ * Chunks that have not been replicated recently are dropped in least recently used order. */
+public class ChunkReplicator {
+	public static final int DEFAULT_BASELINES = 4;
+	public static final int DEFAULT_CHUNKS = 64;
+	
+	// Values of a chunk at a single version
+	private static class Baseline {
+		private long version;
+		private byte[] values;
+		private int count;
+	}
+	// Ring of the most recent baselines sent for a chunk
+	private static class History {
+		private final Baseline[] ring;
+		private int next;
+		
+		public History(int size) {
+			this.ring = new Baseline[size];
+		}
+		public Baseline find(long version) {
+			for (Baseline baseline : ring) {
+				if (baseline != null && baseline.version == version) {
+					return baseline;
+				}
+			}
+			return null;
+		}
+		// Records the values for the version, reusing the oldest snapshots array when it is large enough
+		public void record(long version, byte[] values, int count) {
+			if (find(version) != null) {
+				return;
+			}
+			Baseline baseline = next(count);
+			System.arraycopy(values, 0, baseline.values, 0, count);
+			baseline.count = count;
+			baseline.version = version;
+		}
+		// Records the chunks current values
+		public void record(ChunkControl chunk) {
+			if (find(chunk.getVersion()) != null) {
+				return;
+			}
+			int count = chunk.getDataCount();
+			Baseline baseline = next(count);
+			chunk.getData().toArray(baseline.values, 0);
+			baseline.count = count;
+			baseline.version = chunk.getVersion();
+		}
+		private Baseline next(int count) {
+			Baseline baseline = ring[next];
+			if (baseline == null) {
+				baseline = new Baseline();
+				ring[next] = baseline;
+			}
+			next = (next + 1) % ring.length;
+			if (baseline.values == null || baseline.values.length < count) {
+				baseline.values = new byte[count];
+			}
+			return baseline;
+		}
+	}
+	
+	private final LinkedHashMap<Long,History> histories;
+	private final int baselines;
+	private long fullUpdates;
+	private long deltaUpdates;
+	private long skippedUpdates;
+
+	public ChunkReplicator() {
+		this (DEFAULT_BASELINES, DEFAULT_CHUNKS);
+	}
+	public ChunkReplicator(int baselines, final int maxChunks) {
+		this.baselines = baselines;
+		this.histories = new LinkedHashMap<Long,History>(maxChunks, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long,History> eldest) {
+				return size() > maxChunks;
+			}
+		};
+	}
+	// Creates the message that brings a client holding the specified versions up to date, null if it already is
+	public synchronized AbstractMessage createUpdate(ChunkControl chunk, long clientVersion, long clientObjectVersion) {
+		long version = chunk.getVersion();
+		boolean objectsChanged = (clientObjectVersion != chunk.getObjectVersion());
+		if (clientVersion != 0 && clientVersion == version && !objectsChanged) {
+			skippedUpdates++;
+			return null;
+		}
+		History history = histories.get(chunk.getKey());
+		if (history == null) {
+			history = new History(baselines);
+			histories.put(chunk.getKey(), history);
+		}
+		Baseline base = (clientVersion != 0) ? history.find(clientVersion) : null;
+		if (base != null && base.count == chunk.getDataCount()) {
+			// Recording the current values may overwrite the slot holding the base so the delta is built first
+			CompressionPool pool = CompressionPool.getInstance();
+			byte[] current = pool.acquireBuffer(base.count);
+			try {
+				chunk.getData().toArray(current, 0);
+				ChunkDelta delta = ChunkDelta.create(chunk, clientVersion, base.values, current, base.count, objectsChanged);
+				history.record(version, current, base.count);
+				deltaUpdates++;
+				return new ChunkMessage.DeltaChunk(delta);
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			} finally {
+				pool.release(current);
+			}
+		}
+		history.record(chunk);
+		fullUpdates++;
+		return new ChunkMessage.UpdateChunk(chunk);
+	}
+	// Creates the message for a client that reported its versions when activating a chunk
+	public AbstractMessage createUpdate(ChunkControl chunk, ChunkMessage.ActivateChunk request) {
+		return createUpdate(chunk, request.getVersion(), request.getObjectVersion());
+	}
+	// Forgets the snapshots kept for a chunk, clients holding it will receive the full chunk next time
+	public synchronized void remove(ChunkControl chunk) {
+		histories.remove(chunk.getKey());
+	}
+	// Forgets all snapshots
+	public synchronized void clear() {
+		histories.clear();
+	}
+	public synchronized long getFullUpdates() {
+		return fullUpdates;
+	}
+	public synchronized long getDeltaUpdates() {
+		return deltaUpdates;
+	}
+	public synchronized long getSkippedUpdates() {
+		return skippedUpdates;
+	}
+	public synchronized String toString() {
+		return "ChunkReplicator: chunks=" + histories.size() + ", full=" + fullUpdates + ", delta=" + deltaUpdates + ", skipped=" + skippedUpdates;
+	}
+}
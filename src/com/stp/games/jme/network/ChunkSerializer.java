@@ -23,30 +23,22 @@
 package com.stp.games.jme.network;
 import com.jme3.network.serializing.Serializer;
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import com.stp.games.jme.terrain.ChunkControl;
 
 @SuppressWarnings("unchecked")
 public class ChunkSerializer extends Serializer {
 	public <T> T readObject(ByteBuffer data, Class<T> c) throws IOException {
+		CompressionPool pool = CompressionPool.getInstance();
+		byte[] raw = null;
 		try {
 			ChunkControl chunk = (ChunkControl)c.newInstance();
 
-			// Read all recieved bytes into an array
-			byte[] byteArray = new byte[data.remaining()];
-			data.get(byteArray);
-
-			// Decompress the received data using a buffered stream
-			GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(byteArray));
-			BufferedInputStream bis = new BufferedInputStream(gis);
-			chunk.read(bis);
-			bis.close();
-			gis.close();
+			// Decompress the received block into a pooled buffer
+			raw = pool.acquireBuffer(pool.getInflatedLength(data));
+			int length = pool.inflate(data, raw);
+			chunk.read(new ByteArrayInputStream(raw, 0, length));
 
 			return (T)chunk;
 		}
@@ -54,16 +46,21 @@ public class ChunkSerializer extends Serializer {
 			ex.printStackTrace();
 			throw new IOException(ex.toString());
 		}
+		finally {
+			if (raw != null) {
+				pool.release(raw);
+			}
+		}
 	}
 	public void writeObject(ByteBuffer buffer, Object object) throws IOException {
-		ByteArrayOutputStream byteArrayOutput = new ByteArrayOutputStream();
-		GZIPOutputStream gos = new GZIPOutputStream(byteArrayOutput);
-
-		((ChunkControl)object).write(gos);
-		gos.finish();
-		gos.flush();
-		gos.close();
-
-		buffer.put(byteArrayOutput.toByteArray());
+		CompressionPool pool = CompressionPool.getInstance();
+		CompressionPool.BufferStream stream = pool.acquireStream();
+		try {
+			((ChunkControl)object).write(stream);
+			pool.deflate(stream.getBuffer(), 0, stream.size(), buffer);
+		}
+		finally {
+			pool.release(stream);
+		}
 	}
 }
\ No newline at end of file
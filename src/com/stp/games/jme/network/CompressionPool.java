@@ -0,0 +1,226 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.network;
+// Java Dependencies
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/* Pool of deflaters, inflaters and scratch buffers shared by the network serializers.
+ * Compressed blocks are written as the raw length, the compressed length and then the compressed bytes
+ * so the reader knows exactly how much to consume and how large a buffer to take from the pool. */
+public class CompressionPool {
+	public static final int DEFAULT_IDLE = 8;
+	public static final int MIN_BUFFER_SIZE = 4096;
+	// Largest uncompressed block accepted, well above a full chunk with its objects, so a bad length prefix can't size a huge buffer
+	public static final int MAX_BLOCK_SIZE = 1 << 22;
+	// Deflate can't expand data by more than about 1032 to 1, a larger claimed length can't be genuine
+	private static final int MAX_RATIO = 1032;
+	
+	private static final CompressionPool INSTANCE = new CompressionPool(Deflater.BEST_SPEED, DEFAULT_IDLE);
+	
+	// Output stream that exposes its buffer so written data can be compressed without an extra copy
+	public static class BufferStream extends ByteArrayOutputStream {
+		public BufferStream() {
+			super(MIN_BUFFER_SIZE);
+		}
+		public byte[] getBuffer() {
+			return buf;
+		}
+	}
+	
+	private final ConcurrentLinkedQueue<Deflater> deflaters = new ConcurrentLinkedQueue<Deflater>();
+	private final ConcurrentLinkedQueue<Inflater> inflaters = new ConcurrentLinkedQueue<Inflater>();
+	private final ConcurrentLinkedQueue<byte[]> buffers = new ConcurrentLinkedQueue<byte[]>();
+	private final ConcurrentLinkedQueue<BufferStream> streams = new ConcurrentLinkedQueue<BufferStream>();
+	private final AtomicInteger idleDeflaters = new AtomicInteger();
+	private final AtomicInteger idleInflaters = new AtomicInteger();
+	private final AtomicInteger idleBuffers = new AtomicInteger();
+	private final AtomicInteger idleStreams = new AtomicInteger();
+	private final int level;
+	private final int maxIdle;
+	
+	public CompressionPool(int level, int maxIdle) {
+		this.level = level;
+		this.maxIdle = maxIdle;
+	}
+	// Gets the pool shared by the default serializers
+	public static CompressionPool getInstance() {
+		return INSTANCE;
+	}
+	// Takes a deflater from the pool or creates one if none are idle
+	public Deflater acquireDeflater() {
+		Deflater deflater = deflaters.poll();
+		if (deflater == null) {
+			return new Deflater(level);
+		}
+		idleDeflaters.decrementAndGet();
+		return deflater;
+	}
+	// Returns a deflater to the pool, releasing its native memory if the pool is full
+	public void release(Deflater deflater) {
+		if (idleDeflaters.incrementAndGet() <= maxIdle) {
+			deflater.reset();
+			deflaters.offer(deflater);
+		} else {
+			idleDeflaters.decrementAndGet();
+			deflater.end();
+		}
+	}
+	// Takes an inflater from the pool or creates one if none are idle
+	public Inflater acquireInflater() {
+		Inflater inflater = inflaters.poll();
+		if (inflater == null) {
+			return new Inflater();
+		}
+		idleInflaters.decrementAndGet();
+		return inflater;
+	}
+	// Returns an inflater to the pool, releasing its native memory if the pool is full
+	public void release(Inflater inflater) {
+		if (idleInflaters.incrementAndGet() <= maxIdle) {
+			inflater.reset();
+			inflaters.offer(inflater);
+		} else {
+			idleInflaters.decrementAndGet();
+			inflater.end();
+		}
+	}
+	// Takes a scratch buffer of at least the specified size, undersized pooled buffers are dropped
+	public byte[] acquireBuffer(int size) {
+		byte[] buffer = buffers.poll();
+		if (buffer == null) {
+			return new byte[Math.max(size, MIN_BUFFER_SIZE)];
+		}
+		idleBuffers.decrementAndGet();
+		if (buffer.length < size) {
+			return new byte[Math.max(size, buffer.length*2)];
+		}
+		return buffer;
+	}
+	// Returns a scratch buffer to the pool
+	public void release(byte[] buffer) {
+		if (idleBuffers.incrementAndGet() <= maxIdle) {
+			buffers.offer(buffer);
+		} else {
+			idleBuffers.decrementAndGet();
+		}
+	}
+	// Takes an empty stream from the pool or creates one if none are idle
+	public BufferStream acquireStream() {
+		BufferStream stream = streams.poll();
+		if (stream == null) {
+			return new BufferStream();
+		}
+		idleStreams.decrementAndGet();
+		stream.reset();
+		return stream;
+	}
+	// Returns a stream to the pool
+	public void release(BufferStream stream) {
+		if (idleStreams.incrementAndGet() <= maxIdle) {
+			streams.offer(stream);
+		} else {
+			idleStreams.decrementAndGet();
+		}
+	}
+	// Compresses the bytes into the buffer as a length prefixed block and returns the number of compressed bytes
+	public int deflate(byte[] src, int offset, int length, ByteBuffer dest) {
+		if (length < 0 || length > MAX_BLOCK_SIZE) {
+			throw new IllegalArgumentException("Block of " + length + " bytes exceeds " + MAX_BLOCK_SIZE);
+		}
+		Deflater deflater = acquireDeflater();
+		byte[] scratch = acquireBuffer(MIN_BUFFER_SIZE);
+		try {
+			int start = dest.position();
+			dest.putInt(length);
+			dest.putInt(0);
+			deflater.setInput(src, offset, length);
+			deflater.finish();
+			int total = 0;
+			while (!deflater.finished()) {
+				int count = deflater.deflate(scratch, 0, scratch.length);
+				dest.put(scratch, 0, count);
+				total += count;
+			}
+			dest.putInt(start + 4, total);
+			return total;
+		} finally {
+			release(scratch);
+			release(deflater);
+		}
+	}
+	// Gets the uncompressed length of the block at the buffers position without consuming it
+	public int getInflatedLength(ByteBuffer src) throws DataFormatException {
+		return checkHeader(src, src.position());
+	}
+	// Validates the block header at the index against the bytes available and returns its uncompressed length
+	private static int checkHeader(ByteBuffer src, int index) throws DataFormatException {
+		if (src.limit() - index < 8) {
+			throw new DataFormatException("Truncated block header");
+		}
+		int length = src.getInt(index);
+		int compressed = src.getInt(index + 4);
+		if (length < 0 || length > MAX_BLOCK_SIZE) {
+			throw new DataFormatException("Block length " + length + " out of range");
+		}
+		if (compressed < 0 || compressed > src.limit() - index - 8) {
+			throw new DataFormatException("Compressed length " + compressed + " out of range");
+		}
+		if (length > (long)compressed*MAX_RATIO + 16) {
+			throw new DataFormatException("Block length " + length + " too large for " + compressed + " compressed bytes");
+		}
+		return length;
+	}
+	// Decompresses the length prefixed block at the buffers position into the array and returns the number of bytes inflated
+	public int inflate(ByteBuffer src, byte[] dest) throws DataFormatException {
+		int length = checkHeader(src, src.position());
+		if (dest.length < length) {
+			throw new DataFormatException("Block length " + length + " exceeds buffer of " + dest.length);
+		}
+		src.getInt();
+		int compressed = src.getInt();
+		Inflater inflater = acquireInflater();
+		byte[] input = acquireBuffer(compressed);
+		try {
+			src.get(input, 0, compressed);
+			inflater.setInput(input, 0, compressed);
+			int total = 0;
+			while (total < length && !inflater.finished()) {
+				int count = inflater.inflate(dest, total, length - total);
+				if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new DataFormatException("Truncated block");
+				}
+				total += count;
+			}
+			return total;
+		} finally {
+			release(input);
+			release(inflater);
+		}
+	}
+}
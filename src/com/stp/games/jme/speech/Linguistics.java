@@ -35,6 +35,17 @@ public class Linguistics implements SpeechConstants {
 	private static Linguistics instance;	
 	private final ArrayList<Word> WORDS = new ArrayList<Word>();
 	private final ArrayList<WordPattern> PATTERNS = new ArrayList<WordPattern>();
+	// Open addressed table of positions in WORDS by the hash of each word's text, so a word can be
+	// found from part of a sentence without creating a string for it (slots hold the position + 1)
+	private int[] wordTable = new int[256];
+	private String[] wordTexts = new String[128];
+	// Patterns compiled into a decision tree over the class bits, each node is its bit followed by the
+	// nodes taken when the bit is present and absent, leaves are the negated pattern position - 2
+	private int[] patternTree = new int[48];
+	private int patternNodes;
+	private int patternRoot = NO_PATTERN;
+	private boolean patternsCompiled;
+	private static final int NO_PATTERN = -1;
 
 	private Linguistics() {
 		// Initialize some default word patterns
@@ -134,13 +145,60 @@ public class Linguistics implements SpeechConstants {
 		return instance;
 	}
 	public boolean registerWord(Word word) {
-		int found = WORDS.indexOf(word);
-		if (found < 0) {
+		String text = word.getText();
+		if (find(text, 0, text.length()) < 0) {
+			if (WORDS.size() == wordTexts.length) {
+				String[] texts = new String[wordTexts.length * 2];
+				System.arraycopy(wordTexts, 0, texts, 0, wordTexts.length);
+				wordTexts = texts;
+			}
+			if ((WORDS.size() + 1) * 2 > wordTable.length) {
+				wordTable = new int[wordTable.length * 2];
+				for (int w = 0; w < WORDS.size(); w++) {
+					insert(w);
+				}
+			}
+			wordTexts[WORDS.size()] = text;
+			insert(WORDS.size());
 			WORDS.add(word);
 			return true;
 		}
 		return false;
 	}
+	private void insert(int index) {
+		String text = wordTexts[index];
+		int mask = wordTable.length - 1;
+		int slot = hash(text, 0, text.length()) & mask;
+		while (wordTable[slot] != 0) {
+			slot = (slot + 1) & mask;
+		}
+		wordTable[slot] = index + 1;
+	}
+	// Returns the position of the word whose text is the given part of the input, or -1 if there is none
+	private int find(CharSequence input, int start, int end) {
+		int mask = wordTable.length - 1;
+		for (int slot = hash(input, start, end) & mask; wordTable[slot] != 0; slot = (slot + 1) & mask) {
+			int index = wordTable[slot] - 1;
+			String text = wordTexts[index];
+			if (text.length() == end - start) {
+				int c = 0;
+				while (c < text.length() && text.charAt(c) == input.charAt(start + c)) {
+					c++;
+				}
+				if (c == text.length()) {
+					return index;
+				}
+			}
+		}
+		return -1;
+	}
+	private static int hash(CharSequence input, int start, int end) {
+		int hash = 0;
+		for (int c = start; c < end; c++) {
+			hash = 31 * hash + input.charAt(c);
+		}
+		return hash ^ (hash >>> 16);
+	}
 	public Collection<Word> getWords() {
 		return WORDS;
 	}
@@ -159,6 +217,7 @@ public class Linguistics implements SpeechConstants {
 		int found = PATTERNS.indexOf(pattern);
 		if (found < 0) {
 			PATTERNS.add(pattern);
+			patternsCompiled = false;
 			return true;
 		}
 		return false;
@@ -177,17 +236,92 @@ public class Linguistics implements SpeechConstants {
 	public int getPatternCount() {
 		return PATTERNS.size();
 	}
+	// Returns the first registered pattern whose classes are all among the given class values, or null if none match
+	public WordPattern match(int classValues) {
+		if (!patternsCompiled) {
+			compilePatterns();
+		}
+		int node = patternRoot;
+		while (node >= 0) {
+			node = patternTree[(classValues & patternTree[node]) != 0 ? node + 1 : node + 2];
+		}
+		if (node == NO_PATTERN) {
+			return null;
+		}
+		return PATTERNS.get(-node - 2);
+	}
+	// Patterns changed after they were registered are only picked up once they are compiled again
+	public void compilePatterns() {
+		int[] candidates = new int[PATTERNS.size()];
+		for (int p = 0; p < candidates.length; p++) {
+			candidates[p] = p;
+		}
+		patternNodes = 0;
+		patternRoot = compile(candidates, candidates.length, 0, 0);
+		patternsCompiled = true;
+	}
+	// Branches on a class of the first pattern still able to match until it is known to be present
+	private int compile(int[] candidates, int count, int present, int absent) {
+		int[] remaining = new int[count];
+		int left = 0;
+		for (int c = 0; c < count; c++) {
+			if ((PATTERNS.get(candidates[c]).getMask() & absent) == 0) {
+				remaining[left++] = candidates[c];
+			}
+		}
+		if (left == 0) {
+			return NO_PATTERN;
+		}
+		int missing = PATTERNS.get(remaining[0]).getMask() & ~present;
+		if (missing == 0) {
+			return -remaining[0] - 2;
+		}
+		int bit = Integer.lowestOneBit(missing);
+		int node = patternNodes;
+		patternNodes += 3;
+		if (patternNodes > patternTree.length) {
+			int[] tree = new int[patternTree.length * 2];
+			System.arraycopy(patternTree, 0, tree, 0, patternTree.length);
+			patternTree = tree;
+		}
+		// The tree may grow while the branches compile, so it is only written once they are done
+		int yes = compile(remaining, left, present | bit, absent);
+		int no = compile(remaining, left, present, absent | bit);
+		patternTree[node] = bit;
+		patternTree[node + 1] = yes;
+		patternTree[node + 2] = no;
+		return node;
+	}
 	public Word lookup(String input) {
-		if (input.length() > 0) {
-			if (Character.isDigit(input.charAt(0))) {
-				return new Word(input, "symbol", "number", "integer");
+		return lookup(input, 0, input.length());
+	}
+	// Looks up the part of the input between start and end without creating a string unless the word is new
+	public Word lookup(CharSequence input, int start, int end) {
+		if (end > start) {
+			if (Character.isDigit(input.charAt(start))) {
+				return new Word(input.subSequence(start, end).toString(), "symbol", "number", "integer");
 			}
-		} for (int w = 0; w < WORDS.size(); w++) {
-			if (WORDS.get(w).isLike(input)) {
-				return WORDS.get(w);
+		}
+		// The first registered word that is like the input, either the same text or a noun it is the plural of
+		int found = indexOf(input, start, end, false, Integer.MAX_VALUE);
+		if (end > start && input.charAt(end - 1) == 's') {
+			found = indexOf(input, start, end - 1, true, found);
+			if (end - 1 > start && input.charAt(end - 2) == 'e') {
+				found = indexOf(input, start, end - 2, true, found);
 			}
 		}
-		return new Word(input, "unknown", "none", "none");
+		if (found < WORDS.size()) {
+			return WORDS.get(found);
+		}
+		return new Word(input.subSequence(start, end).toString(), "unknown", "none", "none");
+	}
+	// Returns the position of the word with the given text if it comes before the best match so far
+	private int indexOf(CharSequence input, int start, int end, boolean noun, int best) {
+		int index = find(input, start, end);
+		if (index >= 0 && index < best && (!noun || WORDS.get(index).isNoun())) {
+			return index;
+		}
+		return best;
 	}
 	public void loadFromFile(File file) {
 		/*try {
@@ -21,7 +21,8 @@
  * SOFTWARE.
  */
 package com.stp.games.jme.speech;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 /** @author Paul Collins
  *  @version v0.01 ~ 04/02/201
@@ -36,7 +37,12 @@ public class Sentence implements SpeechConstants {
 	public static final int INFORMATIVE = 4;
 	public static final int CLOSING = 5;
 	
-	private final LinkedList<Word> words = new LinkedList<Word>();
+	private final ArrayList<Word> words = new ArrayList<Word>();
+	// Position of the next word with the same class as each word, and of the first and last word
+	// of each class by its bit (unclassified words last), so getWord doesn't rescan the words
+	private int[] nextOfClass = new int[8];
+	private final int[] firstOfClass = new int[33];
+	private final int[] lastOfClass = new int[33];
 	
 	private String sentence;
 	private int classValues;	
@@ -49,51 +55,29 @@ public class Sentence implements SpeechConstants {
 	private Word subject;
 
 	public Sentence(String sentence) {
-		String types = "";
-		String classes = "";
-		String descriptions = "";
-		
 		this.sentence = sentence;
 		String input = sentence.toLowerCase();
-
-		int type = OTHER;
-		int lastType = OTHER;
-		String partial = "";
-		boolean end = false;
+		Arrays.fill(firstOfClass, -1);
+		Arrays.fill(lastOfClass, -1);
 		
-		// Parse the input into seperate words
-		for (int c = 0; c <= input.length(); c++) {
-			char ch = 0;
-			if (c < input.length()) {
-				ch = input.charAt(c);
-				if (Character.isLetterOrDigit(ch)) {
-					if (Character.isDigit(ch)) {
-						type = DIGIT;
-					} else {
-						type = LETTER;
-					}
-				} else {
-					type = OTHER;
-				}
-			} else {
-				type = -1;
+		// Parse the input into seperate words, each a run of letters, digits or other characters
+		int length = input.length();
+		int start = 0;
+		while (start < length) {
+			int type = getType(input.charAt(start));
+			int end = start + 1;
+			while (end < length && getType(input.charAt(end)) == type) {
+				end++;
 			}
-			if (type != lastType && partial.length() > 0) {
-				Word word = Linguistics.getInstance().lookup(partial);
-				words.add(word);
-				types += word.getProperty("type") + " ";
-				classes += word.getProperty("classification") + " ";
-				descriptions += word.getProperty("description") + " ";
-				classValues |= word.getClassIndex();
-				partial = "";
-				if (lastType == LETTER) {
+			if (type == OTHER) {
+				addSymbols(input, start, end);
+			} else {
+				addWord(Linguistics.getInstance().lookup(input, start, end));
+				if (type == LETTER) {
 					wordCount++;
 				}
 			}
-			lastType = type;
-			if (!Character.isWhitespace(ch)) {
-				partial += ch;
-			}
+			start = end;
 		}
 		
 		expected = Word.UNKNOWN;
@@ -104,44 +88,98 @@ public class Sentence implements SpeechConstants {
 		
 		evaluate();
 		
-		//System.out.println(wordCount + ": " + sentence);
-		//System.out.println(types);
-		//System.out.println(classValues + ": " + classes);
-		//System.out.println(descriptions);
-		
-		
 		/*System.out.println(words.size() + ": Expected: " + expected.getDescription() +
 							" Target: " + target.getDescription() +
 							" Subject: " + subject.getText());*/
 	}
-	private void evaluate() {
-		for (WordPattern pattern :  Linguistics.getInstance().getPatterns()) {
-			if ((pattern.getMask() & classValues) == pattern.getMask()) {
-				if (pattern.hasExpected()) {
-					this.expected = getWord(pattern.getExpectedClass(), pattern.getExpectedIndex());
-				}
-				if (pattern.hasVerb()) {
-					this.verb = getWord(pattern.getVerbClass(), pattern.getVerbIndex());
-				}
-				if (pattern.hasTarget()) {
-					this.target = getWord(pattern.getTargetClass(), pattern.getTargetIndex());
-				}
-				if (pattern.hasSubject()) {
-					this.subject = getWord(pattern.getSubjectClass(), pattern.getSubjectIndex());
+	private static int getType(char ch) {
+		if (Character.isLetterOrDigit(ch)) {
+			if (Character.isDigit(ch)) {
+				return DIGIT;
+			}
+			return LETTER;
+		}
+		return OTHER;
+	}
+	// Adds a run of other characters as one word leaving out its whitespace, which only needs a new string when it splits the symbols
+	private void addSymbols(String input, int start, int end) {
+		while (start < end && Character.isWhitespace(input.charAt(start))) {
+			start++;
+		}
+		while (end > start && Character.isWhitespace(input.charAt(end - 1))) {
+			end--;
+		}
+		if (start < end) {
+			int c = start;
+			while (c < end && !Character.isWhitespace(input.charAt(c))) {
+				c++;
+			}
+			if (c == end) {
+				addWord(Linguistics.getInstance().lookup(input, start, end));
+			} else {
+				StringBuilder symbols = new StringBuilder(end - start);
+				for (c = start; c < end; c++) {
+					if (!Character.isWhitespace(input.charAt(c))) {
+						symbols.append(input.charAt(c));
+					}
 				}
-				this.category = pattern.getCategory();
-				return;
+				addWord(Linguistics.getInstance().lookup(symbols.toString()));
 			}
 		}
 	}
+	private void addWord(Word word) {
+		int index = words.size();
+		if (index == nextOfClass.length) {
+			nextOfClass = Arrays.copyOf(nextOfClass, index * 2);
+		}
+		nextOfClass[index] = -1;
+		int slot = getClassSlot(word.getClassIndex());
+		if (lastOfClass[slot] < 0) {
+			firstOfClass[slot] = index;
+		} else {
+			nextOfClass[lastOfClass[slot]] = index;
+		}
+		lastOfClass[slot] = index;
+		words.add(word);
+		classValues |= word.getClassIndex();
+	}
+	// Word classes are single bits, so anything else has no slot
+	private static int getClassSlot(int classValue) {
+		if (classValue == 0) {
+			return 32;
+		}
+		if (Integer.bitCount(classValue) == 1) {
+			return Integer.numberOfTrailingZeros(classValue);
+		}
+		return -1;
+	}
+	private void evaluate() {
+		WordPattern pattern = Linguistics.getInstance().match(classValues);
+		if (pattern != null) {
+			if (pattern.hasExpected()) {
+				this.expected = getWord(pattern.getExpectedClass(), pattern.getExpectedIndex());
+			}
+			if (pattern.hasVerb()) {
+				this.verb = getWord(pattern.getVerbClass(), pattern.getVerbIndex());
+			}
+			if (pattern.hasTarget()) {
+				this.target = getWord(pattern.getTargetClass(), pattern.getTargetIndex());
+			}
+			if (pattern.hasSubject()) {
+				this.subject = getWord(pattern.getSubjectClass(), pattern.getSubjectIndex());
+			}
+			this.category = pattern.getCategory();
+		}
+	}
 	public Word getWord(int classValue, int count) {
-		int found = 0;
-		for (int w = 0; w < words.size(); w++) {
-			if (words.get(w).getClassIndex() == classValue) {
-				found++;
-				if (found == count) {
-					return words.get(w);
-				}
+		int slot = getClassSlot(classValue);
+		if (slot >= 0 && count > 0) {
+			int w = firstOfClass[slot];
+			for (int found = 1; w >= 0 && found < count; found++) {
+				w = nextOfClass[w];
+			}
+			if (w >= 0) {
+				return words.get(w);
 			}
 		}
 		return Word.UNKNOWN;
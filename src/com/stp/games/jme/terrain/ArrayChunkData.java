@@ -0,0 +1,97 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// Java Dependencies
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Chunk storage backed by a single flat array on the heap
+public class ArrayChunkData extends ChunkData {
+	protected final byte[] values;
+	
+	public ArrayChunkData(int sizeX, int sizeY, int sizeZ) {
+		super(sizeX, sizeY, sizeZ);
+		this.values = new byte[sizeX * sizeY * sizeZ];
+	}
+	public Mode getMode() {
+		return Mode.Array;
+	}
+	public byte get(int x, int y, int z) {
+		return values[indexOf(x, y, z)];
+	}
+	public void set(int x, int y, int z, byte value) {
+		values[indexOf(x, y, z)] = value;
+	}
+	public int getMemoryUsage() {
+		return values.length;
+	}
+	// Gets the underlying array, values are stored in streaming order
+	public byte[] getArray() {
+		return values;
+	}
+	@Override
+	public void fill(byte value) {
+		Arrays.fill(values, value);
+	}
+	@Override
+	public void fill(int x0, int y0, int z0, int x1, int y1, int z1, byte value) {
+		x0 = Math.max(x0, 0); y0 = Math.max(y0, 0); z0 = Math.max(z0, 0);
+		x1 = Math.min(x1, sizeX); y1 = Math.min(y1, sizeY); z1 = Math.min(z1, sizeZ);
+		if (z0 >= z1) {
+			return;
+		}
+		for (int x = x0; x < x1; x++) {
+			for (int y = y0; y < y1; y++) {
+				int index = indexOf(x, y, 0);
+				Arrays.fill(values, index + z0, index + z1, value);
+			}
+		}
+	}
+	@Override
+	public void toArray(byte[] dest, int offset) {
+		System.arraycopy(values, 0, dest, offset, values.length);
+	}
+	@Override
+	public void fromArray(byte[] src, int offset) {
+		System.arraycopy(src, offset, values, 0, values.length);
+	}
+	@Override
+	public void write(ByteBuffer buffer) {
+		buffer.put(values);
+	}
+	@Override
+	public void read(ByteBuffer buffer) {
+		buffer.get(values);
+	}
+	@Override
+	public void write(OutputStream outputStream) throws IOException {
+		outputStream.write(values);
+	}
+	@Override
+	public void read(InputStream inputStream) throws IOException {
+		readFully(inputStream, values, 0, values.length);
+	}
+}
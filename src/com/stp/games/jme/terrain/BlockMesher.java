@@ -0,0 +1,279 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// JME3 Dependencies
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer.Type;
+import com.jme3.util.BufferUtils;
+// Java Dependencies
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+// Internal Dependencies
+import com.stp.games.jme.terrain.BlockVolume.BlockType;
+import com.stp.games.jme.terrain.BlockVolume.TextureLocation;
+import com.stp.games.jme.terrain.Volume.Face;
+
+/* Greedy mesher for block chunks. Each face direction is swept one slice at a time, visible faces are collected into a
+ * mask keyed by their texture location and neighbouring faces with the same key are merged into the largest rectangles
+ * possible. Neighbours inside the chunk are read straight from its data, the layer of blocks just outside the chunk is
+ * fetched once per face from the neighbouring chunk. Merged quads carry texture coordinates in blocks along with the
+ * corner of their atlas tile so the Blocks material can repeat the tile once per block.
+ */
+public class BlockMesher {
+	private static final int TEXTURE_COUNT = 16;
+	private static final float TEXTURE_UNIT = 1f / TEXTURE_COUNT;
+	private static final int KEY_ROW = 4096;
+	
+	// Axis and direction of the normal for each face in Face order: Top, Bottom, Left, Right, Front, Back
+	private static final int[] AXIS = { 1, 1, 0, 0, 2, 2 };
+	private static final int[] SIGN = { 1, -1, -1, 1, 1, -1 };
+	// Unit cube corners for each face, in the same order BlockVolume emits them so the winding and texture layout match
+	private static final int[][][] CORNERS = {
+		{ {0, 1, 1}, {1, 1, 1}, {0, 1, 0}, {1, 1, 0} },
+		{ {1, 0, 1}, {0, 0, 1}, {1, 0, 0}, {0, 0, 0} },
+		{ {0, 0, 0}, {0, 0, 1}, {0, 1, 0}, {0, 1, 1} },
+		{ {1, 0, 1}, {1, 0, 0}, {1, 1, 1}, {1, 1, 0} },
+		{ {0, 0, 1}, {1, 0, 1}, {0, 1, 1}, {1, 1, 1} },
+		{ {1, 0, 0}, {0, 0, 0}, {1, 1, 0}, {0, 1, 0} }
+	};
+	private static final Face[] FACES = Face.values();
+	
+	private static final ThreadLocal<BlockMesher> LOCAL = new ThreadLocal<BlockMesher>() {
+		@Override
+		protected BlockMesher initialValue() {
+			return new BlockMesher();
+		}
+	};
+	
+	private final int[] size = new int[3];
+	private final int[] p = new int[3];
+	private final int[] stride = new int[3];
+	private final float[] global = new float[3];
+	private final boolean[] opaque = new boolean[256];
+	private final int[] keys = new int[256];
+	private int[] mask = new int[0];
+	private byte[] border = new byte[0];
+	private byte[] values = new byte[0];
+	
+	private float[] positions = new float[3*1024];
+	private float[] normals = new float[3*1024];
+	private float[] texCoords = new float[2*1024];
+	private float[] tiles = new float[2*1024];
+	private int[] indices = new int[6*256];
+	private int vertexCount;
+	private int indexCount;
+	
+	// Gets the mesher for the calling thread
+	public static BlockMesher get() {
+		return LOCAL.get();
+	}
+	// Builds the merged geometry for the chunk, returns null if no faces are visible
+	public Mesh buildMesh(BlockVolume volume, ChunkControl chunk) {
+		ChunkData data = chunk.getData();
+		size[0] = data.getSizeX();
+		size[1] = data.getSizeY();
+		size[2] = data.getSizeZ();
+		stride[0] = size[1]*size[2];
+		stride[1] = size[2];
+		stride[2] = 1;
+		// Work from a flat copy of the chunk so neighbours are a fixed offset away
+		if (values.length < size[0]*stride[0]) {
+			values = new byte[size[0]*stride[0]];
+		}
+		data.toArray(values, 0);
+		vertexCount = 0;
+		indexCount = 0;
+		float blockSize = volume.getBlockSize();
+		for (int face = 0; face < FACES.length; face++) {
+			prepareTypes(volume, FACES[face]);
+			int d = AXIS[face];
+			int a = (d == 0) ? 1 : 0;
+			int b = (d == 2) ? 1 : 2;
+			int width = size[a];
+			int height = size[b];
+			if (mask.length < width*height) {
+				mask = new int[width*height];
+				border = new byte[width*height];
+			}
+			int edge = (SIGN[face] > 0) ? size[d] - 1 : 0;
+			fetchBorder(volume, chunk, face, d, a, b);
+			int offset = SIGN[face]*stride[d];
+			for (int s = 0; s < size[d]; s++) {
+				// Collect the visible faces in this slice
+				int n = 0;
+				for (int j = 0; j < height; j++) {
+					int index = s*stride[d] + j*stride[b];
+					for (int i = 0; i < width; i++, n++, index += stride[a]) {
+						int key = keys[values[index] & 0xff];
+						if (key != 0) {
+							int neighbor = (s == edge) ? border[n] & 0xff : values[index + offset] & 0xff;
+							if (opaque[neighbor]) {
+								key = 0;
+							}
+						}
+						mask[n] = key;
+					}
+				}
+				// Merge matching faces into rectangles
+				for (int j = 0; j < height; j++) {
+					for (int i = 0; i < width; ) {
+						int key = mask[i + j*width];
+						if (key == 0) {
+							i++;
+							continue;
+						}
+						int w = 1;
+						while (i + w < width && mask[i + w + j*width] == key) {
+							w++;
+						}
+						int h = 1;
+						grow:
+						while (j + h < height) {
+							int row = (j + h)*width;
+							for (int k = 0; k < w; k++) {
+								if (mask[i + k + row] != key) {
+									break grow;
+								}
+							}
+							h++;
+						}
+						for (int l = 0; l < h; l++) {
+							Arrays.fill(mask, i + (j + l)*width, i + w + (j + l)*width, 0);
+						}
+						addQuad(face, d, a, b, s, i, j, w, h, key, blockSize);
+						i += w;
+					}
+				}
+			}
+		}
+		if (vertexCount == 0) {
+			return null;
+		}
+		return createMesh();
+	}
+	// Gets the number of vertices written by the last build
+	public int getVertexCount() {
+		return vertexCount;
+	}
+	// Works out which block values produce a face in this direction and which values hide a neighbouring face
+	private void prepareTypes(BlockVolume volume, Face face) {
+		for (int v = 0; v < 256; v++) {
+			BlockType block = volume.getBlock((byte)v);
+			opaque[v] = (block != null && !block.isTransparent());
+			if (opaque[v]) {
+				TextureLocation location = block.getTextureLocation(face);
+				keys[v] = 1 + location.getColumn() + location.getRow()*KEY_ROW;
+			} else {
+				keys[v] = 0;
+			}
+		}
+	}
+	// Reads the layer of values just outside the chunk on the given face, looking up the neighbouring chunk only once
+	private void fetchBorder(BlockVolume volume, ChunkControl chunk, int face, int d, int a, int b) {
+		global[0] = chunk.getGlobalX();
+		global[1] = chunk.getGlobalY();
+		global[2] = chunk.getGlobalZ();
+		global[d] += (SIGN[face] > 0) ? size[d] : -1;
+		ChunkControl neighbor = volume.getChunk(global[0], global[1], global[2]);
+		float ga = global[a];
+		float gb = global[b];
+		int n = 0;
+		for (int j = 0; j < size[b]; j++) {
+			global[b] = gb + j;
+			for (int i = 0; i < size[a]; i++, n++) {
+				global[a] = ga + i;
+				border[n] = (neighbor != null) ? neighbor.getGlobalValue(global[0], global[1], global[2]) : 0;
+			}
+		}
+	}
+	// Adds a merged quad covering w by h faces starting at i, j in the slice
+	private void addQuad(int face, int d, int a, int b, int s, int i, int j, int w, int h, int key, float blockSize) {
+		ensureCapacity(4, 6);
+		int[][] corners = CORNERS[face];
+		// The texture runs along whichever axes change between the first corner and the second and third corners
+		int uAxis = (corners[0][a] != corners[1][a]) ? a : b;
+		int vAxis = (corners[0][a] != corners[2][a]) ? a : b;
+		float uLength = (uAxis == a) ? w : h;
+		float vLength = (vAxis == a) ? w : h;
+		int column = (key - 1) % KEY_ROW;
+		int row = (key - 1) / KEY_ROW;
+		float tileU = column*TEXTURE_UNIT;
+		float tileV = 1f - (row + 1)*TEXTURE_UNIT;
+		int base = vertexCount;
+		for (int c = 0; c < 4; c++) {
+			int[] corner = corners[c];
+			p[d] = s + corner[d];
+			p[a] = i + corner[a]*w;
+			p[b] = j + corner[b]*h;
+			int v3 = vertexCount*3;
+			positions[v3] = p[0]*blockSize;
+			positions[v3 + 1] = p[1]*blockSize;
+			positions[v3 + 2] = p[2]*blockSize;
+			normals[v3] = (d == 0) ? SIGN[face] : 0;
+			normals[v3 + 1] = (d == 1) ? SIGN[face] : 0;
+			normals[v3 + 2] = (d == 2) ? SIGN[face] : 0;
+			int v2 = vertexCount*2;
+			texCoords[v2] = (c & 1)*uLength;
+			texCoords[v2 + 1] = (c >> 1)*vLength;
+			tiles[v2] = tileU;
+			tiles[v2 + 1] = tileV;
+			vertexCount++;
+		}
+		indices[indexCount++] = base + 2;
+		indices[indexCount++] = base;
+		indices[indexCount++] = base + 1;
+		indices[indexCount++] = base + 1;
+		indices[indexCount++] = base + 3;
+		indices[indexCount++] = base + 2;
+	}
+	private void ensureCapacity(int vertices, int count) {
+		if ((vertexCount + vertices)*3 > positions.length) {
+			int capacity = Math.max(positions.length*2, (vertexCount + vertices)*3);
+			positions = Arrays.copyOf(positions, capacity);
+			normals = Arrays.copyOf(normals, capacity);
+			texCoords = Arrays.copyOf(texCoords, capacity/3*2);
+			tiles = Arrays.copyOf(tiles, capacity/3*2);
+		}
+		if (indexCount + count > indices.length) {
+			indices = Arrays.copyOf(indices, Math.max(indices.length*2, indexCount + count));
+		}
+	}
+	private Mesh createMesh() {
+		Mesh mesh = new Mesh();
+		mesh.setBuffer(Type.Position, 3, createBuffer(positions, vertexCount*3));
+		mesh.setBuffer(Type.TexCoord, 2, createBuffer(texCoords, vertexCount*2));
+		mesh.setBuffer(Type.TexCoord2, 2, createBuffer(tiles, vertexCount*2));
+		mesh.setBuffer(Type.Normal, 3, createBuffer(normals, vertexCount*3));
+		IntBuffer index = BufferUtils.createIntBuffer(indexCount);
+		index.put(indices, 0, indexCount).flip();
+		mesh.setBuffer(Type.Index, 1, index);
+		mesh.updateBound();
+		return mesh;
+	}
+	private static FloatBuffer createBuffer(float[] values, int length) {
+		FloatBuffer buffer = BufferUtils.createFloatBuffer(length);
+		buffer.put(values, 0, length).flip();
+		return buffer;
+	}
+}
@@ -36,6 +36,11 @@ import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
 public class BlockVolume extends Volume {
+	// Faces emits a quad for every visible block face and is the default, Greedy merges matching faces into far fewer
+	// triangles but is drawn with the MatDefs/Blocks.j3md material instead of the standard lighting material
+	public static enum MeshMode {
+		Faces, Greedy
+	};
 	// Static structure to hold texture location
 	public static class TextureLocation	{
 		public int column;
@@ -81,6 +86,7 @@ public class BlockVolume extends Volume {
 	public static int BLOCK_SIZE = 1;
 	
 	protected ArrayList<BlockType> types;
+	protected MeshMode meshMode = MeshMode.Faces;
 	
 	public BlockVolume() {
 		super ();
@@ -89,6 +95,14 @@ public class BlockVolume extends Volume {
 	public int getBlockSize() {
 		return BLOCK_SIZE;
 	}
+	// Sets how chunk geometry is built, Greedy is opt in and must be chosen before BlockWorld registers its assets so the
+	// chunks are drawn with the MatDefs/Blocks.j3md material, which looks different from the lighting material Faces uses
+	public void setMeshMode(MeshMode meshMode) {
+		this.meshMode = meshMode;
+	}
+	public MeshMode getMeshMode() {
+		return meshMode;
+	}
 	// Gets the block at the specified global location
 	public BlockType getBlock(Vector3f globalLocation) {
 		return getBlock(globalLocation.x, globalLocation.y, globalLocation.z);
@@ -101,7 +115,7 @@ public class BlockVolume extends Volume {
 		if (type == 0) {
 			return null;
 		}
-		int index = (int)type - 1;
+		int index = (type & 0xff) - 1;
 		return (index < types.size()) ? types.get(index) : null;
 	}
 	// Gets the block that neighbors the specified location
@@ -140,6 +154,13 @@ public class BlockVolume extends Volume {
 		if (chunk.isEmpty()) {
 			return null;
 		}
+		if (meshMode == MeshMode.Greedy) {
+			return BlockMesher.get().buildMesh(this, chunk);
+		}
+		return buildFaceMesh(chunk);
+	}
+	// Builds the chunk geometry with one quad per visible block face
+	public Mesh buildFaceMesh(ChunkControl chunk) {
 		ArrayList<Vector3f> verticeList = new ArrayList<Vector3f>();
         ArrayList<Vector2f> textureCoordinateList = new ArrayList<Vector2f>();
         ArrayList<Integer> indicesList = new ArrayList<Integer>();
@@ -53,7 +53,12 @@ public class BlockWorld extends World {
 	@Override
 	public void registerAssets(AssetManager assetManager) {
 		/* Register The Block Material */
-		material = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md"); //"Common/MatDefs/Misc/Unshaded.j3md");
+		// Merged quads repeat their atlas tile in the shader, single faces can use the standard lighting material
+		if (((BlockVolume)volume).getMeshMode() == BlockVolume.MeshMode.Greedy) {
+			material = new Material(assetManager, "MatDefs/Blocks.j3md");
+		} else {
+			material = new Material(assetManager, "Common/MatDefs/Light/Lighting.j3md"); //"Common/MatDefs/Misc/Unshaded.j3md");
+		}
 		Texture texture = assetManager.loadTexture("Textures/cubes/terrain2.png");
         texture.setMagFilter(Texture.MagFilter.Nearest);
         texture.setMinFilter(Texture.MinFilter.NearestNoMipMaps);
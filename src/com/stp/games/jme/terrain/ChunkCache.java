@@ -0,0 +1,225 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// JME3 Dependencies
+// Java Dependencies
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+// Internal Dependencies
+
+/* Keeps chunks that have left the active area resident so walking back over the same ground doesn't reload them,
+ * up to a memory budget. Chunks are tracked in the order they were deactivated and the least recently used are evicted
+ * first, dirty chunks are written back to their region before they are dropped. A dirty chunk that can't be written
+ * back, because its region has no file and no directory to create one in or the write failed, is parked outside the
+ * budget instead of being dropped and a warning is printed. Without a directory new chunks start dirty and are all parked, set one through
+ * setDirectory to keep memory bounded. Only called from the game thread.
+ */
+public class ChunkCache {
+	public static final long DEFAULT_BUDGET = 64L*1024L*1024L;
+	public static final int DEFAULT_EVICTIONS_PER_TRIM = 4;
+	
+	protected final Volume volume;
+	protected final LinkedHashMap<Long, Entry> resident = new LinkedHashMap<Long, Entry>();
+	protected final LinkedHashMap<Long, Entry> parked = new LinkedHashMap<Long, Entry>();
+	
+	protected long budget;
+	protected long residentBytes;
+	protected long parkedBytes;
+	protected int evictionsPerTrim = DEFAULT_EVICTIONS_PER_TRIM;
+	protected File directory;
+	protected boolean warned;
+	
+	protected long hits;
+	protected long misses;
+	protected long evictions;
+	protected long writeBacks;
+	
+	public ChunkCache(Volume volume) {
+		this(volume, DEFAULT_BUDGET);
+	}
+	public ChunkCache(Volume volume, long budget) {
+		this.volume = volume;
+		this.budget = budget;
+	}
+	// Sets the number of bytes inactive chunks may hold before they are evicted
+	public void setBudget(long budget) {
+		this.budget = Math.max(0L, budget);
+	}
+	public long getBudget() {
+		return budget;
+	}
+	// Sets the maximum number of chunks evicted by a single trim, limits the write back done in one frame
+	public void setEvictionsPerTrim(int evictionsPerTrim) {
+		this.evictionsPerTrim = Math.max(1, evictionsPerTrim);
+	}
+	public int getEvictionsPerTrim() {
+		return evictionsPerTrim;
+	}
+	// Sets the directory regions without a file are written to when a dirty chunk is evicted, parked chunks
+	// are returned to the cache so they can be written there
+	public void setDirectory(File directory) {
+		this.directory = directory;
+		if (directory != null) {
+			for (Entry entry : parked.values()) {
+				resident.put(entry.chunk.getKey(), entry);
+				residentBytes += entry.bytes;
+			}
+			parked.clear();
+			parkedBytes = 0L;
+			warned = false;
+		}
+	}
+	public File getDirectory() {
+		return directory;
+	}
+	// Called when a loaded chunk leaves the active area, its size is recorded now so the same amount is taken off when it leaves
+	public void release(ChunkControl chunk) {
+		remove(chunk.getKey());
+		Entry entry = new Entry(chunk, chunk.getMemoryUsage());
+		resident.put(chunk.getKey(), entry);
+		residentBytes += entry.bytes;
+	}
+	// Called when a chunk is activated, returns true if it was still resident
+	public boolean acquire(ChunkControl chunk) {
+		if (remove(chunk.getKey())) {
+			hits++;
+			return true;
+		}
+		return false;
+	}
+	// Records that an activated chunk had to be created and loaded or generated again
+	public void miss() {
+		misses++;
+	}
+	// Evicts the least recently used chunks until the cache is within budget and returns the number evicted
+	public int trim() {
+		int count = 0;
+		Iterator<Entry> i = resident.values().iterator();
+		while (residentBytes > budget && count < evictionsPerTrim && i.hasNext()) {
+			Entry entry = i.next();
+			i.remove();
+			residentBytes -= entry.bytes;
+			if (evict(entry.chunk)) {
+				count++;
+			} else {
+				// Dropping a dirty chunk that can't be written back would lose the changes, so it is kept out of the
+				// way of later trims until a directory is set
+				parked.put(entry.chunk.getKey(), entry);
+				parkedBytes += entry.bytes;
+				if (!warned) {
+					System.out.println("ChunkCache: unable to write back " + entry.chunk + ", changed chunks will be kept in memory outside the budget until a directory is set");
+					warned = true;
+				}
+			}
+		}
+		return count;
+	}
+	// Writes the chunk back if needed and removes it from its region so it can be collected
+	protected boolean evict(ChunkControl chunk) {
+		Region region = chunk.getRegion();
+		if (region == null) {
+			return true;
+		}
+		if (chunk.isDirty()) {
+			if (!region.saveChunk(chunk, directory)) {
+				return false;
+			}
+			writeBacks++;
+		}
+		region.removeLoadedChunk(chunk);
+		volume.removePhysicsObject(chunk.getPhysicsControl());
+		chunk.setLoaded(false);
+		evictions++;
+		return true;
+	}
+	// Removes the entry for a chunk from the cache or the parked chunks, returns false if there wasn't one
+	private boolean remove(long key) {
+		Entry entry = resident.remove(key);
+		if (entry != null) {
+			residentBytes -= entry.bytes;
+			return true;
+		}
+		entry = parked.remove(key);
+		if (entry != null) {
+			parkedBytes -= entry.bytes;
+			return true;
+		}
+		return false;
+	}
+	// Forgets every resident chunk without writing them back
+	public void clear() {
+		resident.clear();
+		parked.clear();
+		residentBytes = 0L;
+		parkedBytes = 0L;
+	}
+	// Gets the number of inactive chunks being kept in memory
+	public int getResidentCount() {
+		return resident.size() + parked.size();
+	}
+	// Gets the estimated number of bytes held by inactive chunks that count against the budget
+	public long getResidentBytes() {
+		return residentBytes;
+	}
+	// Gets the number of changed chunks kept outside the budget because they couldn't be written back
+	public int getParkedCount() {
+		return parked.size();
+	}
+	public long getParkedBytes() {
+		return parkedBytes;
+	}
+	public long getHits() {
+		return hits;
+	}
+	public long getMisses() {
+		return misses;
+	}
+	public long getEvictions() {
+		return evictions;
+	}
+	public long getWriteBacks() {
+		return writeBacks;
+	}
+	// Resets the hit, miss, eviction and write back counters
+	public void resetStatistics() {
+		hits = 0L;
+		misses = 0L;
+		evictions = 0L;
+		writeBacks = 0L;
+	}
+	@Override
+	public String toString() {
+		return "ChunkCache [resident=" + resident.size() + ", bytes=" + residentBytes + "/" + budget + ", parked=" + parked.size() + ", parkedBytes=" + parkedBytes + ", hits=" + hits + ", misses=" + misses + ", evictions=" + evictions + ", writeBacks=" + writeBacks + "]";
+	}
+	// A resident chunk with the size it was counted at when it was released
+	protected static class Entry {
+		public final ChunkControl chunk;
+		public final long bytes;
+		
+		public Entry(ChunkControl chunk, long bytes) {
+			this.chunk = chunk;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -35,10 +35,13 @@ import com.jme3.renderer.Camera;
 import com.jme3.renderer.RenderManager;
 import com.jme3.renderer.ViewPort;
 import com.jme3.material.Material;
+import com.jme3.material.MatParam;
 import com.jme3.scene.Spatial;
 import com.jme3.scene.Node;
 import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
 import com.jme3.scene.Geometry;
+import com.jme3.scene.instancing.InstancedNode;
 import com.jme3.scene.control.AbstractControl;
 import com.jme3.scene.control.Control;
 import com.jme3.renderer.queue.RenderQueue.ShadowMode;
@@ -54,25 +57,90 @@ import java.util.Collection;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.stp.games.jme.GameRegistry;
 import com.stp.games.jme.controls.GameControl;
+import com.stp.games.jme.controls.ObjectIndex;
 import com.stp.games.jme.controls.Schematic;
 import com.stp.games.jme.forester.paging.ChunkPage;
 import com.stp.games.jme.forester.paging.DetailLevel;
 
 public class ChunkControl extends AbstractControl implements Savable,Comparable<ChunkControl> {
 	private static final DetailLevel[] DEFAULT_LEVELS = new DetailLevel[] { new DetailLevel(0f, 150f, 30f) };
+	private static final AtomicLong VERSIONS = new AtomicLong();
+	
+	// Node that holds the objects of a chunk, objects use it to find the chunk they belong to without parsing names
+	// Geometries whose material has instancing enabled are grouped under an instanced node and drawn with one call per mesh and material
+	public static class ObjectNode extends Node {
+		private ChunkControl chunk;
+		private InstancedNode instances;
+		private boolean needsInstancing;
+		
+		public ObjectNode() {
+		}
+		public ObjectNode(ChunkControl chunk) {
+			this.chunk = chunk;
+		}
+		public ChunkControl getChunk() {
+			return chunk;
+		}
+		public long getChunkKey() {
+			return (chunk != null) ? chunk.getKey() : ChunkKey.NONE;
+		}
+		// Attaches the spatial of an object, instanced geometries are grouped until the next call to updateInstances
+		public void attachObject(Spatial spatial) {
+			if (isInstanced(spatial)) {
+				if (instances == null) {
+					this.instances = new InstancedNode("Instances");
+					attachChild(instances);
+				}
+				instances.attachChild(spatial);
+				this.needsInstancing = true;
+			} else {
+				attachChild(spatial);
+			}
+		}
+		// Detaches the spatial of an object from this node or from the instanced group
+		public void detachObject(Spatial spatial) {
+			if (instances != null && spatial.getParent() == instances) {
+				instances.detachChild(spatial);
+			} else {
+				detachChild(spatial);
+			}
+		}
+		// Rebuilds the instance buffers after instanced geometries were attached, must be called from the update phase
+		public void updateInstances() {
+			if (needsInstancing) {
+				instances.instance();
+				this.needsInstancing = false;
+			}
+		}
+		// Checks if a spatial is a geometry whose material has instancing turned on
+		public static boolean isInstanced(Spatial spatial) {
+			if (spatial instanceof Geometry) {
+				Material material = ((Geometry)spatial).getMaterial();
+				if (material != null) {
+					MatParam param = material.getParam("UseInstancing");
+					return (param != null) && Boolean.TRUE.equals(param.getValue());
+				}
+			}
+			return false;
+		}
+	}
 
 	protected final ArrayList<GameControl> objects = new ArrayList<GameControl>();	
+	protected final ObjectIndex objectIndex = new ObjectIndex();
 	protected final ArrayList<ChunkPage> pages = new ArrayList<ChunkPage>();
 	//protected final ConcurrentLinkedQueue<Integer> removeList = new ConcurrentLinkedQueue<Integer>();
 	protected final Vector3f location = new Vector3f();
 	protected final Vector3f position = new Vector3f();
 	protected final Vector3f start = new Vector3f();
 	protected final Node node = new Node();
-	protected final Node objNode = new Node();
-	protected byte[][][] data;
+	protected final ObjectNode objNode = new ObjectNode(this);
+	// Tasks waiting for the mesh of this chunk to be up to date
+	protected final ConcurrentLinkedQueue<Runnable> updateTasks = new ConcurrentLinkedQueue<Runnable>();
+	protected ChunkData data;
 	
 	protected Region region;
 	protected Geometry shape;
@@ -85,6 +153,14 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	protected volatile boolean updated;
 	protected volatile boolean needsMeshUpdate;
 	protected volatile boolean needsObjectUpdate;
+	protected volatile boolean dirty;
+	protected volatile long version;
+	protected volatile long objectVersion;
+	// Versions the server assigned to the data and object list last received, with the local versions they were received at
+	protected volatile long serverVersion;
+	protected volatile long serverObjectVersion;
+	protected volatile long syncedVersion;
+	protected volatile long syncedObjectVersion;
 	
 	protected int nextAddress;
 	protected float distance;
@@ -106,6 +182,7 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 		this.loaded = false;
 		this.visible = false;
 		this.empty = true;
+		this.dirty = true;
 		this.updated = false;
 		this.explored = true;
 		this.needsMeshUpdate = false;
@@ -114,15 +191,23 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 		objNode.setShadowMode(ShadowMode.Cast);
 		setObjectsVisible(true);
 		
-		this.data = new byte[0][0][0];
+		this.data = createData(0, 0, 0);
 	}
 	// Initialize the dimensions for this chunk, must be called before any data updates
 	public void setChunkDimensions(int width, int height, int length) {
-		this.data = new byte[width][height][length];
+		this.data = createData(width, height, length);
 		this.position.set(location.x*width, location.y*height, location.z*length);
 		this.start.set(position);
 		start.subtractLocal(width/2, height/2, length/2);
 	}
+	// Creates the storage used to hold this chunks values, override to select a different storage mode
+	protected ChunkData createData(int width, int height, int length) {
+		return ChunkData.create(width, height, length);
+	}
+	// Gets the storage that holds this chunks values
+	public ChunkData getData() {
+		return data;
+	}
 	// Create pages to store batched geometry for this chunk and control level of detail
 	protected void createPages() {
 		for (int j = 0; j < getPageResolution(); j++) {
@@ -164,8 +249,36 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	public float getFoliageDensity() {
 		return 1f;
 	}
+	// Gets the version of the chunks data values, changes every time a value is edited
 	public long getVersion() {
-		return 0L;
+		return version;
+	}
+	// Gets the version of the chunks object list, changes every time an object is added or removed
+	public long getObjectVersion() {
+		return objectVersion;
+	}
+	// Records the versions the server assigned to the state just received, local versions stay process unique
+	public void setServerVersions(long version, long objectVersion) {
+		this.serverVersion = version;
+		this.syncedVersion = this.version;
+		this.serverObjectVersion = objectVersion;
+		this.syncedObjectVersion = this.objectVersion;
+	}
+	// Gets the server version of the data values held, 0 if none was received or the values were edited locally since
+	public long getServerVersion() {
+		return (syncedVersion == version) ? serverVersion : 0L;
+	}
+	// Gets the server version of the object list held, 0 if none was received or the list was edited locally since
+	public long getServerObjectVersion() {
+		return (syncedObjectVersion == objectVersion) ? serverObjectVersion : 0L;
+	}
+	// Gets the most recent version handed out to any chunk, a chunk with a higher version has changed since this was read
+	public static long getLatestVersion() {
+		return VERSIONS.get();
+	}
+	// Gets a new version number, versions are unique across all chunk instances so a reloaded chunk never reuses one
+	protected static long nextVersion() {
+		return VERSIONS.incrementAndGet();
 	}
 	@Override
     public void setSpatial(Spatial newSpatial) {
@@ -190,7 +303,31 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 		} else {
 			node.detachChild(shape);
 		}
-		updated = true;
+		markUpdated();
+	}
+	// Marks the mesh as up to date and runs the tasks that were waiting on it
+	protected void markUpdated() {
+		this.updated = true;
+		runUpdateTasks();
+	}
+	// Runs the task once the mesh of this chunk is up to date, right away if it already is
+	// The task runs on the thread that updates the mesh so it should only hand work off
+	public void whenUpdated(Runnable task) {
+		updateTasks.add(task);
+		if (updated) {
+			runUpdateTasks();
+		}
+	}
+	// Runs each waiting task once, tasks are polled so concurrent callers never run the same task twice
+	private void runUpdateTasks() {
+		Runnable task;
+		while ((task = updateTasks.poll()) != null) {
+			try {
+				task.run();
+			} catch (Exception ex) {
+				ex.printStackTrace();
+			}
+		}
 	}
 	// Checks whether the chunk has been updated
 	public void setMeshUpdateNeeded(boolean needsMeshUpdate) {
@@ -235,11 +372,12 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 			}
 			needsObjectUpdate = false;
 		}
+		objNode.updateInstances();
 	}
 	// Internal method to add objects only to be called inbetween frames in the update phase
 	private void addUpdate(GameControl object) {
 		if (!object.isActive() && object.hasSpatial()) {
-			objNode.attachChild(object.getSpatial());
+			objNode.attachObject(object.getSpatial());
 			object.setActive(true);
 			object.setSceneState(GameControl.SceneState.None);
 			//System.out.println("Adding object to scene: " + object + " at " + object.getWorldTranslation());
@@ -248,7 +386,7 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	// Internal method to remove objects only to be called inbetween frames in the update phase
 	private void removeUpdate(GameControl object) {
 		if (object.isActive() && object.hasSpatial()) {
-			objNode.detachChild(object.getSpatial());
+			objNode.detachObject(object.getSpatial());
 			object.setActive(false);
 			object.setSceneState(GameControl.SceneState.None);
 		}
@@ -347,6 +485,23 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	public PhysicsControl initializePhysics() {
 		return null;
 	}
+	// Gets the PhysicsControl previously initialized for this chunk if there is one
+	public PhysicsControl getPhysicsControl() {
+		return null;
+	}
+	// Gets an estimate of the number of bytes held by the chunks data and geometry
+	public long getMemoryUsage() {
+		long bytes = (data != null) ? data.getMemoryUsage() : 0L;
+		Mesh mesh = getMesh();
+		if (mesh != null) {
+			for (VertexBuffer buffer : mesh.getBufferList()) {
+				if (buffer.getData() != null) {
+					bytes += (long)buffer.getData().capacity()*buffer.getFormat().getComponentSize();
+				}
+			}
+		}
+		return bytes;
+	}
 	// Provide camera access for chunks that will have there own level of detail controls
 	public void addLodControl(Camera camera) {
 	}
@@ -365,30 +520,36 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 			object.setSceneState(GameControl.SceneState.Add);
 			object.setWorldTranslation(x, y, z);
 			objects.add(object);
+			objectIndex.add(object);
 			needsObjectUpdate = true;
+			dirty = true;
+			objectVersion = nextVersion();
 		}
 		return object;
 	}
-	// Removes and object from this chunk
+	// Removes and object from this chunk, the object is taken out of the index right away and out of the scene on the next update
 	public GameControl removeObject(GameControl object) {
-		int index = objects.indexOf(object);
-		if (index >= 0) {
-			objects.get(index).setSceneState(GameControl.SceneState.Remove);
+		if (objectIndex.remove(object)) {
+			object.setSceneState(GameControl.SceneState.Remove);
 			needsObjectUpdate = true;
-			return objects.get(index);
+			dirty = true;
+			objectVersion = nextVersion();
+			return object;
 		}
 		return null;
 	}
+	// Gets the spatial index over this chunk's objects for range and nearest object queries
+	public ObjectIndex getObjectIndex() {
+		return objectIndex;
+	}
 	public GameControl getObject(Vector3f coordinates) {
 		return this.getObject(coordinates.x, coordinates.y, coordinates.z);
 	}
 	public GameControl getObject(float x, float y, float z) {
-		for (GameControl object : objects) {
-			if (object.matchLocation(x, y, z)) {
-				return object;
-			}
-		}
-		return null;
+		return objectIndex.get(x, y, z);
+	}
+	public GameControl getObject(long uid) {
+		return objectIndex.getByUniqueId(uid);
 	}
 	// Returns the local coordinates of this chunk in relation to it's neighbor chunks
 	public Vector3f getLocation()	{
@@ -414,9 +575,9 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	public float getDistance() {
 		return distance;
 	}
-	// Sets the distance away from the given object coordinates and adjusts the lod
+	// Sets the distance from the given world coordinates to the chunk origin
 	public void setDistance(Vector3f coords) {
-		//this.distance = coords.distance(location);
+		this.distance = coords.distance(position);
 		/*if (distance <= 2) {
 			this.lod = 0;
 		} else if ( distance <= 4) {
@@ -476,15 +637,15 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	}
 	// Gets the chunks size on the x axis
 	public int getSizeX() {
-		return data.length;
+		return data.getSizeX();
 	}
 	// Gets the chunks size on the y axis
 	public int getSizeY() {
-		return data[0].length;
+		return data.getSizeY();
 	}
 	// Gets the chunks size on the z axis
 	public int getSizeZ() {
-		return data[0][0].length;
+		return data.getSizeZ();
 	}
 	// Gets the total number of data bytes this chunk holds
 	public int getDataCount() {
@@ -519,6 +680,14 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	public void setLoaded(boolean loaded) {
 		this.loaded = loaded;
 	}
+	// Checks whether the chunk has changed since it was last saved or loaded
+	public boolean isDirty() {
+		return dirty;
+	}
+	// Sets whether the chunk has changed since it was last saved or loaded
+	public void setDirty(boolean dirty) {
+		this.dirty = dirty;
+	}
 	// Checks whether the chunk is empty
 	public boolean isEmpty() {
 		return empty;
@@ -526,6 +695,14 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	public boolean isFadeEnabled() {
 		return true;
 	}
+	// Gets the packed key that uniquely identifies this chunk based on its location
+	public long getKey() {
+		return ChunkKey.pack(getX(), getY(), getZ());
+	}
+	// Gets the name used to store this chunk in a save archive
+	public String getEntryName() {
+		return ChunkKey.toEntryName(getKey());
+	}
 	// Gets a string that uniquely identifies this chunk based on its location
 	public String getName() {
 		return getX() + "_" + getY() + "_" + getZ();
@@ -559,12 +736,7 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	}
 	// Internal function to check if location is in this chunk
 	protected boolean isValidLocation(float x, float y, float z) {
-		int px = (int)x;
-		int py = (int)y;
-		int pz = (int)z;
-		return (px >= 0) && (px < data.length)
-		&& (py >= 0) && (py < data[0].length)
-		&& (pz >= 0) && (pz < data[0][0].length);
+		return data.contains((int)x, (int)y, (int)z);
     }
 	// Gets the tile value located at the specified global location
 	public byte getGlobalValue(float gx, float gy, float gz) {
@@ -577,7 +749,7 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	// Gets the voxel value at the specified location
 	public byte getValue(float x, float y, float z) {
 		if (isValidLocation(x, y, z)) {
-			return data[(int)x][(int)y][(int)z];
+			return data.get((int)x, (int)y, (int)z);
 		}
 		return 0;
 	}
@@ -592,28 +764,24 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 	// Sets the voxel value at the specified local location
 	public void setValue(float x, float y, float z, byte value) {
 		if (isValidLocation(x, y, z)) {
-			data[(int)x][(int)y][(int)z] = value;
+			data.set((int)x, (int)y, (int)z, value);
 		}
 		if (empty) {
 			empty = (value == 0);
 		}
+		dirty = true;
+		version = nextVersion();
 		needsMeshUpdate = true;
 		updated = false;
 	}	
 	// Sets all the data in the specified range to the given value
 	public void setValues(Vector3f start, Vector3f length, byte value)	{
-		for (int x = (int)start.getX(); x < length.getX(); x++) {
-			for (int y = (int)start.getY(); y < length.getY(); y++) {
-				for (int z = (int)start.getZ(); z < length.getZ(); z++) {
-					if (isValidLocation(x, y, z)) {
-						data[x][y][z] = value;
-					}
-				}
-			}
-		}
+		data.fill((int)start.getX(), (int)start.getY(), (int)start.getZ(), (int)Math.ceil(length.getX()), (int)Math.ceil(length.getY()), (int)Math.ceil(length.getZ()), value);
 		if (empty) {
 			empty = (value == 0);
 		}
+		dirty = true;
+		version = nextVersion();
 		needsMeshUpdate = true;
 		updated = false;
 	}
@@ -655,12 +823,12 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 		outputStream.write(ByteUtils.convertToBytes(getSizeZ()));
 		outputStream.write(ByteUtils.convertToBytes(empty));
 		if (!empty) {
-			for (int x = 0; x < data.length; x++) {
-				for (int y = 0; y < data[0].length; y++) {
-					outputStream.write(data[x][y]);
-				}
-			}
+			data.write(outputStream);
 		}
+		writeObjects(outputStream);
+    }
+	// Writes only the chunks object list to the specified out stream
+	public void writeObjects(OutputStream outputStream) throws IOException {
 		outputStream.write(ByteUtils.convertToBytes(objects.size()));
 		for (GameControl object : objects) {
 			long id = object.getId();
@@ -669,7 +837,7 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 				object.writeFields(outputStream);
 			}
 		}
-    }
+	}
 	// Reads the chunks data back in from the specified in stream
 	public void read(InputStream inputStream) throws IOException {
 		location.setX(ByteUtils.readFloat(inputStream));
@@ -678,17 +846,18 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 		setChunkDimensions(ByteUtils.readInt(inputStream), ByteUtils.readInt(inputStream), ByteUtils.readInt(inputStream));
 		this.empty = ByteUtils.readBoolean(inputStream);
 		if (!empty) {
-			for (int x = 0; x < data.length; x++) {
-				for (int y = 0; y < data[0].length; y++) {
-					for (int z = 0; z < data[0][0].length; z++) {
-						data[x][y][z] = (byte)inputStream.read();
-					}
-				}
-			}
+			data.read(inputStream);
 			needsMeshUpdate = true;
 			updated = false;
 		}
+		readObjects(inputStream);
+		version = nextVersion();
+		dirty = false;
+	}
+	// Replaces the chunks object list with the objects read from the specified in stream
+	public void readObjects(InputStream inputStream) throws IOException {
 		objects.clear();
+		objectIndex.clear();
 		int count = ByteUtils.readInt(inputStream);
 		for (int i = 0; i < count; i++) {
 			GameControl object = GameRegistry.getInstance().createObject(ByteUtils.readLong(inputStream));
@@ -697,6 +866,15 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 				addObject(object, object.getStoredLocation());
 			}
 		}
+		objectVersion = nextVersion();
+	}
+	// Replaces all data values with the values in streaming order from the array, used to apply replicated changes
+	public void readValues(byte[] src, int offset, boolean empty) {
+		data.fromArray(src, offset);
+		this.empty = empty;
+		needsMeshUpdate = true;
+		updated = false;
+		version = nextVersion();
 	}
 	// Writes the chunks data to the specified buffer
 	public void fillBuffer(ByteBuffer buffer) throws IOException {
@@ -708,11 +886,7 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 		buffer.putInt(getSizeZ());
 		buffer.put(empty ? (byte)1 : (byte)0);
 		if (!empty) {
-			for (int x = 0; x < data.length; x++) {
-				for (int y = 0; y < data[0].length; y++) {
-					buffer.put(data[x][y], 0, data[0][0].length);
-				}
-			}
+			data.write(buffer);
 		}
 		buffer.putInt(objects.size());
 		for (GameControl object : objects) {
@@ -734,15 +908,12 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 		setChunkDimensions(buffer.getInt(), buffer.getInt(), buffer.getInt());
 		this.empty = (buffer.get() != 0);
 		if (!empty) {
-			for (int x = 0; x < data.length; x++) {
-				for (int y = 0; y < data[0].length; y++) {
-					buffer.get(data[x][y]);
-				}
-			}
+			data.read(buffer);
 			needsMeshUpdate = true;
 			updated = false;
 		}
 		objects.clear();
+		objectIndex.clear();
 		int count = buffer.getInt();
 		for (int i = 0; i < count; i++) {
 			GameControl object = GameRegistry.getInstance().createObject(buffer.getLong());
@@ -751,6 +922,8 @@ public class ChunkControl extends AbstractControl implements Savable,Comparable<
 				addObject(object, object.getStoredLocation());
 			}
 		}
+		version = nextVersion();
+		dirty = false;
 	}
 	// Saves chunk data in it's current render state for quick caching using the specified JME exporter
 	@Override
@@ -0,0 +1,180 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// Java Dependencies
+import java.io.EOFException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/* Storage for the values of a chunk. Values are addressed by local x, y, z coordinates and are always streamed in
+ * x, y, z order (z varying fastest) so every storage mode reads and writes the same format.
+ */
+public abstract class ChunkData {
+	public static enum Mode {
+		Array, Direct, Palette
+	};
+	private static volatile Mode defaultMode = Mode.Array;
+	private static final ThreadLocal<byte[]> scratch = new ThreadLocal<byte[]>();
+	
+	protected final int sizeX;
+	protected final int sizeY;
+	protected final int sizeZ;
+	
+	protected ChunkData(int sizeX, int sizeY, int sizeZ) {
+		this.sizeX = sizeX;
+		this.sizeY = sizeY;
+		this.sizeZ = sizeZ;
+	}
+	// Sets the storage mode used for new chunks, the server can use Palette to keep mostly uniform chunks compact
+	public static void setDefaultMode(Mode mode) {
+		defaultMode = mode;
+	}
+	public static Mode getDefaultMode() {
+		return defaultMode;
+	}
+	// Creates storage for a chunk using the default mode
+	public static ChunkData create(int sizeX, int sizeY, int sizeZ) {
+		return create(defaultMode, sizeX, sizeY, sizeZ);
+	}
+	// Creates storage for a chunk using the specified mode
+	public static ChunkData create(Mode mode, int sizeX, int sizeY, int sizeZ) {
+		switch (mode) {
+			case Direct: return new DirectChunkData(sizeX, sizeY, sizeZ);
+			case Palette: return new PaletteChunkData(sizeX, sizeY, sizeZ);
+			default: return new ArrayChunkData(sizeX, sizeY, sizeZ);
+		}
+	}
+	public abstract Mode getMode();
+	// Gets the value at the specified local location, the location is not bounds checked
+	public abstract byte get(int x, int y, int z);
+	// Sets the value at the specified local location, the location is not bounds checked
+	public abstract void set(int x, int y, int z, byte value);
+	// Gets the approximate number of bytes used to hold the values
+	public abstract int getMemoryUsage();
+	
+	public int getSizeX() {
+		return sizeX;
+	}
+	public int getSizeY() {
+		return sizeY;
+	}
+	public int getSizeZ() {
+		return sizeZ;
+	}
+	// Gets the total number of values held
+	public int getCount() {
+		return sizeX * sizeY * sizeZ;
+	}
+	// Gets the position of the specified location in streaming order
+	public final int indexOf(int x, int y, int z) {
+		return (x*sizeY + y)*sizeZ + z;
+	}
+	// Checks whether the specified local location is inside the data bounds
+	public boolean contains(int x, int y, int z) {
+		return (x >= 0) && (x < sizeX) && (y >= 0) && (y < sizeY) && (z >= 0) && (z < sizeZ);
+	}
+	// Sets every value to the specified value
+	public void fill(byte value) {
+		fill(0, 0, 0, sizeX, sizeY, sizeZ, value);
+	}
+	// Sets all values from the start location (inclusive) to the end location (exclusive), the range is clamped to the data bounds
+	public void fill(int x0, int y0, int z0, int x1, int y1, int z1, byte value) {
+		x0 = Math.max(x0, 0); y0 = Math.max(y0, 0); z0 = Math.max(z0, 0);
+		x1 = Math.min(x1, sizeX); y1 = Math.min(y1, sizeY); z1 = Math.min(z1, sizeZ);
+		for (int x = x0; x < x1; x++) {
+			for (int y = y0; y < y1; y++) {
+				for (int z = z0; z < z1; z++) {
+					set(x, y, z, value);
+				}
+			}
+		}
+	}
+	// Copies all values in streaming order into the array starting at the given offset
+	public void toArray(byte[] dest, int offset) {
+		int index = offset;
+		for (int x = 0; x < sizeX; x++) {
+			for (int y = 0; y < sizeY; y++) {
+				for (int z = 0; z < sizeZ; z++) {
+					dest[index++] = get(x, y, z);
+				}
+			}
+		}
+	}
+	// Replaces all values with the values in streaming order from the array starting at the given offset
+	public void fromArray(byte[] src, int offset) {
+		int index = offset;
+		for (int x = 0; x < sizeX; x++) {
+			for (int y = 0; y < sizeY; y++) {
+				for (int z = 0; z < sizeZ; z++) {
+					set(x, y, z, src[index++]);
+				}
+			}
+		}
+	}
+	// Writes all values to the buffer
+	public void write(ByteBuffer buffer) {
+		byte[] temp = getScratch(getCount());
+		toArray(temp, 0);
+		buffer.put(temp, 0, getCount());
+	}
+	// Reads all values from the buffer
+	public void read(ByteBuffer buffer) {
+		byte[] temp = getScratch(getCount());
+		buffer.get(temp, 0, getCount());
+		fromArray(temp, 0);
+	}
+	// Writes all values to the stream
+	public void write(OutputStream outputStream) throws IOException {
+		byte[] temp = getScratch(getCount());
+		toArray(temp, 0);
+		outputStream.write(temp, 0, getCount());
+	}
+	// Reads all values from the stream
+	public void read(InputStream inputStream) throws IOException {
+		byte[] temp = getScratch(getCount());
+		readFully(inputStream, temp, 0, getCount());
+		fromArray(temp, 0);
+	}
+	// Gets a per thread array of at least the specified size used to stage bulk copies
+	protected static byte[] getScratch(int size) {
+		byte[] temp = scratch.get();
+		if (temp == null || temp.length < size) {
+			temp = new byte[size];
+			scratch.set(temp);
+		}
+		return temp;
+	}
+	// Reads exactly the specified number of bytes from the stream
+	protected static void readFully(InputStream inputStream, byte[] dest, int offset, int length) throws IOException {
+		while (length > 0) {
+			int count = inputStream.read(dest, offset, length);
+			if (count < 0) {
+				throw new EOFException("Chunk data ended with " + length + " bytes remaining");
+			}
+			offset += count;
+			length -= count;
+		}
+	}
+}
@@ -0,0 +1,193 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// Java Dependencies
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* Open addressed hash table that maps packed chunk keys (see ChunkKey) to values. Lookups never lock and
+ * can run on any thread while the owning thread adds or removes entries, writers are serialized on the table.
+ */
+public class ChunkIndex<T> {
+	private static final int MIN_CAPACITY = 16;
+	private static final Entry REMOVED = new Entry(0L, null);
+	
+	private volatile AtomicReferenceArray<Entry> table;
+	private volatile int size;
+	private int used;
+	
+	public ChunkIndex() {
+		this(MIN_CAPACITY);
+	}
+	public ChunkIndex(int expected) {
+		this.table = new AtomicReferenceArray<Entry>(tableSizeFor(expected));
+	}
+	// Gets the value stored at the specified chunk location
+	public T get(int x, int y, int z) {
+		return get(ChunkKey.pack(x, y, z));
+	}
+	// Gets the value stored with the specified key or null if there isn't one
+	@SuppressWarnings("unchecked")
+	public T get(long key) {
+		AtomicReferenceArray<Entry> tab = table;
+		int mask = tab.length() - 1;
+		int index = ChunkKey.hash(key) & mask;
+		for (int probe = 0; probe <= mask; probe++) {
+			Entry e = tab.get(index);
+			if (e == null) {
+				return null;
+			}
+			if (e != REMOVED && e.key == key) {
+				return (T)e.value;
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+	// Checks whether a value is stored with the specified key
+	public boolean containsKey(long key) {
+		return get(key) != null;
+	}
+	// Stores the value with the specified key and returns the value it replaced
+	@SuppressWarnings("unchecked")
+	public synchronized T put(long key, T value) {
+		if (value == null) {
+			return remove(key);
+		}
+		if ((used + 1) * 4 > table.length() * 3) {
+			rehash(size + 1);
+		}
+		AtomicReferenceArray<Entry> tab = table;
+		int mask = tab.length() - 1;
+		int index = ChunkKey.hash(key) & mask;
+		int free = -1;
+		while (true) {
+			Entry e = tab.get(index);
+			if (e == null) {
+				break;
+			}
+			if (e == REMOVED) {
+				if (free < 0) {
+					free = index;
+				}
+			} else if (e.key == key) {
+				tab.set(index, new Entry(key, value));
+				return (T)e.value;
+			}
+			index = (index + 1) & mask;
+		}
+		if (free >= 0) {
+			index = free;
+		} else {
+			used++;
+		}
+		tab.set(index, new Entry(key, value));
+		size++;
+		return null;
+	}
+	// Removes the value stored with the specified key and returns it
+	@SuppressWarnings("unchecked")
+	public synchronized T remove(long key) {
+		AtomicReferenceArray<Entry> tab = table;
+		int mask = tab.length() - 1;
+		int index = ChunkKey.hash(key) & mask;
+		for (int probe = 0; probe <= mask; probe++) {
+			Entry e = tab.get(index);
+			if (e == null) {
+				return null;
+			}
+			if (e != REMOVED && e.key == key) {
+				tab.set(index, REMOVED);
+				size--;
+				return (T)e.value;
+			}
+			index = (index + 1) & mask;
+		}
+		return null;
+	}
+	// Removes all entries from the index
+	public synchronized void clear() {
+		this.table = new AtomicReferenceArray<Entry>(MIN_CAPACITY);
+		this.size = 0;
+		this.used = 0;
+	}
+	// Gets the number of entries in the index
+	public int size() {
+		return size;
+	}
+	public boolean isEmpty() {
+		return size == 0;
+	}
+	// Copies all the values currently in the index to the specified collection and returns it for convenience
+	@SuppressWarnings("unchecked")
+	public <C extends Collection<? super T>> C values(C store) {
+		AtomicReferenceArray<Entry> tab = table;
+		for (int i = 0; i < tab.length(); i++) {
+			Entry e = tab.get(i);
+			if (e != null && e != REMOVED) {
+				store.add((T)e.value);
+			}
+		}
+		return store;
+	}
+	// Gets a snapshot of the values currently in the index
+	public ArrayList<T> values() {
+		return values(new ArrayList<T>(size));
+	}
+	// Rebuilds the table into a new array sized for the given entry count, the new table is published once it is complete
+	private void rehash(int expected) {
+		AtomicReferenceArray<Entry> old = table;
+		AtomicReferenceArray<Entry> tab = new AtomicReferenceArray<Entry>(tableSizeFor(expected * 2));
+		int mask = tab.length() - 1;
+		for (int i = 0; i < old.length(); i++) {
+			Entry e = old.get(i);
+			if (e != null && e != REMOVED) {
+				int index = ChunkKey.hash(e.key) & mask;
+				while (tab.get(index) != null) {
+					index = (index + 1) & mask;
+				}
+				tab.set(index, e);
+			}
+		}
+		this.used = size;
+		this.table = tab;
+	}
+	private static int tableSizeFor(int expected) {
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 < expected * 4) {
+			capacity <<= 1;
+		}
+		return capacity;
+	}
+	// Immutable key value pair so readers always see a consistent entry
+	private static final class Entry {
+		final long key;
+		final Object value;
+		
+		Entry(long key, Object value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// JME3 Dependencies
+import com.jme3.math.Vector3f;
+
+// Packs a chunk location into a single long so chunks can be addressed without allocating
+public final class ChunkKey {
+	private static final int BITS = 21;
+	private static final long MASK = (1L << BITS) - 1L;
+	private static final String ENTRY_PREFIX = "c";
+	
+	// Range of chunk coordinates that can be packed without wrapping
+	public static final int MIN_COORD = -(1 << (BITS - 1));
+	public static final int MAX_COORD = (1 << (BITS - 1)) - 1;
+	
+	// Key value used to indicate no chunk, packed keys never have the sign bit set so this can't collide
+	public static final long NONE = Long.MIN_VALUE;
+	
+	private ChunkKey() {
+	}
+	// Packs the specified chunk location, each axis must fit in a signed 21 bit integer
+	public static long pack(int x, int y, int z) {
+		return ((x & MASK) << (BITS*2)) | ((y & MASK) << BITS) | (z & MASK);
+	}
+	// Packs the specified chunk location, fractional values are truncated
+	public static long pack(float x, float y, float z) {
+		return pack((int)x, (int)y, (int)z);
+	}
+	// Packs the specified chunk location vector
+	public static long pack(Vector3f location) {
+		return pack((int)location.x, (int)location.y, (int)location.z);
+	}
+	// Unpacks the x coordinate from the specified key
+	public static int getX(long key) {
+		return (int)((key << (64 - BITS*3)) >> (64 - BITS));
+	}
+	// Unpacks the y coordinate from the specified key
+	public static int getY(long key) {
+		return (int)((key << (64 - BITS*2)) >> (64 - BITS));
+	}
+	// Unpacks the z coordinate from the specified key
+	public static int getZ(long key) {
+		return (int)((key << (64 - BITS)) >> (64 - BITS));
+	}
+	// Unpacks the specified key into the given vector and returns it for convenience
+	public static Vector3f unpack(long key, Vector3f store) {
+		return store.set(getX(key), getY(key), getZ(key));
+	}
+	// Gets the legacy string name for the specified key in the format x_y_z
+	public static String toName(long key) {
+		return getX(key) + "_" + getY(key) + "_" + getZ(key);
+	}
+	// Parses a legacy x_y_z chunk name into a key without allocating, returns NONE if the name is not valid
+	public static long parseName(CharSequence name) {
+		int length = name.length();
+		int x = 0, y = 0, z = 0;
+		int part = 0;
+		int value = 0;
+		int digits = 0;
+		boolean negative = false;
+		for (int i = 0; i <= length; i++) {
+			char c = (i < length) ? name.charAt(i) : '_';
+			if (c == '-' && digits == 0 && !negative) {
+				negative = true;
+			} else if (c >= '0' && c <= '9') {
+				value = value*10 + (c - '0');
+				digits++;
+				if (value > -MIN_COORD) {
+					return NONE;
+				}
+			} else if (c == '_' && digits > 0) {
+				if (negative) {
+					value = -value;
+				} else if (value > MAX_COORD) {
+					return NONE;
+				}
+				switch (part) {
+					case 0: x = value; break;
+					case 1: y = value; break;
+					case 2: z = value; break;
+					default: return NONE;
+				}
+				part++;
+				value = 0;
+				digits = 0;
+				negative = false;
+			} else {
+				return NONE;
+			}
+		}
+		return (part == 3) ? pack(x, y, z) : NONE;
+	}
+	// Gets the name used to store the chunk with the specified key in a save archive
+	public static String toEntryName(long key) {
+		return ENTRY_PREFIX + Long.toHexString(key);
+	}
+	// Parses the name of a save archive entry into a key, legacy x_y_z names are also accepted, returns NONE if the entry is not a chunk
+	public static long parseEntryName(String name) {
+		if (name.startsWith(ENTRY_PREFIX) && name.length() > ENTRY_PREFIX.length()) {
+			try {
+				long key = Long.parseLong(name.substring(ENTRY_PREFIX.length()), 16);
+				return (key >= 0) ? key : NONE;
+			} catch (NumberFormatException ex) {
+				return NONE;
+			}
+		}
+		return parseName(name);
+	}
+	// Spreads the bits of the key so it can be used to index a hash table
+	public static int hash(long key) {
+		key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+		key = (key ^ (key >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return (int)(key ^ (key >>> 33));
+	}
+}
@@ -0,0 +1,265 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// JME3 Dependencies
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+// Java Dependencies
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/* Streams chunks into the world without blocking the frame loop. Each request runs the read, generate and mesh stages
+ * on the worker pool, nearest chunks first, and the result is handed back to the game thread where the mesh and physics
+ * are attached. Requests for chunks that leave the active area are cancelled and only a limited number of results are
+ * applied each frame so a burst of finished chunks can't cause a hitch.
+ */
+public class ChunkStreamer {
+	public static enum Stage {
+		Queued, Read, Generate, Mesh, Apply, Done
+	};
+	private static final Comparator<Request> NEAREST_FIRST = new Comparator<Request>() {
+		public int compare(Request a, Request b) {
+			return Float.compare(a.priority, b.priority);
+		}
+	};
+	
+	protected final World world;
+	protected final Executor executor;
+	protected final PriorityBlockingQueue<Request> pending = new PriorityBlockingQueue<Request>(64, NEAREST_FIRST);
+	protected final ConcurrentLinkedQueue<Request> completed = new ConcurrentLinkedQueue<Request>();
+	protected final ChunkIndex<Request> requests = new ChunkIndex<Request>();
+	protected final AtomicInteger running = new AtomicInteger();
+	protected final Vector3f focus = new Vector3f(Float.NaN, Float.NaN, Float.NaN);
+	protected final ArrayList<Request> reorder = new ArrayList<Request>();
+	
+	protected int maxRunning;
+	protected int maxAppliedPerFrame = 4;
+	protected float refocusDistance = 16f;
+	
+	public ChunkStreamer(World world, Executor executor, int maxRunning) {
+		this.world = world;
+		this.executor = executor;
+		this.maxRunning = Math.max(1, maxRunning);
+	}
+	// Sets the number of results that will be applied to the scene each frame
+	public void setMaxAppliedPerFrame(int maxAppliedPerFrame) {
+		this.maxAppliedPerFrame = Math.max(1, maxAppliedPerFrame);
+	}
+	public int getMaxAppliedPerFrame() {
+		return maxAppliedPerFrame;
+	}
+	// Sets the number of worker threads that may be streaming chunks at once
+	public void setMaxRunning(int maxRunning) {
+		this.maxRunning = Math.max(1, maxRunning);
+		schedule();
+	}
+	public int getMaxRunning() {
+		return maxRunning;
+	}
+	// Gets the number of requests waiting for a worker
+	public int getPendingCount() {
+		return pending.size();
+	}
+	// Gets the number of requests that have not yet been applied including those in progress
+	public int getRequestCount() {
+		return requests.size();
+	}
+	// Checks whether there is no outstanding work
+	public boolean isIdle() {
+		return requests.isEmpty();
+	}
+	// Checks whether a request is outstanding for the specified chunk
+	public boolean isRequested(ChunkControl chunk) {
+		return requests.containsKey(chunk.getKey());
+	}
+	// Requests that the chunk be loaded or generated if necessary and its mesh rebuilt if it needs it
+	public void request(ChunkControl chunk) {
+		long key = chunk.getKey();
+		Request current = requests.get(key);
+		if (current != null) {
+			// A cancelled request still in the map is in flight, reviving it avoids two workers on the same chunk
+			current.cancelled = false;
+			return;
+		}
+		Request request = new Request(chunk, key);
+		request.priority = distanceTo(chunk);
+		requests.put(key, request);
+		pending.offer(request);
+		schedule();
+	}
+	// Cancels the outstanding request for the specified chunk
+	public void cancel(ChunkControl chunk) {
+		Request request = requests.get(chunk.getKey());
+		if (request != null) {
+			request.cancelled = true;
+			// Requests already taken by a worker stay in the map until they are drained from the completed queue
+			if (pending.remove(request)) {
+				requests.remove(request.key);
+			}
+		}
+	}
+	// Cancels all requests for chunks that are no longer active, to be called on the game thread after the active area changes
+	public void cancelInactive() {
+		for (Request request : requests.values(reorder)) {
+			if (!request.cancelled && !request.chunk.isActive()) {
+				cancel(request.chunk);
+			}
+		}
+		reorder.clear();
+	}
+	// Updates the location requests are prioritized around, pending requests are reordered once the focus has moved far enough
+	public void setFocus(Vector3f location) {
+		if (!Float.isNaN(focus.x) && focus.distanceSquared(location) < refocusDistance*refocusDistance) {
+			return;
+		}
+		focus.set(location);
+		pending.drainTo(reorder);
+		for (Request request : reorder) {
+			request.priority = distanceTo(request.chunk);
+		}
+		pending.addAll(reorder);
+		reorder.clear();
+	}
+	// Applies finished requests to the scene, must be called on the game thread, returns the number applied
+	public int applyCompleted() {
+		int count = 0;
+		while (count < maxAppliedPerFrame) {
+			Request request = completed.poll();
+			if (request == null) {
+				break;
+			}
+			if (requests.get(request.key) == request) {
+				requests.remove(request.key);
+			}
+			if (request.cancelled) {
+				// Make sure a discarded mesh is rebuilt if the chunk comes back into range
+				if (request.mesh != null) {
+					request.chunk.setMeshUpdateNeeded(true);
+				}
+				continue;
+			}
+			request.stage = Stage.Apply;
+			if (request.mesh != null) {
+				world.applyChunkMesh(request.chunk, request.mesh);
+			}
+			request.stage = Stage.Done;
+			count++;
+		}
+		return count;
+	}
+	// Drops every outstanding request
+	public void clear() {
+		for (Request request : requests.values(reorder)) {
+			request.cancelled = true;
+		}
+		reorder.clear();
+		pending.clear();
+		completed.clear();
+		requests.clear();
+	}
+	// Starts workers until the running limit is reached or there is nothing left to do
+	protected void schedule() {
+		while (!pending.isEmpty()) {
+			int current = running.get();
+			if (current >= maxRunning) {
+				return;
+			}
+			if (running.compareAndSet(current, current + 1)) {
+				executor.execute(worker);
+			}
+		}
+	}
+	protected float distanceTo(ChunkControl chunk) {
+		if (Float.isNaN(focus.x)) {
+			return 0f;
+		}
+		chunk.setDistance(focus);
+		return chunk.getDistance();
+	}
+	// Runs the read, generate and mesh stages for a request, checking for cancellation between each stage
+	protected void process(Request request) {
+		ChunkControl chunk = request.chunk;
+		Volume volume = world.getVolume();
+		if (!chunk.isLoaded()) {
+			request.stage = Stage.Read;
+			if (!volume.loadChunk(chunk)) {
+				if (request.cancelled) {
+					return;
+				}
+				request.stage = Stage.Generate;
+				world.generateChunk(chunk);
+				volume.addLoadedChunk(chunk);
+			}
+			volume.beforeActivate(chunk);
+			world.fireChunkLoaded(chunk);
+		}
+		if (request.cancelled) {
+			return;
+		}
+		if (chunk.isMeshUpdateNeeded() && !chunk.isRestricted()) {
+			request.stage = Stage.Mesh;
+			chunk.setMeshUpdateNeeded(false);
+			request.mesh = volume.buildMesh(chunk);
+		}
+	}
+	// Worker that takes the nearest pending request, a worker handles one request and then reschedules
+	private final Runnable worker = new Runnable() {
+		public void run() {
+			try {
+				Request request = pending.poll();
+				if (request != null) {
+					if (!request.cancelled) {
+						try {
+							process(request);
+						} catch (Exception ex) {
+							ex.printStackTrace();
+						}
+					}
+					completed.offer(request);
+				}
+			} finally {
+				running.decrementAndGet();
+				schedule();
+			}
+		}
+	};
+	// A single chunk moving through the stages
+	protected static class Request {
+		protected final ChunkControl chunk;
+		protected final long key;
+		protected final long time = System.nanoTime();
+		protected volatile boolean cancelled;
+		protected volatile Stage stage = Stage.Queued;
+		protected volatile float priority;
+		protected volatile Mesh mesh;
+		
+		protected Request(ChunkControl chunk, long key) {
+			this.chunk = chunk;
+			this.key = key;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// JME3 Dependencies
+import com.jme3.util.BufferUtils;
+// Java Dependencies
+import java.nio.ByteBuffer;
+
+// Chunk storage backed by a direct buffer so the values are held outside of the java heap
+public class DirectChunkData extends ChunkData {
+	protected final ByteBuffer values;
+	
+	public DirectChunkData(int sizeX, int sizeY, int sizeZ) {
+		super(sizeX, sizeY, sizeZ);
+		this.values = BufferUtils.createByteBuffer(sizeX * sizeY * sizeZ);
+	}
+	public Mode getMode() {
+		return Mode.Direct;
+	}
+	public byte get(int x, int y, int z) {
+		return values.get(indexOf(x, y, z));
+	}
+	public void set(int x, int y, int z, byte value) {
+		values.put(indexOf(x, y, z), value);
+	}
+	public int getMemoryUsage() {
+		return values.capacity();
+	}
+	// Gets a view of the underlying buffer, values are stored in streaming order
+	public ByteBuffer getBuffer() {
+		ByteBuffer view = values.duplicate();
+		view.clear();
+		return view;
+	}
+	@Override
+	public void fill(int x0, int y0, int z0, int x1, int y1, int z1, byte value) {
+		x0 = Math.max(x0, 0); y0 = Math.max(y0, 0); z0 = Math.max(z0, 0);
+		x1 = Math.min(x1, sizeX); y1 = Math.min(y1, sizeY); z1 = Math.min(z1, sizeZ);
+		for (int x = x0; x < x1; x++) {
+			for (int y = y0; y < y1; y++) {
+				int index = indexOf(x, y, 0);
+				for (int z = z0; z < z1; z++) {
+					values.put(index + z, value);
+				}
+			}
+		}
+	}
+	@Override
+	public void toArray(byte[] dest, int offset) {
+		getBuffer().get(dest, offset, getCount());
+	}
+	@Override
+	public void fromArray(byte[] src, int offset) {
+		getBuffer().put(src, offset, getCount());
+	}
+	@Override
+	public void write(ByteBuffer buffer) {
+		buffer.put(getBuffer());
+	}
+	@Override
+	public void read(ByteBuffer buffer) {
+		ByteBuffer source = buffer.duplicate();
+		source.limit(source.position() + getCount());
+		getBuffer().put(source);
+		buffer.position(buffer.position() + getCount());
+	}
+}
@@ -142,7 +142,7 @@ public class HeightChunkControl extends ChunkControl {
 			node.attachChild(terrain);
 			System.out.println("Attached terrain object at: x=" + position.x + " z=" + position.z);
 		}
-		updated = true;
+		markUpdated();
 		System.out.println("World Coords: " + this + " | " + terrain.getWorldTranslation() + " | " + terrain.getWorldLightList().size());
 	}
 	@Override
@@ -274,6 +274,20 @@ public class HeightChunkControl extends ChunkControl {
 			}
 		}
 	}
+	// Gets the PhysicsControl attached to the terrain if it has been initialized
+	@Override
+	public PhysicsControl getPhysicsControl() {
+		return (terrain != null) ? terrain.getControl(RigidBodyControl.class) : null;
+	}
+	// Includes the terrain, estimated from the height map at a position, normal and texture coordinate per sample
+	@Override
+	public long getMemoryUsage() {
+		long bytes = super.getMemoryUsage();
+		if (terrain != null && terrain.getHeightMap() != null) {
+			bytes += terrain.getHeightMap().length*36L;
+		}
+		return bytes;
+	}
 	// Initializes the PhysicsControl for this chunk and returns it so it can be added to the PhysicsSpace
 	@Override
 	public PhysicsControl initializePhysics() {
@@ -714,39 +714,6 @@ public class HeightVolume extends Volume
 	}
 	// Creates the voxel shape geometry using marching cubes algorithm
 	public static Mesh generateVoxelMesh(VoxelShape source, Vector3f loc, Vector3f lodSize) {
-		MeshBuilder meshBuilder = new MeshBuilder();
-        for (float i = -1f; i < source.getWidth(); i += lodSize.x) {
-            for (float j = -1f; j < source.getHeight(); j += lodSize.y) {
-                for (float k = -1f; k < source.getLength(); k += lodSize.z) {
-				
-                    float[] values = {
-						source.getVoxel(i, j, k),
-                        source.getVoxel(i + lodSize.x, j, k),
-                        source.getVoxel(i + lodSize.x, j, k + lodSize.z),
-                        source.getVoxel(i, j, k + lodSize.z),
-                        source.getVoxel(i, j + lodSize.y, k),
-                        source.getVoxel(i + lodSize.x, j + lodSize.y, k),
-                        source.getVoxel(i + lodSize.x, j + lodSize.y, k + lodSize.z),
-                        source.getVoxel(i, j + lodSize.y, k + lodSize.z)
-					};
-
-                    Vector3f[] locations = {
-                        new Vector3f(loc.x + i + 0, loc.y + j + 0, loc.z + k + 0),
-                        new Vector3f(loc.x + i + lodSize.x, loc.y  + j + 0, loc.z + k + 0),
-                        new Vector3f(loc.x + i + lodSize.x, loc.y  + j + 0, loc.z + k + lodSize.z),
-                        new Vector3f(loc.x + i + 0, loc.y  + j + 0, loc.z + k + lodSize.z),
-                        new Vector3f(loc.x + i + 0, loc.y  + j + lodSize.y, loc.z + k + 0),
-                        new Vector3f(loc.x + i + lodSize.x, loc.y  + j + lodSize.y, loc.z + k + 0),
-                        new Vector3f(loc.x + i + lodSize.x, loc.y  + j + lodSize.y, loc.z + k + lodSize.z),
-                        new Vector3f(loc.x + i + 0, loc.y  + j + lodSize.y, loc.z + k + lodSize.z)
-                    };
-					IsoSurface.addMarchingCubesTriangles(source, locations, values, null, meshBuilder);
-                }
-            }
-        }
-		if (meshBuilder.countVertices() > 0) {
-			return meshBuilder.generateMesh();
-		}
-		return null;
+		return IsoSurface.generateVoxelMesh(source, loc, lodSize);
 	}
 }
\ No newline at end of file
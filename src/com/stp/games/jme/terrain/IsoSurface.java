@@ -49,40 +49,8 @@ public class IsoSurface {
 	}
 	// Creates the voxel shape geometry using marching cubes algorithm
 	public static Mesh generateVoxelMesh(VoxelShape source, Vector3f loc, Vector3f lodSize) {
-		MeshBuilder meshBuilder = new MeshBuilder();
-        for (float i = -1f; i < source.getWidth(); i += lodSize.x) {
-            for (float j = -1f; j < source.getHeight(); j += lodSize.y) {
-                for (float k = -1f; k < source.getLength(); k += lodSize.z) {
-				
-                    float[] values = {
-						source.getVoxel(i, j, k),
-                        source.getVoxel(i + lodSize.x, j, k),
-                        source.getVoxel(i + lodSize.x, j, k + lodSize.z),
-                        source.getVoxel(i, j, k + lodSize.z),
-                        source.getVoxel(i, j + lodSize.y, k),
-                        source.getVoxel(i + lodSize.x, j + lodSize.y, k),
-                        source.getVoxel(i + lodSize.x, j + lodSize.y, k + lodSize.z),
-                        source.getVoxel(i, j + lodSize.y, k + lodSize.z)
-					};
-
-                    Vector3f[] locations = {
-                        new Vector3f(loc.x + i + 0, loc.y + j + 0, loc.z + k + 0),
-                        new Vector3f(loc.x + i + lodSize.x, loc.y  + j + 0, loc.z + k + 0),
-                        new Vector3f(loc.x + i + lodSize.x, loc.y  + j + 0, loc.z + k + lodSize.z),
-                        new Vector3f(loc.x + i + 0, loc.y  + j + 0, loc.z + k + lodSize.z),
-                        new Vector3f(loc.x + i + 0, loc.y  + j + lodSize.y, loc.z + k + 0),
-                        new Vector3f(loc.x + i + lodSize.x, loc.y  + j + lodSize.y, loc.z + k + 0),
-                        new Vector3f(loc.x + i + lodSize.x, loc.y  + j + lodSize.y, loc.z + k + lodSize.z),
-                        new Vector3f(loc.x + i + 0, loc.y  + j + lodSize.y, loc.z + k + lodSize.z)
-                    };
-					addMarchingCubesTriangles(source, locations, values, null, meshBuilder);
-                }
-            }
-        }
-		if (meshBuilder.countVertices() > 0) {
-			return meshBuilder.generateMesh();
-		}
-		return null;
+		return MarchingCubes.get().generateMesh(source, loc, new Vector3f(-1f, -1f, -1f),
+																new Vector3f(source.getWidth(), source.getHeight(), source.getLength()), lodSize);
 	}
     /**
      * Adds triangles to a MeshBuilder via Marching Cubes.
@@ -562,7 +530,7 @@ return function(data, dims) {
 })();*/
 	 
 	 
-    private static final int edgeTable[] = {
+    static final int edgeTable[] = {
         0x000, 0x109, 0x203, 0x30a, 0x406, 0x50f, 0x605, 0x70c, 0x80c, 0x905, 0xa0f, 0xb06, 0xc0a, 0xd03, 0xe09, 0xf00, 
         0x190, 0x099, 0x393, 0x29a, 0x596, 0x49f, 0x795, 0x69c, 0x99c, 0x895, 0xb9f, 0xa96, 0xd9a, 0xc93, 0xf99, 0xe90, 
         0x230, 0x339, 0x033, 0x13a, 0x636, 0x73f, 0x435, 0x53c, 0xa3c, 0xb35, 0x83f, 0x936, 0xe3a, 0xf33, 0xc39, 0xd30, 
@@ -580,7 +548,7 @@ return function(data, dims) {
         0xe90, 0xf99, 0xc93, 0xd9a, 0xa96, 0xb9f, 0x895, 0x99c, 0x69c, 0x795, 0x49f, 0x596, 0x29a, 0x393, 0x099, 0x190, 
         0xf00, 0xe09, 0xd03, 0xc0a, 0xb06, 0xa0f, 0x905, 0x80c, 0x70c, 0x605, 0x50f, 0x406, 0x30a, 0x203, 0x109, 0x000
     };
-    private static final int triTable[][] = {
+    static final int triTable[][] = {
              {-1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
         {0, 8, 3, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
         {0, 1, 9, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1, -1},
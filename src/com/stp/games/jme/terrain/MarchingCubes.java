@@ -0,0 +1,314 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// JME3 Dependencies
+import com.jme3.math.Vector3f;
+import com.jme3.scene.Mesh;
+import com.jme3.scene.VertexBuffer;
+import com.jme3.util.BufferUtils;
+// Java Dependencies
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/* Marching cubes mesher that works from primitive scratch buffers instead of allocating vectors for every cell.
+ * The grid is marched one x slice at a time, each sample is read once and every edge vertex is created once and shared
+ * by the cells around it through caches that only cover the two planes bounding the current slice. Vertices are written
+ * straight into growable buffers in the same order IsoSurface and MeshBuilder produced them, so the meshes are the same.
+ * Instances keep their scratch buffers between calls, use get() for one per thread.
+ */
+public class MarchingCubes {
+	private static final float EPSILON = 1.192092896e-07F;
+	private static final float ISO_LEVEL = 0f;
+	
+	// Corner offsets in the order used by the IsoSurface tables
+	private static final int[] CORNER_X = { 0, 1, 1, 0, 0, 1, 1, 0 };
+	private static final int[] CORNER_Y = { 0, 0, 0, 0, 1, 1, 1, 1 };
+	private static final int[] CORNER_Z = { 0, 0, 1, 1, 0, 0, 1, 1 };
+	// The two corners of each edge, in the order IsoSurface interpolates them
+	private static final int[] EDGE_A = { 0, 1, 2, 3, 4, 5, 6, 7, 0, 1, 2, 3 };
+	private static final int[] EDGE_B = { 1, 2, 3, 0, 5, 6, 7, 4, 4, 5, 6, 7 };
+	// Axis each edge runs along, 0 = x, 1 = y, 2 = z, and the lowest corner of the edge used to locate its cache slot
+	private static final int[] EDGE_AXIS = { 0, 2, 0, 2, 0, 2, 0, 2, 1, 1, 1, 1 };
+	private static final int[] EDGE_BASE = { 0, 1, 3, 0, 4, 5, 7, 4, 0, 1, 2, 3 };
+	
+	private static final ThreadLocal<MarchingCubes> LOCAL = new ThreadLocal<MarchingCubes>() {
+		@Override
+		protected MarchingCubes initialValue() {
+			return new MarchingCubes();
+		}
+	};
+	
+	private final Vector3f normal = new Vector3f();
+	private final float[] cornerValues = new float[8];
+	private final int[] cornerIndex = new int[8];
+	
+	// Sample coordinates along each axis, accumulated the same way the original loops did
+	private float[] xs = new float[0];
+	private float[] ys = new float[0];
+	private float[] zs = new float[0];
+	// Two planes of samples and cached vertices, swapped as the march advances along x
+	private float[][] values = new float[2][0];
+	private int[][] cornerVertices = new int[2][0];
+	private int[][] yEdges = new int[2][0];
+	private int[][] zEdges = new int[2][0];
+	private int[] xEdges = new int[0];
+	
+	private FloatBuffer positions = BufferUtils.createFloatBuffer(3*1024);
+	private FloatBuffer normals = BufferUtils.createFloatBuffer(3*1024);
+	private IntBuffer indices = BufferUtils.createIntBuffer(3*1024);
+	private int vertexCount;
+	private int indexCount;
+	
+	private VoxelSource source;
+	private float locX, locY, locZ;
+	private int planeSize;
+	private int rowSize;
+	private int rows;
+	private int count;
+	
+	// Gets the mesher for the calling thread
+	public static MarchingCubes get() {
+		return LOCAL.get();
+	}
+	// Creates the geometry for the source sampled from start up to end with the given cube size, vertices are offset by loc
+	public Mesh generateMesh(VoxelSource source, Vector3f loc, Vector3f start, Vector3f end, Vector3f cubeSize) {
+		this.source = source;
+		this.locX = loc.x;
+		this.locY = loc.y;
+		this.locZ = loc.z;
+		this.xs = axis(xs, start.x, end.x, cubeSize.x);
+		int nx = count;
+		this.ys = axis(ys, start.y, end.y, cubeSize.y);
+		int ny = count;
+		this.zs = axis(zs, start.z, end.z, cubeSize.z);
+		int nz = count;
+		this.rows = ny + 1;
+		this.rowSize = nz + 1;
+		this.planeSize = rows*rowSize;
+		ensurePlanes(planeSize);
+		positions.clear();
+		normals.clear();
+		indices.clear();
+		vertexCount = 0;
+		indexCount = 0;
+		
+		if (nx > 0 && ny > 0 && nz > 0) {
+			beginPlane(0, 0);
+			for (int x = 0; x < nx; x++) {
+				int lo = x & 1;
+				int hi = lo ^ 1;
+				beginPlane(hi, x + 1);
+				Arrays.fill(xEdges, 0, planeSize, -1);
+				march(x, lo, hi, ny, nz);
+			}
+		}
+		this.source = null;
+		indexCount = indices.position();
+		if (vertexCount == 0) {
+			return null;
+		}
+		return buildMesh();
+	}
+	// Gets the number of vertices written by the last call
+	public int getVertexCount() {
+		return vertexCount;
+	}
+	// Gets the number of indices written by the last call
+	public int getIndexCount() {
+		return indexCount;
+	}
+	// Marches every cell of a single x slice
+	private void march(int x, int lo, int hi, int ny, int nz) {
+		float[] low = values[lo];
+		float[] high = values[hi];
+		for (int y = 0; y < ny; y++) {
+			for (int z = 0; z < nz; z++) {
+				int p = y*rowSize + z;
+				cornerValues[0] = low[p];
+				cornerValues[1] = high[p];
+				cornerValues[2] = high[p + 1];
+				cornerValues[3] = low[p + 1];
+				cornerValues[4] = low[p + rowSize];
+				cornerValues[5] = high[p + rowSize];
+				cornerValues[6] = high[p + rowSize + 1];
+				cornerValues[7] = low[p + rowSize + 1];
+				int cubeIndex = 0;
+				for (int i = 0; i < 8; i++) {
+					if (cornerValues[i] >= ISO_LEVEL) {
+						cubeIndex |= 1 << i;
+					}
+				}
+				// Nothing intersects
+				if (IsoSurface.edgeTable[cubeIndex] == 0) {
+					continue;
+				}
+				for (int i = 0; i < 8; i++) {
+					cornerIndex[i] = p + CORNER_Y[i]*rowSize + CORNER_Z[i];
+				}
+				int[] triangles = IsoSurface.triTable[cubeIndex];
+				for (int i = 0; triangles[i] != -1; i++) {
+					putIndex(edgeVertex(triangles[i], x, lo, hi));
+				}
+			}
+		}
+	}
+	// Gets the vertex where the surface crosses the given edge of the current cell, creating it the first time it is seen
+	private int edgeVertex(int edge, int x, int lo, int hi) {
+		int slot = cornerIndex[EDGE_BASE[edge]];
+		int[] cache;
+		switch (EDGE_AXIS[edge]) {
+			case 0: cache = xEdges; break;
+			case 1: cache = yEdges[CORNER_X[EDGE_BASE[edge]] == 0 ? lo : hi]; break;
+			default: cache = zEdges[CORNER_X[EDGE_BASE[edge]] == 0 ? lo : hi]; break;
+		}
+		int vertex = cache[slot];
+		if (vertex >= 0) {
+			return vertex;
+		}
+		int a = EDGE_A[edge];
+		int b = EDGE_B[edge];
+		float va = cornerValues[a];
+		float vb = cornerValues[b];
+		// Crossings that land on a corner share the corner vertex with every other edge meeting there
+		if (Math.abs(va - ISO_LEVEL) <= EPSILON) {
+			vertex = cornerVertex(a, x, lo, hi);
+		} else if (Math.abs(vb - ISO_LEVEL) <= EPSILON) {
+			vertex = cornerVertex(b, x, lo, hi);
+		} else if (Math.abs(vb - va) <= EPSILON) {
+			vertex = cornerVertex(a, x, lo, hi);
+		} else {
+			float mu = (ISO_LEVEL - va) / (vb - va);
+			float ax = cornerX(a, x), ay = cornerY(a), az = cornerZ(a);
+			vertex = putVertex(ax + mu*(cornerX(b, x) - ax), ay + mu*(cornerY(b) - ay), az + mu*(cornerZ(b) - az));
+		}
+		cache[slot] = vertex;
+		return vertex;
+	}
+	// Gets the vertex sitting exactly on a corner of the current cell
+	private int cornerVertex(int corner, int x, int lo, int hi) {
+		int[] cache = cornerVertices[CORNER_X[corner] == 0 ? lo : hi];
+		int slot = cornerIndex[corner];
+		if (cache[slot] < 0) {
+			cache[slot] = putVertex(cornerX(corner, x), cornerY(corner), cornerZ(corner));
+		}
+		return cache[slot];
+	}
+	private float cornerX(int corner, int x) {
+		return locX + xs[x + CORNER_X[corner]];
+	}
+	private float cornerY(int corner) {
+		return locY + ys[cornerIndex[corner]/rowSize];
+	}
+	private float cornerZ(int corner) {
+		return locZ + zs[cornerIndex[corner]%rowSize];
+	}
+	// Samples a plane of the grid and clears its vertex caches
+	private void beginPlane(int plane, int x) {
+		float[] samples = values[plane];
+		float gx = xs[x];
+		int p = 0;
+		for (int y = 0; y < rows; y++) {
+			float gy = ys[y];
+			for (int z = 0; z < rowSize; z++) {
+				samples[p++] = source.getVoxel(gx, gy, zs[z]);
+			}
+		}
+		Arrays.fill(cornerVertices[plane], 0, planeSize, -1);
+		Arrays.fill(yEdges[plane], 0, planeSize, -1);
+		Arrays.fill(zEdges[plane], 0, planeSize, -1);
+	}
+	// Fills the axis with the coordinates the loop "for (i = start; i < end; i += step)" visits plus the final one
+	private float[] axis(float[] store, float start, float end, float step) {
+		int n = 0;
+		for (float i = start; i < end; i += step) {
+			n++;
+		}
+		if (store.length < n + 1) {
+			store = new float[n + 1];
+		}
+		float i = start;
+		for (int c = 0; c <= n; c++) {
+			store[c] = i;
+			i += step;
+		}
+		this.count = n;
+		return store;
+	}
+	private void ensurePlanes(int size) {
+		if (xEdges.length < size) {
+			for (int i = 0; i < 2; i++) {
+				values[i] = new float[size];
+				cornerVertices[i] = new int[size];
+				yEdges[i] = new int[size];
+				zEdges[i] = new int[size];
+			}
+			xEdges = new int[size];
+		}
+	}
+	private int putVertex(float x, float y, float z) {
+		if (positions.remaining() < 3) {
+			positions = grow(positions);
+			normals = grow(normals);
+		}
+		positions.put(x).put(y).put(z);
+		source.getGradient(x, y, z, normal);
+		normals.put(normal.x).put(normal.y).put(normal.z);
+		return vertexCount++;
+	}
+	private void putIndex(int index) {
+		if (!indices.hasRemaining()) {
+			IntBuffer larger = BufferUtils.createIntBuffer(indices.capacity()*2);
+			indices.flip();
+			larger.put(indices);
+			indices = larger;
+		}
+		indices.put(index);
+	}
+	private static FloatBuffer grow(FloatBuffer buffer) {
+		FloatBuffer larger = BufferUtils.createFloatBuffer(buffer.capacity()*2);
+		buffer.flip();
+		larger.put(buffer);
+		return larger;
+	}
+	// Copies the scratch buffers into a new mesh
+	private Mesh buildMesh() {
+		Mesh mesh = new Mesh();
+		mesh.setBuffer(VertexBuffer.Type.Position, 3, copy(positions));
+		mesh.setBuffer(VertexBuffer.Type.Normal, 3, copy(normals));
+		IntBuffer index = BufferUtils.createIntBuffer(indices.position());
+		indices.flip();
+		index.put(indices).flip();
+		indices.clear();
+		mesh.setBuffer(VertexBuffer.Type.Index, 3, index);
+		mesh.updateBound();
+		return mesh;
+	}
+	private static FloatBuffer copy(FloatBuffer buffer) {
+		FloatBuffer store = BufferUtils.createFloatBuffer(buffer.position());
+		buffer.flip();
+		store.put(buffer).flip();
+		buffer.clear();
+		return store;
+	}
+}
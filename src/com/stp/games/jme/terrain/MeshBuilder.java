@@ -30,22 +30,24 @@ import com.jme3.util.BufferUtils;
 import com.jme3.util.TangentBinormalGenerator;
 // Java Dependencies
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 
 public class MeshBuilder {
 
     private HashMap<Vector3f, Integer> indexMap;
-    private LinkedList<Vector3f> verticesPosition;
-    private LinkedList<Vector3f> verticesNormal;
-    private LinkedList<Integer> indices;
+    private ArrayList<Vector3f> verticesPosition;
+    private ArrayList<Vector3f> verticesNormal;
+    private int[] indices;
+    private int indexCount;
 
     public MeshBuilder() {
         indexMap = new HashMap<Vector3f, Integer>();
-        verticesPosition = new LinkedList<Vector3f>();
-        verticesNormal = new LinkedList<Vector3f>();
-        indices = new LinkedList<Integer>();
+        verticesPosition = new ArrayList<Vector3f>();
+        verticesNormal = new ArrayList<Vector3f>();
+        indices = new int[256];
     }
 
     public void addVertex(Vector3f position, Vector3f normal) {
@@ -63,7 +65,10 @@ public class MeshBuilder {
             i = index;
         }
 
-        indices.add(i);
+        if (indexCount == indices.length) {
+            indices = Arrays.copyOf(indices, indexCount*2);
+        }
+        indices[indexCount++] = i;
     }
 
     public Mesh generateMesh() {
@@ -74,7 +79,9 @@ public class MeshBuilder {
         // mesh.setBuffer(VertexBuffer.Type.TexCoord, 2, BufferUtils.createFloatBuffer(texcoords.toArray(new Vector2f[0])));
 
        // mesh.setBuffer(VertexBuffer.Type.Index, 3, BufferUtils.createIntBuffer(toIntArray(indices)));
-        mesh.setBuffer(VertexBuffer.Type.Index, 3, listToBuffer(indices));
+        IntBuffer index = BufferUtils.createIntBuffer(indexCount);
+        index.put(indices, 0, indexCount).flip();
+        mesh.setBuffer(VertexBuffer.Type.Index, 3, index);
 
         mesh.updateBound();
         
@@ -82,7 +89,7 @@ public class MeshBuilder {
         indexMap.clear();
         verticesPosition.clear();
         verticesNormal.clear();
-        indices.clear();
+        indexCount = 0;
 		
 		//TangentBinormalGenerator.generate(mesh);
 
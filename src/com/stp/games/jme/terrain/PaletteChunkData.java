@@ -0,0 +1,175 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// Java Dependencies
+import java.util.Arrays;
+
+/* Chunk storage that keeps a palette of the distinct values in the chunk and packs an index into the palette for each
+ * location using 0, 1, 2, 4 or 8 bits. A chunk holding a single value needs no storage beyond the palette and chunks
+ * with a handful of values use a fraction of the memory of a flat array. The index width grows as new values are set.
+ */
+public class PaletteChunkData extends ChunkData {
+	private final byte[] palette = new byte[256];
+	private final short[] lookup = new short[256];
+	private int paletteSize;
+	private int bits;
+	private byte[] packed;
+	
+	public PaletteChunkData(int sizeX, int sizeY, int sizeZ) {
+		super(sizeX, sizeY, sizeZ);
+		reset((byte)0);
+	}
+	public Mode getMode() {
+		return Mode.Palette;
+	}
+	public byte get(int x, int y, int z) {
+		if (bits == 0) {
+			return palette[0];
+		}
+		return palette[getIndex(indexOf(x, y, z))];
+	}
+	public void set(int x, int y, int z, byte value) {
+		int index = lookup[value & 0xFF];
+		if (index < 0) {
+			index = addToPalette(value);
+		}
+		if (bits > 0) {
+			setIndex(indexOf(x, y, z), index);
+		}
+	}
+	public int getMemoryUsage() {
+		return palette.length + lookup.length*2 + ((packed != null) ? packed.length : 0);
+	}
+	// Gets the number of bits used to store each value
+	public int getBitsPerValue() {
+		return bits;
+	}
+	// Gets the number of distinct values in the palette, values that are no longer used are removed by compact
+	public int getPaletteSize() {
+		return paletteSize;
+	}
+	// Rebuilds the palette from the values currently stored, dropping any that are no longer used
+	public void compact() {
+		byte[] temp = getScratch(getCount());
+		toArray(temp, 0);
+		fromArray(temp, 0);
+	}
+	@Override
+	public void fill(byte value) {
+		reset(value);
+	}
+	@Override
+	public void toArray(byte[] dest, int offset) {
+		int count = getCount();
+		if (bits == 0) {
+			Arrays.fill(dest, offset, offset + count, palette[0]);
+			return;
+		}
+		for (int i = 0; i < count; i++) {
+			dest[offset + i] = palette[getIndex(i)];
+		}
+	}
+	@Override
+	public void fromArray(byte[] src, int offset) {
+		int count = getCount();
+		Arrays.fill(lookup, (short)-1);
+		paletteSize = 0;
+		for (int i = 0; i < count; i++) {
+			int value = src[offset + i] & 0xFF;
+			if (lookup[value] < 0) {
+				lookup[value] = (short)paletteSize;
+				palette[paletteSize++] = (byte)value;
+			}
+		}
+		if (paletteSize == 0) {
+			reset((byte)0);
+			return;
+		}
+		bits = bitsFor(paletteSize);
+		packed = (bits > 0) ? new byte[(count * bits + 7) >> 3] : null;
+		if (bits > 0) {
+			for (int i = 0; i < count; i++) {
+				setIndex(i, lookup[src[offset + i] & 0xFF]);
+			}
+		}
+	}
+	// Clears the storage so every location holds the specified value
+	private void reset(byte value) {
+		Arrays.fill(lookup, (short)-1);
+		palette[0] = value;
+		lookup[value & 0xFF] = 0;
+		paletteSize = 1;
+		bits = 0;
+		packed = null;
+	}
+	// Adds a value to the palette widening the packed indices if the palette has outgrown them
+	private int addToPalette(byte value) {
+		int index = paletteSize++;
+		palette[index] = value;
+		lookup[value & 0xFF] = (short)index;
+		int required = bitsFor(paletteSize);
+		if (required > bits) {
+			repack(required);
+		}
+		return index;
+	}
+	// Copies the packed indices into a new array using the specified number of bits per index
+	private void repack(int newBits) {
+		int count = getCount();
+		byte[] oldPacked = packed;
+		int oldBits = bits;
+		packed = new byte[(count * newBits + 7) >> 3];
+		bits = newBits;
+		if (oldBits > 0) {
+			int oldMask = (1 << oldBits) - 1;
+			for (int i = 0; i < count; i++) {
+				int bitIndex = i * oldBits;
+				setIndex(i, (oldPacked[bitIndex >> 3] >> (bitIndex & 7)) & oldMask);
+			}
+		}
+	}
+	// Reads the palette index stored at the specified position, index widths divide 8 so they never span two bytes
+	private int getIndex(int position) {
+		int bitIndex = position * bits;
+		return (packed[bitIndex >> 3] >> (bitIndex & 7)) & ((1 << bits) - 1);
+	}
+	private void setIndex(int position, int index) {
+		int bitIndex = position * bits;
+		int shift = bitIndex & 7;
+		int mask = ((1 << bits) - 1) << shift;
+		int b = bitIndex >> 3;
+		packed[b] = (byte)((packed[b] & ~mask) | ((index << shift) & mask));
+	}
+	private static int bitsFor(int size) {
+		if (size <= 1) {
+			return 0;
+		} else if (size <= 2) {
+			return 1;
+		} else if (size <= 4) {
+			return 2;
+		} else if (size <= 16) {
+			return 4;
+		}
+		return 8;
+	}
+}
@@ -26,18 +26,7 @@ import com.jme3.math.Vector2f;
 import com.jme3.math.Vector3f;
 // Java Dependencies
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.BufferedOutputStream;
 import java.io.IOException;
-import java.util.List;
-import java.util.Iterator;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 // Internal Dependencies
 
 public class Region {
@@ -76,10 +65,11 @@ public class Region {
 	public static int DIMENSION_Z = 65;
 
 	//protected ArrayList<ChunkControl> loaded = new ArrayList<ChunkControl>();
-	protected final List<ChunkControl> loaded = Collections.synchronizedList(new ArrayList<ChunkControl>());
+	protected final ChunkIndex<ChunkControl> loaded = new ChunkIndex<ChunkControl>();
 	protected final Vector2f location = new Vector2f();
 	
 	protected File file;
+	protected RegionFile store;
 	
 	protected int biome;
 	protected int hemisphere;
@@ -102,21 +92,23 @@ public class Region {
 		return this.getChunk(chunkLocation.x, chunkLocation.y, chunkLocation.z);
 	}
 	public ChunkControl getChunk(float x, float y, float z) {
-		synchronized(loaded) {
-			Iterator<ChunkControl> i = loaded.iterator(); // Must be in synchronized block
-			while (i.hasNext()) {
-				ChunkControl chunk = i.next();
-				if (chunk.matchesLocation(x, y, z)) {
-					return chunk;
-				}
-			}
-		}
-		return null;
+		return loaded.get(ChunkKey.pack(x, y, z));
+	}
+	public ChunkControl getChunk(long key) {
+		return loaded.get(key);
 	}
 	public ChunkControl addLoadedChunk(ChunkControl chunk) {
-		loaded.add(chunk);
+		loaded.put(chunk.getKey(), chunk);
 		return chunk;
 	}
+	// Removes the chunk from the loaded chunks so it will be read back or generated the next time it is needed
+	public ChunkControl removeLoadedChunk(ChunkControl chunk) {
+		return loaded.remove(chunk.getKey());
+	}
+	// Gets the number of chunks currently loaded in this region
+	public int getLoadedCount() {
+		return loaded.size();
+	}
 	public int getSizeX() {
 		return sizeX;
 	}
@@ -167,108 +159,78 @@ public class Region {
 	public int hashCode() {
 		return 13 + location.hashCode();
 	}
+	// Gets the region file backing this region, opening it on first use
+	protected synchronized RegionFile getStore() throws IOException {
+		if (store == null && file != null) {
+			store = RegionFile.open(file);
+		}
+		return store;
+	}
 	public boolean loadChunk(ChunkControl chunk) {
 		// Fast fail if file is not valid
 		if (file == null || !file.exists()) {
 			return false;
 		}
-		ZipFile zip = null;
 		try {
-			zip = new ZipFile(file);
-			ZipEntry entry = zip.getEntry(chunk.getName());
-			if (entry != null) {
-				chunk.read(zip.getInputStream(entry));
+			if (getStore().readChunk(chunk)) {
 				chunk.setLoaded(true);
-				loaded.add(chunk);
+				loaded.put(chunk.getKey(), chunk);
 			}
-			zip.close();
 		} catch (Exception ex) {
 			ex.printStackTrace();
-		} finally {
-			try { zip.close(); }
-			catch (Exception ex) {}
 		}
 		return chunk.isLoaded();
 	}
+	// Writes every loaded chunk that has changed since it was loaded or last saved, unchanged chunks are not touched
 	public void save(File directory) {
 		// Fast fail if file is not valid or there are no chunks to save
-		if (directory == null || loaded.size() == 0) {
+		if ((directory == null && file == null) || loaded.size() == 0) {
 			return;
 		}
-		File saveFile = new File(directory, getRegionName());
-		ZipInputStream zin = null;
-		ZipOutputStream out = null;
-		boolean renameOk = false;
-		File tempFile = null;
+		if (file == null) {
+			file = new File(directory, getRegionName());
+		}
 		try {
-			// get a temp file
-			tempFile = File.createTempFile(saveFile.getName(), null);
-			// delete it, otherwise you cannot rename your existing zip to it.
-			tempFile.delete();
-			
-			boolean saveExists = saveFile.exists();
-			if (saveExists) {
-				renameOk = saveFile.renameTo(tempFile);
-				if (!renameOk) {
-					throw new RuntimeException("could not rename the file " + saveFile.getAbsolutePath() + " to " + tempFile.getAbsolutePath());
-				}
-			}
-
-			FileOutputStream dest = new FileOutputStream(file);
-			out = new ZipOutputStream(new BufferedOutputStream(dest));
-
-			// Write all loaded chunks to the output file
-			for (ChunkControl chunk : loaded) {
-				ZipEntry entry = new ZipEntry(chunk.getName());
-				out.putNextEntry(entry);
-				chunk.write(out);
-			}
-			
-			if (saveExists) {
-				byte[] buf = new byte[16384];
-				zin = new ZipInputStream(new FileInputStream(tempFile));
-				ZipEntry entry = zin.getNextEntry();
-				while (entry != null) {
-					// Copy all unloaded chunks from the original file
-					if (!isLoaded(entry.getName())) {
-						// Add ZIP entry to output stream.
-						out.putNextEntry(new ZipEntry(entry.getName()));
-						// Transfer bytes from the ZIP file to the output file
-						int len;
-						while ((len = zin.read(buf)) > 0) {
-							out.write(buf, 0, len);
-						}
-					}
-					entry = zin.getNextEntry();
+			RegionFile regionFile = getStore();
+			for (ChunkControl chunk : loaded.values()) {
+				if (chunk.isDirty()) {
+					regionFile.writeChunk(chunk);
+					chunk.setDirty(false);
 				}
-				zin.close();
-				tempFile.delete();
 			}
-			out.closeEntry();
-			out.close();
+			regionFile.flush();
 		} catch (Exception ex) {
 			ex.printStackTrace();
-			if (renameOk) {
-				System.out.println("Attempting to restore original file: " + tempFile);
-				try {
-					// Restore the original file if there was a problem saving
-					saveFile.delete();
-					tempFile.renameTo(saveFile);
-				} catch (Exception exct) {}
-			}
-		} finally {
-			try {
-				out.close();
-				zin.close();
-			} catch (Exception ex) {}
 		}
 	}
-	private boolean isLoaded(String chunkName) {
-		for (ChunkControl c : loaded) {
-			if (c.getName().equals(chunkName)) {
-				return true;
+	// Writes a single chunk back to the region file, the file is created in the given directory if the region has none
+	public boolean saveChunk(ChunkControl chunk, File directory) {
+		if (file == null) {
+			if (directory == null) {
+				return false;
 			}
+			file = new File(directory, getRegionName());
+		}
+		try {
+			RegionFile regionFile = getStore();
+			regionFile.writeChunk(chunk);
+			regionFile.flush();
+			chunk.setDirty(false);
+			return true;
+		} catch (Exception ex) {
+			ex.printStackTrace();
 		}
 		return false;
 	}
-}
\ No newline at end of file
+	// Closes the region file if it is open
+	public synchronized void close() {
+		if (store != null) {
+			try {
+				store.close();
+			} catch (IOException ex) {
+				ex.printStackTrace();
+			}
+			store = null;
+		}
+	}
+}
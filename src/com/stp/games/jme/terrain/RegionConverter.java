@@ -0,0 +1,71 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// Java Dependencies
+import java.io.File;
+
+/* Command line tool that converts zip based world and region saves to the random access RegionFile format.
+ * Usage: java com.stp.games.jme.terrain.RegionConverter <save file or directory>...
+ * Each converted file keeps its name, the original zip is left next to it with a .bak extension.
+ */
+public class RegionConverter {
+	public static void main(String[] args) {
+		if (args.length == 0) {
+			System.out.println("Usage: RegionConverter <save file or directory>...");
+			return;
+		}
+		int converted = 0;
+		for (String arg : args) {
+			converted += convert(new File(arg));
+		}
+		System.out.println("Converted " + converted + " file(s)");
+	}
+	// Converts the file or every file in the directory, returns the number of files converted
+	public static int convert(File file) {
+		if (file.isDirectory()) {
+			int count = 0;
+			File[] children = file.listFiles();
+			if (children != null) {
+				for (File child : children) {
+					if (child.isFile()) {
+						count += convert(child);
+					}
+				}
+			}
+			return count;
+		}
+		if (!file.exists() || file.length() == 0 || RegionFile.isRegionFile(file) || file.getName().endsWith(".bak")) {
+			return 0;
+		}
+		try {
+			long startTime = System.currentTimeMillis();
+			RegionFile.migrate(file);
+			double convertTime = (System.currentTimeMillis() - startTime)/1000.0;
+			System.out.println("Converted: " + file + " " + convertTime + "s");
+			return 1;
+		} catch (Exception ex) {
+			System.out.println("Unable to convert: " + file + " | " + ex);
+			return 0;
+		}
+	}
+}
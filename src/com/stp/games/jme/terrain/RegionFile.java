@@ -0,0 +1,471 @@
+/* MIT License
+ *
+ * Copyright (c) 2018 Paul Collins
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.stp.games.jme.terrain;
+// Java Dependencies
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/* Random access container for chunk data. The file starts with a table of slots, each holding a chunk key, the
+ * first sector of the chunks data, its stored and raw lengths and a checksum. Chunk data is deflated and written to
+ * the first free run of 4KB sectors large enough to hold it, the slot is only pointed at the new run once the data is
+ * written and the old run is freed after that. Only the chunk and its slot are touched when a chunk is saved. The
+ * slot table doubles when it fills, entries stored where the larger table goes are moved out of the way first.
+ *
+ * Layout: [magic][version][slot count][sector size] [slot table] [sectors...]
+ */
+public class RegionFile {
+	public static final int MAGIC = 0x53545052; // STPR
+	public static final int VERSION = 1;
+	public static final int SECTOR_SIZE = 4096;
+	public static final int DEFAULT_SLOTS = Region.DIMENSION_X * Region.DIMENSION_Z;
+	
+	private static final int HEADER_SIZE = 16;
+	private static final int SLOT_SIZE = 24;
+	private static final int EMPTY = 0;
+	private static final int REMOVED = -1;
+	
+	private final File file;
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final ChunkIndex<Integer> slotIndex = new ChunkIndex<Integer>();
+	private final BitSet usedSectors = new BitSet();
+	private final ByteBuffer slotBuffer = ByteBuffer.allocate(SLOT_SIZE);
+	private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+	private final Inflater inflater = new Inflater();
+	private final CRC32 crc = new CRC32();
+	private final ChunkStream chunkStream = new ChunkStream();
+	
+	private long[] slotKeys;
+	private int[] slotSectors;
+	private int[] slotLengths;
+	private int[] slotRawLengths;
+	private int[] slotChecksums;
+	private int slotCount;
+	private int headerSectors;
+	private int sectorCount;
+	private byte[] deflated = new byte[SECTOR_SIZE];
+	
+	// Opens the region file creating it if it doesn't exist, legacy zip saves are converted to the new format first
+	public static RegionFile open(File file) throws IOException {
+		if (file.exists() && file.length() > 0 && !isRegionFile(file)) {
+			migrate(file);
+		}
+		return new RegionFile(file, DEFAULT_SLOTS);
+	}
+	public RegionFile(File file, int slots) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "rw");
+		this.channel = raf.getChannel();
+		try {
+			if (channel.size() < HEADER_SIZE) {
+				create(slots);
+			} else {
+				readHeader();
+			}
+		} catch (IOException ex) {
+			raf.close();
+			throw ex;
+		}
+	}
+	// Checks whether the specified file starts with a region file header
+	public static boolean isRegionFile(File file) {
+		DataInputStream in = null;
+		try {
+			in = new DataInputStream(new FileInputStream(file));
+			return in.readInt() == MAGIC;
+		} catch (IOException ex) {
+			return false;
+		} finally {
+			try { in.close(); }
+			catch (Exception ex) {}
+		}
+	}
+	// Gets the key used to store a named entry that is not a chunk, these keys have the sign bit set so they can't collide with chunk keys
+	public static long keyForName(String name) {
+		long hash = 1125899906842597L;
+		for (int i = 0; i < name.length(); i++) {
+			hash = 31*hash + name.charAt(i);
+		}
+		long key = hash | Long.MIN_VALUE;
+		return (key == ChunkKey.NONE) ? key + 1 : key;
+	}
+	public File getFile() {
+		return file;
+	}
+	// Gets the number of entries stored in the file
+	public int getEntryCount() {
+		return slotIndex.size();
+	}
+	// Gets the number of sectors currently in the file including the header
+	public synchronized int getSectorCount() {
+		return sectorCount;
+	}
+	// Checks whether an entry exists for the specified key
+	public boolean contains(long key) {
+		return slotIndex.containsKey(key);
+	}
+	// Reads the stored entry for the key into the chunk, returns false if there isn't one
+	public synchronized boolean readChunk(ChunkControl chunk) throws IOException {
+		byte[] data = read(chunk.getKey());
+		if (data == null) {
+			return false;
+		}
+		chunk.read(new ByteArrayInputStream(data));
+		return true;
+	}
+	// Writes the chunk to its slot
+	public synchronized void writeChunk(ChunkControl chunk) throws IOException {
+		chunkStream.reset();
+		chunk.write(chunkStream);
+		write(chunk.getKey(), chunkStream.getBuffer(), 0, chunkStream.size());
+	}
+	// Reads and inflates the entry stored for the specified key, returns null if there isn't one
+	public synchronized byte[] read(long key) throws IOException {
+		Integer slot = slotIndex.get(key);
+		if (slot == null) {
+			return null;
+		}
+		int length = slotLengths[slot];
+		ByteBuffer stored = ByteBuffer.allocate(length);
+		long position = (long)slotSectors[slot] * SECTOR_SIZE;
+		while (stored.hasRemaining()) {
+			if (channel.read(stored, position + stored.position()) < 0) {
+				throw new IOException("Region entry truncated: " + file + " key=" + key);
+			}
+		}
+		crc.reset();
+		crc.update(stored.array(), 0, length);
+		if ((int)crc.getValue() != slotChecksums[slot]) {
+			throw new IOException("Region entry checksum mismatch: " + file + " key=" + key);
+		}
+		byte[] raw = new byte[slotRawLengths[slot]];
+		inflater.reset();
+		inflater.setInput(stored.array(), 0, length);
+		try {
+			int count = 0;
+			while (count < raw.length && !inflater.finished()) {
+				int n = inflater.inflate(raw, count, raw.length - count);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				count += n;
+			}
+			if (count != raw.length) {
+				throw new IOException("Region entry is shorter than expected: " + file + " key=" + key);
+			}
+		} catch (DataFormatException ex) {
+			throw new IOException("Region entry is corrupt: " + file + " key=" + key, ex);
+		}
+		return raw;
+	}
+	// Deflates and stores the data for the specified key, only the entries sectors and slot are written
+	public synchronized void write(long key, byte[] data, int offset, int length) throws IOException {
+		// Compress the data into the reusable deflate buffer
+		deflater.reset();
+		deflater.setInput(data, offset, length);
+		deflater.finish();
+		int stored = 0;
+		while (!deflater.finished()) {
+			if (stored == deflated.length) {
+				byte[] grown = new byte[deflated.length * 2];
+				System.arraycopy(deflated, 0, grown, 0, stored);
+				deflated = grown;
+			}
+			stored += deflater.deflate(deflated, stored, deflated.length - stored);
+		}
+		crc.reset();
+		crc.update(deflated, 0, stored);
+		int needed = sectorsFor(stored);
+		
+		Integer existing = slotIndex.get(key);
+		int slot = (existing != null) ? existing : findFreeSlot(key);
+		// The data always goes to free sectors so the entry's current sectors are untouched until the slot moves
+		int sector = allocate(needed);
+		writeFully(ByteBuffer.wrap(deflated, 0, stored), (long)sector * SECTOR_SIZE);
+		// Update the slot after the data so an interrupted save leaves the previous slot contents intact
+		int oldSector = slotSectors[slot];
+		int oldLength = slotLengths[slot];
+		slotKeys[slot] = key;
+		slotSectors[slot] = sector;
+		slotLengths[slot] = stored;
+		slotRawLengths[slot] = length;
+		slotChecksums[slot] = (int)crc.getValue();
+		writeSlot(slot);
+		slotIndex.put(key, slot);
+		if (existing != null) {
+			usedSectors.clear(oldSector, oldSector + sectorsFor(oldLength));
+		}
+	}
+	// Removes the entry for the specified key, returns false if there wasn't one
+	public synchronized boolean remove(long key) throws IOException {
+		Integer slot = slotIndex.remove(key);
+		if (slot == null) {
+			return false;
+		}
+		usedSectors.clear(slotSectors[slot], slotSectors[slot] + sectorsFor(slotLengths[slot]));
+		slotSectors[slot] = REMOVED;
+		writeSlot(slot);
+		return true;
+	}
+	// Forces any writes out to the storage device
+	public synchronized void flush() throws IOException {
+		channel.force(false);
+	}
+	public synchronized void close() throws IOException {
+		try {
+			channel.force(false);
+		} finally {
+			raf.close();
+			deflater.end();
+			inflater.end();
+		}
+	}
+	// Copies every chunk entry of a legacy zip save into a new region file
+	public static int convert(File zipFile, File regionFile) throws IOException {
+		int count = 0;
+		ZipInputStream zin = new ZipInputStream(new FileInputStream(zipFile));
+		RegionFile region = new RegionFile(regionFile, DEFAULT_SLOTS);
+		try {
+			ByteArrayOutputStream entryData = new ByteArrayOutputStream();
+			byte[] buf = new byte[16384];
+			ZipEntry entry = zin.getNextEntry();
+			while (entry != null) {
+				entryData.reset();
+				int len;
+				while ((len = zin.read(buf)) > 0) {
+					entryData.write(buf, 0, len);
+				}
+				long key = ChunkKey.parseEntryName(entry.getName());
+				if (key == ChunkKey.NONE) {
+					key = keyForName(entry.getName());
+				}
+				region.write(key, entryData.toByteArray(), 0, entryData.size());
+				count++;
+				entry = zin.getNextEntry();
+			}
+		} finally {
+			zin.close();
+			region.close();
+		}
+		return count;
+	}
+	// Converts a legacy zip save in place, the original file is kept alongside with a .bak extension
+	public static void migrate(File zipFile) throws IOException {
+		File converted = new File(zipFile.getPath() + ".tmp");
+		File backup = new File(zipFile.getPath() + ".bak");
+		converted.delete();
+		convert(zipFile, converted);
+		backup.delete();
+		if (!zipFile.renameTo(backup)) {
+			converted.delete();
+			throw new IOException("could not rename the file " + zipFile.getAbsolutePath() + " to " + backup.getAbsolutePath());
+		}
+		if (!converted.renameTo(zipFile)) {
+			backup.renameTo(zipFile);
+			throw new IOException("could not rename the file " + converted.getAbsolutePath() + " to " + zipFile.getAbsolutePath());
+		}
+	}
+	// Writes the header and an empty slot table for a new file
+	private void create(int slots) throws IOException {
+		initSlots(slots);
+		ByteBuffer header = ByteBuffer.allocate(headerSectors * SECTOR_SIZE);
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(slots);
+		header.putInt(SECTOR_SIZE);
+		header.clear();
+		channel.truncate(0);
+		while (header.hasRemaining()) {
+			channel.write(header, header.position());
+		}
+	}
+	// Reads the header and slot table and rebuilds the key index and sector allocation map
+	private void readHeader() throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		readFully(header, 0);
+		if (header.getInt() != MAGIC) {
+			throw new IOException("Not a region file: " + file);
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported region file version " + version + ": " + file);
+		}
+		int slots = header.getInt();
+		if (header.getInt() != SECTOR_SIZE) {
+			throw new IOException("Unsupported region file sector size: " + file);
+		}
+		initSlots(slots);
+		ByteBuffer table = ByteBuffer.allocate(slots * SLOT_SIZE);
+		readFully(table, HEADER_SIZE);
+		for (int slot = 0; slot < slots; slot++) {
+			slotKeys[slot] = table.getLong();
+			slotSectors[slot] = table.getInt();
+			slotLengths[slot] = table.getInt();
+			slotRawLengths[slot] = table.getInt();
+			slotChecksums[slot] = table.getInt();
+			if (slotSectors[slot] > 0) {
+				int end = slotSectors[slot] + sectorsFor(slotLengths[slot]);
+				usedSectors.set(slotSectors[slot], end);
+				sectorCount = Math.max(sectorCount, end);
+				slotIndex.put(slotKeys[slot], slot);
+			}
+		}
+	}
+	private void initSlots(int slots) {
+		this.slotCount = slots;
+		this.slotKeys = new long[slots];
+		this.slotSectors = new int[slots];
+		this.slotLengths = new int[slots];
+		this.slotRawLengths = new int[slots];
+		this.slotChecksums = new int[slots];
+		this.headerSectors = sectorsFor(HEADER_SIZE + slots * SLOT_SIZE);
+		this.sectorCount = headerSectors;
+		usedSectors.clear();
+		usedSectors.set(0, headerSectors);
+	}
+	// Finds the slot a new key should be stored in, keys are placed by hash with linear probing. The index is rebuilt
+	// from every slot when the file is opened so a slot's position is only a hint and the table can grow without rehashing
+	private int findFreeSlot(long key) throws IOException {
+		if ((slotIndex.size() + 1) * 4 > slotCount * 3) {
+			growSlots(slotCount * 2);
+		}
+		int slot = (ChunkKey.hash(key) & 0x7FFFFFFF) % slotCount;
+		for (int probe = 0; probe < slotCount; probe++) {
+			if (slotSectors[slot] <= 0) {
+				return slot;
+			}
+			slot = (slot + 1) % slotCount;
+		}
+		throw new IOException("Region file is full: " + file);
+	}
+	// Extends the slot table, entries stored in the sectors the table grows into are moved out first and the new slot
+	// count is only written once the new slots are cleared so an interrupted grow leaves the old table readable
+	private void growSlots(int slots) throws IOException {
+		int tableSectors = sectorsFor(HEADER_SIZE + slots * SLOT_SIZE);
+		// Reserve the sectors the table grows into so moved entries can't be allocated there
+		usedSectors.set(headerSectors, tableSectors);
+		sectorCount = Math.max(sectorCount, tableSectors);
+		for (int slot = 0; slot < slotCount; slot++) {
+			int sector = slotSectors[slot];
+			if (sector > 0 && sector < tableSectors) {
+				int length = slotLengths[slot];
+				ByteBuffer stored = ByteBuffer.allocate(length);
+				readFully(stored, (long)sector * SECTOR_SIZE);
+				int moved = allocate(sectorsFor(length));
+				writeFully(stored, (long)moved * SECTOR_SIZE);
+				slotSectors[slot] = moved;
+				writeSlot(slot);
+				int end = sector + sectorsFor(length);
+				if (end > tableSectors) {
+					usedSectors.clear(tableSectors, end);
+				}
+			}
+		}
+		channel.force(false);
+		writeFully(ByteBuffer.allocate((slots - slotCount) * SLOT_SIZE), HEADER_SIZE + (long)slotCount * SLOT_SIZE);
+		channel.force(false);
+		ByteBuffer count = ByteBuffer.allocate(4);
+		count.putInt(0, slots);
+		writeFully(count, 8);
+		channel.force(false);
+		
+		slotKeys = Arrays.copyOf(slotKeys, slots);
+		slotSectors = Arrays.copyOf(slotSectors, slots);
+		slotLengths = Arrays.copyOf(slotLengths, slots);
+		slotRawLengths = Arrays.copyOf(slotRawLengths, slots);
+		slotChecksums = Arrays.copyOf(slotChecksums, slots);
+		slotCount = slots;
+		headerSectors = tableSectors;
+	}
+	// Finds the first run of free sectors large enough to hold the specified count, growing the file if there isn't one
+	private int allocate(int count) {
+		int start = usedSectors.nextClearBit(headerSectors);
+		while (start < sectorCount) {
+			int end = usedSectors.nextSetBit(start);
+			if (end < 0 || end > sectorCount) {
+				end = sectorCount;
+			}
+			if (end - start >= count) {
+				usedSectors.set(start, start + count);
+				return start;
+			}
+			start = usedSectors.nextClearBit(end);
+		}
+		usedSectors.set(start, start + count);
+		sectorCount = start + count;
+		return start;
+	}
+	private void writeSlot(int slot) throws IOException {
+		slotBuffer.clear();
+		slotBuffer.putLong(slotKeys[slot]);
+		slotBuffer.putInt(slotSectors[slot]);
+		slotBuffer.putInt(slotLengths[slot]);
+		slotBuffer.putInt(slotRawLengths[slot]);
+		slotBuffer.putInt(slotChecksums[slot]);
+		slotBuffer.flip();
+		long position = HEADER_SIZE + (long)slot * SLOT_SIZE;
+		while (slotBuffer.hasRemaining()) {
+			channel.write(slotBuffer, position + slotBuffer.position());
+		}
+	}
+	private void writeFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, position + buffer.position());
+		}
+	}
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IOException("Unexpected end of region file: " + file);
+			}
+		}
+		buffer.flip();
+	}
+	private static int sectorsFor(int length) {
+		return Math.max(1, (length + SECTOR_SIZE - 1) / SECTOR_SIZE);
+	}
+	// Output stream that exposes its buffer so chunk data can be deflated without an extra copy
+	private static class ChunkStream extends ByteArrayOutputStream {
+		public ChunkStream() {
+			super(SECTOR_SIZE * 4);
+		}
+		public byte[] getBuffer() {
+			return buf;
+		}
+	}
+}
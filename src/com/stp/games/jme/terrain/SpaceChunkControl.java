@@ -57,7 +57,7 @@ public class SpaceChunkControl extends ChunkControl {
 	// Updates the geometry of this chunk
 	@Override
 	public void updateMesh(Mesh mesh, Material material) {
-		updated = true;
+		markUpdated();
 	}
 	@Override
 	public float getHeight(float gx, float gz) {
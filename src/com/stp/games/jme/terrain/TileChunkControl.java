@@ -79,7 +79,7 @@ public class TileChunkControl extends ChunkControl {
 	public void updateObjects() {
 		for (GameControl o : objects) {
 			if (!o.isActive() && o.hasSpatial() && isAreaExplored(o.getWorldTranslation())) {
-				objNode.attachChild(o.getSpatial());
+				objNode.attachObject(o.getSpatial());
 				o.setActive(true);
 			}
 		}
@@ -91,6 +91,7 @@ public class TileChunkControl extends ChunkControl {
 			obj.setActive(false);
 			obj.setWorldTranslation((int)(x+start.x), (int)(y+start.y), (int)(z+start.z));
 			objects.add(obj);
+			objectIndex.add(obj);
 			
 			ByteBuffer buffer = ByteBuffer.allocate(2);
 			buffer.putShort((short)nextAddress);
@@ -115,12 +116,14 @@ public class TileChunkControl extends ChunkControl {
 	@Override
 	public void setValue(float x, float y, float z, byte value) {
 		if (isValidLocation(x, y, z)) {
-			data[(int)x][(int)y][(int)z] = value;
+			data.set((int)x, (int)y, (int)z, value);
 		}
 		// Empty optimization check
 		if (empty) {
 			empty = (value == 0);
 		}
+		dirty = true;
+		version = nextVersion();
 		// Only update the mesh if visible components have changed
 		if (y < 3) {
 			needsMeshUpdate = true;
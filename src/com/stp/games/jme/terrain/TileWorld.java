@@ -263,20 +263,10 @@ public class TileWorld extends World {
 		}
 		return unloaded;
 	}
-	// Searches for objects within a given radius that allow the specified action
+	// Searches for the closest object within a given radius that allows the specified action, tile objects all sit on the ground plane
 	@Override
 	public GameControl getActionableObject(Vector3f location, int radius, String action) {
-		int inputX = (int)Math.floor(location.x);
-		int inputZ = (int)Math.floor(location.z);
-		for (int x = -radius; x <= radius; x++) {
-			for (int z = -radius; z <= radius; z++) {
-				GameControl result = volume.getObject(inputX + x, 0, inputZ + z);
-				if (result != null && result.matchAction(action)) {
-					return result;
-				}
-			}
-		}
-		return null;
+		return volume.findObject(new Vector3f(location.x, 0, location.z), radius, action);
 	}
 	@Override
 	public void loadComplete() {
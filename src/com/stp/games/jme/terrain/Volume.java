@@ -49,6 +49,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.Callable;
@@ -57,6 +58,7 @@ import java.util.concurrent.Future;
 import com.stp.games.jme.GameRegistry;
 import com.stp.games.jme.controls.*;
 import com.stp.games.jme.actions.MoveAction;
+import com.stp.games.jme.actions.NavigationGraph;
 import com.stp.games.jme.terrain.layer.TreeLayer;
 
 // Base class for managing and referencing regions, chunks, and objects loaded in the world
@@ -71,9 +73,16 @@ public class Volume implements Savable {
 	protected final ArrayList<CreatureControl> creatures = new ArrayList<CreatureControl>();
 	protected final ArrayList<VehicleControl> vehicles = new ArrayList<VehicleControl>();
 	protected final ArrayList<StructureControl> structures = new ArrayList<StructureControl>();
+	protected final ChunkIndex<CreatureControl> creatureIds = new ChunkIndex<CreatureControl>();
+	protected final ChunkIndex<VehicleControl> vehicleIds = new ChunkIndex<VehicleControl>();
+	protected final ChunkIndex<StructureControl> structureIds = new ChunkIndex<StructureControl>();
 	
 	protected final ArrayList<ChunkControl> active = new ArrayList<ChunkControl>();
+	protected final ChunkIndex<ChunkControl> activeIndex = new ChunkIndex<ChunkControl>();
 	protected final ArrayList<Region> regions = new ArrayList<Region>();
+	protected final ChunkIndex<Region> regionIndex = new ChunkIndex<Region>();
+	protected final ChunkCache cache = new ChunkCache(this);
+	protected final NavigationGraph navigation = new NavigationGraph(this);
 	protected final ArrayList<TreeLayer> treeLayers = new ArrayList<TreeLayer>(2);
 	protected final ConcurrentLinkedQueue<GameControl> addList = new ConcurrentLinkedQueue<GameControl>();
 	protected final ConcurrentLinkedQueue<GameControl> removeList = new ConcurrentLinkedQueue<GameControl>();
@@ -100,7 +109,7 @@ public class Volume implements Savable {
 	public Volume(VolumeType type, int width, int height, int length) {
 		setVolumeType(type);
 		setChunkDimensions(width, height, length);
-		regions.add(new Region(null, 0, 0, getChunkSizeX(), getChunkSizeZ()));
+		addRegion(new Region(null, 0, 0, getChunkSizeX(), getChunkSizeZ()));
 		m_node.attachChild(m_creatures_node);
 		
 		bulletState = new BulletAppState(new Vector3f(-10000f, -10000f, -10000f), new Vector3f(10000f, 10000f, 10000f), BroadphaseType.AXIS_SWEEP_3);
@@ -182,7 +191,9 @@ public class Volume implements Savable {
 		return 3;
 	}
 	public CreatureControl addCreature(CreatureControl creature) {
+		leavePreviousVolume(creature);
 		creatures.add(creature);
+		index(creatureIds, creature);
 		// Ensure creatures are able to move in the volume
 		if (!creature.hasMoveControl()) {
 			creature.setMoveControl(new MoveAction());
@@ -200,42 +211,118 @@ public class Volume implements Savable {
 		}
 		return creature;
 	}
-	public CreatureControl getCreature(long uid) {
-		for (CreatureControl c : creatures) {
-			if (c.getUniqueId() == uid) {
-				return c;
-			}
+	// Removes the creature from the volume and the scene graph, returns false if it wasn't in this volume
+	public boolean removeCreature(CreatureControl creature) {
+		if (!removeMember(creatures, creatureIds, creature)) {
+			return false;
 		}
-		return null;
+		if (creature.hasSpatial() && creature.getSpatial().getParent() == m_creatures_node) {
+			m_creatures_node.detachChild(creature.getSpatial());
+		}
+		return true;
+	}
+	public CreatureControl getCreature(long uid) {
+		return creatureIds.get(uid);
 	}
 	public ArrayList<CreatureControl> getCreatures() {
 		return creatures;
 	}
 	public VehicleControl addVehicle(VehicleControl vehicle) {
+		leavePreviousVolume(vehicle);
 		vehicles.add(vehicle);
+		index(vehicleIds, vehicle);
 		vehicle.setVolume(this);
 		return vehicle;
 	}
+	// Removes the vehicle from the volume, returns false if it wasn't in this volume
+	public boolean removeVehicle(VehicleControl vehicle) {
+		return removeMember(vehicles, vehicleIds, vehicle);
+	}
 	public VehicleControl getVehicle(long uid) {
-		for (VehicleControl v : vehicles) {
-			if (v.getUniqueId() == uid) {
-				return v;
-			}
-		}
-		return null;
+		return vehicleIds.get(uid);
 	}
 	public StructureControl addStructure(StructureControl structure) {
+		leavePreviousVolume(structure);
 		structures.add(structure);
+		index(structureIds, structure);
 		structure.setVolume(this);
 		return structure;
 	}
+	// Removes the structure from the volume, returns false if it wasn't in this volume
+	public boolean removeStructure(StructureControl structure) {
+		return removeMember(structures, structureIds, structure);
+	}
 	public StructureControl getStructure(long uid) {
-		for (StructureControl s : structures) {
-			if (s.getUniqueId() == uid) {
-				return s;
+		return structureIds.get(uid);
+	}
+	// Files a creature, vehicle or structure of this volume under its new unique id, called by GameControl when the id changes
+	public void updateMemberId(GameControl object, long oldUid) {
+		if (object instanceof CreatureControl) {
+			reindex(creatures, creatureIds, (CreatureControl)object, oldUid);
+		}
+		if (object instanceof VehicleControl) {
+			reindex(vehicles, vehicleIds, (VehicleControl)object, oldUid);
+		}
+		if (object instanceof StructureControl) {
+			reindex(structures, structureIds, (StructureControl)object, oldUid);
+		}
+	}
+	// An object added to this volume is taken out of the volume it was in before
+	private void leavePreviousVolume(GameControl object) {
+		Volume previous = object.getVolume();
+		if (previous != null && previous != this) {
+			if (object instanceof CreatureControl) {
+				previous.removeCreature((CreatureControl)object);
+			}
+			if (object instanceof VehicleControl) {
+				previous.removeVehicle((VehicleControl)object);
+			}
+			if (object instanceof StructureControl) {
+				previous.removeStructure((StructureControl)object);
+			}
+		}
+	}
+	private <T extends GameControl> boolean removeMember(ArrayList<T> members, ChunkIndex<T> ids, T object) {
+		// Removed by identity, GameControl.equals compares unique ids which unsaved objects share
+		for (int m = 0; m < members.size(); m++) {
+			if (members.get(m) == object) {
+				members.remove(m);
+				unindex(members, ids, object, object.getUniqueId());
+				if (object.getVolume() == this) {
+					object.setVolume(null);
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+	private <T extends GameControl> void reindex(ArrayList<T> members, ChunkIndex<T> ids, T object, long oldUid) {
+		for (int m = 0; m < members.size(); m++) {
+			if (members.get(m) == object) {
+				unindex(members, ids, object, oldUid);
+				index(ids, object);
+				return;
+			}
+		}
+	}
+	// The first member added with a unique id is the one found by it
+	private static <T extends GameControl> void index(ChunkIndex<T> ids, T object) {
+		if (ids.get(object.getUniqueId()) == null) {
+			ids.put(object.getUniqueId(), object);
+		}
+	}
+	// Drops the object from the id index, handing the id to the next member that shares it
+	private static <T extends GameControl> void unindex(ArrayList<T> members, ChunkIndex<T> ids, T object, long uid) {
+		if (ids.get(uid) == object) {
+			ids.remove(uid);
+			for (int m = 0; m < members.size(); m++) {
+				T member = members.get(m);
+				if (member != object && member.getUniqueId() == uid) {
+					ids.put(uid, member);
+					return;
+				}
 			}
 		}
-		return null;
 	}
 	// Called once per frame do any scene graph updates here
 	public void update(float tpf) {
@@ -268,8 +355,9 @@ public class Volume implements Savable {
 				chunk.setActive(false);
 		}
 	}
-	// Move all chunks still marked as inactive to the inactive list
-	public void moveInactive() {
+	// Move all chunks still marked as inactive to the inactive list and returns the number moved
+	public int moveInactive() {
+		int count = 0;
 		for (int a = active.size() - 1; a >= 0; a--) {
 			ChunkControl chunk = active.get(a);
 			if (!chunk.isActive()) {
@@ -277,19 +365,27 @@ public class Volume implements Savable {
 				m_node.removeControl(chunk);
 				m_node.detachChild(chunk.getNode());
 				active.remove(a);
+				activeIndex.remove(chunk.getKey());
+				// Keep loaded chunks resident in case they are needed again soon
+				if (chunk.isLoaded()) {
+					cache.release(chunk);
+				}
+				count++;
 				// Send any listeners a message that the chunk has been deactivated
 				//world.fireChunkDeactivated(chunk);
 			}
 		}
+		// Evict the least recently used chunks if the cache has grown past its budget
+		cache.trim();
+		return count;
 	}
 	// Activates the chunk at the specified location indicating it should update its data and be added to the world
 	public ChunkControl activateChunk(Vector3f chunkLocation) {
 		// Check to see if the requested chunk is already in the active list, if found reset it's flag to active
-		for (ChunkControl chunk : active) {
-			if (chunk.getLocation().equals(chunkLocation)) {
-				chunk.setActive(true);
-				return chunk;
-			}
+		ChunkControl current = activeIndex.get(ChunkKey.pack(chunkLocation));
+		if (current != null) {
+			current.setActive(true);
+			return current;
 		}
 		// Locate the chunks region using the chunks location
 		Region region = getRegionForChunkAt(chunkLocation);
@@ -297,15 +393,18 @@ public class Volume implements Savable {
 			// Attempt retrieve the chunk from the region
 			ChunkControl chunk = region.getChunk(chunkLocation);
 			if (chunk != null) {
+				cache.acquire(chunk);
 				// If a loaded chunk was found do any necessary processing needed before the chunk is activated
 				beforeActivate(chunk);
 			} else {
 				// If the chunk was not found in the region create a new one
+				cache.miss();
 				chunk = createNewChunk(chunkLocation.clone(), region);
 			}
 			// Mark the chunk as active and add the chunk to the world so it can be drawn
 			chunk.setActive(true);
-			active.add(chunk);		
+			active.add(chunk);
+			activeIndex.put(chunk.getKey(), chunk);
 			m_node.addControl(chunk);
 			m_node.attachChild(chunk.getNode());
 			// Send any listeners a message indicating the chunk has just been activated
@@ -387,12 +486,13 @@ public class Volume implements Savable {
 	}
 	// Search through the list of loaded chunk and return the one the specified location
 	public Region getRegionByLocation(float x, float z) {
-		for (Region r : regions) {
-			if (r.matchesLocation(x, z)) {
-				return r;
-			}
-		}
-		return null;
+		return regionIndex.get((int)x, 0, (int)z);
+	}
+	// Adds a region to this volume so its chunks can be located
+	public Region addRegion(Region region) {
+		regions.add(region);
+		regionIndex.put(ChunkKey.pack((int)region.getLocation().x, 0, (int)region.getLocation().y), region);
+		return region;
 	}
 	/** METHOD: getChunkLocation
 	 *  @param globalLocation the incoming global coordinates
@@ -433,18 +533,25 @@ public class Volume implements Savable {
 	public ChunkControl getChunkByLocation(float x, float y, float z) {
 		Region region = getRegionForChunkAt(x, y, z);
 		if (region != null) {
-			return region.getChunk(x, y, z);
+			return region.getChunk(ChunkKey.pack(x, y, z));
 		}
 		return null;
 	}
-	// Search through the list of loaded chunk and return the one with the specified name
-	public ChunkControl getChunkByName(String name) {
-		String[] parts = name.split("_");
-		if (parts.length == 3) {
-			return getChunkByLocation(Integer.valueOf(parts[0]), Integer.valueOf(parts[1]), Integer.valueOf(parts[2]));
+	// Search through the list of loaded chunk and return the one with the specified key
+	public ChunkControl getChunkByKey(long key) {
+		if (key == ChunkKey.NONE) {
+			return null;
+		}
+		Region region = getRegionForChunkAt(ChunkKey.getX(key), ChunkKey.getY(key), ChunkKey.getZ(key));
+		if (region != null) {
+			return region.getChunk(key);
 		}
 		return null;
 	}
+	// Search through the list of loaded chunk and return the one with the specified name
+	public ChunkControl getChunkByName(String name) {
+		return getChunkByKey(ChunkKey.parseName(name));
+	}
 	public float getHeight(Vector3f globalLocation) {
 		return getHeight(globalLocation.x, globalLocation.y, globalLocation.z);
 	}
@@ -506,6 +613,60 @@ public class Volume implements Savable {
 		}
 		return null;
 	}
+	// Adds every object within the radius of the center that the filter accepts to the store, a null filter accepts everything
+	public List<GameControl> getObjects(Vector3f center, float radius, ObjectIndex.Filter filter, List<GameControl> store) {
+		int minY = getChunkLocationY(center.y - radius);
+		int maxY = getChunkLocationY(center.y + radius);
+		for (int x = getChunkLocationX(center.x - radius); x <= getChunkLocationX(center.x + radius); x++) {
+			for (int y = minY; y <= maxY; y++) {
+				for (int z = getChunkLocationZ(center.z - radius); z <= getChunkLocationZ(center.z + radius); z++) {
+					ChunkControl chunk = getChunkByLocation(x, y, z);
+					if (chunk != null) {
+						chunk.getObjectIndex().getObjects(center, radius, filter, store);
+					}
+				}
+			}
+		}
+		return store;
+	}
+	// Finds the closest object within the radius of the center that responds to the action
+	public GameControl findObject(Vector3f center, float radius, String action) {
+		return findNearest(center, radius, new ObjectIndex.ActionFilter(action), new ObjectIndex.Nearest(1)).getNearest();
+	}
+	/* Offers the objects closest to the center to the collector, starting with the chunk holding the center
+	 * and skipping chunks that lie further away than the worst result the collector would still keep. */
+	public ObjectIndex.Nearest findNearest(Vector3f center, float radius, ObjectIndex.Filter filter, ObjectIndex.Nearest nearest) {
+		float radiusSquared = radius * radius;
+		int cx = getChunkLocationX(center.x);
+		int cy = getChunkLocationY(center.y);
+		int cz = getChunkLocationZ(center.z);
+		ChunkControl home = getChunkByLocation(cx, cy, cz);
+		if (home != null) {
+			home.getObjectIndex().findNearest(center, radius, filter, nearest);
+		}
+		int minY = getChunkLocationY(center.y - radius);
+		int maxY = getChunkLocationY(center.y + radius);
+		for (int x = getChunkLocationX(center.x - radius); x <= getChunkLocationX(center.x + radius); x++) {
+			for (int y = minY; y <= maxY; y++) {
+				for (int z = getChunkLocationZ(center.z - radius); z <= getChunkLocationZ(center.z + radius); z++) {
+					if ((x != cx || y != cy || z != cz) && getChunkDistanceSquared(x, y, z, center) <= nearest.getLimit(radiusSquared)) {
+						ChunkControl chunk = getChunkByLocation(x, y, z);
+						if (chunk != null) {
+							chunk.getObjectIndex().findNearest(center, radius, filter, nearest);
+						}
+					}
+				}
+			}
+		}
+		return nearest;
+	}
+	// Squared distance from the point to the nearest edge of the chunk at the given chunk location
+	protected float getChunkDistanceSquared(int x, int y, int z, Vector3f point) {
+		float dx = Math.max(0f, Math.abs(point.x - x * getChunkSizeX()) - getChunkSizeX() * 0.5f);
+		float dy = (m_volume_type == VolumeType.Height) ? 0f : Math.max(0f, Math.abs(point.y - y * getChunkSizeY()) - getChunkSizeY() * 0.5f);
+		float dz = Math.max(0f, Math.abs(point.z - z * getChunkSizeZ()) - getChunkSizeZ() * 0.5f);
+		return dx * dx + dy * dy + dz * dz;
+	}
 	public GameControl addObject(GameControl object, Vector3f globalLocation) {
 		ChunkControl chunk = getChunk(globalLocation);
 		if (chunk != null) {
@@ -536,9 +697,26 @@ public class Volume implements Savable {
 			r.save(directory);
 		}
 	}
+	// Closes the files backing each region
+	public void closeRegions() {
+		for (Region r : regions) {
+			r.close();
+		}
+	}
 	// Clears all the data arrays for this volume
 	public void clearVolume() {
 		active.clear();
+		activeIndex.clear();
+		cache.clear();
+		navigation.clear();
+	}
+	// Gets the cache holding inactive chunks
+	public ChunkCache getChunkCache() {
+		return cache;
+	}
+	// Gets the hierarchical path planner for this volume
+	public NavigationGraph getNavigation() {
+		return navigation;
 	}
 	// Gets the number of active chunks
 	public int getActiveCount() {
@@ -609,6 +787,7 @@ public class Volume implements Savable {
 		}
 		int creatureCount = ByteUtils.readInt(is);
 		creatures.clear();
+		creatureIds.clear();
 		for (int c = 0; c < creatureCount; c++) {
 			CreatureControl creature = (CreatureControl)GameRegistry.getInstance().createObject(ByteUtils.readLong(is));
 			creature.readFields(is);
@@ -616,6 +795,7 @@ public class Volume implements Savable {
 		}
 		int vehicleCount = ByteUtils.readInt(is);
 		vehicles.clear();
+		vehicleIds.clear();
 		for (int v = 0; v < vehicleCount; v++) {
 			VehicleControl vehicle = (VehicleControl)GameRegistry.getInstance().createObject(ByteUtils.readLong(is));
 			vehicle.readFields(is);
@@ -623,6 +803,7 @@ public class Volume implements Savable {
 		}
 		int structureCount = ByteUtils.readInt(is);
 		structures.clear();
+		structureIds.clear();
 		for (int s = 0; s < structureCount; s++) {
 			StructureControl structure = (StructureControl)GameRegistry.getInstance().createObject(ByteUtils.readLong(is));
 			structure.readFields(is);
@@ -664,6 +845,7 @@ public class Volume implements Savable {
 		}
 		int creatureCount = buffer.getInt();
 		creatures.clear();
+		creatureIds.clear();
 		for (int c = 0; c < creatureCount; c++) {
 			CreatureControl creature = (CreatureControl)GameRegistry.getInstance().createObject(buffer.getLong());
 			creature.readBuffer(buffer);
@@ -671,6 +853,7 @@ public class Volume implements Savable {
 		}
 		int vehicleCount = buffer.getInt();
 		vehicles.clear();
+		vehicleIds.clear();
 		for (int v = 0; v < vehicleCount; v++) {
 			VehicleControl vehicle = (VehicleControl)GameRegistry.getInstance().createObject(buffer.getLong());
 			vehicle.readBuffer(buffer);
@@ -678,6 +861,7 @@ public class Volume implements Savable {
 		}
 		int structureCount = buffer.getInt();
 		structures.clear();
+		structureIds.clear();
 		for (int s = 0; s < structureCount; s++) {
 			StructureControl structure = (StructureControl)GameRegistry.getInstance().createObject(buffer.getLong());
 			structure.readBuffer(buffer);
@@ -709,9 +893,9 @@ public class Volume implements Savable {
 	public Future<MotionPath> getPath(Vector3f source, Vector3f target) {
 		return m_thread_pool.submit(new PathProducer(this, source, target));
 	}
-	/* This is an implementation of the A* algorithm used to determine the shortest path from point A to B within
-	 * a given volume avoiding any obsticals. The algorithm is run on a seperate thread and the result can be obtained
-	 * through the returned Future object.
+	/* Finds a path from point A to B within a given volume avoiding any obsticals, long routes are planned over the
+	 * volume's navigation graph and short ones with a direct A* search. The search is run on a seperate thread and the
+	 * result can be obtained through the returned Future object.
 	 */
 	public static class PathProducer implements Callable<MotionPath> {
 		private final Volume volume;
@@ -723,162 +907,7 @@ public class Volume implements Savable {
 			this.target = target;
 		}
 		public MotionPath call() throws Exception {
-			long startTime = System.currentTimeMillis();
-			MotionPath path = new MotionPath();
-			ArrayList<PathNode> openList= new ArrayList<PathNode>();
-			ArrayList<PathNode> closedList = new ArrayList<PathNode>();
-			PathNode startNode = new PathNode(source);
-			PathNode endNode = new PathNode(target);
-			if (!volume.isPassable(endNode.getLocation())) {
-				for (int x = -1; x <= 1; x++) {
-					for (int y = -1; y <= 1; y++) {
-						if (x == 0 && y == 0) {
-							continue;
-						}
-						PathNode neighbor = new PathNode((int)endNode.getX() + x, (int)endNode.getY() + y);
-						if (volume.isPassable(neighbor.getLocation())) {
-							neighbor.set(PathNode.getDistance(startNode, neighbor), PathNode.getDistance(neighbor, endNode));
-							neighbor.setParent(endNode);
-							closedList.add(neighbor);
-						}
-					}
-				}
-				endNode = closedList.get(0);
-				for (PathNode node : closedList) {
-					if (node.getG() < endNode.getG()) {
-						endNode = node;
-					}
-				}
-				closedList.clear();
-			}
-			startNode.set(0, PathNode.getDistance(startNode, endNode));
-			endNode.set(PathNode.getDistance(startNode, endNode), 0);
-			openList.add(startNode);
-			//System.out.println("Start Node: " + startNode);
-			//System.out.println("End Node: " + endNode);
-			
-			while (openList.size() > 0) {
-				PathNode current = openList.get(0);
-				for (PathNode node : openList) {
-					if (node.getF() < current.getF() || (node.getF() == current.getF() && node.getH() < current.getH())) {
-						current = node;
-					}
-				}
-				//System.out.println("Current Node: " + current + " | " + openList.size());
-				openList.remove(current);
-				closedList.add(current);
-				if (current.equals(endNode)) {
-					while (!current.equals(startNode)) {
-						//System.out.println("Path Node: " + current);
-						path.addWayPoint(current.getLocation().setY(volume.getHeight(current.getX(), 0, current.getY())));
-						current = current.getParent();
-					}
-					double calcTime = (System.currentTimeMillis() - startTime)/1000.0;
-					//System.out.println("Path Length: " + path.getNbWayPoints() + " | " + calcTime + "s");
-					return path;
-				}
-				// Add Neighbors
-				for (int x = -1; x <= 1; x++) {
-					for (int y = -1; y <= 1; y++) {
-						if (x == 0 && y == 0) {
-							continue;
-						}
-						PathNode neighbor = new PathNode((int)current.getX() + x, (int)current.getY() + y);
-						// Check if the neighbor has already been evaluated and if it is passable
-						if (!closedList.contains(neighbor) && volume.isPassable(neighbor.getLocation())) {
-							neighbor.set(current.getG() + PathNode.getDistance(current, neighbor), PathNode.getDistance(neighbor, endNode));
-							neighbor.setParent(current);
-							int index = openList.indexOf(neighbor);
-							if (index < 0) {
-								openList.add(neighbor);
-								//System.out.println("Neighbor Node: " + neighbor);
-							} else if (neighbor.getG() < openList.get(index).getG()) {
-								openList.get(index).setG(neighbor.getG());
-							}
-						}
-					}
-				}
-			}
-			return path;
-		}
-	}
-	/* Used to hold path node values for the PathProducer algorithm */
-	public static class PathNode {
-		private Vector3f location;
-		private PathNode parent;
-		private boolean walkable;
-		private int g; // distance from start
-		private int h; // distance from end
-		
-		public PathNode(Vector3f worldLocation) {
-			this ((int)worldLocation.x, (int)worldLocation.z);
-		}
-		public PathNode(int x, int y) {
-			this.location = new Vector3f(x, 0, y);
-		}
-		public Vector3f getLocation() {
-			return location;
-		}
-		public PathNode getParent() {
-			return parent;
-		}
-		public int getG() {
-			return g;
-		}
-		public int getH() {
-			return h;
-		}
-		public int getF() {
-			return g + h;
-		}
-		public float getX() {
-			return location.x;
-		}
-		public float getY() {
-			return location.z;
-		}
-		public void setLocation(Vector3f in) {
-			setLocation(in.x, in.z);
-		}
-		public void setLocation(float x, float y) {
-			location.set(x, 0, y);
-		}
-		public void setParent(PathNode parent) {
-			this.parent = parent;
-		}
-		public void setG(int g) {
-			this.g = g;
-		}
-		public void setH(int h) {
-			this.h = h;
-		}
-		public void set(int g, int h) {
-			this.g = g;
-			this.h = h;
-		}
-		@Override
-		public String toString() {
-			return location.toString() + " gCost=" + g + " hCost=" + h + " fCost=" +getF();
-		}
-		@Override
-		public boolean equals(Object other) {
-			if (other instanceof PathNode) {
-				return ((PathNode)other).getLocation().equals(location);
-			}
-			return false;
-		}
-		@Override
-		public int hashCode() {
-			return location.hashCode() + (13 * getF());
-		}
-		public static int getDistance(PathNode nodeA, PathNode nodeB) {
-			int dx = (int)Math.abs(nodeA.getX() - nodeB.getX());
-			int dy = (int)Math.abs(nodeA.getY() - nodeB.getY());
-			if (dx > dy) {
-				return 14*dy + 10*(dx-dy);
-			} else {
-				return 14*dx + 10*(dy-dx);
-			}
+			return volume.getNavigation().findPath(source, target);
 		}
 	}
 }
\ No newline at end of file
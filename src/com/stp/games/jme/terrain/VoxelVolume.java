@@ -66,40 +66,7 @@ public class VoxelVolume extends Volume implements VoxelSource
 	}
 	// Creates the chunk geometry using marching cubes algorithm
 	private Mesh createMeshMarchingCubes(Vector3f loc, Vector3f start, Vector3f dim, Vector3f cubeSize) {
-		MeshBuilder meshBuilder = new MeshBuilder();
 		Vector3f end = new Vector3f(start.x + dim.x, start.y + dim.y, start.z + dim.z);
-        for (float i = start.x; i < end.x; i += cubeSize.x) {
-            for (float j = start.y; j < end.y; j += cubeSize.y) {
-                for (float k = start.z; k < end.z; k += cubeSize.z) {
-				
-                    float[] values = {
-						getVoxel(i, j, k),
-                        getVoxel(i + cubeSize.x, j, k),
-                        getVoxel(i + cubeSize.x, j, k + cubeSize.z),
-                        getVoxel(i, j, k + cubeSize.z),
-                        getVoxel(i, j + cubeSize.y, k),
-                        getVoxel(i + cubeSize.x, j + cubeSize.y, k),
-                        getVoxel(i + cubeSize.x, j + cubeSize.y, k + cubeSize.z),
-                        getVoxel(i, j + cubeSize.y, k + cubeSize.z)
-					};
-
-                    Vector3f[] locations = {
-                        new Vector3f(loc.x + i + 0, loc.y + j + 0, loc.z + k + 0),
-                        new Vector3f(loc.x + i + cubeSize.x, loc.y  + j + 0, loc.z + k + 0),
-                        new Vector3f(loc.x + i + cubeSize.x, loc.y  + j + 0, loc.z + k + cubeSize.z),
-                        new Vector3f(loc.x + i + 0, loc.y  + j + 0, loc.z + k + cubeSize.z),
-                        new Vector3f(loc.x + i + 0, loc.y  + j + cubeSize.y, loc.z + k + 0),
-                        new Vector3f(loc.x + i + cubeSize.x, loc.y  + j + cubeSize.y, loc.z + k + 0),
-                        new Vector3f(loc.x + i + cubeSize.x, loc.y  + j + cubeSize.y, loc.z + k + cubeSize.z),
-                        new Vector3f(loc.x + i + 0, loc.y  + j + cubeSize.y, loc.z + k + cubeSize.z)
-                    };
-					IsoSurface.addMarchingCubesTriangles(this, locations, values, null, meshBuilder);
-                }
-            }
-        }
-		if (meshBuilder.countVertices() > 0) {
-			return meshBuilder.generateMesh();
-		}
-		return null;
+		return MarchingCubes.get().generateMesh(this, loc, start, end, cubeSize);
 	}
 }
\ No newline at end of file
@@ -62,22 +62,16 @@ import com.jme3.post.filters.RadialBlurFilter;
 import com.jme3.water.WaterFilter;
 import com.jme3.post.filters.BloomFilter;
 // Java Dependencies
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.BufferedOutputStream;
+import java.io.IOException;
 import java.util.Calendar;
 import java.util.HashMap;
 import java.util.ArrayList;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
-import java.util.zip.ZipOutputStream;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.Callable;
-import java.util.concurrent.Future;
 import java.util.Collections;
 import java.util.Collection;
 import java.util.Iterator;
@@ -98,11 +92,13 @@ public class World extends AbstractAppState {
 	private static final long HOUR = 3600000L;
 	private static final long MINUTE = 600000L;
 	private static AtomicLong counter = new AtomicLong(0);
+	private static final long LAST_ID_KEY = RegionFile.keyForName("LastId");
 	
 	protected static long time = 28800000L;
 	protected final ArrayList<ChunkListener> chunkListeners = new ArrayList<ChunkListener>();
 	protected final ConcurrentLinkedQueue<CreatureControl> creatureQueue =  new ConcurrentLinkedQueue<CreatureControl>();
 	protected final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(8);
+	protected final ChunkStreamer streamer = new ChunkStreamer(this, executor, 6);
 	protected final HashMap<String, Task> tasks = new HashMap<String, Task>();
 	protected final ArrayList<TileLoader> tileLoaders = new ArrayList<TileLoader>();	
 	protected final Node worldNode = new Node("world");
@@ -120,8 +116,9 @@ public class World extends AbstractAppState {
 	protected TaskAI ai;
 	protected boolean registered;
 	protected File saveFile;
+	protected RegionFile store;
 	
-	protected Future loadResult;
+	protected boolean loading;
 	protected Vector3f dimensions;
 	protected Vector3f radius;
 	protected Vector3f currentChunk;
@@ -186,6 +183,10 @@ public class World extends AbstractAppState {
 		this.app = (SimpleApplication)app;
 		if (!isRegistered()) {
 			registerAssets(app.getAssetManager());
+			// Evicted chunks that have changed are written to regions alongside the save file
+			if (saveFile != null) {
+				volume.getChunkCache().setDirectory(saveFile.getAbsoluteFile().getParentFile());
+			}
 			viewControl = new Controller(app.getCamera(), new Vector3f(0, 2f, 0), this);
 			viewControl.setRotationSpeed(0.75f);
 			viewControl.registerWithInput(app.getInputManager());
@@ -281,6 +282,7 @@ public class World extends AbstractAppState {
 			//volume.saveVolume();
 			//player.save();
 		}
+		streamer.clear();
 		volume.clearVolume();
 		this.app.getRootNode().detachChild(worldNode);
 	}
@@ -324,19 +326,23 @@ public class World extends AbstractAppState {
 		sunColor.set(colorFactor, colorFactor, colorFactor, 1f);
 		sun.setColor(sunColor);*/
 
-		// Wait for all chunks to finish loading before doing additional updates
-		if (loadResult != null) {
-			if (loadResult.isDone()) {
-				loadResult = null;
-				loadComplete();
-			}
-			return;
+		// Attach any chunks the streamer has finished with, a limited number per frame
+		streamer.applyCompleted();
+		if (loading && streamer.isIdle()) {
+			loading = false;
+			loadComplete();
+		}
+		// Hand out finished paths and start the next batch of path searches
+		if (ai != null) {
+			ai.update(tpf);
 		}
 		// Deactivate all chunks if there are no players
 		if (player == null) {
 			// Mark all chunks inactive and remove them
 			volume.markInactive();
-			volume.moveInactive();
+			if (volume.moveInactive() > 0) {
+				streamer.cancelInactive();
+			}
 			return;
 		}
 		// Update any chunks that need it on a separate execution thread
@@ -350,13 +356,14 @@ public class World extends AbstractAppState {
 			// Activate all chunks within the radius of each player
 			int loadCount = 0;//activateChunks(player.getSelectedUnit());
 
-			// Move all chunks still marked as inactive to the inactive list
-			volume.moveInactive();
-			// Load any chunks that need it on a separate execution thread, return to wait for chunks to finish loadiing
+			// Move all chunks still marked as inactive to the inactive list and drop any requests for them
+			if (volume.moveInactive() > 0) {
+				streamer.cancelInactive();
+			}
+			// Stream in any chunks that need loading, nearest first
 			if (loadCount > 0) {
 				System.out.println("Load Started: " + loadCount);
-				loadResult = executor.submit(loadChunks);
-				return;
+				loadChunks();
 			}
 		}
 		if (!creatureQueue.isEmpty()) {
@@ -450,9 +457,9 @@ public class World extends AbstractAppState {
 	}
 	// Check if a given object is in the rendering area
 	public boolean inRenderArea(GameControl object) {
-		String chunkName = object.getChunkName();
+		long chunkKey = object.getChunkKey();
 		// If the object is not in a chunk then do a boundary test
-		if (chunkName.length() == 0) {
+		if (chunkKey == ChunkKey.NONE) {
 			Vector3f test = object.getWorldTranslation();
 			Vector3f center = viewControl.getLocation();
 			float w = dimensions.x*volume.getChunkSizeX();
@@ -469,7 +476,7 @@ public class World extends AbstractAppState {
 			return ((w < x || w > test.x) && (h < z || h > test.z));
 		}
 		// If the object is in a chunk determine if the chunk is loaded and currently active
-		ChunkControl chunk = volume.getChunkByName(chunkName);
+		ChunkControl chunk = volume.getChunkByKey(chunkKey);
 		if (chunk != null) {
 			return chunk.isActive();
 		}
@@ -540,19 +547,9 @@ public class World extends AbstractAppState {
 	public GameControl getActionableObject(int radius, String action) {
 		return null;//getActionableObject(player.getSelectedUnit().getWorldTranslation(), radius, action);
 	}
-	// Searches for objects within a given radius that allow the specified action
+	// Searches for the closest object within a given radius that allows the specified action
 	public GameControl getActionableObject(Vector3f location, int radius, String action) {
-		for (int x = -radius; x < radius; x++) {
-			for (int y = -radius; y < radius; y++){
-				for (int z = -radius; z < radius; z++) {
-					GameControl result = volume.getObject(location.x + x, location.y + y, location.z + z);
-					if (result != null && result.matchAction(action)) {
-						return result;
-					}
-				}
-			}
-		}
-		return null;
+		return volume.findObject(location, radius, action);
 	}
 	public boolean receiveInput(String name, boolean state, float tpf) {
 		return viewControl.receiveInput(name, state, tpf);
@@ -576,20 +573,26 @@ public class World extends AbstractAppState {
 		return unloaded;
 	}
 	public void requestObjectUpdate(String chunkName) {
-		ChunkControl chunk = volume.getChunkByName(chunkName);
+		requestObjectUpdate(ChunkKey.parseName(chunkName));
+	}
+	public void requestObjectUpdate(long chunkKey) {
+		ChunkControl chunk = volume.getChunkByKey(chunkKey);
 		if (chunk != null) {
 			chunk.setObjectUpdateNeeded(true);
 		}
 	}
 	public void requestObjectUpdate(GameControl object) {
-		ChunkControl chunk = volume.getChunkByName(object.getChunkName());
-		if (chunk != null) {
-			chunk.setObjectUpdateNeeded(true);
-		}
+		requestObjectUpdate(object.getChunkKey());
 	}
 	public ChunkControl getChunk(String name) {
 		return volume.getChunkByName(name);
 	}
+	public ChunkControl getChunk(int x, int y, int z) {
+		return volume.getChunkByLocation(x, y, z);
+	}
+	public ChunkControl getChunk(long key) {
+		return volume.getChunkByKey(key);
+	}
 	public float getHeight(float gx, float gz) {
 		return volume.getHeight(gx, 0, gz);
 	}
@@ -613,160 +616,93 @@ public class World extends AbstractAppState {
 	public File getSaveFile()	{
 		return saveFile;
 	}
+	// Gets the region file backing the save file, opening it on first use
+	protected synchronized RegionFile getStore() throws IOException {
+		if (store == null && saveFile != null) {
+			store = RegionFile.open(saveFile);
+		}
+		return store;
+	}
+	// Writes the given chunks that have changed since they were loaded or last saved along with the last used id
 	public void saveChunks(ArrayList<ChunkControl> chunks)	{
 		if (saveFile == null || chunks.size() == 0) {
 			return;
 		}
-		ZipInputStream zin = null;
-		ZipOutputStream out = null;
 		try {
-			// get a temp file
-			File tempFile = File.createTempFile(saveFile.getName(), null);
-			// delete it, otherwise you cannot rename your existing zip to it.
-			tempFile.delete();
-			
-			boolean saveExists = saveFile.exists();
-			if (saveExists) {
-				boolean renameOk = saveFile.renameTo(tempFile);
-				if (!renameOk) {
-					throw new RuntimeException("could not rename the file " + saveFile.getAbsolutePath() + " to " + tempFile.getAbsolutePath());
-				}
-			}
-
-			FileOutputStream dest = new FileOutputStream(saveFile);
-			out = new ZipOutputStream(new BufferedOutputStream(dest));
-			out.putNextEntry(new ZipEntry("LastId"));
-			out.write(ByteUtils.convertToBytes(counter.longValue()));
-
+			RegionFile regionFile = getStore();
+			regionFile.write(LAST_ID_KEY, ByteUtils.convertToBytes(counter.longValue()), 0, 8);
 			for (ChunkControl chunk : chunks) {
-				ZipEntry entry = new ZipEntry(chunk.getName());
-				out.putNextEntry(entry);
-				chunk.write(out);
-			}
-			
-			if (saveExists) {
-				byte[] buf = new byte[4096 * 1024];
-				zin = new ZipInputStream(new FileInputStream(tempFile));
-				ZipEntry entry = zin.getNextEntry();
-				while (entry != null) {
-					try {
-						// Add ZIP entry to output stream.
-						out.putNextEntry(new ZipEntry(entry.getName()));
-						// Transfer bytes from the ZIP file to the output file
-						int len;
-						while ((len = zin.read(buf)) > 0) {
-							out.write(buf, 0, len);
-						}
-					} catch (Exception ex) {}
-					entry = zin.getNextEntry();
+				if (chunk.isDirty()) {
+					regionFile.writeChunk(chunk);
+					chunk.setDirty(false);
 				}
-				zin.close();
-				tempFile.delete();
 			}
-			out.closeEntry();
-			out.close();
+			regionFile.flush();
 		} catch (Exception ex) {
 			ex.printStackTrace();
-		} finally {
-			try {
-				out.close();
-				zin.close();
-			} catch (Exception ex) {}
 		}
 	}
 	public void load() {
 		if (saveFile == null || !saveFile.exists()) {
 			return;
 		}
-		ZipFile zip = null;
 		try {
-			zip = new ZipFile(saveFile);
-			ZipEntry entry = zip.getEntry("LastId");
-			if (entry != null) {
-				counter.set(ByteUtils.readLong(zip.getInputStream(entry)));
+			byte[] lastId = getStore().read(LAST_ID_KEY);
+			if (lastId != null) {
+				counter.set(ByteUtils.readLong(new ByteArrayInputStream(lastId)));
 			}
-			zip.close();
 		} catch (Exception ex) {
 			ex.printStackTrace();
-		} finally {
-			try { zip.close(); }
-			catch (Exception ex) {}
 		}
 	}
 	public boolean loadChunk(ChunkControl chunk) {
 		if (saveFile == null || !saveFile.exists()) {
 			return false;
 		}
-		ZipFile zip = null;
 		try {
-			zip = new ZipFile(saveFile);
-			ZipEntry entry = zip.getEntry(chunk.getName());
-			if (entry != null) {
-				chunk.read(zip.getInputStream(entry));
+			if (getStore().readChunk(chunk)) {
 				System.out.println("Chunk Loaded: " + chunk);
 				chunk.setLoaded(true);
 			}
-			zip.close();
 		} catch (Exception ex) {
 			ex.printStackTrace();
-		} finally {
-			try { zip.close(); }
-			catch (Exception ex) {}
 		}
 		return chunk.isLoaded();
 	}
-	// Task to load chunks on a separate thread and returns the number loaded
-	private Callable<Integer> loadChunks = new Callable<Integer>() {
-		public Integer call() throws Exception {
-			int count = 0;
-			long startTime = System.currentTimeMillis();
-			// Check all active chunks to see if any need loading
-			for (ChunkControl chunk : volume.getActiveChunks(false)) {
-				if (!chunk.isLoaded()) {
-					// Loads the chunk from file or generates a new one if a file does exist
-					if (!volume.loadChunk(chunk)) {
-						try {
-							generateChunk(chunk);
-							volume.addLoadedChunk(chunk);
-						} catch (Exception ex) { ex.printStackTrace(); }
-					}
-					volume.beforeActivate(chunk);
-					fireChunkLoaded(chunk);
-					count++;
-				}
+	// Requests every active chunk that has not been loaded from the streamer and returns the number requested
+	protected int loadChunks() {
+		int count = 0;
+		for (ChunkControl chunk : volume.getActiveChunks(false)) {
+			if (!chunk.isLoaded() && !streamer.isRequested(chunk)) {
+				streamer.request(chunk);
+				count++;
 			}
-			double buildTime = (System.currentTimeMillis() - startTime)/1000.0;
-			System.out.println("Volume Load Complete: " + count + " chunks " + buildTime + "s");
-			return count;
 		}
-	};
+		if (count > 0) {
+			this.loading = true;
+		}
+		return count;
+	}
+	// Attaches a mesh built by the streamer, called on the main thread
+	protected void applyChunkMesh(ChunkControl chunk, Mesh mesh) {
+		chunk.updateMesh(mesh, material);
+		fireChunkUpdated(chunk);
+		// Update and/or construct the underlying physics object if enabled
+		if (isPhysicsEnabled()) {
+			volume.initializePhysics(chunk);
+		}
+	}
 	private int updateChunks() {
 		int mCount = 0;
 		int oCount = 0;
+		Vector3f cameraLocation = app.getCamera().getLocation();
+		streamer.setFocus(cameraLocation);
 		// Check all active chunks to see if any need updating
-		for (final ChunkControl chunk : getActiveChunks()) {
-			chunk.updateView(app.getCamera().getLocation());
-			if (chunk.isMeshUpdateNeeded() && !chunk.isRestricted()) {
-				chunk.setMeshUpdateNeeded(false);
-				// Submit update tasks to the executor pool to be updated on separate threads
-				executor.execute(new Runnable() {
-					public void run() {
-						// Rebuild the chunks mesh
-						final Mesh mesh = volume.buildMesh(chunk);
-						//System.out.println("Chunk updated: " + chunk);
-						// Update the geometry back on the main thread
-						app.enqueue(new Callable<ChunkControl>() {
-							public ChunkControl call() {
-								chunk.updateMesh(mesh, material);
-								// Update and/or construct the underlying physics object if enabled
-								if (isPhysicsEnabled()) {
-									volume.initializePhysics(chunk);
-								}
-								return chunk;
-							}
-						});
-					}
-				});
+		for (final ChunkControl chunk : volume.getActiveChunks(false)) {
+			chunk.updateView(cameraLocation);
+			if (chunk.isMeshUpdateNeeded() && !chunk.isRestricted() && !streamer.isRequested(chunk)) {
+				// Queue the rebuild with the streamer, nearer chunks are built first
+				streamer.request(chunk);
 				mCount++;
 			}
 			if (chunk.isObjectUpdateNeeded()) {
@@ -824,8 +760,22 @@ public class World extends AbstractAppState {
 		}
 	}
 	public void destroy() {
+		streamer.clear();
 		executor.shutdown();
 		ai.destroy();
+		if (volume != null) {
+			volume.closeRegions();
+		}
+		synchronized (this) {
+			if (store != null) {
+				try {
+					store.close();
+				} catch (IOException ex) {
+					ex.printStackTrace();
+				}
+				store = null;
+			}
+		}
 	}
 	// Add the specified listener to start receiving notifications
 	public void addChunkListener(ChunkListener listener) {
@@ -850,6 +800,11 @@ public class World extends AbstractAppState {
 			listener.onChunkLoaded(chunk);
 		}
 	}
+	public void fireChunkUpdated(ChunkControl chunk) {
+		for (ChunkListener listener : chunkListeners) {
+			listener.onChunkUpdated(chunk);
+		}
+	}
 	public void setViewControlTarget(GameControl object, float threshold) {
 		viewControl.setTargetCoords(getWorldCoordinates(object), threshold);
 	}